@@ -4,38 +4,66 @@ import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
 import com.google.firebase.cloud.StorageClient;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.context.annotation.Lazy;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+/**
+ * Firebase clients are created on first use rather than at startup, so a cold
+ * start does not wait on reading credentials. The storage health indicator is
+ * part of readiness: the first probe creates the client, and an instance with
+ * bad credentials stays out of rotation instead of failing its first upload.
+ */
 @Configuration
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "firebase", matchIfMissing = true)
 public class FirebaseConfig {
 
     @Value("${firebase.storage.bucket}")
     private String storageBucket;
 
+    @Value("${firebase.credentials-path:/etc/secrets/firebase-service-account.json}")
+    private String credentialsPath;
+
     @Bean
+    @Lazy
     public FirebaseApp firebaseApp() throws IOException {
         if (FirebaseApp.getApps().isEmpty()) {
-            InputStream serviceAccount = new FileInputStream("/etc/secrets/firebase-service-account.json");
-
-            FirebaseOptions options = FirebaseOptions.builder()
-                    .setCredentials(GoogleCredentials.fromStream(serviceAccount))
-                    .setStorageBucket(storageBucket)
-                    .build();
+            try (InputStream serviceAccount = new FileInputStream(credentialsPath)) {
+                FirebaseOptions options = FirebaseOptions.builder()
+                        .setCredentials(GoogleCredentials.fromStream(serviceAccount))
+                        .setStorageBucket(storageBucket)
+                        .build();
 
-            return FirebaseApp.initializeApp(options);
+                return FirebaseApp.initializeApp(options);
+            }
         }
         return FirebaseApp.getInstance();
     }
 
     @Bean
+    @Lazy
     public StorageClient storageClient() throws IOException {
         return StorageClient.getInstance(firebaseApp());
     }
-} 
\ No newline at end of file
+
+    @Bean
+    public HealthIndicator storageHealthIndicator(ObjectProvider<StorageClient> storageClient) {
+        return () -> {
+            try {
+                storageClient.getObject();
+                return Health.up().withDetail("bucket", storageBucket).build();
+            } catch (RuntimeException e) {
+                return Health.down(e).withDetail("bucket", storageBucket).build();
+            }
+        };
+    }
+}
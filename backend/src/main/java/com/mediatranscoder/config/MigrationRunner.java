@@ -0,0 +1,34 @@
+package com.mediatranscoder.config;
+
+import com.mediatranscoder.service.JobPartitionManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the schema work that startup otherwise does, then exits. Hibernate has
+ * already applied {@code ddl-auto: update} by the time runners start; this
+ * partitions the jobs table, which nothing else does. Exiting here, before the ready
+ * event, keeps the job recovery and warm-up listeners from running.
+ */
+@Slf4j
+@Component
+@Profile("migrate")
+@RequiredArgsConstructor
+public class MigrationRunner implements ApplicationRunner {
+
+    private final JobPartitionManager jobPartitionManager;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        jobPartitionManager.migrate();
+        log.info("Schema migration complete");
+        System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,58 @@
+package com.mediatranscoder.config;
+
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class RabbitConfig {
+
+    @Value("${app.rabbitmq.queue:media_jobs}")
+    private String queueName;
+
+    @Value("${app.rabbitmq.retry.delays-ms:5000,30000,120000}")
+    private long[] retryDelaysMs;
+
+    // Declared here as well as by the worker so mandatory publishes are routable before any worker starts.
+    // Arguments must match the worker's queue_declare or the broker rejects the declaration.
+    @Bean
+    public Queue jobQueue() {
+        return new Queue(queueName, false);
+    }
+
+    /**
+     * One delay queue per retry, each with its own TTL so a long backoff never
+     * holds up a shorter one behind it. Nothing consumes them: expired messages
+     * dead-letter back onto the job queue. The dead-letter lane is durable so
+     * parked jobs survive a broker restart until they are replayed.
+     */
+    @Bean
+    public Declarables retryTopology() {
+        List<Declarable> queues = new ArrayList<>();
+        for (int i = 0; i < retryDelaysMs.length; i++) {
+            queues.add(QueueBuilder.nonDurable(retryQueueName(queueName, i + 2))
+                    .ttl((int) retryDelaysMs[i])
+                    .deadLetterExchange("")
+                    .deadLetterRoutingKey(queueName)
+                    .build());
+        }
+        queues.add(QueueBuilder.durable(deadLetterQueueName(queueName)).build());
+        return new Declarables(queues);
+    }
+
+    /** Delay queue a job waits in before its {@code attempt}-th run; the first run has none. */
+    public static String retryQueueName(String queueName, int attempt) {
+        return queueName + ".retry." + (attempt - 1);
+    }
+
+    public static String deadLetterQueueName(String queueName) {
+        return queueName + ".dead";
+    }
+}
@@ -0,0 +1,44 @@
+package com.mediatranscoder.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Lifts the async request timeout for the endpoints that stream for as long
+ * as they have data: the export cursor and ZIP bundles. Every other async
+ * request keeps the container's default.
+ */
+@Configuration
+public class StreamingTimeoutConfig implements WebMvcConfigurer {
+
+    private static final Set<String> STREAMING_PATHS = Set.of("/api/v1/jobs/export", "/api/v1/jobs/bundle");
+
+    // Zero or less for no timeout
+    @Value("${app.streaming.request-timeout-ms:-1}")
+    private long timeoutMillis;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            // Runs before the async request starts, while its timeout can still be changed
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                HttpServletRequest servletRequest = request.getNativeRequest(HttpServletRequest.class);
+                if (request instanceof AsyncWebRequest asyncRequest && servletRequest != null
+                        && STREAMING_PATHS.contains(servletRequest.getRequestURI()
+                                .substring(servletRequest.getContextPath().length()))) {
+                    asyncRequest.setTimeout(timeoutMillis);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,41 @@
+package com.mediatranscoder.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediatranscoder.tracing.FileSpanExporter;
+import com.mediatranscoder.tracing.InMemorySpanExporter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.RabbitTemplateCustomizer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Span export and AMQP trace propagation. Sampling is controlled by
+ * {@code management.tracing.sampling.probability}; an OTLP exporter is added by
+ * Spring Boot when {@code management.otlp.tracing.endpoint} is set.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    public RabbitTemplateCustomizer tracingRabbitTemplateCustomizer() {
+        // Injects the W3C traceparent into the headers of every published job message
+        return rabbitTemplate -> rabbitTemplate.setObservationEnabled(true);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.tracing.exporter", havingValue = "memory")
+    public InMemorySpanExporter inMemorySpanExporter(@Value("${app.tracing.memory-capacity:10000}") int capacity) {
+        return new InMemorySpanExporter(capacity);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.tracing.exporter", havingValue = "file")
+    public FileSpanExporter fileSpanExporter(@Value("${app.tracing.file}") String file,
+                                             ObjectMapper objectMapper) throws IOException {
+        return new FileSpanExporter(Path.of(file), objectMapper);
+    }
+}
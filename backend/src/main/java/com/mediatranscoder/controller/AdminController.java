@@ -0,0 +1,46 @@
+package com.mediatranscoder.controller;
+
+import com.mediatranscoder.model.DeadLetterReplay;
+import com.mediatranscoder.model.DeadLetterReport;
+import com.mediatranscoder.model.RetentionReport;
+import com.mediatranscoder.service.DeadLetterService;
+import com.mediatranscoder.service.RetentionPurger;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final RetentionPurger retentionPurger;
+    private final DeadLetterService deadLetterService;
+
+    @GetMapping("/retention")
+    public ResponseEntity<RetentionReport> getLastRetentionReport() {
+        RetentionReport report = retentionPurger.getLastReport();
+        return report != null ? ResponseEntity.ok(report) : ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/retention/run")
+    public ResponseEntity<RetentionReport> runRetention() {
+        return ResponseEntity.ok(retentionPurger.purge());
+    }
+
+    @GetMapping("/dead-letters")
+    public ResponseEntity<DeadLetterReport> getDeadLetters(@RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(deadLetterService.inspect(limit));
+    }
+
+    // Replays every parked job when no ids are given
+    @PostMapping("/dead-letters/replay")
+    public ResponseEntity<DeadLetterReplay> replayDeadLetters(
+            @RequestBody(required = false) List<UUID> jobIds,
+            @RequestParam(defaultValue = "1000") int max) {
+        return ResponseEntity.ok(deadLetterService.replay(jobIds, max));
+    }
+}
@@ -1,14 +1,31 @@
 package com.mediatranscoder.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.PresignedUpload;
+import com.mediatranscoder.model.Rendition;
+import com.mediatranscoder.model.UploadProgress;
+import com.mediatranscoder.model.UploadSession;
+import com.mediatranscoder.service.JobNotFoundException;
 import com.mediatranscoder.service.JobService;
+import com.mediatranscoder.service.ResumableUploadService;
+import com.mediatranscoder.service.UnsupportedMediaException;
+import com.mediatranscoder.service.UploadSessionNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
- 
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @Slf4j
 @RestController
@@ -17,6 +34,8 @@ import java.util.Map;
 public class FileUploadController {
 
     private final JobService jobService;
+    private final ObjectMapper objectMapper;
+    private final ResumableUploadService resumableUploadService;
 
     @PostMapping
     public ResponseEntity<Job> uploadFile(
@@ -25,10 +44,25 @@ public class FileUploadController {
             @RequestParam(value = "outputQuality", defaultValue = "medium") String outputQuality,
             @RequestParam(value = "settings[resize]", required = false) String resize,
             @RequestParam(value = "settings[width]", required = false) String width,
-            @RequestParam(value = "settings[height]", required = false) String height) {
+            @RequestParam(value = "settings[height]", required = false) String height,
+            @RequestParam(value = "renditions", required = false) String renditions) {
         log.info("Received upload request: filename={}, outputFormat={}, outputQuality={}, resize={}, width={}, height={}", 
                 file.getOriginalFilename(), outputFormat, outputQuality, resize, width, height);
         try {
+            if (renditions != null && !renditions.isBlank()) {
+                // JSON array of {outputFormat, outputQuality, width, height}; overrides the single-output params
+                List<Rendition> requested;
+                try {
+                    requested = objectMapper.readValue(renditions, new TypeReference<>() {});
+                } catch (JsonProcessingException e) {
+                    log.warn("Rejected upload {} with malformed renditions: {}", file.getOriginalFilename(),
+                            e.getOriginalMessage());
+                    return ResponseEntity.badRequest().build();
+                }
+                Job job = jobService.createJob(file, requested);
+                log.info("Job created successfully with {} renditions: {}", requested.size(), job.getId());
+                return ResponseEntity.ok(job);
+            }
             Job job = jobService.createJob(file, outputFormat, outputQuality, Map.of(
                 "resize", resize != null ? resize : "false",
                 "width", width != null ? width : "",
@@ -36,9 +70,125 @@ public class FileUploadController {
             ));
             log.info("Job created successfully: {}", job.getId());
             return ResponseEntity.ok(job);
+        } catch (UnsupportedMediaException e) {
+            log.warn("Rejected upload {}: {}", file.getOriginalFilename(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        } catch (IllegalArgumentException e) {
+            // e.g. an empty renditions array or a malformed quality target
+            log.warn("Rejected upload {}: {}", file.getOriginalFilename(), e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error in uploadFile endpoint", e);
             return ResponseEntity.internalServerError().build();
         }
     }
-} 
\ No newline at end of file
+
+    @PostMapping("/presign")
+    public ResponseEntity<PresignedUpload> presignUpload(
+            @RequestParam("filename") String filename,
+            @RequestParam(value = "contentType", defaultValue = "application/octet-stream") String contentType,
+            @RequestParam(value = "outputFormat", defaultValue = "jpg") String outputFormat,
+            @RequestParam(value = "outputQuality", defaultValue = "medium") String outputQuality,
+            @RequestParam(value = "settings[resize]", required = false) String resize,
+            @RequestParam(value = "settings[width]", required = false) String width,
+            @RequestParam(value = "settings[height]", required = false) String height) {
+        log.info("Received presign request: filename={}, contentType={}, outputFormat={}", filename, contentType, outputFormat);
+        try {
+            PresignedUpload target = jobService.initiateUpload(filename, contentType, outputFormat, outputQuality, Map.of(
+                "resize", resize != null ? resize : "false",
+                "width", width != null ? width : "",
+                "height", height != null ? height : ""
+            ));
+            return ResponseEntity.ok(target);
+        } catch (Exception e) {
+            log.error("Error in presignUpload endpoint", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/{jobId}/finalize")
+    public ResponseEntity<Job> finalizeUpload(@PathVariable UUID jobId) {
+        try {
+            return ResponseEntity.ok(jobService.finalizeUpload(jobId));
+        } catch (UnsupportedMediaException e) {
+            log.warn("Rejected upload for job {}: {}", jobId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        } catch (IllegalStateException e) {
+            log.warn("Finalize rejected for job {}: {}", jobId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (JobNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/sessions")
+    public ResponseEntity<UploadProgress> createUploadSession(
+            @RequestParam("filename") String filename,
+            @RequestParam("totalSize") long totalSize,
+            @RequestParam(value = "contentType", defaultValue = "application/octet-stream") String contentType,
+            @RequestParam(value = "outputFormat", defaultValue = "jpg") String outputFormat,
+            @RequestParam(value = "outputQuality", defaultValue = "medium") String outputQuality,
+            @RequestParam(value = "settings[resize]", required = false) String resize,
+            @RequestParam(value = "settings[width]", required = false) String width,
+            @RequestParam(value = "settings[height]", required = false) String height) {
+        try {
+            UploadSession session = resumableUploadService.createSession(filename, contentType, totalSize,
+                outputFormat, outputQuality, Map.of(
+                    "resize", resize != null ? resize : "false",
+                    "width", width != null ? width : "",
+                    "height", height != null ? height : ""
+                ));
+            return ResponseEntity.ok(resumableUploadService.getProgress(session.getId()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Chunks are raw request bodies (not multipart) and may be sent in any order and in parallel
+    @PutMapping("/sessions/{sessionId}/chunks")
+    public ResponseEntity<UploadProgress> uploadChunk(
+            @PathVariable UUID sessionId,
+            @RequestParam("offset") long offset,
+            HttpServletRequest request) {
+        try (InputStream body = request.getInputStream()) {
+            return ResponseEntity.ok(resumableUploadService.writeChunk(sessionId, offset, request.getContentLengthLong(), body));
+        } catch (UploadSessionNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected chunk at offset {} for session {}: {}", offset, sessionId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IOException e) {
+            log.warn("Chunk at offset {} for session {} failed: {}", offset, sessionId, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/sessions/{sessionId}")
+    public ResponseEntity<UploadProgress> getUploadSession(@PathVariable UUID sessionId) {
+        try {
+            return ResponseEntity.ok(resumableUploadService.getProgress(sessionId));
+        } catch (UploadSessionNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/sessions/{sessionId}/complete")
+    public ResponseEntity<Job> completeUploadSession(@PathVariable UUID sessionId) {
+        try {
+            return ResponseEntity.ok(resumableUploadService.complete(sessionId));
+        } catch (UploadSessionNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (UnsupportedMediaException e) {
+            log.warn("Rejected upload session {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        } catch (IllegalStateException e) {
+            log.warn("Cannot complete upload session {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IOException e) {
+            log.error("Error completing upload session {}", sessionId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.mediatranscoder.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.service.IdempotencyService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Honours {@code Idempotency-Key} on the job-creating endpoints. It runs
+ * ahead of the dispatcher, before the multipart body is parsed, so a repeated
+ * key is answered with the original job without storing the upload again.
+ * The key is scoped to the request path; bodies are not compared, so reusing
+ * a key for a different file returns the first file's job.
+ */
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
+
+    public IdempotencyFilter(IdempotencyService idempotencyService, ObjectMapper objectMapper) {
+        this.idempotencyService = idempotencyService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid " + HEADER);
+            return;
+        }
+        String scopedKey = request.getRequestURI() + " " + key;
+        UUID existing;
+        try {
+            existing = idempotencyService.begin(scopedKey);
+        } catch (IllegalStateException e) {
+            response.sendError(HttpStatus.CONFLICT.value(), e.getMessage());
+            return;
+        }
+        if (existing != null) {
+            replay(existing, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        UUID created = null;
+        try {
+            chain.doFilter(request, wrapper);
+            created = createdJobId(wrapper);
+        } finally {
+            if (created != null) {
+                idempotencyService.complete(scopedKey, created);
+            } else {
+                idempotencyService.release(scopedKey);
+            }
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private void replay(UUID jobId, HttpServletResponse response) throws IOException {
+        Job job = idempotencyService.recordedJob(jobId);
+        if (job == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Job created for this " + HEADER + " was deleted");
+            return;
+        }
+        log.info("Replaying job {} for repeated {}", jobId, HEADER);
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(REPLAYED_HEADER, "true");
+        objectMapper.writeValue(response.getOutputStream(), job);
+    }
+
+    // Only successful responses are recorded; errors are left for the client to retry
+    private UUID createdJobId(ContentCachingResponseWrapper response) {
+        if (response.getStatus() != HttpStatus.OK.value()) {
+            return null;
+        }
+        try {
+            JsonNode id = objectMapper.readTree(response.getContentAsByteArray()).get("id");
+            return id != null && id.isTextual() ? UUID.fromString(id.asText()) : null;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
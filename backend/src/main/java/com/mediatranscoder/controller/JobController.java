@@ -1,27 +1,52 @@
 package com.mediatranscoder.controller;
 
 import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobEta;
 import com.mediatranscoder.model.JobStatus;
-import com.mediatranscoder.repository.JobRepository;
-import com.mediatranscoder.service.FileStorageService;
+import com.mediatranscoder.model.ReprocessRequest;
+import com.mediatranscoder.model.Rendition;
+import com.mediatranscoder.service.ImageRenderService;
+import com.mediatranscoder.service.JobBundleService;
+import com.mediatranscoder.service.JobEtaService;
+import com.mediatranscoder.service.JobExportService;
+import com.mediatranscoder.service.JobNotFoundException;
 import com.mediatranscoder.service.JobService;
+import com.mediatranscoder.service.ProcessedFileCache;
+import com.mediatranscoder.service.SegmentNotReadyException;
+import com.mediatranscoder.service.SegmentedTranscodeService;
+import com.mediatranscoder.service.UnsupportedMediaException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.nio.file.Files;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/v1/jobs")
@@ -30,8 +55,18 @@ import java.util.UUID;
 public class JobController {
 
     private final JobService jobService;
-    private final FileStorageService fileStorageService;
-    private final JobRepository jobRepository;
+    private final ProcessedFileCache processedFileCache;
+    private final JobExportService jobExportService;
+    private final JobBundleService jobBundleService;
+    private final JobEtaService jobEtaService;
+    private final SegmentedTranscodeService segmentedTranscodeService;
+    private final ImageRenderService imageRenderService;
+
+    @Value("${app.bundle.max-jobs:1000}")
+    private int maxBundleJobs;
+
+    @Value("${app.reprocess.max-jobs:1000}")
+    private int maxReprocessJobs;
 
     @PostMapping
     public ResponseEntity<Job> createJob(
@@ -57,6 +92,15 @@ public class JobController {
         }
     }
 
+    @GetMapping("/{jobId}/eta")
+    public ResponseEntity<JobEta> getEta(@PathVariable UUID jobId) {
+        try {
+            return ResponseEntity.ok(jobEtaService.estimate(jobId));
+        } catch (JobNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @GetMapping("/status/{status}")
     public ResponseEntity<List<Job>> getJobsByStatus(@PathVariable JobStatus status) {
         List<Job> jobs = jobService.getJobsByStatus(status);
@@ -69,41 +113,202 @@ public class JobController {
         return ResponseEntity.ok(jobs);
     }
 
+    /**
+     * Streams jobs created in {@code [from, to)} as NDJSON or CSV. Unlike the
+     * status listings this never materialises the result, so it suits bulk pulls.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportJobs(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "status", required = false) List<JobStatus> statuses,
+            @RequestParam(defaultValue = "NDJSON") JobExportService.Format format) {
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        String filename = "jobs-" + from.toLocalDate() + "-" + to.toLocalDate() + "." + format.name().toLowerCase();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(format.getContentType()));
+        headers.setContentDispositionFormData("attachment", filename);
+        StreamingResponseBody body = out -> jobExportService.export(from, to, statuses, format, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    @PostMapping("/bundle")
+    public ResponseEntity<StreamingResponseBody> downloadBundle(@RequestBody List<UUID> jobIds) {
+        if (jobIds.isEmpty() || jobIds.size() > maxBundleJobs) {
+            return ResponseEntity.badRequest().build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDispositionFormData("attachment", "jobs-" + jobIds.size() + ".zip");
+        StreamingResponseBody body = out -> jobBundleService.writeBundle(jobIds, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    @PostMapping("/{jobId}/reprocess")
+    public ResponseEntity<Job> reprocessJob(@PathVariable UUID jobId, @RequestBody ReprocessRequest request) {
+        try {
+            return ResponseEntity.ok(jobService.reprocess(jobId, request.getOutputFormat(),
+                    request.getOutputQuality(), request.getSettings()));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (JobNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Reprocesses many jobs with the same new settings. Each job is derived in
+     * its own transaction; jobs that are missing or cannot be reprocessed are
+     * skipped, so the response lists only the jobs created. Any other failure
+     * fails the request rather than being passed off as a skipped job.
+     */
+    @PostMapping("/reprocess")
+    public ResponseEntity<List<Job>> reprocessJobs(@RequestBody ReprocessRequest request) {
+        List<UUID> jobIds = request.getJobIds();
+        if (jobIds == null || jobIds.isEmpty() || jobIds.size() > maxReprocessJobs) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<Job> derived = new ArrayList<>(jobIds.size());
+        for (UUID jobId : jobIds) {
+            try {
+                derived.add(jobService.reprocess(jobId, request.getOutputFormat(),
+                        request.getOutputQuality(), request.getSettings()));
+            } catch (JobNotFoundException e) {
+                log.warn("Skipping reprocess of job {}: not found", jobId);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                log.warn("Skipping reprocess of job {}: {}", jobId, e.getMessage());
+            }
+        }
+        return ResponseEntity.ok(derived);
+    }
+
     @GetMapping("/{jobId}/download")
-    public ResponseEntity<byte[]> getDownloadUrl(@PathVariable UUID jobId) {
+    public ResponseEntity<Resource> getDownloadUrl(@PathVariable UUID jobId, WebRequest webRequest) {
         Job job = jobService.getJob(jobId);
-        System.out.println("[DEBUG] Download requested for jobId: " + jobId);
         if (job == null) {
-            System.out.println("[DEBUG] Job not found for jobId: " + jobId);
             return ResponseEntity.notFound().build();
         }
-        System.out.println("[DEBUG] Job found: " + job);
         if (job.getProcessedFileKey() == null) {
-            System.out.println("[DEBUG] Processed file key is null for jobId: " + jobId);
+            log.debug("Job {} has no processed file to download", jobId);
+            return ResponseEntity.notFound().build();
+        }
+        return serveProcessedFile(job, job.getProcessedFileKey(), job.getOutputFormat(), null, webRequest);
+    }
+
+    @GetMapping("/{jobId}/renditions")
+    public ResponseEntity<List<Rendition>> getRenditions(@PathVariable UUID jobId) {
+        try {
+            return ResponseEntity.ok(jobService.getJob(jobId).getRenditions());
+        } catch (JobNotFoundException e) {
             return ResponseEntity.notFound().build();
         }
+    }
+
+    @GetMapping("/{jobId}/renditions/{index}/download")
+    public ResponseEntity<Resource> downloadRendition(
+            @PathVariable UUID jobId,
+            @PathVariable int index,
+            WebRequest webRequest) {
+        Job job;
         try {
-            System.out.println("[DEBUG] Downloading processed file from Firebase: " + job.getProcessedFileKey());
-            File file = fileStorageService.downloadFile(job.getProcessedFileKey());
-            System.out.println("[DEBUG] Downloaded file path: " + file.getAbsolutePath() + ", size: " + file.length());
-            byte[] fileBytes = Files.readAllBytes(file.toPath());
-            String extension = job.getOutputFormat().toLowerCase();
+            job = jobService.getJob(jobId);
+        } catch (JobNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+        if (index < 0 || index >= job.getRenditions().size()) {
+            return ResponseEntity.notFound().build();
+        }
+        Rendition rendition = job.getRenditions().get(index);
+        if (rendition.getStatus() != JobStatus.COMPLETED || rendition.getProcessedFileKey() == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String suffix = rendition.getWidth() != null && rendition.getHeight() != null
+                ? "-" + rendition.getWidth() + "x" + rendition.getHeight()
+                : "-" + index;
+        return serveProcessedFile(job, rendition.getProcessedFileKey(), rendition.getOutputFormat(), suffix, webRequest);
+    }
+
+    @GetMapping("/{jobId}/render")
+    public ResponseEntity<byte[]> render(
+            @PathVariable UUID jobId,
+            @RequestParam(value = "w", required = false) Integer width,
+            @RequestParam(value = "h", required = false) Integer height,
+            @RequestParam(value = "fmt", required = false) String format,
+            @RequestParam(value = "q", required = false) String quality,
+            WebRequest webRequest) {
+        ImageRenderService.Variant variant;
+        try {
+            variant = ImageRenderService.normalize(width, height, format, quality);
+        } catch (UnsupportedMediaException e) {
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        // A variant is derived deterministically from immutable inputs, so its key identifies the content
+        String etag = "\"" + DigestUtils.md5DigestAsHex((jobId + "/" + variant.key()).getBytes(StandardCharsets.UTF_8)) + "\"";
+        CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        try {
+            ImageRenderService.Rendered rendered = imageRenderService.render(jobId, variant);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(rendered.contentType()))
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .body(rendered.bytes());
+        } catch (UnsupportedMediaException e) {
+            log.warn("Cannot render {} for job {}: {}", variant.key(), jobId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            log.error("Failed to render {} for job {}", variant.key(), jobId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } catch (JobNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    private ResponseEntity<Resource> serveProcessedFile(Job job, String fileKey, String format, String suffix,
+                                                       WebRequest webRequest) {
+        // Processed outputs are immutable, so the key alone identifies the content
+        String etag = "\"" + DigestUtils.md5DigestAsHex(fileKey.getBytes(StandardCharsets.UTF_8)) + "\"";
+        long lastModified = job.getCompletedAt() != null
+                ? job.getCompletedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : -1;
+        CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+        // Checked before touching storage so revalidations cost neither a download nor a disk read
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        try {
+            Path file = processedFileCache.get(fileKey);
+            // Opened now so a concurrent eviction cannot pull the file out from under the response
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            String extension = format.toLowerCase();
             String baseName = job.getOriginalFilename();
             if (baseName.contains(".")) {
                 baseName = baseName.substring(0, baseName.lastIndexOf('.'));
             }
-            String filename = baseName + "." + extension;
+            String filename = baseName + (suffix != null ? suffix : "") + "." + extension;
             String contentType = extension.equals("jpg") || extension.equals("jpeg")
                 ? "image/jpeg"
                 : "image/" + extension;
-            System.out.println("[DEBUG] Download filename: " + filename);
-            System.out.println("[DEBUG] Content type: " + contentType);
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.parseMediaType(contentType));
             headers.setContentDispositionFormData("attachment", filename);
-            return new ResponseEntity<>(fileBytes, headers, HttpStatus.OK);
+            headers.setContentLength(channel.size());
+            headers.setETag(etag);
+            headers.setCacheControl(cacheControl);
+            if (lastModified >= 0) {
+                headers.setLastModified(lastModified);
+            }
+            return new ResponseEntity<>(new InputStreamResource(Channels.newInputStream(channel)), headers, HttpStatus.OK);
         } catch (IOException e) {
-            System.out.println("[DEBUG] IOException during download: " + e.getMessage());
+            log.error("Failed to serve processed file {} for job {}", fileKey, job.getId(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
@@ -143,28 +348,41 @@ public class JobController {
         }
     }
 
+    // The worker echoes the message's traceparent header, so this request joins the job's trace
+    @SuppressWarnings("unchecked")
     @PostMapping("/worker-callback")
     public ResponseEntity<String> workerCallback(@RequestBody Map<String, Object> callback) {
         try {
+            if (callback.containsKey("batch")) {
+                List<Map<String, Object>> results = (List<Map<String, Object>>) callback.get("batch");
+                int applied = jobService.applyBatchResults(results);
+                log.info("Applied batch callback for {} of {} jobs", applied, results.size());
+                return ResponseEntity.ok("Job status updated");
+            }
             String jobId = (String) callback.get("job_id");
             String status = (String) callback.get("status");
             String processedFileKey = (String) callback.get("processed_file_key");
             String errorMessage = (String) callback.get("error_message");
+            List<Map<String, Object>> renditionResults = (List<Map<String, Object>>) callback.get("renditions");
+            Number processingMs = (Number) callback.get("processing_ms");
+            Number attempt = (Number) callback.get("attempt");
             
             log.info("Received worker callback for job {}: status={}", jobId, status);
-            
-            Job job = jobService.getJob(UUID.fromString(jobId));
-            
-            if ("completed".equals(status)) {
-                job.setStatus(JobStatus.COMPLETED);
-                job.setProcessedFileKey(processedFileKey);
-                job.setCompletedAt(java.time.LocalDateTime.now());
-            } else if ("failed".equals(status)) {
-                job.setStatus(JobStatus.FAILED);
-                job.setErrorMessage(errorMessage);
+
+            if (callback.get("segment_index") != null) {
+                try {
+                    segmentedTranscodeService.applySegmentResult(UUID.fromString(jobId),
+                            ((Number) callback.get("segment_index")).intValue(), status, processedFileKey, errorMessage,
+                            processingMs != null ? processingMs.longValue() : null);
+                } catch (SegmentNotReadyException e) {
+                    log.info("Segment result for job {} arrived early; asking the worker to retry", jobId);
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Segment not recorded yet");
+                }
+                return ResponseEntity.ok("Job status updated");
             }
             
-            jobRepository.save(job);
+            jobService.applyWorkerResult(UUID.fromString(jobId), status, processedFileKey, errorMessage, renditionResults,
+                    processingMs != null ? processingMs.longValue() : null, attempt != null ? attempt.intValue() : null);
             log.info("Updated job {} status to {}", jobId, status);
             
             return ResponseEntity.ok("Job status updated");
@@ -173,4 +391,22 @@ public class JobController {
             return ResponseEntity.status(500).body("Error processing callback");
         }
     }
+
+    // Sent by workers every second or so while ffmpeg runs; kept in memory, so this never touches the row
+    @PostMapping("/worker-progress")
+    public ResponseEntity<String> workerProgress(@RequestBody Map<String, Object> progress) {
+        Object jobId = progress.get("job_id");
+        Object percent = progress.get("percent");
+        Object attempt = progress.get("attempt");
+        if (!(jobId instanceof String) || !(percent instanceof Number)) {
+            return ResponseEntity.badRequest().body("job_id and percent are required");
+        }
+        try {
+            jobService.recordProgress(UUID.fromString((String) jobId),
+                    attempt instanceof Number ? ((Number) attempt).intValue() : 1, ((Number) percent).intValue());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Invalid job_id");
+        }
+        return ResponseEntity.ok("Progress recorded");
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.mediatranscoder.controller;
+
+import com.mediatranscoder.service.LocalFileStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Serves the signed URLs issued by {@link LocalFileStorageService}, standing in
+ * for the bucket's upload and download endpoints.
+ */
+@RestController
+@RequestMapping(LocalFileStorageService.ENDPOINT)
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local")
+public class LocalStorageController {
+
+    private final LocalFileStorageService storage;
+
+    @PutMapping
+    public ResponseEntity<Void> put(@RequestParam String key,
+                                    @RequestParam long expires,
+                                    @RequestParam String signature,
+                                    HttpServletRequest request) throws IOException {
+        if (!storage.verify("PUT", key, expires, signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try (InputStream body = request.getInputStream()) {
+            storage.write(key, body);
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping
+    public ResponseEntity<Resource> get(@RequestParam String key,
+                                        @RequestParam long expires,
+                                        @RequestParam String signature) {
+        if (!storage.verify("GET", key, expires, signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Path path = storage.resolve(key);
+        if (!Files.exists(path)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(new FileSystemResource(path));
+    }
+}
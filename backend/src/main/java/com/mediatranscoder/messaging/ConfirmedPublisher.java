@@ -0,0 +1,149 @@
+package com.mediatranscoder.messaging;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes with correlated publisher confirms and mandatory returns without
+ * blocking on the broker round trip. At most {@code max-in-flight} messages
+ * await a confirm at once; nacked, returned or timed-out messages are
+ * republished with exponential backoff until {@code max-attempts} is reached.
+ * Only the first attempt waits for room in the window; retries share one
+ * scheduler thread, so a retry that finds the window full is pushed back
+ * rather than blocking the others.
+ */
+@Slf4j
+@Component
+public class ConfirmedPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final Semaphore inFlight;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final long confirmTimeoutMs;
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "amqp-publish-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ConfirmedPublisher(RabbitTemplate rabbitTemplate,
+                              @Value("${app.rabbitmq.publisher.max-in-flight:256}") int maxInFlight,
+                              @Value("${app.rabbitmq.publisher.max-attempts:5}") int maxAttempts,
+                              @Value("${app.rabbitmq.publisher.initial-backoff-ms:200}") long initialBackoffMs,
+                              @Value("${app.rabbitmq.publisher.max-backoff-ms:10000}") long maxBackoffMs,
+                              @Value("${app.rabbitmq.publisher.confirm-timeout-ms:10000}") long confirmTimeoutMs) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+    }
+
+    /**
+     * Publishes to the default exchange. The returned future completes once the
+     * broker has confirmed the message, or exceptionally after the last attempt.
+     */
+    public CompletableFuture<Void> publish(String routingKey, Message message) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        attempt(routingKey, message, 1, result);
+        return result;
+    }
+
+    private void attempt(String routingKey, Message message, int attemptNumber, CompletableFuture<Void> result) {
+        try {
+            // Blocks the caller when the window is full, which back-pressures uploads instead of queueing unboundedly
+            if (!inFlight.tryAcquire(confirmTimeoutMs, TimeUnit.MILLISECONDS)) {
+                retryOrFail(routingKey, message, attemptNumber, result, new AmqpException("Publish window full"));
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+            return;
+        }
+        send(routingKey, message, attemptNumber, result);
+    }
+
+    // Runs on the retry scheduler; waits for room in the window until windowDeadline without holding the thread
+    private void retry(String routingKey, Message message, int attemptNumber, CompletableFuture<Void> result,
+                       long windowDeadline) {
+        if (!inFlight.tryAcquire()) {
+            long remaining = windowDeadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                retryOrFail(routingKey, message, attemptNumber, result, new AmqpException("Publish window full"));
+                return;
+            }
+            retryScheduler.schedule(() -> retry(routingKey, message, attemptNumber, result, windowDeadline),
+                    Math.min(initialBackoffMs, remaining), TimeUnit.MILLISECONDS);
+            return;
+        }
+        send(routingKey, message, attemptNumber, result);
+    }
+
+    // Called holding a window permit, which is released once the broker has answered
+    private void send(String routingKey, Message message, int attemptNumber, CompletableFuture<Void> result) {
+        CorrelationData correlation = new CorrelationData(UUID.randomUUID().toString());
+        try {
+            rabbitTemplate.send("", routingKey, message, correlation);
+        } catch (AmqpException e) {
+            inFlight.release();
+            retryOrFail(routingKey, message, attemptNumber, result, e);
+            return;
+        }
+
+        correlation.getFuture()
+                .orTimeout(confirmTimeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((confirm, error) -> {
+                    inFlight.release();
+                    ReturnedMessage returned = correlation.getReturned();
+                    if (error != null) {
+                        retryOrFail(routingKey, message, attemptNumber, result, error);
+                    } else if (!confirm.isAck()) {
+                        retryOrFail(routingKey, message, attemptNumber, result,
+                                new AmqpException("Broker nacked message: " + confirm.getReason()));
+                    } else if (returned != null) {
+                        retryOrFail(routingKey, message, attemptNumber, result,
+                                new AmqpException("Message returned: " + returned.getReplyText()));
+                    } else {
+                        result.complete(null);
+                    }
+                });
+    }
+
+    private void retryOrFail(String routingKey, Message message, int attemptNumber,
+                             CompletableFuture<Void> result, Throwable cause) {
+        if (attemptNumber >= maxAttempts) {
+            log.error("Giving up publishing to {} after {} attempts", routingKey, attemptNumber, cause);
+            result.completeExceptionally(cause);
+            return;
+        }
+        long delay = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attemptNumber - 1, 20));
+        log.warn("Publish to {} failed (attempt {}/{}), retrying in {} ms: {}",
+                routingKey, attemptNumber, maxAttempts, delay, cause.getMessage());
+        retryScheduler.schedule(() -> retry(routingKey, message, attemptNumber + 1, result,
+                        System.currentTimeMillis() + confirmTimeoutMs),
+                delay, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdown();
+    }
+}
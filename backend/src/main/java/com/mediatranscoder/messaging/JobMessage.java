@@ -0,0 +1,189 @@
+package com.mediatranscoder.messaging;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobSegment;
+import com.mediatranscoder.model.Rendition;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wire contract for a job published to the worker queue. Field names match the
+ * original map-based payload so v1 consumers keep working; new fields must be
+ * optional and bump {@link #CURRENT_VERSION}.
+ */
+@Data
+@NoArgsConstructor
+public class JobMessage {
+
+    public static final int CURRENT_VERSION = 7;
+
+    @JsonProperty("schema_version")
+    private int schemaVersion;
+
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("input_url")
+    private String inputUrl;
+
+    @JsonProperty("output_format")
+    private String outputFormat;
+
+    @JsonProperty("output_quality")
+    private String outputQuality;
+
+    @JsonProperty("settings")
+    private Map<String, String> settings;
+
+    @JsonProperty("callback_url")
+    private String callbackUrl;
+
+    /** Since v3. When present the worker decodes once and writes one output per entry. */
+    @JsonProperty("renditions")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<RenditionSpec> renditions;
+
+    /**
+     * Since v4. Marks a batch message: the top-level format, quality and
+     * settings are shared by every entry, the worker transcodes all entries in
+     * one pass and reports their results in a single callback.
+     */
+    @JsonProperty("jobs")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<JobMessage> jobs;
+
+    /** Since v5. When present the worker transcodes only this time range of the video track. */
+    @JsonProperty("segment")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SegmentSpec segment;
+
+    /** Since v5. When present the worker concatenates these segments and muxes in the original's audio. */
+    @JsonProperty("stitch")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private StitchSpec stitch;
+
+    /** Since v6. Encoder quantiser chosen by the backend's target-quality search; overrides output_quality. */
+    @JsonProperty("quality_param")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer qualityParam;
+
+    /** Since v7. Length of the input, which the worker needs to report progress as a percentage. */
+    @JsonProperty("duration_ms")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long durationMs;
+
+    @Data
+    @NoArgsConstructor
+    public static class RenditionSpec {
+
+        @JsonProperty("index")
+        private int index;
+
+        @JsonProperty("output_format")
+        private String outputFormat;
+
+        @JsonProperty("output_quality")
+        private String outputQuality;
+
+        @JsonProperty("width")
+        private Integer width;
+
+        @JsonProperty("height")
+        private Integer height;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class SegmentSpec {
+
+        @JsonProperty("index")
+        private int index;
+
+        @JsonProperty("count")
+        private int count;
+
+        @JsonProperty("start_ms")
+        private long startMs;
+
+        @JsonProperty("end_ms")
+        private long endMs;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class StitchSpec {
+
+        // In playback order
+        @JsonProperty("segment_urls")
+        private List<String> segmentUrls;
+    }
+
+    public static JobMessage of(Job job, String inputUrl, String callbackUrl) {
+        JobMessage message = new JobMessage();
+        message.setSchemaVersion(CURRENT_VERSION);
+        message.setId(job.getId().toString());
+        message.setInputUrl(inputUrl);
+        message.setOutputFormat(job.getOutputFormat());
+        message.setOutputQuality(job.getOutputQuality());
+        message.setSettings(job.getSettings());
+        message.setCallbackUrl(callbackUrl);
+        message.setQualityParam(job.getQualityParam());
+        if (job.getMediaInfo() != null) {
+            message.setDurationMs(job.getMediaInfo().getDurationMs());
+        }
+        if (job.getRenditions() != null && !job.getRenditions().isEmpty()) {
+            List<RenditionSpec> specs = new ArrayList<>(job.getRenditions().size());
+            for (int i = 0; i < job.getRenditions().size(); i++) {
+                Rendition rendition = job.getRenditions().get(i);
+                RenditionSpec spec = new RenditionSpec();
+                spec.setIndex(i);
+                spec.setOutputFormat(rendition.getOutputFormat());
+                spec.setOutputQuality(rendition.getOutputQuality());
+                spec.setWidth(rendition.getWidth());
+                spec.setHeight(rendition.getHeight());
+                specs.add(spec);
+            }
+            message.setRenditions(specs);
+        }
+        return message;
+    }
+
+    public static JobMessage segment(Job job, String inputUrl, String callbackUrl, JobSegment segment) {
+        JobMessage message = of(job, inputUrl, callbackUrl);
+        SegmentSpec spec = new SegmentSpec();
+        spec.setIndex(segment.getSegmentIndex());
+        spec.setCount(job.getSegmentCount());
+        spec.setStartMs(segment.getStartMs());
+        spec.setEndMs(segment.getEndMs());
+        message.setSegment(spec);
+        return message;
+    }
+
+    public static JobMessage stitch(Job job, String inputUrl, String callbackUrl, List<String> segmentUrls) {
+        JobMessage message = of(job, inputUrl, callbackUrl);
+        StitchSpec spec = new StitchSpec();
+        spec.setSegmentUrls(new ArrayList<>(segmentUrls));
+        message.setStitch(spec);
+        return message;
+    }
+
+    /** Wraps jobs that share output format, quality and settings into one batch message. */
+    public static JobMessage batch(String batchId, List<JobMessage> entries, String callbackUrl) {
+        JobMessage first = entries.get(0);
+        JobMessage message = new JobMessage();
+        message.setSchemaVersion(CURRENT_VERSION);
+        message.setId(batchId);
+        message.setOutputFormat(first.getOutputFormat());
+        message.setOutputQuality(first.getOutputQuality());
+        message.setSettings(first.getSettings());
+        message.setCallbackUrl(callbackUrl);
+        message.setJobs(new ArrayList<>(entries));
+        return message;
+    }
+}
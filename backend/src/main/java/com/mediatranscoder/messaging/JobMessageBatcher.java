@@ -0,0 +1,146 @@
+package com.mediatranscoder.messaging;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Coalesces job messages that share output format, quality and settings into
+ * batch messages. A batch is published when it reaches {@code maxJobs}
+ * entries or {@code maxBytes} of input, or {@code lingerMs} after its first
+ * job arrived, whichever comes first; the linger is therefore the most latency
+ * batching can add. Each job's future completes when its batch is confirmed.
+ */
+@Slf4j
+public class JobMessageBatcher {
+
+    private final int maxJobs;
+    private final long maxBytes;
+    private final long lingerMs;
+    private final String callbackUrl;
+    private final Function<JobMessage, CompletableFuture<Void>> publisher;
+    private final ScheduledExecutorService lingerTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "amqp-batch-linger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Open batch per compatibility key, guarded by this
+    private final Map<String, Batch> open = new HashMap<>();
+
+    public JobMessageBatcher(int maxJobs, long maxBytes, long lingerMs, String callbackUrl,
+                             Function<JobMessage, CompletableFuture<Void>> publisher) {
+        this.maxJobs = maxJobs;
+        this.maxBytes = maxBytes;
+        this.lingerMs = lingerMs;
+        this.callbackUrl = callbackUrl;
+        this.publisher = publisher;
+    }
+
+    public CompletableFuture<Void> add(JobMessage message, long inputBytes) {
+        CompletableFuture<Void> confirmed = new CompletableFuture<>();
+        Batch full = null;
+        synchronized (this) {
+            String key = key(message);
+            Batch batch = open.get(key);
+            if (batch == null) {
+                batch = new Batch(key);
+                open.put(key, batch);
+                Batch lingering = batch;
+                batch.deadline = lingerTimer.schedule(() -> flush(lingering), lingerMs, TimeUnit.MILLISECONDS);
+            }
+            batch.entries.add(message);
+            batch.confirmations.add(confirmed);
+            batch.bytes += inputBytes;
+            if (batch.entries.size() >= maxJobs || batch.bytes >= maxBytes) {
+                open.remove(key);
+                batch.deadline.cancel(false);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            publish(full);
+        }
+        return confirmed;
+    }
+
+    /** Publishes every open batch now, e.g. on shutdown. */
+    public void flushAll() {
+        List<Batch> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(open.values());
+            open.clear();
+        }
+        pending.forEach(batch -> {
+            batch.deadline.cancel(false);
+            publish(batch);
+        });
+    }
+
+    public void shutdown() {
+        flushAll();
+        lingerTimer.shutdown();
+    }
+
+    private void flush(Batch batch) {
+        synchronized (this) {
+            // Already published because it filled up before the deadline
+            if (open.get(batch.key) != batch) {
+                return;
+            }
+            open.remove(batch.key);
+        }
+        publish(batch);
+    }
+
+    private void publish(Batch batch) {
+        // A lone job goes out unwrapped, so quiet periods cost nothing over unbatched publishing
+        JobMessage message = batch.entries.size() == 1
+                ? batch.entries.get(0)
+                : JobMessage.batch("batch-" + UUID.randomUUID(), batch.entries, callbackUrl);
+        CompletableFuture<Void> published;
+        try {
+            published = publisher.apply(message);
+        } catch (RuntimeException e) {
+            published = CompletableFuture.failedFuture(e);
+        }
+        log.debug("Published batch of {} jobs ({} bytes of input)", batch.entries.size(), batch.bytes);
+        published.whenComplete((ignored, error) -> {
+            for (CompletableFuture<Void> confirmation : batch.confirmations) {
+                if (error != null) {
+                    confirmation.completeExceptionally(error);
+                } else {
+                    confirmation.complete(null);
+                }
+            }
+        });
+    }
+
+    private static String key(JobMessage message) {
+        Map<String, String> settings = message.getSettings() != null ? new TreeMap<>(message.getSettings()) : Map.of();
+        return message.getOutputFormat() + "|" + message.getOutputQuality() + "|" + settings;
+    }
+
+    private static final class Batch {
+        private final String key;
+        private final List<JobMessage> entries = new ArrayList<>();
+        private final List<CompletableFuture<Void>> confirmations = new ArrayList<>();
+        private long bytes;
+        private ScheduledFuture<?> deadline;
+
+        private Batch(String key) {
+            this.key = key;
+        }
+    }
+}
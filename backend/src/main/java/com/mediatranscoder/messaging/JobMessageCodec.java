@@ -0,0 +1,86 @@
+package com.mediatranscoder.messaging;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Encodes {@link JobMessage}s straight to bytes with readers and writers built
+ * once at startup. The encoding is advertised in the AMQP content type so
+ * consumers can decode either form.
+ */
+@Component
+public class JobMessageCodec {
+
+    public static final String SCHEMA_VERSION_HEADER = "x-schema-version";
+
+    public enum Encoding {
+        JSON(MessageProperties.CONTENT_TYPE_JSON),
+        CBOR("application/cbor");
+
+        private final String contentType;
+
+        Encoding(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static Encoding fromContentType(String contentType) {
+            if (contentType != null && contentType.startsWith(CBOR.contentType)) {
+                return CBOR;
+            }
+            // text/plain and missing content types come from the original String-based producer
+            return JSON;
+        }
+    }
+
+    private final ObjectWriter jsonWriter;
+    private final ObjectReader jsonReader;
+    private final ObjectWriter cborWriter;
+    private final ObjectReader cborReader;
+
+    public JobMessageCodec(ObjectMapper objectMapper) {
+        this.jsonWriter = objectMapper.writerFor(JobMessage.class);
+        this.jsonReader = objectMapper.readerFor(JobMessage.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        CBORMapper cborMapper = new CBORMapper();
+        this.cborWriter = cborMapper.writerFor(JobMessage.class);
+        this.cborReader = cborMapper.readerFor(JobMessage.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    public byte[] encode(JobMessage message, Encoding encoding) throws IOException {
+        return (encoding == Encoding.CBOR ? cborWriter : jsonWriter).writeValueAsBytes(message);
+    }
+
+    public JobMessage decode(byte[] body, String contentType) throws IOException {
+        JobMessage message = (Encoding.fromContentType(contentType) == Encoding.CBOR ? cborReader : jsonReader)
+                .readValue(body);
+        if (message.getSchemaVersion() == 0) {
+            // Payloads written before versioning carry no schema_version field
+            message.setSchemaVersion(1);
+        }
+        return message;
+    }
+
+    public Message toAmqpMessage(JobMessage message, Encoding encoding) throws IOException {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(encoding.getContentType());
+        properties.setHeader(SCHEMA_VERSION_HEADER, message.getSchemaVersion());
+        return new Message(encode(message, encoding), properties);
+    }
+
+    public JobMessage fromAmqpMessage(Message message) throws IOException {
+        return decode(message.getBody(), message.getMessageProperties().getContentType());
+    }
+}
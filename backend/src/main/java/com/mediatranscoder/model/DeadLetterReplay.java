@@ -0,0 +1,19 @@
+package com.mediatranscoder.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of one replay run. {@code kept} messages were not selected or could
+ * not be decoded and stay on the queue; {@code dropped} ones belonged to jobs
+ * deleted or already re-queued since they were parked.
+ */
+@Data
+public class DeadLetterReplay {
+    private List<UUID> replayed = new ArrayList<>();
+    private int kept;
+    private int dropped;
+}
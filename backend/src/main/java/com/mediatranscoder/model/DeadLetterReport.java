@@ -0,0 +1,16 @@
+package com.mediatranscoder.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The dead-letter lane at a glance: how many messages are parked on the queue
+ * and the most recently parked jobs, newest first.
+ */
+@Data
+public class DeadLetterReport {
+    private long queueDepth;
+    private List<Job> jobs = new ArrayList<>();
+}
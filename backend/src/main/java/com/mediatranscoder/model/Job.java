@@ -1,18 +1,27 @@
 package com.mediatranscoder.model;
 
+import com.mediatranscoder.service.JobWriteListener;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 @Data
 @Entity
-@Table(name = "jobs")
+@EntityListeners(JobWriteListener.class)
+// Range-partitioned on created_at by JobPartitionManager, so nothing may hold a foreign key to it
+@Table(name = "jobs", indexes = {
+        @Index(name = "idx_jobs_status_created_at", columnList = "status, created_at"),
+        // Reprocessed jobs share their parent's original; deletes look the family up by it
+        @Index(name = "idx_jobs_original_file_key", columnList = "original_file_key")
+})
 public class Job {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -35,6 +44,7 @@ public class Job {
     private String errorMessage;
 
     @CreationTimestamp
+    @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @UpdateTimestamp
@@ -42,6 +52,43 @@ public class Job {
 
     private LocalDateTime completedAt;
 
+    private Long originalFileSize;
+
+    // The job this one was reprocessed from; both point at the same stored original
+    private UUID parentJobId;
+
+    // Cost model estimate at creation; the scheduler orders held jobs by it
+    private Double predictedSeconds;
+
+    // When the job was published to the worker queue; null while the scheduler holds it
+    private LocalDateTime dispatchedAt;
+
+    // Worker-reported time spent on the job, excluding queue wait; summed over segments when segmented
+    private Long processingMs;
+
+    // Runs of the job so far, counting the current one; transient failures are retried through delay queues
+    private Integer attempts;
+
+    // When the job's message was parked on the dead-letter queue; cleared when it is replayed
+    private LocalDateTime deadLetteredAt;
+
+    // Set when the job is transcoded as parallel time-range segments; see JobSegment
+    private Integer segmentCount;
+
+    private Integer segmentsCompleted;
+
+    // Percent done, filled in from ProgressTracker on reads; never stored
+    @Transient
+    private Integer progress;
+
+    // Set for "ssim:<target>" quality requests: the perceptual target, the encoder quantiser the
+    // backend's search chose for it, and the SSIM that quantiser reached on the search proxy
+    private Double qualityTarget;
+
+    private Integer qualityParam;
+
+    private Double qualityScore;
+
     @Column(nullable = false)
     private String outputFormat;
 
@@ -49,8 +96,20 @@ public class Job {
     private String outputQuality;
 
     @ElementCollection
-    @CollectionTable(name = "job_settings", joinColumns = @JoinColumn(name = "job_id"))
+    @CollectionTable(name = "job_settings", joinColumns = @JoinColumn(name = "job_id"),
+            foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     @MapKeyColumn(name = "setting_key")
     @Column(name = "setting_value")
     private Map<String, String> settings = new HashMap<>();
-} 
\ No newline at end of file
+
+    // Read from the original's headers at ingest; null for jobs created before probing existed
+    @Embedded
+    private MediaInfo mediaInfo;
+
+    // Empty for single-output jobs, which use outputFormat/outputQuality/processedFileKey directly
+    @ElementCollection
+    @CollectionTable(name = "job_renditions", joinColumns = @JoinColumn(name = "job_id"),
+            foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    @OrderColumn(name = "rendition_index")
+    private List<Rendition> renditions = new ArrayList<>();
+}
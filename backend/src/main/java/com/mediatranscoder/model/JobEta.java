@@ -0,0 +1,23 @@
+package com.mediatranscoder.model;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * When a job is expected to finish. {@code secondsAhead} is the predicted
+ * worker time of everything queued before it; dividing by
+ * {@code workerThroughput} (worker-seconds completed per second) turns that
+ * into a wait. For finished jobs {@code estimatedCompletionAt} is the actual time.
+ */
+@Data
+public class JobEta {
+    private UUID jobId;
+    private JobStatus status;
+    private long jobsAhead;
+    private double secondsAhead;
+    private Double predictedSeconds;
+    private double workerThroughput;
+    private LocalDateTime estimatedCompletionAt;
+}
@@ -0,0 +1,54 @@
+package com.mediatranscoder.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One time range of a video job that is transcoded on its own and stitched
+ * back together once every range is done. Refers to its job by id only, since
+ * the partitioned jobs table cannot be the target of a foreign key.
+ */
+@Data
+@Entity
+@Table(name = "job_segments",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"job_id", "segment_index"}))
+public class JobSegment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "job_id", nullable = false)
+    private UUID jobId;
+
+    @Column(name = "segment_index", nullable = false)
+    private int segmentIndex;
+
+    // Half-open [startMs, endMs) of the original's timeline
+    @Column(nullable = false)
+    private long startMs;
+
+    @Column(nullable = false)
+    private long endMs;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private JobStatus status = JobStatus.QUEUED;
+
+    // Publishes so far, including the first
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(length = 1000)
+    private String processedFileKey;
+
+    @Column(length = 2000)
+    private String errorMessage;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
@@ -1,6 +1,7 @@
 package com.mediatranscoder.model;
 
 public enum JobStatus {
+    PENDING_UPLOAD,
     QUEUED,
     PROCESSING,
     COMPLETED,
@@ -0,0 +1,60 @@
+package com.mediatranscoder.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.Data;
+
+/**
+ * What the ingest probe read from the original's headers. Dimensions and
+ * duration are null when the container does not carry them in its header.
+ */
+@Data
+@Embeddable
+public class MediaInfo {
+
+    public enum Type {
+        IMAGE, VIDEO, AUDIO
+    }
+
+    @Column(name = "media_type")
+    private Type type;
+
+    // Normalised container name, e.g. jpeg, png, webp, mp4, mov, avi
+    @Column(name = "media_container")
+    private String container;
+
+    // What the file calls its own variant of the container: the EBML DocType
+    // of Matroska (webm, matroska), the major ftyp brand of ISO media (isom, M4A , 3gp5)
+    @Column(name = "media_brand")
+    private String brand;
+
+    @Column(name = "media_codec")
+    private String codec;
+
+    @Column(name = "media_width")
+    private Integer width;
+
+    @Column(name = "media_height")
+    private Integer height;
+
+    @Column(name = "media_duration_ms")
+    private Long durationMs;
+
+    // Per frame; width * height when both are known
+    @Column(name = "media_pixel_count")
+    private Long pixelCount;
+
+    // Embedded values must not be shared between entities
+    public MediaInfo copy() {
+        MediaInfo copy = new MediaInfo();
+        copy.setType(type);
+        copy.setContainer(container);
+        copy.setBrand(brand);
+        copy.setCodec(codec);
+        copy.setWidth(width);
+        copy.setHeight(height);
+        copy.setDurationMs(durationMs);
+        copy.setPixelCount(pixelCount);
+        return copy;
+    }
+}
@@ -0,0 +1,25 @@
+package com.mediatranscoder.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Where and how a client should upload an original directly to storage.
+ * {@code headers} must be sent verbatim with the request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresignedUpload {
+    private UUID jobId;
+    private String fileKey;
+    private String uploadUrl;
+    private String method;
+    private Map<String, String> headers;
+    private Instant expiresAt;
+}
@@ -0,0 +1,5 @@
+package com.mediatranscoder.model;
+
+/** Jobs already handed to workers and the predicted worker-seconds they still represent. */
+public record QueuedWork(Long jobs, Double seconds) {
+}
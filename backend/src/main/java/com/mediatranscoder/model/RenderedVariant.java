@@ -0,0 +1,44 @@
+package com.mediatranscoder.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * An on-demand rendering of a job's image kept in storage. The row is the
+ * storage tier's index, so a lookup never has to ask the bucket whether a
+ * variant exists, and it records use so stale variants can be evicted.
+ */
+@Data
+@Entity
+@Table(name = "rendered_variants",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"job_id", "variant_key"}),
+        indexes = @Index(name = "idx_rendered_variants_last_accessed_at", columnList = "last_accessed_at"))
+public class RenderedVariant {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "job_id", nullable = false)
+    private UUID jobId;
+
+    // Normalised request, e.g. w640-h0-medium.jpg
+    @Column(name = "variant_key", nullable = false)
+    private String variantKey;
+
+    @Column(nullable = false, length = 1000)
+    private String fileKey;
+
+    @Column(nullable = false)
+    private long size;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_accessed_at", nullable = false)
+    private LocalDateTime lastAccessedAt;
+}
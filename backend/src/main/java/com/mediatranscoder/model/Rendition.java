@@ -0,0 +1,33 @@
+package com.mediatranscoder.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * One requested output of a job. All renditions of a job are produced from a
+ * single decode of the original by the worker.
+ */
+@Data
+@Embeddable
+public class Rendition {
+
+    @Column(nullable = false)
+    private String outputFormat;
+
+    @Column(nullable = false)
+    private String outputQuality;
+
+    private Integer width;
+
+    private Integer height;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private JobStatus status = JobStatus.QUEUED;
+
+    @Column(length = 1000)
+    private String processedFileKey;
+
+    @Column(length = 2000)
+    private String errorMessage;
+}
@@ -0,0 +1,22 @@
+package com.mediatranscoder.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * New output settings for jobs re-run from their stored originals. Fields
+ * left null keep the parent job's value; {@code jobIds} is only read by the
+ * bulk endpoint.
+ */
+@Data
+@NoArgsConstructor
+public class ReprocessRequest {
+    private List<UUID> jobIds;
+    private String outputFormat;
+    private String outputQuality;
+    private Map<String, String> settings;
+}
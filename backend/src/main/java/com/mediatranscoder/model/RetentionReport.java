@@ -0,0 +1,25 @@
+package com.mediatranscoder.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What one retention run reclaimed. {@code tableBytesReclaimed} is the on-disk
+ * size of the dropped partitions, indexes and TOAST included.
+ */
+@Data
+public class RetentionReport {
+    private Instant startedAt;
+    private Instant finishedAt;
+    private LocalDate cutoff;
+    private List<String> partitionsDropped = new ArrayList<>();
+    private long jobsPurged;
+    private long blobsDeleted;
+    private long blobsMissing;
+    private long blobFailures;
+    private long tableBytesReclaimed;
+}
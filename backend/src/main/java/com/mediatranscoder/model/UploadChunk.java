@@ -0,0 +1,35 @@
+package com.mediatranscoder.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A chunk of an upload session that has been persisted to storage. Kept as its
+ * own row so parallel chunk PUTs never contend on the session row.
+ */
+@Data
+@Entity
+@Table(name = "upload_chunks",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"session_id", "chunk_index"}))
+public class UploadChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "session_id", nullable = false)
+    private UUID sessionId;
+
+    @Column(name = "chunk_index", nullable = false)
+    private int chunkIndex;
+
+    @Column(nullable = false)
+    private long size;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
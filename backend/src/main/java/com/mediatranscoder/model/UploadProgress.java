@@ -0,0 +1,32 @@
+package com.mediatranscoder.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadProgress {
+
+    private UUID sessionId;
+    private long totalSize;
+    private long chunkSize;
+    private long receivedBytes;
+    // Half-open [start, end) byte ranges already persisted
+    private List<ByteRange> receivedRanges;
+    private List<Integer> missingChunks;
+    private UploadSession.Status status;
+    private UUID jobId;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ByteRange {
+        private long start;
+        private long end;
+    }
+}
@@ -0,0 +1,67 @@
+package com.mediatranscoder.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+@Entity
+@Table(name = "upload_sessions")
+public class UploadSession {
+
+    public enum Status {
+        ACTIVE,
+        // Claimed by one complete call while it composes the parts and creates the job
+        COMPLETING,
+        COMPLETED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(nullable = false)
+    private String originalFilename;
+
+    private String contentType;
+
+    @Column(nullable = false)
+    private long totalSize;
+
+    @Column(nullable = false)
+    private long chunkSize;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.ACTIVE;
+
+    // Set once the session is completed and its job created
+    private UUID jobId;
+
+    @Column(nullable = false)
+    private String outputFormat;
+
+    @Column(nullable = false)
+    private String outputQuality;
+
+    @ElementCollection
+    @CollectionTable(name = "upload_session_settings", joinColumns = @JoinColumn(name = "session_id"))
+    @MapKeyColumn(name = "setting_key")
+    @Column(name = "setting_value")
+    private Map<String, String> settings = new HashMap<>();
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    // Last chunk or complete call; the session expires once it has been idle for the TTL
+    private LocalDateTime lastActivityAt;
+
+    public int getChunkCount() {
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+}
@@ -2,14 +2,70 @@ package com.mediatranscoder.repository;
 
 import com.mediatranscoder.model.Job;
 import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.model.QueuedWork;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface JobRepository extends JpaRepository<Job, UUID> {
     List<Job> findByStatus(JobStatus status);
     List<Job> findByStatusOrderByCreatedAtAsc(JobStatus status);
-} 
\ No newline at end of file
+    List<Job> findByStatusAndCompletedAtIsNotNullOrderByCompletedAtDesc(JobStatus status, Pageable pageable);
+    List<Job> findByStatusAndDispatchedAtIsNullAndPredictedSecondsIsNotNull(JobStatus status);
+    List<Job> findByDeadLetteredAtIsNotNullOrderByDeadLetteredAtDesc(Pageable pageable);
+    // Every job converted from one stored original: an uploaded job and those reprocessed from it
+    List<Job> findByOriginalFileKey(String originalFileKey);
+
+    // Holds the row until the caller's transaction ends, so a status it checks cannot change under it
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select j from Job j where j.id = :id")
+    Optional<Job> findByIdForUpdate(@Param("id") UUID id);
+
+    // Dispatched work still ahead of a job: published to the broker but not yet finished
+    @Query("select new com.mediatranscoder.model.QueuedWork(count(j), coalesce(sum(j.predictedSeconds), 0.0)) "
+            + "from Job j where j.status in :statuses and j.dispatchedAt is not null and j.dispatchedAt < :before")
+    QueuedWork sumDispatchedBefore(@Param("statuses") Collection<JobStatus> statuses,
+                                   @Param("before") LocalDateTime before);
+
+    /**
+     * Counts one more finished segment. The row lock taken here serialises
+     * concurrent segment callbacks, so reading the counter back in the same
+     * transaction tells exactly one of them that it finished the job.
+     * Returns 0 once the job has failed or been deleted.
+     */
+    @Modifying
+    @Query("update Job j set j.segmentsCompleted = j.segmentsCompleted + 1, "
+            + "j.processingMs = coalesce(j.processingMs, 0) + :processingMs, "
+            + "j.status = com.mediatranscoder.model.JobStatus.PROCESSING "
+            + "where j.id = :id and j.status in (com.mediatranscoder.model.JobStatus.QUEUED, "
+            + "com.mediatranscoder.model.JobStatus.PROCESSING)")
+    int recordSegmentCompleted(@Param("id") UUID id, @Param("processingMs") long processingMs);
+
+    /**
+     * Marks a queued job as running on the first progress report of its
+     * current attempt. Returns 0 if it is no longer queued or the report
+     * came from an earlier attempt.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Job j set j.status = com.mediatranscoder.model.JobStatus.PROCESSING, j.updatedAt = :now "
+            + "where j.id = :id and j.status = com.mediatranscoder.model.JobStatus.QUEUED "
+            + "and coalesce(j.attempts, 1) = :attempt")
+    int markProcessing(@Param("id") UUID id, @Param("attempt") int attempt, @Param("now") LocalDateTime now);
+
+    @Query("select j.segmentsCompleted from Job j where j.id = :id")
+    Integer findSegmentsCompleted(@Param("id") UUID id);
+}
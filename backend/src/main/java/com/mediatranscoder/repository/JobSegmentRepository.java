@@ -0,0 +1,31 @@
+package com.mediatranscoder.repository;
+
+import com.mediatranscoder.model.JobSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface JobSegmentRepository extends JpaRepository<JobSegment, UUID> {
+
+    List<JobSegment> findByJobIdOrderBySegmentIndex(UUID jobId);
+
+    Optional<JobSegment> findByJobIdAndSegmentIndex(UUID jobId, int segmentIndex);
+
+    // Returns 0 when the segment was already completed, so a redelivered callback is counted once
+    @Modifying
+    @Query("update JobSegment s set s.status = com.mediatranscoder.model.JobStatus.COMPLETED, "
+            + "s.processedFileKey = :fileKey, s.errorMessage = null "
+            + "where s.id = :id and s.status <> com.mediatranscoder.model.JobStatus.COMPLETED")
+    int markCompleted(@Param("id") UUID id, @Param("fileKey") String fileKey);
+
+    @Modifying
+    @Query("delete from JobSegment s where s.jobId = :jobId")
+    void deleteByJobId(@Param("jobId") UUID jobId);
+}
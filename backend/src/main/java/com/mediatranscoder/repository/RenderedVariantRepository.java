@@ -0,0 +1,34 @@
+package com.mediatranscoder.repository;
+
+import com.mediatranscoder.model.RenderedVariant;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface RenderedVariantRepository extends JpaRepository<RenderedVariant, UUID> {
+
+    Optional<RenderedVariant> findByJobIdAndVariantKey(UUID jobId, String variantKey);
+
+    List<RenderedVariant> findByJobId(UUID jobId);
+
+    List<RenderedVariant> findByLastAccessedAtBefore(LocalDateTime cutoff, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("update RenderedVariant v set v.lastAccessedAt = :at where v.id = :id")
+    void touch(@Param("id") UUID id, @Param("at") LocalDateTime at);
+
+    @Modifying
+    @Query("delete from RenderedVariant v where v.jobId = :jobId")
+    void deleteByJobId(@Param("jobId") UUID jobId);
+}
@@ -0,0 +1,26 @@
+package com.mediatranscoder.repository;
+
+import com.mediatranscoder.model.UploadChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface UploadChunkRepository extends JpaRepository<UploadChunk, UUID> {
+
+    boolean existsBySessionIdAndChunkIndex(UUID sessionId, int chunkIndex);
+
+    @Query("select c.chunkIndex from UploadChunk c where c.sessionId = :sessionId order by c.chunkIndex")
+    List<Integer> findChunkIndexes(@Param("sessionId") UUID sessionId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from UploadChunk c where c.sessionId = :sessionId")
+    void deleteBySessionId(@Param("sessionId") UUID sessionId);
+}
@@ -0,0 +1,31 @@
+package com.mediatranscoder.repository;
+
+import com.mediatranscoder.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, UUID> {
+    // Sessions from before activity was tracked fall back to their creation time
+    @Query("select s from UploadSession s where coalesce(s.lastActivityAt, s.createdAt) < :cutoff")
+    List<UploadSession> findIdleSince(@Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Transactional
+    @Query("update UploadSession s set s.lastActivityAt = :at where s.id = :id")
+    int touch(@Param("id") UUID id, @Param("at") LocalDateTime at);
+
+    // Conditional status change: exactly one of several concurrent callers sees 1
+    @Modifying
+    @Transactional
+    @Query("update UploadSession s set s.status = :to where s.id = :id and s.status = :from")
+    int transition(@Param("id") UUID id, @Param("from") UploadSession.Status from, @Param("to") UploadSession.Status to);
+}
@@ -0,0 +1,122 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.config.RabbitConfig;
+import com.mediatranscoder.messaging.JobMessageCodec;
+import com.mediatranscoder.model.DeadLetterReplay;
+import com.mediatranscoder.model.DeadLetterReport;
+import com.mediatranscoder.repository.JobRepository;
+import com.rabbitmq.client.GetResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Inspects and replays the dead-letter queue. The queue holds the evidence,
+ * one message per parked job plus anything a worker could not decode; the
+ * jobs table says which jobs they belong to.
+ */
+@Slf4j
+@Service
+public class DeadLetterService {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
+    private final JobMessageCodec jobMessageCodec;
+    private final JobRepository jobRepository;
+    private final JobService jobService;
+    private final String deadLetterQueue;
+
+    public DeadLetterService(RabbitTemplate rabbitTemplate,
+                             AmqpAdmin amqpAdmin,
+                             JobMessageCodec jobMessageCodec,
+                             JobRepository jobRepository,
+                             JobService jobService,
+                             @Value("${app.rabbitmq.queue:media_jobs}") String queueName) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.amqpAdmin = amqpAdmin;
+        this.jobMessageCodec = jobMessageCodec;
+        this.jobRepository = jobRepository;
+        this.jobService = jobService;
+        this.deadLetterQueue = RabbitConfig.deadLetterQueueName(queueName);
+    }
+
+    public DeadLetterReport inspect(int limit) {
+        DeadLetterReport report = new DeadLetterReport();
+        QueueInformation info = amqpAdmin.getQueueInfo(deadLetterQueue);
+        report.setQueueDepth(info != null ? info.getMessageCount() : 0);
+        report.setJobs(jobRepository.findByDeadLetteredAtIsNotNullOrderByDeadLetteredAtDesc(PageRequest.of(0, limit)));
+        return report;
+    }
+
+    /**
+     * Replays up to {@code max} parked jobs, or only those in {@code jobIds}
+     * when given. Messages are fetched unacknowledged and acked once their job
+     * is queued again; everything else is returned to the queue at the end,
+     * so a failed or interrupted run loses nothing.
+     */
+    public DeadLetterReplay replay(Collection<UUID> jobIds, int max) {
+        return rabbitTemplate.execute(channel -> {
+            DeadLetterReplay result = new DeadLetterReplay();
+            // Requeued at the end: requeueing straight away would hand the same messages back to this loop
+            List<Long> keep = new ArrayList<>();
+            try {
+                for (int fetched = 0; fetched < max; fetched++) {
+                    GetResponse response = channel.basicGet(deadLetterQueue, false);
+                    if (response == null) {
+                        break;
+                    }
+                    long tag = response.getEnvelope().getDeliveryTag();
+                    UUID jobId = jobIdOf(response);
+                    if (jobId == null || (jobIds != null && !jobIds.contains(jobId))) {
+                        keep.add(tag);
+                        continue;
+                    }
+                    if (!jobRepository.existsById(jobId)) {
+                        channel.basicAck(tag, false);
+                        result.setDropped(result.getDropped() + 1);
+                        continue;
+                    }
+                    try {
+                        if (jobService.replay(jobId)) {
+                            result.getReplayed().add(jobId);
+                        } else {
+                            result.setDropped(result.getDropped() + 1);
+                        }
+                        channel.basicAck(tag, false);
+                    } catch (RuntimeException e) {
+                        log.warn("Could not replay job {}; leaving it parked", jobId, e);
+                        keep.add(tag);
+                    }
+                }
+            } finally {
+                for (long tag : keep) {
+                    channel.basicNack(tag, false, true);
+                }
+            }
+            result.setKept(keep.size());
+            log.info("Replayed {} dead-lettered jobs ({} kept, {} dropped)",
+                    result.getReplayed().size(), result.getKept(), result.getDropped());
+            return result;
+        });
+    }
+
+    private UUID jobIdOf(GetResponse response) {
+        try {
+            String contentType = response.getProps() != null ? response.getProps().getContentType() : null;
+            return UUID.fromString(jobMessageCodec.decode(response.getBody(), contentType).getId());
+        } catch (IOException | RuntimeException e) {
+            // Left for a human: typically a payload the worker itself could not decode
+            return null;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.mediatranscoder.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides from a worker's error message whether a failed job is worth
+ * another attempt. Network, storage and worker-crash errors are transient;
+ * anything else, which in practice is ffmpeg rejecting the input or the
+ * requested output, fails the same way every time and is permanent.
+ */
+@Component
+public class FailureClassifier {
+
+    public enum Kind {
+        TRANSIENT, PERMANENT
+    }
+
+    // Lower case substrings. Bare status codes are avoided: ffmpeg's progress lines are full of numbers.
+    private static final List<String> TRANSIENT_MARKERS = List.of(
+            "connection",
+            "timed out",
+            "timeout",
+            "temporary failure",
+            "temporarily unavailable",
+            "broken pipe",
+            "reset by peer",
+            "name resolution",
+            "too many requests",
+            "server error",
+            "bad gateway",
+            "service unavailable",
+            "rate limit",
+            "no space left on device",
+            "redelivered");
+
+    public Kind classify(String errorMessage) {
+        if (errorMessage == null || errorMessage.isBlank()) {
+            // The worker gave no reason, so nothing says a retry would fail again
+            return Kind.TRANSIENT;
+        }
+        String message = errorMessage.toLowerCase(Locale.ROOT);
+        for (String marker : TRANSIENT_MARKERS) {
+            if (message.contains(marker)) {
+                return Kind.TRANSIENT;
+            }
+        }
+        return Kind.PERMANENT;
+    }
+}
@@ -1,8 +1,11 @@
 package com.mediatranscoder.service;
 
+import com.mediatranscoder.model.PresignedUpload;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
 public interface FileStorageService {
     String storeFile(MultipartFile file) throws IOException;
@@ -10,5 +13,14 @@ public interface FileStorageService {
     File downloadFile(String fileKey) throws IOException;
     String uploadFile(File file, String format) throws IOException;
     void deleteFile(String fileKey) throws IOException;
+    int deleteFiles(List<String> fileKeys) throws IOException;
     String getFileUrl(String fileKey);
+    PresignedUpload createUploadTarget(String originalFilename, String contentType);
+    boolean exists(String fileKey);
+    // Reads from the start of the object; skip() seeks rather than reading through
+    InputStream openStream(String fileKey) throws IOException;
+    void storePart(String partKey, InputStream content, String contentType) throws IOException;
+    // Replaces toKey, if present, with fromKey's object
+    void move(String fromKey, String toKey) throws IOException;
+    String compose(List<String> partKeys, String originalFilename, String contentType) throws IOException;
 } 
\ No newline at end of file
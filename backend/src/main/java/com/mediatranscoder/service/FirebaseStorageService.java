@@ -1,48 +1,110 @@
 package com.mediatranscoder.service;
 
+import com.google.cloud.ReadChannel;
+import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Bucket;
+import com.google.cloud.storage.HttpMethod;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
 import com.google.firebase.cloud.StorageClient;
+import com.mediatranscoder.model.PresignedUpload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.channels.Channels;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 
+@Slf4j
 @Service
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "firebase", matchIfMissing = true)
 public class FirebaseStorageService implements FileStorageService {
 
-    private final StorageClient storageClient;
+    // Cloud Storage accepts at most 32 source objects per compose request
+    private static final int MAX_COMPOSE_SOURCES = 32;
 
-    public FirebaseStorageService(StorageClient storageClient) {
+    // Resolved on first use: building the client reads credentials, which startup should not wait for
+    private final ObjectProvider<StorageClient> storageClient;
+    private final ParallelTransferEngine transferEngine;
+
+    @Value("${app.storage.upload-url-ttl-minutes:15}")
+    private long uploadUrlTtlMinutes;
+
+    public FirebaseStorageService(ObjectProvider<StorageClient> storageClient, ParallelTransferEngine transferEngine) {
         this.storageClient = storageClient;
+        this.transferEngine = transferEngine;
+    }
+
+    private StorageClient storageClient() {
+        return storageClient.getObject();
     }
 
     @Override
     public String storeFile(MultipartFile file) throws IOException {
         String fileKey = generateFileKey(file.getOriginalFilename());
-        Blob blob = storageClient.bucket().create(fileKey, file.getBytes(), file.getContentType());
+        if (transferEngine.shouldSplit(file.getSize())) {
+            Path spooled = Files.createTempFile("upload-", null);
+            try {
+                file.transferTo(spooled);
+                return uploadInParts(spooled, fileKey, file.getContentType());
+            } finally {
+                Files.deleteIfExists(spooled);
+            }
+        }
+        Blob blob = storageClient().bucket().create(fileKey, file.getBytes(), file.getContentType());
         return blob.getName();
     }
 
     @Override
     public String storeFile(File file) throws IOException {
         String fileKey = generateFileKey(file.getName());
-        Blob blob = storageClient.bucket().create(fileKey, Files.readAllBytes(file.toPath()), 
-            Files.probeContentType(file.toPath()));
+        String contentType = Files.probeContentType(file.toPath());
+        if (transferEngine.shouldSplit(file.length())) {
+            return uploadInParts(file.toPath(), fileKey, contentType);
+        }
+        Blob blob = storageClient().bucket().create(fileKey, Files.readAllBytes(file.toPath()), contentType);
         return blob.getName();
     }
 
     @Override
     public File downloadFile(String fileKey) throws IOException {
-        Blob blob = storageClient.bucket().get(fileKey);
+        Blob blob = storageClient().bucket().get(fileKey);
         if (blob == null) {
             throw new IOException("File not found: " + fileKey);
         }
         File tempFile = File.createTempFile("download-", fileKey.substring(fileKey.lastIndexOf(".")));
+        if (transferEngine.shouldSplit(blob.getSize())) {
+            Storage storage = storageClient().bucket().getStorage();
+            transferEngine.download(tempFile.toPath(), blob.getSize(), (start, end) -> {
+                ReadChannel reader = storage.reader(blob.getBlobId());
+                reader.seek(start);
+                reader.limit(end);
+                return Channels.newInputStream(reader);
+            });
+            return tempFile;
+        }
         try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
             blob.downloadTo(outputStream);
         }
@@ -52,22 +114,219 @@ public class FirebaseStorageService implements FileStorageService {
     @Override
     public String uploadFile(File file, String format) throws IOException {
         String fileKey = generateFileKey(file.getName());
-        Blob blob = storageClient.bucket().create(fileKey, Files.readAllBytes(file.toPath()), "image/" + format);
+        if (transferEngine.shouldSplit(file.length())) {
+            return uploadInParts(file.toPath(), fileKey, "image/" + format);
+        }
+        Blob blob = storageClient().bucket().create(fileKey, Files.readAllBytes(file.toPath()), "image/" + format);
         return blob.getName();
     }
 
+    private String uploadInParts(Path source, String fileKey, String contentType) throws IOException {
+        // Parts finish in any order; only those actually stored are deleted, whether or not the upload succeeds
+        Queue<String> stored = new ConcurrentLinkedQueue<>();
+        try {
+            int parts = transferEngine.upload(source, (index, content, length) -> {
+                String partKey = partKey(fileKey, index);
+                storePart(partKey, content, contentType);
+                stored.add(partKey);
+            });
+            List<String> partKeys = new ArrayList<>(parts);
+            for (int i = 0; i < parts; i++) {
+                partKeys.add(partKey(fileKey, i));
+            }
+            composeAll(partKeys, fileKey, contentType);
+            return fileKey;
+        } finally {
+            if (!stored.isEmpty()) {
+                deleteParts(new ArrayList<>(stored));
+            }
+        }
+    }
+
+    // A part left behind only costs storage, so failing to delete it must not fail or mask the upload's outcome
+    private void deleteParts(List<String> partKeys) {
+        try {
+            deleteFiles(partKeys);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to delete {} upload parts", partKeys.size(), e);
+        }
+    }
+
+    private static String partKey(String fileKey, int index) {
+        return fileKey + ".part-" + index;
+    }
+
     @Override
     public void deleteFile(String fileKey) throws IOException {
-        storageClient.bucket().get(fileKey).delete();
+        Blob blob = storageClient().bucket().get(fileKey);
+        if (blob != null) {
+            blob.delete();
+        }
+    }
+
+    @Override
+    public int deleteFiles(List<String> fileKeys) throws IOException {
+        if (fileKeys.isEmpty()) {
+            return 0;
+        }
+        Bucket bucket = storageClient().bucket();
+        List<BlobId> blobIds = fileKeys.stream().map(key -> BlobId.of(bucket.getName(), key)).toList();
+        try {
+            // One batch request; keys that are already gone come back false rather than failing
+            return (int) bucket.getStorage().delete(blobIds).stream().filter(Boolean::booleanValue).count();
+        } catch (StorageException e) {
+            throw new IOException("Batch delete failed", e);
+        }
     }
 
     @Override
     public String getFileUrl(String fileKey) {
-        Blob blob = storageClient.bucket().get(fileKey);
+        Blob blob = storageClient().bucket().get(fileKey);
         return blob.signUrl(7, TimeUnit.DAYS).toString();
     }
 
+    @Override
+    public PresignedUpload createUploadTarget(String originalFilename, String contentType) {
+        String fileKey = generateFileKey(originalFilename);
+        Bucket bucket = storageClient().bucket();
+        BlobInfo blobInfo = BlobInfo.newBuilder(bucket.getName(), fileKey).setContentType(contentType).build();
+        // V4 signed PUT; the content type is part of the signature, so the client must send the same header
+        URL url = bucket.getStorage().signUrl(blobInfo, uploadUrlTtlMinutes, TimeUnit.MINUTES,
+                Storage.SignUrlOption.httpMethod(HttpMethod.PUT),
+                Storage.SignUrlOption.withContentType(),
+                Storage.SignUrlOption.withV4Signature());
+        return new PresignedUpload(null, fileKey, url.toString(), "PUT",
+                Map.of("Content-Type", contentType),
+                Instant.now().plusSeconds(TimeUnit.MINUTES.toSeconds(uploadUrlTtlMinutes)));
+    }
+
+    @Override
+    public boolean exists(String fileKey) {
+        Blob blob = storageClient().bucket().get(fileKey);
+        return blob != null && blob.exists();
+    }
+
+    @Override
+    public InputStream openStream(String fileKey) throws IOException {
+        Blob blob = storageClient().bucket().get(fileKey);
+        if (blob == null) {
+            throw new FileNotFoundException("File not found: " + fileKey);
+        }
+        ReadChannel reader = blob.reader();
+        // Callers that seek around headers should not pull the default 2 MiB per read
+        reader.setChunkSize(64 * 1024);
+        return new SeekingInputStream(reader);
+    }
+
+    @Override
+    public void storePart(String partKey, InputStream content, String contentType) throws IOException {
+        Bucket bucket = storageClient().bucket();
+        BlobInfo blobInfo = BlobInfo.newBuilder(bucket.getName(), partKey).setContentType(contentType).build();
+        // Streams through the resumable writer's fixed-size buffer instead of holding the part in memory.
+        // Only a clean close finalises the object: if the stream fails the writer is abandoned, not closed,
+        // so no truncated part is ever committed and the unfinished resumable session simply expires.
+        WriteChannel writer = bucket.getStorage().writer(blobInfo);
+        OutputStream out = Channels.newOutputStream(writer);
+        content.transferTo(out);
+        out.close();
+    }
+
+    @Override
+    public void move(String fromKey, String toKey) throws IOException {
+        Bucket bucket = storageClient().bucket();
+        Storage storage = bucket.getStorage();
+        // Server-side copy; the bytes never pass through this instance
+        storage.copy(Storage.CopyRequest.of(bucket.getName(), fromKey, BlobId.of(bucket.getName(), toKey))).getResult();
+        storage.delete(bucket.getName(), fromKey);
+    }
+
+    @Override
+    public String compose(List<String> partKeys, String originalFilename, String contentType) throws IOException {
+        String fileKey = generateFileKey(originalFilename);
+        composeAll(partKeys, fileKey, contentType);
+        return fileKey;
+    }
+
+    private void composeAll(List<String> partKeys, String fileKey, String contentType) {
+        Bucket bucket = storageClient().bucket();
+        Storage storage = bucket.getStorage();
+        List<String> sources = partKeys;
+        List<String> intermediates = new ArrayList<>();
+        int round = 0;
+        try {
+            while (sources.size() > MAX_COMPOSE_SOURCES) {
+                List<String> next = new ArrayList<>();
+                for (int i = 0; i < sources.size(); i += MAX_COMPOSE_SOURCES) {
+                    String intermediate = fileKey + ".compose-" + round + "-" + (i / MAX_COMPOSE_SOURCES);
+                    composeInto(storage, bucket.getName(),
+                            sources.subList(i, Math.min(i + MAX_COMPOSE_SOURCES, sources.size())), intermediate, contentType);
+                    intermediates.add(intermediate);
+                    next.add(intermediate);
+                }
+                sources = next;
+                round++;
+            }
+            composeInto(storage, bucket.getName(), sources, fileKey, contentType);
+        } finally {
+            if (!intermediates.isEmpty()) {
+                deleteParts(intermediates);
+            }
+        }
+    }
+
+    private void composeInto(Storage storage, String bucketName, List<String> sources, String target, String contentType) {
+        storage.compose(Storage.ComposeRequest.newBuilder()
+                .addSource(sources)
+                .setTarget(BlobInfo.newBuilder(bucketName, target).setContentType(contentType).build())
+                .build());
+    }
+
     private String generateFileKey(String originalFilename) {
         return UUID.randomUUID().toString() + "/" + originalFilename;
     }
-} 
\ No newline at end of file
+
+    /** Turns {@code skip} into a ranged re-read instead of downloading the skipped bytes. */
+    private static final class SeekingInputStream extends InputStream {
+        private final ReadChannel channel;
+        private final InputStream in;
+        private long position;
+
+        SeekingInputStream(ReadChannel channel) {
+            this.channel = channel;
+            this.in = Channels.newInputStream(channel);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = in.read(buffer, offset, length);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            position += n;
+            channel.seek(position);
+            return n;
+        }
+
+        @Override
+        public void close() {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.repository.JobRepository;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Maps {@code Idempotency-Key}s to the job their first request created. A key
+ * is claimed as pending before the request runs, so duplicates that arrive
+ * while it is still uploading wait for its job instead of creating their own:
+ * duplicates on this instance wait on the owner directly, duplicates on other
+ * replicas poll the shared store.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final String PENDING = "pending";
+
+    private final IdempotencyStore store;
+    private final JobRepository jobRepository;
+    private final Duration completedTtl;
+    private final Duration pendingTtl;
+    private final Duration waitTimeout;
+    private final long pollIntervalMs;
+    // Keys this instance owns; completed with the job id, or null when the request failed
+    private final ConcurrentHashMap<String, CompletableFuture<UUID>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyStore store,
+                              JobRepository jobRepository,
+                              @Value("${app.idempotency.completed-ttl-hours:24}") long completedTtlHours,
+                              @Value("${app.idempotency.pending-ttl-minutes:15}") long pendingTtlMinutes,
+                              @Value("${app.idempotency.wait-timeout-ms:120000}") long waitTimeoutMs,
+                              @Value("${app.idempotency.poll-interval-ms:200}") long pollIntervalMs) {
+        this.store = store;
+        this.jobRepository = jobRepository;
+        this.completedTtl = Duration.ofHours(completedTtlHours);
+        this.pendingTtl = Duration.ofMinutes(pendingTtlMinutes);
+        this.waitTimeout = Duration.ofMillis(waitTimeoutMs);
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    /**
+     * Returns the job already created under {@code key}, waiting for it if its
+     * request is still running. Returns null when the caller has claimed the
+     * key and must run the request, then call {@link #complete} or
+     * {@link #release}. Throws IllegalStateException when the first request
+     * is still running after the wait timeout.
+     */
+    public UUID begin(String key) {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            CompletableFuture<UUID> claim = new CompletableFuture<>();
+            CompletableFuture<UUID> local = inFlight.putIfAbsent(key, claim);
+            if (local != null) {
+                UUID jobId = await(local, deadline);
+                if (jobId != null) {
+                    return jobId;
+                }
+                // The owner failed and released the key; the next pass claims it
+                continue;
+            }
+            String recorded = store.putIfAbsent(key, PENDING, pendingTtl);
+            if (recorded == null) {
+                return null;
+            }
+            inFlight.remove(key, claim);
+            claim.complete(null);
+            if (!PENDING.equals(recorded)) {
+                return UUID.fromString(recorded);
+            }
+            // Pending on another replica
+            if (System.nanoTime() - deadline >= 0) {
+                throw new IllegalStateException("A request with this Idempotency-Key is still in progress");
+            }
+            sleep();
+        }
+    }
+
+    public void complete(String key, UUID jobId) {
+        store.put(key, jobId.toString(), completedTtl);
+        CompletableFuture<UUID> claim = inFlight.remove(key);
+        if (claim != null) {
+            claim.complete(jobId);
+        }
+    }
+
+    // A failed request leaves nothing behind, so a retry with the same key runs it afresh
+    public void release(String key) {
+        store.remove(key);
+        CompletableFuture<UUID> claim = inFlight.remove(key);
+        if (claim != null) {
+            claim.complete(null);
+        }
+    }
+
+    /** The recorded job with its collections loaded, or null if it has been deleted since. */
+    @Transactional(readOnly = true)
+    public Job recordedJob(UUID jobId) {
+        return jobRepository.findById(jobId).map(job -> {
+            Hibernate.initialize(job.getSettings());
+            Hibernate.initialize(job.getRenditions());
+            return job;
+        }).orElse(null);
+    }
+
+    private static UUID await(CompletableFuture<UUID> claim, long deadline) {
+        try {
+            return claim.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("A request with this Idempotency-Key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a request with the same Idempotency-Key");
+        } catch (ExecutionException e) {
+            // Claims are only ever completed normally
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(pollIntervalMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a request with the same Idempotency-Key");
+        }
+    }
+}
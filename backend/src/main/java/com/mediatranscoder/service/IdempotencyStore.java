@@ -0,0 +1,16 @@
+package com.mediatranscoder.service;
+
+import java.time.Duration;
+
+/**
+ * Key-value store behind {@code Idempotency-Key} handling. Entries expire on
+ * their own; a store shared between replicas lets a retry that lands on
+ * another instance still find the first request's job.
+ */
+public interface IdempotencyStore {
+    // Stores value unless the key is already present; returns the present value, or null if stored
+    String putIfAbsent(String key, String value, Duration ttl);
+    void put(String key, String value, Duration ttl);
+    String get(String key);
+    void remove(String key);
+}
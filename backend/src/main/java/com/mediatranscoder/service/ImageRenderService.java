@@ -0,0 +1,418 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.model.MediaInfo;
+import com.mediatranscoder.model.RenderedVariant;
+import com.mediatranscoder.repository.JobRepository;
+import com.mediatranscoder.repository.RenderedVariantRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Derives resized or re-encoded variants of a job's image on request, without
+ * a worker round trip. Requests are normalised onto a fixed ladder of sizes
+ * and three quality levels, so each job has a bounded number of variants.
+ * Rendered bytes are cached in memory (least recently used out first) and in
+ * storage, indexed by {@link RenderedVariant} rows; storage copies unused for
+ * {@code ttl-days} are evicted. Concurrent misses for one variant share a
+ * single render.
+ * <p>
+ * Decoding and encoding use the JDK's ImageIO, so sources and outputs are
+ * limited to the formats it ships with: JPEG, PNG, GIF and BMP.
+ */
+@Slf4j
+@Service
+public class ImageRenderService {
+
+    // Requested dimensions snap up to the next step; larger requests are capped at the last one
+    static final int[] DIMENSION_STEPS = {64, 96, 128, 160, 240, 320, 480, 640, 800, 960, 1280, 1600, 1920, 2560, 3200, 3840};
+
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "jpg", "image/jpeg", "png", "image/png", "gif", "image/gif", "bmp", "image/bmp");
+    private static final Map<String, Float> JPEG_QUALITY = Map.of("low", 0.6f, "medium", 0.8f, "high", 0.92f);
+    // Probe container names ImageIO decodes without plugins
+    private static final Set<String> DECODABLE = Set.of("jpeg", "png", "gif", "bmp");
+    // Quality has no effect on lossless outputs, so they share one key
+    private static final String LOSSLESS = "lossless";
+
+    public record Variant(int width, int height, String format, String quality) {
+
+        public String key() {
+            return "w" + width + "-h" + height + "-" + quality + "." + format;
+        }
+
+        public String contentType() {
+            return CONTENT_TYPES.get(format);
+        }
+    }
+
+    public record Rendered(byte[] bytes, String contentType) {
+    }
+
+    private final JobRepository jobRepository;
+    private final RenderedVariantRepository renderedVariantRepository;
+    private final FileStorageService fileStorageService;
+    private final long maxMemoryBytes;
+    private final long maxSourcePixels;
+    private final int ttlDays;
+    // Renders are CPU and heap heavy; more at once only thrashes
+    private final Semaphore renderSlots;
+
+    // Access-ordered, guarded by this
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    public ImageRenderService(JobRepository jobRepository,
+                              RenderedVariantRepository renderedVariantRepository,
+                              FileStorageService fileStorageService,
+                              @Value("${app.render.memory-max-bytes:134217728}") long maxMemoryBytes,
+                              @Value("${app.render.max-source-pixels:50000000}") long maxSourcePixels,
+                              @Value("${app.render.ttl-days:30}") int ttlDays,
+                              @Value("${app.render.concurrency:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int concurrency) {
+        this.jobRepository = jobRepository;
+        this.renderedVariantRepository = renderedVariantRepository;
+        this.fileStorageService = fileStorageService;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxSourcePixels = maxSourcePixels;
+        this.ttlDays = ttlDays;
+        this.renderSlots = new Semaphore(Math.max(1, concurrency));
+    }
+
+    /**
+     * Maps request parameters onto the bounded variant space. Missing or zero
+     * dimensions mean "follow the aspect ratio"; {@code quality} accepts
+     * low/medium/high or 1-100.
+     */
+    public static Variant normalize(Integer width, Integer height, String format, String quality) {
+        String fmt = format == null || format.isBlank() ? "jpg" : format.trim().toLowerCase();
+        if (fmt.equals("jpeg")) {
+            fmt = "jpg";
+        }
+        if (!CONTENT_TYPES.containsKey(fmt)) {
+            throw new UnsupportedMediaException("Cannot render to " + format);
+        }
+        String level = !fmt.equals("jpg") ? LOSSLESS : qualityLevel(quality);
+        return new Variant(snap(width), snap(height), fmt, level);
+    }
+
+    private static int snap(Integer dimension) {
+        if (dimension == null || dimension == 0) {
+            return 0;
+        }
+        if (dimension < 0) {
+            throw new IllegalArgumentException("Dimensions must be positive");
+        }
+        for (int step : DIMENSION_STEPS) {
+            if (dimension <= step) {
+                return step;
+            }
+        }
+        return DIMENSION_STEPS[DIMENSION_STEPS.length - 1];
+    }
+
+    private static String qualityLevel(String quality) {
+        if (quality == null || quality.isBlank()) {
+            return "medium";
+        }
+        String q = quality.trim().toLowerCase();
+        if (JPEG_QUALITY.containsKey(q)) {
+            return q;
+        }
+        try {
+            int numeric = Integer.parseInt(q);
+            if (numeric < 1 || numeric > 100) {
+                throw new IllegalArgumentException("Quality must be between 1 and 100");
+            }
+            return numeric < 70 ? "low" : numeric < 90 ? "medium" : "high";
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unknown quality " + quality);
+        }
+    }
+
+    public Rendered render(UUID jobId, Variant variant) throws IOException {
+        String cacheKey = jobId + "/" + variant.key();
+        byte[] bytes = fromMemory(cacheKey);
+        if (bytes != null) {
+            return new Rendered(bytes, variant.contentType());
+        }
+
+        CompletableFuture<byte[]> load = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(cacheKey, load);
+        if (existing != null) {
+            return new Rendered(await(existing), variant.contentType());
+        }
+        try {
+            // Another request may have finished between the memory check and putIfAbsent
+            bytes = fromMemory(cacheKey);
+            if (bytes == null) {
+                bytes = load(jobId, variant);
+                toMemory(cacheKey, bytes);
+            }
+            load.complete(bytes);
+            return new Rendered(bytes, variant.contentType());
+        } catch (IOException | RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, load);
+        }
+    }
+
+    private byte[] load(UUID jobId, Variant variant) throws IOException {
+        RenderedVariant stored = renderedVariantRepository.findByJobIdAndVariantKey(jobId, variant.key()).orElse(null);
+        if (stored != null) {
+            try (InputStream in = fileStorageService.openStream(stored.getFileKey())) {
+                byte[] bytes = in.readAllBytes();
+                renderedVariantRepository.touch(stored.getId(), LocalDateTime.now());
+                return bytes;
+            } catch (IOException e) {
+                log.warn("Stored variant {} of job {} is unreadable; rendering again", variant.key(), jobId, e);
+                renderedVariantRepository.delete(stored);
+            }
+        }
+
+        Job job = jobRepository.findById(jobId)
+                .orElseThrow(JobNotFoundException::new);
+        byte[] bytes = renderFrom(sourceKey(job), variant);
+
+        String fileKey = "renders/" + jobId + "/" + variant.key();
+        fileStorageService.storePart(fileKey, new ByteArrayInputStream(bytes), variant.contentType());
+        RenderedVariant row = new RenderedVariant();
+        row.setJobId(jobId);
+        row.setVariantKey(variant.key());
+        row.setFileKey(fileKey);
+        row.setSize(bytes.length);
+        row.setLastAccessedAt(LocalDateTime.now());
+        try {
+            renderedVariantRepository.save(row);
+        } catch (DataIntegrityViolationException e) {
+            // Another instance stored the same variant first; its blob has the same key and content
+            log.debug("Variant {} of job {} already indexed", variant.key(), jobId);
+        }
+        log.info("Rendered {} for job {} ({} bytes)", variant.key(), jobId, bytes.length);
+        return bytes;
+    }
+
+    // The original has the most detail; the processed output is the fallback when ImageIO cannot read it
+    private String sourceKey(Job job) {
+        if (job.getStatus() == JobStatus.PENDING_UPLOAD) {
+            throw new IllegalArgumentException("Job " + job.getId() + " has no uploaded original yet");
+        }
+        MediaInfo media = job.getMediaInfo();
+        if (media != null && media.getType() == MediaInfo.Type.IMAGE && DECODABLE.contains(media.getContainer())
+                && (media.getPixelCount() == null || media.getPixelCount() <= maxSourcePixels)) {
+            return job.getOriginalFileKey();
+        }
+        String processedFormat = job.getOutputFormat().toLowerCase().replace("jpg", "jpeg");
+        if (job.getStatus() == JobStatus.COMPLETED && job.getProcessedFileKey() != null
+                && DECODABLE.contains(processedFormat)) {
+            return job.getProcessedFileKey();
+        }
+        throw new UnsupportedMediaException("Job " + job.getId() + " has no image that can be rendered");
+    }
+
+    private byte[] renderFrom(String sourceKey, Variant variant) throws IOException {
+        try {
+            renderSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting to render", e);
+        }
+        try {
+            BufferedImage source;
+            try (InputStream in = new BufferedInputStream(fileStorageService.openStream(sourceKey))) {
+                source = ImageIO.read(in);
+            }
+            if (source == null) {
+                throw new UnsupportedMediaException("Cannot decode " + sourceKey);
+            }
+            int[] size = fit(source.getWidth(), source.getHeight(), variant.width(), variant.height());
+            boolean alpha = !variant.format().equals("jpg") && !variant.format().equals("bmp")
+                    && source.getColorModel().hasAlpha();
+            return encode(scale(source, size[0], size[1], alpha), variant);
+        } finally {
+            renderSlots.release();
+        }
+    }
+
+    /** Largest size within the box that keeps the aspect ratio; never upscales. */
+    static int[] fit(int sourceWidth, int sourceHeight, int width, int height) {
+        double ratio = 1;
+        if (width > 0) {
+            ratio = Math.min(ratio, (double) width / sourceWidth);
+        }
+        if (height > 0) {
+            ratio = Math.min(ratio, (double) height / sourceHeight);
+        }
+        return new int[]{
+                Math.max(1, (int) Math.round(sourceWidth * ratio)),
+                Math.max(1, (int) Math.round(sourceHeight * ratio))
+        };
+    }
+
+    // Halves repeatedly before the final step: one bilinear pass from far above the target aliases badly
+    static BufferedImage scale(BufferedImage source, int width, int height, boolean alpha) {
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = w / 2 >= width ? w / 2 : width;
+            h = h / 2 >= height ? h / 2 : height;
+            BufferedImage next = new BufferedImage(w, h, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                if (!alpha) {
+                    // Transparent sources flattened for JPEG/BMP get a white, not black, background
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, w, h);
+                }
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    private static byte[] encode(BufferedImage image, Variant variant) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!variant.format().equals("jpg")) {
+            if (!ImageIO.write(image, variant.format(), out)) {
+                throw new UnsupportedMediaException("No encoder for " + variant.format());
+            }
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY.get(variant.quality()));
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private synchronized byte[] fromMemory(String cacheKey) {
+        return memory.get(cacheKey);
+    }
+
+    private synchronized void toMemory(String cacheKey, byte[] bytes) {
+        // One huge variant should not flush everything else
+        if (bytes.length > maxMemoryBytes / 8) {
+            return;
+        }
+        byte[] previous = memory.put(cacheKey, bytes);
+        memoryBytes += bytes.length - (previous != null ? previous.length : 0);
+        Iterator<Map.Entry<String, byte[]>> iterator = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+            Map.Entry<String, byte[]> eldest = iterator.next();
+            iterator.remove();
+            memoryBytes -= eldest.getValue().length;
+        }
+    }
+
+    /**
+     * Forgets a job's variants in both tiers and returns their storage keys for
+     * the caller to delete along with the job's other files.
+     */
+    public List<String> removeVariants(UUID jobId) {
+        synchronized (this) {
+            String prefix = jobId + "/";
+            Iterator<Map.Entry<String, byte[]>> iterator = memory.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, byte[]> entry = iterator.next();
+                if (entry.getKey().startsWith(prefix)) {
+                    iterator.remove();
+                    memoryBytes -= entry.getValue().length;
+                }
+            }
+        }
+        List<String> keys = renderedVariantRepository.findByJobId(jobId).stream()
+                .map(RenderedVariant::getFileKey)
+                .toList();
+        renderedVariantRepository.deleteByJobId(jobId);
+        return keys;
+    }
+
+    /** Drops stored variants nobody has fetched from storage for {@code ttl-days}. */
+    @Scheduled(cron = "${app.render.eviction-cron:0 45 3 * * *}")
+    public void evictStale() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(ttlDays);
+        long evicted = 0;
+        while (true) {
+            List<RenderedVariant> stale = renderedVariantRepository.findByLastAccessedAtBefore(cutoff, PageRequest.of(0, 500));
+            if (stale.isEmpty()) {
+                break;
+            }
+            List<String> keys = new ArrayList<>(stale.size());
+            stale.forEach(variant -> keys.add(variant.getFileKey()));
+            try {
+                fileStorageService.deleteFiles(keys);
+            } catch (IOException e) {
+                // Rows stay so the blobs are retried next run
+                log.warn("Failed to evict {} stored variants", keys.size(), e);
+                return;
+            }
+            renderedVariantRepository.deleteAllInBatch(stale);
+            evicted += stale.size();
+        }
+        if (evicted > 0) {
+            log.info("Evicted {} stored variants unused since {}", evicted, cutoff);
+        }
+    }
+
+    private static byte[] await(CompletableFuture<byte[]> load) throws IOException {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.mediatranscoder.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-instance store. Writes lock only the map bin of their key, so
+ * concurrent requests with different keys never contend. Expired entries are
+ * ignored on read and swept periodically.
+ */
+@Service
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private record Entry(String value, long expiresAt) {
+        boolean expired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public String putIfAbsent(String key, String value, Duration ttl) {
+        long now = System.nanoTime();
+        Entry fresh = new Entry(value, now + ttl.toNanos());
+        Entry current = entries.compute(key, (k, existing) ->
+                existing == null || existing.expired(now) ? fresh : existing);
+        return current == fresh ? null : current.value();
+    }
+
+    @Override
+    public void put(String key, String value, Duration ttl) {
+        entries.put(key, new Entry(value, System.nanoTime() + ttl.toNanos()));
+    }
+
+    @Override
+    public String get(String key) {
+        Entry entry = entries.get(key);
+        return entry == null || entry.expired(System.nanoTime()) ? null : entry.value();
+    }
+
+    @Override
+    public void remove(String key) {
+        entries.remove(key);
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.expired(now));
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
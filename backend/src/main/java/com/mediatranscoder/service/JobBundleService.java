@@ -0,0 +1,271 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.model.Rendition;
+import com.mediatranscoder.repository.JobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams the processed outputs of many jobs as one ZIP. Entries are fetched
+ * into {@link ProcessedFileCache} a few at a time ahead of the writer and
+ * written in request order, so the first bytes leave as soon as the first
+ * entry is local and at most {@code prefetch} files are held open at once.
+ * The fetch pool is shared by all bundles and larger than one bundle's
+ * window, so a large bundle cannot hold every thread.
+ */
+@Slf4j
+@Service
+public class JobBundleService {
+
+    // Formats that are already compressed; deflating them again only burns CPU
+    private static final Set<String> STORED_FORMATS = Set.of(
+            "jpg", "jpeg", "png", "webp", "gif", "avif", "heic",
+            "mp4", "webm", "mov", "mkv", "mp3", "aac", "m4a", "ogg", "zip");
+
+    private final JobRepository jobRepository;
+    private final ProcessedFileCache processedFileCache;
+    private final int prefetch;
+    private final ExecutorService executor;
+
+    public JobBundleService(JobRepository jobRepository,
+                            ProcessedFileCache processedFileCache,
+                            @Value("${app.bundle.prefetch:4}") int prefetch,
+                            @Value("${app.bundle.prefetch-threads:16}") int threads) {
+        this.jobRepository = jobRepository;
+        this.processedFileCache = processedFileCache;
+        this.prefetch = prefetch;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(threads, prefetch), runnable -> {
+            Thread thread = new Thread(runnable, "bundle-prefetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Writes a ZIP of every completed output of {@code jobIds}. Jobs that are
+     * unknown or have nothing to download are listed in a trailing
+     * {@code SKIPPED.txt} rather than failing the whole bundle.
+     */
+    public void writeBundle(List<UUID> jobIds, OutputStream out) throws IOException {
+        List<String> skipped = new ArrayList<>();
+        List<Entry> entries = plan(jobIds, skipped);
+
+        Deque<Future<PreparedEntry>> window = new ArrayDeque<>();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        int next = 0;
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        try {
+            while (next < entries.size() || !window.isEmpty()) {
+                while (next < entries.size() && window.size() < prefetch) {
+                    Entry entry = entries.get(next++);
+                    window.add(executor.submit(() -> prepareUnlessAbandoned(entry, abandoned)));
+                }
+                PreparedEntry prepared = await(window.poll(), skipped);
+                if (prepared != null) {
+                    writeEntry(zip, prepared);
+                }
+            }
+            if (!skipped.isEmpty()) {
+                ZipEntry note = new ZipEntry("SKIPPED.txt");
+                zip.putNextEntry(note);
+                zip.write(String.join("\n", skipped).concat("\n").getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+        } finally {
+            // Early exit (usually a client disconnect): fetches not yet started return at once,
+            // and running ones are waited for so that none is left holding a file
+            abandoned.set(true);
+            for (Future<PreparedEntry> pending : window) {
+                closeQuietly(pending);
+            }
+        }
+        log.info("Bundled {} entries for {} jobs ({} skipped)", entries.size(), jobIds.size(), skipped.size());
+    }
+
+    private List<Entry> plan(List<UUID> jobIds, List<String> skipped) {
+        Map<UUID, Job> jobs = jobRepository.findAllById(jobIds).stream()
+                .collect(Collectors.toMap(Job::getId, Function.identity()));
+        Set<String> names = new HashSet<>();
+        List<Entry> entries = new ArrayList<>();
+        for (UUID jobId : jobIds) {
+            Job job = jobs.get(jobId);
+            if (job == null) {
+                skipped.add(jobId + ": not found");
+                continue;
+            }
+            String baseName = job.getOriginalFilename();
+            if (baseName.contains(".")) {
+                baseName = baseName.substring(0, baseName.lastIndexOf('.'));
+            }
+            int before = entries.size();
+            if (job.getRenditions().isEmpty()) {
+                if (job.getStatus() == JobStatus.COMPLETED && job.getProcessedFileKey() != null) {
+                    entries.add(new Entry(jobId, uniqueName(names, baseName, job.getOutputFormat()),
+                            job.getProcessedFileKey(), job.getOutputFormat()));
+                }
+            } else {
+                for (int i = 0; i < job.getRenditions().size(); i++) {
+                    Rendition rendition = job.getRenditions().get(i);
+                    if (rendition.getStatus() != JobStatus.COMPLETED || rendition.getProcessedFileKey() == null) {
+                        continue;
+                    }
+                    String suffix = rendition.getWidth() != null && rendition.getHeight() != null
+                            ? "-" + rendition.getWidth() + "x" + rendition.getHeight()
+                            : "-" + i;
+                    entries.add(new Entry(jobId, uniqueName(names, baseName + suffix, rendition.getOutputFormat()),
+                            rendition.getProcessedFileKey(), rendition.getOutputFormat()));
+                }
+            }
+            if (entries.size() == before) {
+                skipped.add(jobId + ": " + job.getStatus());
+            }
+        }
+        return entries;
+    }
+
+    private static String uniqueName(Set<String> names, String baseName, String format) {
+        String extension = format.toLowerCase();
+        String name = baseName + "." + extension;
+        for (int i = 2; !names.add(name); i++) {
+            name = baseName + "-" + i + "." + extension;
+        }
+        return name;
+    }
+
+    private PreparedEntry prepareUnlessAbandoned(Entry entry, AtomicBoolean abandoned) throws IOException {
+        if (abandoned.get()) {
+            return null;
+        }
+        PreparedEntry prepared = prepare(entry);
+        // The writer gave up while this was fetching; it may already have stopped waiting
+        if (abandoned.get()) {
+            prepared.channel().close();
+            return null;
+        }
+        return prepared;
+    }
+
+    private PreparedEntry prepare(Entry entry) throws IOException {
+        FileChannel channel;
+        try {
+            // Opened here so cache eviction cannot remove the file before it is written
+            channel = FileChannel.open(processedFileCache.get(entry.fileKey()), StandardOpenOption.READ);
+        } catch (IOException | RuntimeException e) {
+            throw new IOException(entry.jobId() + " (" + entry.name() + "): " + e.getMessage(), e);
+        }
+        try {
+            boolean stored = STORED_FORMATS.contains(entry.format().toLowerCase());
+            long crc = stored ? crc(channel) : 0;
+            return new PreparedEntry(entry, channel, stored, crc);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // STORED entries need their CRC in the local header, so it is computed before writing
+    private static long crc(FileChannel channel) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long position = 0;
+        int n;
+        while ((n = channel.read(buffer, position)) > 0) {
+            buffer.flip();
+            crc.update(buffer);
+            buffer.clear();
+            position += n;
+        }
+        return crc.getValue();
+    }
+
+    private static void writeEntry(ZipOutputStream zip, PreparedEntry prepared) throws IOException {
+        try (FileChannel channel = prepared.channel()) {
+            ZipEntry zipEntry = new ZipEntry(prepared.entry().name());
+            if (prepared.stored()) {
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(channel.size());
+                zipEntry.setCompressedSize(channel.size());
+                zipEntry.setCrc(prepared.crc());
+            }
+            zip.putNextEntry(zipEntry);
+            InputStream in = Channels.newInputStream(channel.position(0));
+            in.transferTo(zip);
+            zip.closeEntry();
+        }
+    }
+
+    private static PreparedEntry await(Future<PreparedEntry> future, List<String> skipped) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bundle interrupted", e);
+        } catch (ExecutionException e) {
+            // A missing or unreadable output should not sink the rest of the bundle
+            log.warn("Skipping bundle entry {}", e.getCause().getMessage(), e.getCause());
+            skipped.add(e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    private static void closeQuietly(Future<PreparedEntry> future) {
+        try {
+            PreparedEntry prepared = future.get();
+            if (prepared != null) {
+                prepared.channel().close();
+            }
+        } catch (InterruptedException e) {
+            // The task closes its own file once it sees the bundle abandoned
+            Thread.currentThread().interrupt();
+        } catch (Exception ignored) {
+            // Already failed or closed
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record Entry(UUID jobId, String name, String fileKey, String format) {
+    }
+
+    private record PreparedEntry(Entry entry, FileChannel channel, boolean stored, long crc) {
+    }
+}
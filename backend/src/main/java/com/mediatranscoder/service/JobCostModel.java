@@ -0,0 +1,258 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.model.MediaInfo;
+import com.mediatranscoder.model.Rendition;
+import com.mediatranscoder.repository.JobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Predicts how long a worker will spend on a job, learned online from worker
+ * callbacks. Each output format gets its own recursive-least-squares linear
+ * model over a handful of size features; until a format has seen enough
+ * completions its prediction falls back to the running mean of all jobs.
+ * Also tracks how many worker-seconds of work complete per wall-clock second,
+ * which is what turns queued work into a wait time.
+ */
+@Slf4j
+@Component
+public class JobCostModel {
+
+    private static final int FEATURES = 6;
+    private static final int MIN_SAMPLES = 10;
+    // Discounts old observations so the model follows changes in worker hardware
+    private static final double FORGETTING = 0.995;
+    private static final double MIN_PREDICTION_SECONDS = 0.05;
+    // Shortly after startup a single completion would otherwise read as a huge rate
+    private static final long MIN_THROUGHPUT_WINDOW_NANOS = Duration.ofSeconds(60).toNanos();
+
+    private final JobRepository jobRepository;
+    private final int warmupJobs;
+    private final long throughputWindowNanos;
+    private final double minThroughput;
+
+    private final Map<String, Regression> models = new ConcurrentHashMap<>();
+    private double meanSeconds;
+    private long samples;
+
+    // (completion time, processing seconds) within the throughput window, guarded by itself
+    private final ArrayDeque<double[]> completions = new ArrayDeque<>();
+    private final long startedNanos = System.nanoTime();
+
+    public JobCostModel(JobRepository jobRepository,
+                        @Value("${app.scheduling.default-cost-seconds:5}") double defaultCostSeconds,
+                        @Value("${app.scheduling.warmup-jobs:2000}") int warmupJobs,
+                        @Value("${app.scheduling.throughput-window-seconds:600}") long throughputWindowSeconds,
+                        @Value("${app.scheduling.min-throughput:1}") double minThroughput) {
+        this.jobRepository = jobRepository;
+        this.meanSeconds = defaultCostSeconds;
+        this.warmupJobs = warmupJobs;
+        this.throughputWindowNanos = Duration.ofSeconds(throughputWindowSeconds).toNanos();
+        this.minThroughput = minThroughput;
+    }
+
+    /**
+     * Replays recent completions so predictions are useful right after a
+     * restart. Older rows lack a worker-reported time and fall back to
+     * created-to-completed, which also counts queueing and overestimates.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        if (warmupJobs <= 0) {
+            return;
+        }
+        List<Job> recent = jobRepository.findByStatusAndCompletedAtIsNotNullOrderByCompletedAtDesc(
+                JobStatus.COMPLETED, PageRequest.of(0, warmupJobs));
+        List<Job> oldestFirst = new ArrayList<>(recent);
+        Collections.reverse(oldestFirst);
+        int used = 0;
+        for (Job job : oldestFirst) {
+            Double seconds = observedSeconds(job);
+            if (seconds != null) {
+                learn(job, seconds);
+                used++;
+            }
+        }
+        log.info("Cost model warmed up from {} completed jobs across {} formats", used, models.size());
+    }
+
+    public double predictSeconds(Job job) {
+        Regression model = models.get(key(job));
+        if (model == null || model.samples < MIN_SAMPLES) {
+            synchronized (this) {
+                return meanSeconds;
+            }
+        }
+        return Math.max(MIN_PREDICTION_SECONDS, model.predict(features(job)));
+    }
+
+    /** Feeds one finished job back into the model and the throughput window. */
+    public void observe(Job job, double seconds) {
+        learn(job, seconds);
+        long now = System.nanoTime();
+        synchronized (completions) {
+            completions.addLast(new double[]{now, seconds});
+            prune(now);
+        }
+    }
+
+    /**
+     * Worker-seconds of work completed per second over the recent window, i.e.
+     * the effective number of busy workers. Never below the configured floor,
+     * so an idle system does not report infinite waits.
+     */
+    public double throughput() {
+        long now = System.nanoTime();
+        double work = 0;
+        synchronized (completions) {
+            prune(now);
+            for (double[] completion : completions) {
+                work += completion[1];
+            }
+        }
+        long window = Math.min(throughputWindowNanos, Math.max(MIN_THROUGHPUT_WINDOW_NANOS, now - startedNanos));
+        return Math.max(minThroughput, work / (window / 1e9));
+    }
+
+    static Double observedSeconds(Job job) {
+        if (job.getProcessingMs() != null) {
+            return job.getProcessingMs() / 1000.0;
+        }
+        if (job.getCreatedAt() != null && job.getCompletedAt() != null) {
+            return Duration.between(job.getCreatedAt(), job.getCompletedAt()).toMillis() / 1000.0;
+        }
+        return null;
+    }
+
+    private void learn(Job job, double seconds) {
+        if (seconds < 0 || Double.isNaN(seconds)) {
+            return;
+        }
+        models.computeIfAbsent(key(job), k -> new Regression()).update(features(job), seconds);
+        synchronized (this) {
+            samples++;
+            // Exponential mean once warmed up, plain mean before that
+            double weight = Math.max(1.0 / samples, 0.02);
+            meanSeconds += weight * (seconds - meanSeconds);
+        }
+    }
+
+    private void prune(long now) {
+        while (!completions.isEmpty() && now - completions.peekFirst()[0] > throughputWindowNanos) {
+            completions.removeFirst();
+        }
+    }
+
+    private static String key(Job job) {
+        return job.getOutputFormat() != null ? job.getOutputFormat().toLowerCase() : "";
+    }
+
+    static double[] features(Job job) {
+        MediaInfo media = job.getMediaInfo();
+        double inputMegapixels = media != null && media.getPixelCount() != null ? media.getPixelCount() / 1e6 : 0;
+        double durationSeconds = media != null && media.getDurationMs() != null ? media.getDurationMs() / 1000.0 : 0;
+        double outputMegapixels = 0;
+        if (!job.getRenditions().isEmpty()) {
+            for (Rendition rendition : job.getRenditions()) {
+                outputMegapixels += rendition.getWidth() != null && rendition.getHeight() != null
+                        ? rendition.getWidth() * (double) rendition.getHeight() / 1e6
+                        : inputMegapixels;
+            }
+        } else {
+            Map<String, String> settings = job.getSettings();
+            Integer width = parse(settings.get("width"));
+            Integer height = parse(settings.get("height"));
+            outputMegapixels = "true".equals(settings.get("resize")) && width != null && height != null
+                    ? width * (double) height / 1e6
+                    : inputMegapixels;
+        }
+        double inputMegabytes = job.getOriginalFileSize() != null ? job.getOriginalFileSize() / 1e6 : 0;
+        return new double[]{
+                1,
+                inputMegapixels,
+                outputMegapixels,
+                inputMegabytes,
+                // Video cost scales with frames times pixels per frame
+                durationSeconds * outputMegapixels,
+                quality(job.getOutputQuality())
+        };
+    }
+
+    private static double quality(String quality) {
+        if (quality == null) {
+            return 1;
+        }
+        return switch (quality) {
+            case "low" -> 0;
+            case "high" -> 2;
+            default -> 1;
+        };
+    }
+
+    private static Integer parse(String value) {
+        try {
+            return value == null || value.isBlank() ? null : Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Recursive least squares with exponential forgetting. */
+    private static final class Regression {
+        private final double[] weights = new double[FEATURES];
+        private final double[][] covariance = new double[FEATURES][FEATURES];
+        private volatile long samples;
+
+        Regression() {
+            for (int i = 0; i < FEATURES; i++) {
+                covariance[i][i] = 1000;
+            }
+        }
+
+        synchronized double predict(double[] x) {
+            double y = 0;
+            for (int i = 0; i < FEATURES; i++) {
+                y += weights[i] * x[i];
+            }
+            return y;
+        }
+
+        synchronized void update(double[] x, double y) {
+            double[] px = new double[FEATURES];
+            double denominator = FORGETTING;
+            for (int i = 0; i < FEATURES; i++) {
+                for (int j = 0; j < FEATURES; j++) {
+                    px[i] += covariance[i][j] * x[j];
+                }
+                denominator += x[i] * px[i];
+            }
+            double error = y - predict(x);
+            for (int i = 0; i < FEATURES; i++) {
+                weights[i] += px[i] / denominator * error;
+            }
+            // P = (P - P x x' P / denominator) / lambda; P stays symmetric so x' P == (P x)'
+            for (int i = 0; i < FEATURES; i++) {
+                for (int j = 0; j < FEATURES; j++) {
+                    covariance[i][j] = (covariance[i][j] - px[i] * px[j] / denominator) / FORGETTING;
+                }
+            }
+            samples++;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobEta;
+import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.model.QueuedWork;
+import com.mediatranscoder.repository.JobRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class JobEtaService {
+
+    private static final List<JobStatus> OUTSTANDING = List.of(JobStatus.QUEUED, JobStatus.PROCESSING);
+
+    private final JobService jobService;
+    private final JobRepository jobRepository;
+    private final JobCostModel jobCostModel;
+    private final JobScheduler jobScheduler;
+
+    /**
+     * Estimates completion as now + (predicted work ahead / observed worker
+     * throughput) + the job's own predicted time. Work ahead is everything
+     * dispatched earlier and, for a job the scheduler still holds, the held
+     * jobs that rank before it.
+     */
+    @Transactional(readOnly = true)
+    public JobEta estimate(UUID jobId) {
+        Job job = jobService.getJob(jobId);
+        JobEta eta = new JobEta();
+        eta.setJobId(jobId);
+        eta.setStatus(job.getStatus());
+        eta.setPredictedSeconds(job.getPredictedSeconds());
+        eta.setWorkerThroughput(jobCostModel.throughput());
+        if (job.getStatus() == JobStatus.COMPLETED || job.getStatus() == JobStatus.FAILED) {
+            eta.setEstimatedCompletionAt(job.getCompletedAt());
+            return eta;
+        }
+        if (job.getStatus() == JobStatus.PENDING_UPLOAD) {
+            // Nothing to estimate until the original has arrived
+            return eta;
+        }
+
+        double predicted = job.getPredictedSeconds() != null
+                ? job.getPredictedSeconds()
+                : jobCostModel.predictSeconds(job);
+        LocalDateTime now = LocalDateTime.now();
+        long jobsAhead;
+        double secondsAhead;
+        if (job.getDispatchedAt() != null) {
+            QueuedWork ahead = jobRepository.sumDispatchedBefore(OUTSTANDING, job.getDispatchedAt());
+            jobsAhead = ahead.jobs();
+            secondsAhead = ahead.seconds();
+        } else {
+            QueuedWork dispatched = jobRepository.sumDispatchedBefore(OUTSTANDING, now);
+            QueuedWork held = jobScheduler.workAhead(job);
+            jobsAhead = dispatched.jobs() + held.jobs();
+            secondsAhead = dispatched.seconds() + held.seconds();
+        }
+        eta.setPredictedSeconds(predicted);
+        eta.setJobsAhead(jobsAhead);
+        eta.setSecondsAhead(secondsAhead);
+        double waitSeconds = secondsAhead / eta.getWorkerThroughput();
+        eta.setEstimatedCompletionAt(now.plusNanos((long) ((waitSeconds + predicted) * 1e9)));
+        return eta;
+    }
+}
@@ -0,0 +1,200 @@
+package com.mediatranscoder.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediatranscoder.model.JobStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams job history straight from a server-side cursor to the client. Rows
+ * never become entities, so the export runs in constant heap however many
+ * jobs match.
+ */
+@Slf4j
+@Service
+public class JobExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    private static final String[] COLUMNS = {
+            "id", "original_filename", "original_file_key", "processed_file_key", "status", "error_message",
+            "created_at", "updated_at", "completed_at", "output_format", "output_quality", "settings"
+    };
+
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+
+    public JobExportService(DataSource dataSource,
+                            PlatformTransactionManager transactionManager,
+                            ObjectMapper objectMapper,
+                            @Value("${app.export.fetch-size:1000}") int fetchSize) {
+        // The PostgreSQL driver only honours the fetch size inside a transaction;
+        // otherwise it buffers the whole result set before returning the first row
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes every job created in {@code [from, to)} whose status is in
+     * {@code statuses} (all statuses when empty), oldest first.
+     */
+    public long export(LocalDateTime from, LocalDateTime to, List<JobStatus> statuses, Format format,
+                       OutputStream out) throws IOException {
+        StringBuilder sql = new StringBuilder("""
+                SELECT j.id, j.original_filename, j.original_file_key, j.processed_file_key, j.status,
+                       j.error_message, j.created_at, j.updated_at, j.completed_at, j.output_format,
+                       j.output_quality,
+                       (SELECT json_object_agg(s.setting_key, s.setting_value)
+                          FROM job_settings s WHERE s.job_id = j.id) AS settings
+                FROM jobs j
+                WHERE j.created_at >= ? AND j.created_at < ?
+                """);
+        List<Object> args = new ArrayList<>(List.of(Timestamp.valueOf(from), Timestamp.valueOf(to)));
+        if (statuses != null && !statuses.isEmpty()) {
+            sql.append(" AND j.status = ANY(?)");
+            args.add(statuses.stream().map(Enum::name).toArray(String[]::new));
+        }
+        sql.append(" ORDER BY j.created_at");
+
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        RowWriter writer = format == Format.CSV ? new CsvRowWriter(buffered) : new NdjsonRowWriter(buffered);
+        long[] rows = {0};
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> cursorTemplate.query(sql.toString(), rs -> {
+                try {
+                    writer.write(rs);
+                } catch (IOException e) {
+                    // Usually the client went away; abandoning the cursor ends the query
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            }, args.toArray()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        buffered.flush();
+        log.info("Exported {} jobs as {} for [{}, {})", rows[0], format, from, to);
+        return rows[0];
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void finish() throws IOException;
+    }
+
+    private class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            // Rows are separated by the newline written below, not Jackson's default space
+            this.generator.setRootValueSeparator(null);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < COLUMNS.length - 1; i++) {
+                generator.writeStringField(COLUMNS[i], value(rs, i + 1));
+            }
+            String settings = rs.getString(COLUMNS.length);
+            generator.writeFieldName(COLUMNS[COLUMNS.length - 1]);
+            if (settings == null) {
+                generator.writeNull();
+            } else {
+                generator.writeRawValue(settings);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static class CsvRowWriter implements RowWriter {
+        private final Writer out;
+
+        CsvRowWriter(OutputStream out) throws IOException {
+            this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            this.out.write(String.join(",", COLUMNS));
+            this.out.write("\r\n");
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(escapeCsv(value(rs, i + 1)));
+            }
+            out.write("\r\n");
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static String value(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        return value != null ? value.toString() : null;
+    }
+
+    static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
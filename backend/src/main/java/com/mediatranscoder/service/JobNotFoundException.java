@@ -0,0 +1,9 @@
+package com.mediatranscoder.service;
+
+/** No job has the requested id; controllers answer it with 404. */
+public class JobNotFoundException extends RuntimeException {
+
+    public JobNotFoundException() {
+        super("Job not found");
+    }
+}
@@ -0,0 +1,191 @@
+package com.mediatranscoder.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps {@code jobs} range-partitioned by month of {@code created_at}. Hibernate
+ * creates the table as a plain one; the migrate step converts it in place, and
+ * a daily job keeps a few months of empty partitions ahead of now. Old
+ * partitions are detached here and reclaimed by {@link RetentionPurger}.
+ * Ordinary starts never convert: that locks the table and rewrites every row.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JobPartitionManager {
+
+    static final String PARENT = "jobs";
+    static final String PARTITION_PREFIX = "jobs_p";
+    private static final String LEGACY = "jobs_unpartitioned";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.retention.partitioning.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.retention.partitioning.premake-months:3}")
+    private int premakeMonths;
+
+    private volatile boolean active;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (!enabled || !onPostgres()) {
+            return;
+        }
+        if (!isPartitioned()) {
+            log.warn("{} is not partitioned yet; run the migrate step to convert it", PARENT);
+            return;
+        }
+        active = true;
+        ensureFuturePartitions();
+    }
+
+    /** Converts {@code jobs} if it is still a plain table; only the migrate step calls this. */
+    public void migrate() {
+        if (!enabled || !onPostgres()) {
+            return;
+        }
+        if (!isPartitioned()) {
+            convertToPartitioned();
+        }
+        active = true;
+        ensureFuturePartitions();
+    }
+
+    private boolean onPostgres() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(product)) {
+            log.warn("Job table partitioning needs PostgreSQL, found {}; leaving jobs unpartitioned", product);
+            return false;
+        }
+        return true;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    @Scheduled(cron = "${app.retention.partitioning.cron:0 0 1 * * *}")
+    public void ensureFuturePartitions() {
+        if (!active) {
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= premakeMonths; i++) {
+            createPartition(current.plusMonths(i));
+        }
+    }
+
+    /**
+     * Detaches every attached monthly partition that ends on or before
+     * {@code cutoff}. Detached tables keep their rows until the purger has
+     * deleted the blobs they reference.
+     */
+    public List<String> detachExpired(LocalDate cutoff) {
+        List<String> detached = attachedPartitions().stream()
+                .filter(name -> !upperBound(name).isAfter(cutoff))
+                .toList();
+        for (String name : detached) {
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " DETACH PARTITION " + name);
+            log.info("Detached expired job partition {}", name);
+        }
+        return detached;
+    }
+
+    /** Monthly partitions detached earlier but not yet dropped, oldest first. */
+    public List<String> detachedPartitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_class c
+                WHERE c.relkind = 'r' AND c.relnamespace = current_schema()::regnamespace
+                  AND c.relname ~ '^jobs_p[0-9]{6}$'
+                  AND NOT EXISTS (SELECT 1 FROM pg_inherits i WHERE i.inhrelid = c.oid)
+                ORDER BY c.relname
+                """, String.class);
+    }
+
+    private List<String> attachedPartitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = ?::regclass AND c.relname ~ '^jobs_p[0-9]{6}$'
+                ORDER BY c.relname
+                """, String.class, PARENT);
+    }
+
+    private boolean isPartitioned() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_partitioned_table WHERE partrelid = ?::regclass", Integer.class, PARENT);
+        return count != null && count > 0;
+    }
+
+    private void convertToPartitioned() {
+        log.info("Converting {} to a table partitioned by month of created_at", PARENT);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE " + PARENT + " IN ACCESS EXCLUSIVE MODE");
+            // A partitioned table can only be referenced through a key that includes created_at
+            List<String[]> foreignKeys = jdbcTemplate.query("""
+                    SELECT conrelid::regclass::text, conname FROM pg_constraint
+                    WHERE contype = 'f' AND confrelid = ?::regclass
+                    """, (rs, i) -> new String[]{rs.getString(1), rs.getString(2)}, PARENT);
+            for (String[] fk : foreignKeys) {
+                jdbcTemplate.execute("ALTER TABLE " + fk[0] + " DROP CONSTRAINT " + fk[1]);
+            }
+            jdbcTemplate.execute("UPDATE " + PARENT + " SET created_at = now() WHERE created_at IS NULL");
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " RENAME TO " + LEGACY);
+            jdbcTemplate.execute("ALTER INDEX IF EXISTS idx_jobs_status_created_at RENAME TO idx_jobs_unpartitioned_status");
+            jdbcTemplate.execute("CREATE TABLE " + PARENT + " (LIKE " + LEGACY + " INCLUDING DEFAULTS)"
+                    + " PARTITION BY RANGE (created_at)");
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " ALTER COLUMN created_at SET NOT NULL");
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " ADD PRIMARY KEY (id, created_at)");
+            jdbcTemplate.execute("CREATE INDEX idx_jobs_status_created_at ON " + PARENT + " (status, created_at)");
+            // Catches rows outside the pre-made months instead of failing the insert
+            jdbcTemplate.execute("CREATE TABLE " + PARENT + "_default PARTITION OF " + PARENT + " DEFAULT");
+
+            Timestamp oldest = jdbcTemplate.queryForObject("SELECT min(created_at) FROM " + LEGACY, Timestamp.class);
+            YearMonth month = Optional.ofNullable(oldest)
+                    .map(ts -> YearMonth.from(ts.toLocalDateTime()))
+                    .orElse(YearMonth.now());
+            for (; !month.isAfter(YearMonth.now()); month = month.plusMonths(1)) {
+                createPartition(month);
+            }
+            int moved = jdbcTemplate.update("INSERT INTO " + PARENT + " SELECT * FROM " + LEGACY);
+            jdbcTemplate.execute("DROP TABLE " + LEGACY);
+            log.info("Moved {} jobs into the partitioned table", moved);
+        });
+    }
+
+    private void createPartition(YearMonth month) {
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month)
+                + " PARTITION OF " + PARENT
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(SUFFIX);
+    }
+
+    static LocalDate upperBound(String partitionName) {
+        YearMonth month = YearMonth.parse(partitionName.substring(PARTITION_PREFIX.length()), SUFFIX);
+        return month.plusMonths(1).atDay(1);
+    }
+}
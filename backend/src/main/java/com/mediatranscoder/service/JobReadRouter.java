@@ -0,0 +1,162 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Sends read-only job queries to the replica pool when one is configured.
+ * A replica read runs in its own read-only transaction and entity manager,
+ * with the request's open-in-view entity manager set aside, so the replica
+ * connection is never the one a later write in the same request reuses.
+ * Jobs come back detached with their collections loaded.
+ * <p>
+ * Reads stay on the primary inside a transaction, which may be about to
+ * write, and for jobs this instance wrote within the pin window, so a
+ * client polling its own job never sees it go back in time because of
+ * replication lag. Pins are per instance; the window should cover the
+ * replica's usual lag.
+ */
+@Component
+public class JobReadRouter {
+
+    private static final ThreadLocal<Boolean> REPLICA = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final long pinNanos;
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+    private final TransactionTemplate replicaTransaction;
+    private final ConcurrentHashMap<UUID, Long> pinnedUntil = new ConcurrentHashMap<>();
+    private final Counter replicaReads;
+    private final Counter pinnedReads;
+    private final Counter transactionReads;
+
+    public JobReadRouter(@Value("${app.datasource.replica.url:}") String replicaUrl,
+                         @Value("${app.datasource.replica.pin-after-write-ms:5000}") long pinMillis,
+                         ObjectProvider<EntityManagerFactory> entityManagerFactory,
+                         ObjectProvider<PlatformTransactionManager> transactionManager,
+                         MeterRegistry meterRegistry) {
+        this.enabled = !replicaUrl.isBlank();
+        this.pinNanos = TimeUnit.MILLISECONDS.toNanos(pinMillis);
+        this.entityManagerFactory = entityManagerFactory;
+        this.replicaTransaction = enabled ? readOnly(transactionManager.getObject()) : null;
+        this.replicaReads = reads(meterRegistry, "replica", "replica");
+        this.pinnedReads = reads(meterRegistry, "primary", "pinned");
+        this.transactionReads = reads(meterRegistry, "primary", "transaction");
+    }
+
+    public Optional<Job> findJob(UUID jobId, Supplier<Optional<Job>> query) {
+        if (!onReplica(jobId)) {
+            return query.get();
+        }
+        return replica(() -> query.get().map(JobReadRouter::loaded));
+    }
+
+    public List<Job> findJobs(Supplier<List<Job>> query) {
+        if (!onReplica(null)) {
+            return query.get();
+        }
+        return replica(() -> {
+            List<Job> jobs = query.get();
+            jobs.forEach(JobReadRouter::loaded);
+            return jobs;
+        });
+    }
+
+    /** Keeps reads of the job on the primary until the replica has had time to catch up. */
+    public void recordWrite(UUID jobId) {
+        if (enabled && jobId != null) {
+            pinnedUntil.put(jobId, System.nanoTime() + pinNanos);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.pin-sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.nanoTime();
+        pinnedUntil.values().removeIf(until -> now - until >= 0);
+    }
+
+    /** Whether connections taken on this thread right now should come from the replica pool. */
+    public static boolean routeToReplica() {
+        return REPLICA.get() != null;
+    }
+
+    private boolean onReplica(UUID jobId) {
+        if (!enabled) {
+            return false;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            transactionReads.increment();
+            return false;
+        }
+        if (jobId != null && isPinned(jobId)) {
+            pinnedReads.increment();
+            return false;
+        }
+        replicaReads.increment();
+        return true;
+    }
+
+    boolean isPinned(UUID jobId) {
+        Long until = pinnedUntil.get(jobId);
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until < 0) {
+            return true;
+        }
+        pinnedUntil.remove(jobId, until);
+        return false;
+    }
+
+    private <T> T replica(Supplier<T> query) {
+        EntityManagerFactory factory = entityManagerFactory.getObject();
+        EntityManagerHolder openInView = (EntityManagerHolder) TransactionSynchronizationManager.unbindResourceIfPossible(factory);
+        REPLICA.set(Boolean.TRUE);
+        try {
+            return replicaTransaction.execute(status -> query.get());
+        } finally {
+            REPLICA.remove();
+            if (openInView != null) {
+                TransactionSynchronizationManager.bindResource(factory, openInView);
+            }
+        }
+    }
+
+    private static Job loaded(Job job) {
+        Hibernate.initialize(job.getSettings());
+        Hibernate.initialize(job.getRenditions());
+        return job;
+    }
+
+    private static TransactionTemplate readOnly(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    private static Counter reads(MeterRegistry meterRegistry, String pool, String reason) {
+        return Counter.builder("jobs.reads")
+                .description("Job reads by the pool that served them")
+                .tag("pool", pool)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,216 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.model.QueuedWork;
+import com.mediatranscoder.repository.JobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Optional shortest-predicted-first dispatch. When enabled, new jobs are held
+ * here instead of being published straight away, and only enough are released
+ * to keep each worker's next message ready; the rest wait ordered by predicted
+ * cost. Every second a job waits lowers its key by {@code aging} seconds, so a
+ * large job eventually ranks ahead of any newer arrival and cannot starve.
+ * <p>
+ * Held jobs live only in memory; the rows carry {@code dispatchedAt = null}
+ * and are picked up again on startup. A job whose release fails goes back
+ * into the heap with its original key, and dispatch pauses for a backoff
+ * that doubles with each consecutive failure.
+ */
+@Slf4j
+@Component
+public class JobScheduler {
+
+    private final JobRepository jobRepository;
+    private final AmqpAdmin amqpAdmin;
+    // Lazy to break the JobService -> JobScheduler -> JobService cycle
+    private final ObjectProvider<JobService> jobService;
+    private final boolean enabled;
+    private final double aging;
+    private final int lookahead;
+    private final String queueName;
+    private final long retryBackoffMs;
+
+    private static final long MAX_RETRY_BACKOFF_MS = 60_000;
+
+    // Touched only by the dispatch thread
+    private int failures;
+    private long backoffUntil;
+
+    // Guarded by itself
+    private final PriorityQueue<HeldJob> held = new PriorityQueue<>(Comparator.comparingDouble(HeldJob::key));
+
+    public JobScheduler(JobRepository jobRepository,
+                        AmqpAdmin amqpAdmin,
+                        ObjectProvider<JobService> jobService,
+                        @Value("${app.scheduling.sjf.enabled:false}") boolean enabled,
+                        @Value("${app.scheduling.sjf.aging:0.2}") double aging,
+                        @Value("${app.scheduling.sjf.lookahead:1}") int lookahead,
+                        @Value("${app.rabbitmq.queue:media_jobs}") String queueName,
+                        @Value("${app.scheduling.sjf.retry-backoff-ms:1000}") long retryBackoffMs) {
+        this.jobRepository = jobRepository;
+        this.amqpAdmin = amqpAdmin;
+        this.jobService = jobService;
+        this.enabled = enabled;
+        this.aging = aging;
+        this.lookahead = lookahead;
+        this.queueName = queueName;
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Holds a saved job for ordered dispatch. Inside a transaction the job only
+     * becomes visible to the dispatcher once the row has committed.
+     */
+    public void hold(Job job) {
+        HeldJob entry = new HeldJob(job.getId(), job.getPredictedSeconds(),
+                priorityKey(job.getPredictedSeconds(), arrivalSeconds(job), aging));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(entry);
+                }
+            });
+        } else {
+            add(entry);
+        }
+    }
+
+    /** Re-holds jobs that were waiting when the backend last stopped. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        List<Job> waiting = jobRepository.findByStatusAndDispatchedAtIsNullAndPredictedSecondsIsNotNull(JobStatus.QUEUED);
+        if (waiting.isEmpty()) {
+            return;
+        }
+        if (!enabled) {
+            // Scheduling was switched off while jobs were held; send them in arrival order
+            waiting.sort(Comparator.comparing(Job::getCreatedAt));
+            waiting.forEach(job -> release(job.getId()));
+        } else {
+            waiting.forEach(this::hold);
+        }
+        log.info("Recovered {} held jobs", waiting.size());
+    }
+
+    @Scheduled(fixedDelayString = "${app.scheduling.sjf.dispatch-interval-ms:250}")
+    public void dispatch() {
+        // Nothing held means no queue-depth check, so an idle backend never opens a broker connection
+        if (!enabled || heldCount() == 0 || (failures > 0 && System.nanoTime() - backoffUntil < 0)) {
+            return;
+        }
+        int room = room();
+        for (int i = 0; i < room; i++) {
+            HeldJob next;
+            synchronized (held) {
+                next = held.poll();
+            }
+            if (next == null) {
+                return;
+            }
+            if (!release(next.jobId())) {
+                // Same key, so the job keeps the age it has earned
+                add(next);
+                failures++;
+                long backoff = Math.min(retryBackoffMs << Math.min(failures - 1, 16), MAX_RETRY_BACKOFF_MS);
+                backoffUntil = System.nanoTime() + backoff * 1_000_000;
+                return;
+            }
+            failures = 0;
+        }
+    }
+
+    /** Held jobs that will be released before {@code job}, and their predicted cost. */
+    public QueuedWork workAhead(Job job) {
+        if (job.getPredictedSeconds() == null) {
+            return new QueuedWork(0L, 0.0);
+        }
+        double key = priorityKey(job.getPredictedSeconds(), arrivalSeconds(job), aging);
+        long jobs = 0;
+        double seconds = 0;
+        synchronized (held) {
+            for (HeldJob entry : held) {
+                if (entry.key() < key && !entry.jobId().equals(job.getId())) {
+                    jobs++;
+                    seconds += entry.predictedSeconds();
+                }
+            }
+        }
+        return new QueuedWork(jobs, seconds);
+    }
+
+    public int heldCount() {
+        synchronized (held) {
+            return held.size();
+        }
+    }
+
+    /**
+     * Lower runs first. Equivalent to {@code predicted - aging * waited}, but
+     * fixed per job so the heap never needs re-ordering as time passes.
+     */
+    static double priorityKey(double predictedSeconds, double arrivalEpochSeconds, double aging) {
+        return predictedSeconds + aging * arrivalEpochSeconds;
+    }
+
+    private void add(HeldJob entry) {
+        synchronized (held) {
+            held.add(entry);
+        }
+    }
+
+    // Workers prefetch one message each, so ready messages beyond that only lock in the order early
+    private int room() {
+        try {
+            QueueInformation info = amqpAdmin.getQueueInfo(queueName);
+            if (info == null) {
+                return 0;
+            }
+            return Math.max(info.getConsumerCount(), 1) * lookahead - info.getMessageCount();
+        } catch (RuntimeException e) {
+            log.warn("Could not read depth of queue {}; holding jobs", queueName, e);
+            return 0;
+        }
+    }
+
+    private boolean release(UUID jobId) {
+        try {
+            jobService.getObject().dispatch(jobId);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to dispatch held job {}", jobId, e);
+            return false;
+        }
+    }
+
+    private static double arrivalSeconds(Job job) {
+        LocalDateTime arrival = job.getCreatedAt() != null ? job.getCreatedAt() : LocalDateTime.now();
+        return arrival.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() / 1000.0;
+    }
+
+    private record HeldJob(UUID jobId, double predictedSeconds, double key) {
+    }
+}
@@ -2,67 +2,723 @@ package com.mediatranscoder.service;
 
 import com.mediatranscoder.model.Job;
 import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.model.MediaInfo;
+import com.mediatranscoder.model.PresignedUpload;
+import com.mediatranscoder.model.Rendition;
 import com.mediatranscoder.repository.JobRepository;
 import com.mediatranscoder.service.RabbitMQJobProducer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class JobService {
 
+    // Re-encoding these at any quality level yields the same pixels
+    private static final Set<String> LOSSLESS_FORMATS = Set.of("png", "gif", "bmp", "tiff");
+    // Major brands of plain MP4; 3GPP, M4A and M4V files share the container but not the format
+    private static final Set<String> MP4_BRANDS = Set.of("isom", "iso2", "iso4", "iso5", "iso6", "mp41", "mp42", "avc1");
+
     private final JobRepository jobRepository;
     private final FileStorageService fileStorageService;
     private final RabbitMQJobProducer rabbitMQJobProducer;
+    private final ObservationRegistry observationRegistry;
+    private final MediaProbe mediaProbe;
+    private final JobCostModel jobCostModel;
+    private final JobScheduler jobScheduler;
+    private final SegmentedTranscodeService segmentedTranscodeService;
+    private final ImageRenderService imageRenderService;
+    private final TargetQualityService targetQualityService;
+    private final FailureClassifier failureClassifier;
+    private final JobReadRouter jobReadRouter;
+    private final ProgressTracker progressTracker;
+
+    @Value("${app.passthrough.enabled:true}")
+    private boolean passthroughEnabled;
 
     @Transactional
     public Job createJob(MultipartFile file, String outputFormat, String outputQuality, Map<String, String> settings) throws IOException {
+        return createJob(file, outputFormat, outputQuality, settings, null);
+    }
+
+    /**
+     * Creates a job that produces every rendition from one stored original and
+     * one queue message. The first rendition doubles as the job's primary output.
+     */
+    @Transactional
+    public Job createJob(MultipartFile file, List<Rendition> renditions) throws IOException {
+        if (renditions == null || renditions.isEmpty()) {
+            throw new IllegalArgumentException("At least one rendition is required");
+        }
+        Rendition primary = renditions.get(0);
+        return createJob(file, primary.getOutputFormat(), primary.getOutputQuality(), null, renditions);
+    }
+
+    private Job createJob(MultipartFile file, String outputFormat, String outputQuality,
+                          Map<String, String> settings, List<Rendition> renditions) throws IOException {
+        MediaInfo mediaInfo;
+        try (InputStream in = file.getInputStream()) {
+            // Rejects corrupt or unsupported uploads before anything is stored or queued
+            mediaInfo = mediaProbe.probe(in);
+        }
+
         log.info("Storing file: {}", file.getOriginalFilename());
-        String fileKey = fileStorageService.storeFile(file);
+        String fileKey = Observation.createNotStarted("job.store", observationRegistry)
+                .observeChecked(() -> fileStorageService.storeFile(file));
 
         Job job = new Job();
         job.setOriginalFilename(file.getOriginalFilename());
         job.setOriginalFileKey(fileKey);
         job.setOutputFormat(outputFormat);
         job.setOutputQuality(outputQuality);
+        job.setOriginalFileSize(file.getSize());
+        job.setMediaInfo(mediaInfo);
         if (settings != null) {
             job.setSettings(settings);
         }
+        if (renditions != null) {
+            for (Rendition rendition : renditions) {
+                rendition.setStatus(JobStatus.QUEUED);
+                rendition.setProcessedFileKey(null);
+                rendition.setErrorMessage(null);
+            }
+            job.setRenditions(new ArrayList<>(renditions));
+        }
         job.setStatus(JobStatus.QUEUED);
+        boolean passthrough = completeAsPassthrough(job);
+        if (!passthrough) {
+            targetQualityService.resolve(job, file);
+            estimate(job);
+        }
 
-        job = jobRepository.save(job);
+        Job toSave = job;
+        job = Observation.createNotStarted("job.persist", observationRegistry)
+                .observe(() -> jobRepository.save(toSave));
         log.info("Job saved to DB: {}", job.getId());
 
-        // Enqueue job to RabbitMQ
-        String inputUrl = fileStorageService.getFileUrl(fileKey);
-        rabbitMQJobProducer.sendJob(job, inputUrl);
+        if (!passthrough) {
+            submit(job);
+        }
+        return job;
+    }
+
+    /**
+     * First phase of a direct-to-storage upload: records a job awaiting its
+     * original and returns a signed target the client uploads to itself.
+     */
+    @Transactional
+    public PresignedUpload initiateUpload(String originalFilename, String contentType, String outputFormat,
+                                          String outputQuality, Map<String, String> settings) {
+        // Rejects a malformed quality target before the client uploads anything
+        TargetQualityService.parseTarget(outputQuality);
+        PresignedUpload target = fileStorageService.createUploadTarget(originalFilename, contentType);
+
+        Job job = new Job();
+        job.setOriginalFilename(originalFilename);
+        job.setOriginalFileKey(target.getFileKey());
+        job.setOutputFormat(outputFormat);
+        job.setOutputQuality(outputQuality);
+        if (settings != null) {
+            job.setSettings(settings);
+        }
+        job.setStatus(JobStatus.PENDING_UPLOAD);
+        job = jobRepository.save(job);
+        log.info("Issued upload target for job {}: {}", job.getId(), target.getFileKey());
+
+        target.setJobId(job.getId());
+        return target;
+    }
+
+    /**
+     * Second phase: once the client reports its upload done, checks the object
+     * really landed in storage and queues the job.
+     */
+    @Transactional(noRollbackFor = UnsupportedMediaException.class)
+    public Job finalizeUpload(UUID jobId) {
+        // Locked, so of two concurrent finalize calls the second waits and then finds the job already queued
+        Job job = jobRepository.findByIdForUpdate(jobId)
+                .orElseThrow(JobNotFoundException::new);
+        if (job.getStatus() != JobStatus.PENDING_UPLOAD) {
+            // Repeated finalize calls are harmless
+            return job;
+        }
+        if (!fileStorageService.exists(job.getOriginalFileKey())) {
+            throw new IllegalStateException("Upload not found for job " + jobId);
+        }
+        try {
+            job.setMediaInfo(probeStored(job.getOriginalFileKey()));
+        } catch (UnsupportedMediaException e) {
+            job.setStatus(JobStatus.FAILED);
+            job.setErrorMessage(e.getMessage());
+            jobRepository.save(job);
+            throw e;
+        }
+        job.setStatus(JobStatus.QUEUED);
+        boolean passthrough = completeAsPassthrough(job);
+        if (!passthrough) {
+            targetQualityService.resolve(job, stored(job.getOriginalFileKey()));
+            estimate(job);
+        }
+        job = jobRepository.save(job);
+        if (!passthrough) {
+            submit(job);
+        }
+        return job;
+    }
+
+    /**
+     * Creates and queues a job for an original that is already in storage,
+     * e.g. one assembled from a resumable upload.
+     */
+    @Transactional
+    public Job createJobForStoredFile(String originalFilename, String fileKey, String outputFormat,
+                                      String outputQuality, Map<String, String> settings) {
+        MediaInfo mediaInfo = probeStored(fileKey);
+        Job job = new Job();
+        job.setOriginalFilename(originalFilename);
+        job.setOriginalFileKey(fileKey);
+        job.setOutputFormat(outputFormat);
+        job.setOutputQuality(outputQuality);
+        job.setMediaInfo(mediaInfo);
+        if (settings != null) {
+            job.setSettings(new HashMap<>(settings));
+        }
+        job.setStatus(JobStatus.QUEUED);
+        boolean passthrough = completeAsPassthrough(job);
+        if (!passthrough) {
+            targetQualityService.resolve(job, stored(job.getOriginalFileKey()));
+            estimate(job);
+        }
+        job = jobRepository.save(job);
+        if (!passthrough) {
+            submit(job);
+        }
+        return job;
+    }
 
+    /**
+     * Creates a job that converts an existing job's stored original again with
+     * new output settings; nothing is uploaded or copied. Null arguments keep
+     * the parent's values.
+     */
+    @Transactional
+    public Job reprocess(UUID parentId, String outputFormat, String outputQuality, Map<String, String> settings) {
+        Job parent = getJob(parentId);
+        if (parent.getStatus() == JobStatus.PENDING_UPLOAD) {
+            throw new IllegalStateException("Job " + parentId + " has no uploaded original yet");
+        }
+        Job job = new Job();
+        job.setParentJobId(parent.getId());
+        job.setOriginalFilename(parent.getOriginalFilename());
+        job.setOriginalFileKey(parent.getOriginalFileKey());
+        job.setOriginalFileSize(parent.getOriginalFileSize());
+        job.setMediaInfo(parent.getMediaInfo() != null ? parent.getMediaInfo().copy() : null);
+        job.setOutputFormat(outputFormat != null ? outputFormat : parent.getOutputFormat());
+        job.setOutputQuality(outputQuality != null ? outputQuality : parent.getOutputQuality());
+        job.setSettings(new HashMap<>(settings != null ? settings : parent.getSettings()));
+        job.setStatus(JobStatus.QUEUED);
+        boolean done = completeAsPassthrough(job) || completeFromExisting(job);
+        if (!done) {
+            targetQualityService.resolve(job, stored(job.getOriginalFileKey()));
+            estimate(job);
+        }
+        job = jobRepository.save(job);
+        log.info("Reprocessing job {} as {} ({})", parentId, job.getId(), done ? "reused output" : "queued");
+        if (!done) {
+            submit(job);
+        }
         return job;
     }
 
+    /**
+     * Completes a job with the output of an earlier job that converted the same
+     * original with identical settings, as repeated reprocess campaigns do.
+     */
+    private boolean completeFromExisting(Job job) {
+        for (Job existing : jobRepository.findByOriginalFileKey(job.getOriginalFileKey())) {
+            if (existing.getStatus() == JobStatus.COMPLETED
+                    && existing.getProcessedFileKey() != null
+                    && existing.getRenditions().isEmpty()
+                    && existing.getOutputFormat().equalsIgnoreCase(job.getOutputFormat())
+                    && existing.getOutputQuality().equals(job.getOutputQuality())
+                    && existing.getSettings().equals(job.getSettings())) {
+                job.setStatus(JobStatus.COMPLETED);
+                job.setProcessedFileKey(existing.getProcessedFileKey());
+                job.setQualityTarget(existing.getQualityTarget());
+                job.setQualityParam(existing.getQualityParam());
+                job.setQualityScore(existing.getQualityScore());
+                job.setCompletedAt(LocalDateTime.now());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private InputStreamSource stored(String fileKey) {
+        return () -> fileStorageService.openStream(fileKey);
+    }
+
+    private MediaInfo probeStored(String fileKey) {
+        try (InputStream in = fileStorageService.openStream(fileKey)) {
+            return mediaProbe.probe(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read upload " + fileKey, e);
+        }
+    }
+
+    /**
+     * Completes a job without a worker round trip when its output would just
+     * re-encode the original: same container, no resize, and either a lossless
+     * format or the top quality level. The original blob doubles as the output.
+     */
+    private boolean completeAsPassthrough(Job job) {
+        MediaInfo media = job.getMediaInfo();
+        if (!passthroughEnabled || media == null || !job.getRenditions().isEmpty()) {
+            return false;
+        }
+        if (!sameContainer(job.getOutputFormat(), media)) {
+            return false;
+        }
+        Map<String, String> settings = job.getSettings();
+        if ("true".equals(settings.get("resize"))
+                && !(String.valueOf(media.getWidth()).equals(settings.get("width"))
+                    && String.valueOf(media.getHeight()).equals(settings.get("height")))) {
+            return false;
+        }
+        if (!LOSSLESS_FORMATS.contains(media.getContainer()) && !"high".equals(job.getOutputQuality())) {
+            return false;
+        }
+        job.setStatus(JobStatus.COMPLETED);
+        job.setProcessedFileKey(job.getOriginalFileKey());
+        job.setCompletedAt(LocalDateTime.now());
+        log.info("Job for {} needs no conversion; completing as passthrough", job.getOriginalFilename());
+        return true;
+    }
+
+    /**
+     * Whether the original is already a file of the requested format. Formats
+     * sharing a container family are told apart by the brand the file
+     * declares; ASF, which does not say whether it holds WMV or WMA, never
+     * matches.
+     */
+    private static boolean sameContainer(String format, MediaInfo media) {
+        String lower = format.toLowerCase();
+        String brand = media.getBrand();
+        return switch (lower) {
+            case "jpg" -> "jpeg".equals(media.getContainer());
+            case "tif" -> "tiff".equals(media.getContainer());
+            case "webm" -> "matroska".equals(media.getContainer()) && "webm".equals(brand);
+            case "mkv" -> "matroska".equals(media.getContainer()) && "matroska".equals(brand);
+            case "mp4" -> "mp4".equals(media.getContainer()) && MP4_BRANDS.contains(brand);
+            case "wmv", "wma" -> false;
+            default -> lower.equals(media.getContainer());
+        };
+    }
+
+    // Jobs the scheduler will hold stay undispatched until it releases them
+    private void estimate(Job job) {
+        job.setPredictedSeconds(jobCostModel.predictSeconds(job));
+        if (!jobScheduler.isEnabled()) {
+            job.setDispatchedAt(LocalDateTime.now());
+        }
+    }
+
+    private void submit(Job job) {
+        if (jobScheduler.isEnabled()) {
+            jobScheduler.hold(job);
+        } else {
+            enqueue(job);
+        }
+    }
+
+    /**
+     * Publishes a job the scheduler was holding. Jobs deleted, failed or
+     * already sent in the meantime are left alone.
+     */
+    @Transactional
+    public void dispatch(UUID jobId) {
+        Job job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() != JobStatus.QUEUED || job.getDispatchedAt() != null) {
+            return;
+        }
+        job.setDispatchedAt(LocalDateTime.now());
+        job = jobRepository.save(job);
+        enqueue(job);
+    }
+
+    private void enqueue(Job job) {
+        if (segmentedTranscodeService.shouldSegment(job)) {
+            segmentedTranscodeService.fanOut(job);
+            return;
+        }
+        afterCommit(() -> Observation.createNotStarted("job.enqueue", observationRegistry)
+                .highCardinalityKeyValue("job.id", String.valueOf(job.getId()))
+                .observe(() -> {
+                    String inputUrl = fileStorageService.getFileUrl(job.getOriginalFileKey());
+                    rabbitMQJobProducer.sendJob(job, inputUrl)
+                            .whenComplete((ignored, error) -> {
+                                if (error != null) {
+                                    markEnqueueFailed(job.getId(), error);
+                                }
+                            });
+                }));
+    }
+
+    /**
+     * Runs a publish once the caller's transaction has committed. Published
+     * earlier, a worker's callback or a fast publish failure could look the
+     * job up before its row is visible and be lost.
+     */
+    private static void afterCommit(Runnable publish) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish.run();
+                }
+            });
+        } else {
+            publish.run();
+        }
+    }
+
+    private void markEnqueueFailed(UUID jobId, Throwable error) {
+        // Runs on the publisher's confirm thread once all publish attempts are exhausted
+        log.error("Job {} could not be enqueued", jobId, error);
+        jobRepository.findById(jobId).ifPresent(job -> {
+            if (job.getStatus() == JobStatus.QUEUED) {
+                job.setStatus(JobStatus.FAILED);
+                job.setErrorMessage("Failed to enqueue job: " + error.getMessage());
+                jobRepository.save(job);
+            }
+        });
+    }
+
+    @Transactional
+    public Job applyWorkerResult(UUID jobId, String status, String processedFileKey, String errorMessage) {
+        return applyWorkerResult(jobId, status, processedFileKey, errorMessage, null);
+    }
+
+    @Transactional
+    public Job applyWorkerResult(UUID jobId, String status, String processedFileKey, String errorMessage,
+                                 List<Map<String, Object>> renditionResults) {
+        return applyWorkerResult(jobId, status, processedFileKey, errorMessage, renditionResults, null);
+    }
+
+    @Transactional
+    public Job applyWorkerResult(UUID jobId, String status, String processedFileKey, String errorMessage,
+                                 List<Map<String, Object>> renditionResults, Long processingMs) {
+        return applyWorkerResult(jobId, status, processedFileKey, errorMessage, renditionResults, processingMs, null);
+    }
+
+    /**
+     * Applies a worker callback. {@code processingMs} is the worker's own
+     * measurement of the job, which is what the cost model learns from.
+     * {@code attempt} is the run the result comes from; a result from a run
+     * since superseded by a retry is dropped, and null is taken as current.
+     */
+    @Transactional
+    public Job applyWorkerResult(UUID jobId, String status, String processedFileKey, String errorMessage,
+                                 List<Map<String, Object>> renditionResults, Long processingMs, Integer attempt) {
+        return Observation.createNotStarted("job.callback", observationRegistry)
+                .lowCardinalityKeyValue("job.status", String.valueOf(status))
+                .highCardinalityKeyValue("job.id", jobId.toString())
+                .observe(() -> {
+                    Job job = getJob(jobId);
+                    int current = job.getAttempts() != null ? job.getAttempts() : 1;
+                    if (attempt != null && attempt != current) {
+                        log.warn("Ignoring {} result from attempt {} of job {}, now on attempt {}",
+                                status, attempt, jobId, current);
+                        return job;
+                    }
+                    boolean wasCompleted = job.getStatus() == JobStatus.COMPLETED;
+                    // A finished job can still see a failure from a redelivered copy of its message
+                    boolean wasFinished = wasCompleted || job.getStatus() == JobStatus.FAILED;
+                    if (renditionResults != null && !job.getRenditions().isEmpty()) {
+                        applyRenditionResults(job, renditionResults);
+                        if (job.getStatus() == JobStatus.FAILED && !wasFinished) {
+                            retryOrDeadLetter(job, job.getErrorMessage());
+                        }
+                    } else if ("completed".equals(status)) {
+                        job.setStatus(JobStatus.COMPLETED);
+                        job.setProcessedFileKey(processedFileKey);
+                        job.setCompletedAt(LocalDateTime.now());
+                    } else if ("failed".equals(status) && !wasFinished) {
+                        retryOrDeadLetter(job, errorMessage);
+                    }
+                    if (processingMs != null) {
+                        // A segmented job's stitch adds to the time its segments already reported
+                        job.setProcessingMs(job.getSegmentCount() != null && job.getProcessingMs() != null
+                                ? job.getProcessingMs() + processingMs
+                                : processingMs);
+                    }
+                    // Redelivered callbacks must not count the same job twice
+                    if (job.getStatus() == JobStatus.COMPLETED && !wasCompleted) {
+                        Double seconds = JobCostModel.observedSeconds(job);
+                        if (seconds != null) {
+                            jobCostModel.observe(job, seconds);
+                        }
+                        if (job.getSegmentCount() != null) {
+                            segmentedTranscodeService.cleanUp(jobId);
+                        }
+                    }
+                    if (job.getStatus() != JobStatus.PROCESSING) {
+                        progressTracker.remove(jobId);
+                    }
+                    return jobRepository.save(job);
+                });
+    }
+
+    /**
+     * Fails a job, unless the failure looks transient and attempts remain, in
+     * which case the job goes back on the queue through the delay queue for
+     * its next attempt. Failed jobs are parked on the dead-letter queue for
+     * inspection and replay. Segmented jobs already retry per segment, so a
+     * failed stitch fails the job outright.
+     */
+    private void retryOrDeadLetter(Job job, String errorMessage) {
+        job.setStatus(JobStatus.FAILED);
+        job.setErrorMessage(errorMessage);
+        if (job.getSegmentCount() != null) {
+            return;
+        }
+        UUID jobId = job.getId();
+        int attempt = job.getAttempts() != null ? job.getAttempts() : 1;
+        FailureClassifier.Kind kind = failureClassifier.classify(errorMessage);
+        String inputUrl = fileStorageService.getFileUrl(job.getOriginalFileKey());
+        if (kind == FailureClassifier.Kind.TRANSIENT && attempt < rabbitMQJobProducer.maxAttempts()) {
+            log.warn("Job {} failed transiently on attempt {}/{}, retrying: {}",
+                    jobId, attempt, rabbitMQJobProducer.maxAttempts(), tail(errorMessage));
+            job.setStatus(JobStatus.QUEUED);
+            job.setAttempts(attempt + 1);
+            resetRenditions(job);
+            int nextAttempt = attempt + 1;
+            afterCommit(() -> rabbitMQJobProducer.sendRetry(job, inputUrl, nextAttempt)
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            markEnqueueFailed(jobId, error);
+                        }
+                    }));
+            return;
+        }
+        log.warn("Job {} failed ({}) on attempt {}; dead-lettering", jobId, kind, attempt);
+        job.setDeadLetteredAt(LocalDateTime.now());
+        String reason = kind + ": " + tail(errorMessage);
+        afterCommit(() -> rabbitMQJobProducer.sendDeadLetter(job, inputUrl, attempt, reason)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        log.error("Job {} failed but could not be dead-lettered", jobId, error);
+                    }
+                }));
+    }
+
+    // ffmpeg puts the actual error at the end of its output
+    private static String tail(String message) {
+        if (message == null) {
+            return "no error message";
+        }
+        return message.length() <= 500 ? message : "..." + message.substring(message.length() - 500);
+    }
+
+    private static void resetRenditions(Job job) {
+        for (Rendition rendition : job.getRenditions()) {
+            rendition.setStatus(JobStatus.QUEUED);
+            rendition.setProcessedFileKey(null);
+            rendition.setErrorMessage(null);
+        }
+    }
+
+    /**
+     * Queues a dead-lettered job again with a fresh attempt budget. Returns
+     * false for jobs that are no longer parked, e.g. replayed already.
+     */
+    @Transactional
+    public boolean replay(UUID jobId) {
+        Job job = getJob(jobId);
+        if (job.getStatus() != JobStatus.FAILED || job.getDeadLetteredAt() == null) {
+            return false;
+        }
+        job.setStatus(JobStatus.QUEUED);
+        job.setErrorMessage(null);
+        job.setAttempts(1);
+        job.setDeadLetteredAt(null);
+        job.setDispatchedAt(null);
+        resetRenditions(job);
+        estimate(job);
+        job = jobRepository.save(job);
+        progressTracker.remove(jobId);
+        log.info("Replaying dead-lettered job {}", jobId);
+        submit(job);
+        return true;
+    }
+
+    /**
+     * Applies the results of one batch message in a single transaction. Each
+     * entry has the shape of a single-job callback. Unknown jobs, e.g. deleted
+     * while the batch ran, are skipped rather than failing their siblings.
+     */
+    @Transactional
+    public int applyBatchResults(List<Map<String, Object>> results) {
+        List<UUID> jobIds = results.stream().map(result -> UUID.fromString((String) result.get("job_id"))).toList();
+        // One query loads the whole batch; the per-job lookups below then hit the persistence context
+        Set<UUID> known = jobRepository.findAllById(jobIds).stream().map(Job::getId).collect(Collectors.toSet());
+        int applied = 0;
+        for (int i = 0; i < results.size(); i++) {
+            Map<String, Object> result = results.get(i);
+            UUID jobId = jobIds.get(i);
+            if (!known.contains(jobId)) {
+                log.warn("Ignoring batch result for unknown job {}", jobId);
+                continue;
+            }
+            Number processingMs = (Number) result.get("processing_ms");
+            applyWorkerResult(jobId, (String) result.get("status"), (String) result.get("processed_file_key"),
+                    (String) result.get("error_message"), null, processingMs != null ? processingMs.longValue() : null);
+            applied++;
+        }
+        return applied;
+    }
+
+    private void applyRenditionResults(Job job, List<Map<String, Object>> results) {
+        List<Rendition> renditions = job.getRenditions();
+        for (Map<String, Object> result : results) {
+            int index = ((Number) result.get("index")).intValue();
+            if (index < 0 || index >= renditions.size()) {
+                log.warn("Ignoring result for unknown rendition {} of job {}", index, job.getId());
+                continue;
+            }
+            Rendition rendition = renditions.get(index);
+            if ("completed".equals(result.get("status"))) {
+                rendition.setStatus(JobStatus.COMPLETED);
+                rendition.setProcessedFileKey((String) result.get("processed_file_key"));
+            } else {
+                rendition.setStatus(JobStatus.FAILED);
+                rendition.setErrorMessage((String) result.get("error_message"));
+            }
+        }
+
+        // The job is done once no rendition is pending; it succeeds if any rendition did
+        boolean pending = renditions.stream()
+                .anyMatch(r -> r.getStatus() == JobStatus.QUEUED || r.getStatus() == JobStatus.PROCESSING);
+        if (pending) {
+            job.setStatus(JobStatus.PROCESSING);
+            return;
+        }
+        // The first rendition that came out is served as the job's file, even if the requested primary failed
+        Rendition served = renditions.stream()
+                .filter(r -> r.getStatus() == JobStatus.COMPLETED && r.getProcessedFileKey() != null)
+                .findFirst()
+                .orElse(null);
+        long failed = renditions.stream().filter(r -> r.getStatus() == JobStatus.FAILED).count();
+        if (served == null) {
+            job.setStatus(JobStatus.FAILED);
+            job.setErrorMessage(renditions.stream()
+                    .map(Rendition::getErrorMessage)
+                    .filter(Objects::nonNull)
+                    .findFirst()
+                    .orElse("No rendition produced a file"));
+            return;
+        }
+        job.setStatus(JobStatus.COMPLETED);
+        job.setProcessedFileKey(served.getProcessedFileKey());
+        // Downloads of the job's file take their type and name from these
+        job.setOutputFormat(served.getOutputFormat());
+        job.setOutputQuality(served.getOutputQuality());
+        job.setCompletedAt(LocalDateTime.now());
+        if (failed > 0) {
+            job.setErrorMessage(failed + " of " + renditions.size() + " renditions failed");
+        }
+    }
+
+    /**
+     * Records a worker's progress report in memory. The jobs table is only
+     * written on the first report of an attempt, to mark the job as running.
+     */
+    public void recordProgress(UUID jobId, int attempt, int percent) {
+        if (progressTracker.update(jobId, attempt, percent)
+                && jobRepository.markProcessing(jobId, attempt, LocalDateTime.now()) > 0) {
+            // A bulk update bypasses the entity listener
+            jobReadRouter.recordWrite(jobId);
+        }
+    }
+
+    // Served by the replica when one is configured, except inside transactions and shortly after a write.
+    // Progress comes from memory, not the row.
     public Job getJob(UUID jobId) {
-        return jobRepository.findById(jobId)
-                .orElseThrow(() -> new RuntimeException("Job not found"));
+        Job job = jobReadRouter.findJob(jobId, () -> jobRepository.findById(jobId))
+                .orElseThrow(JobNotFoundException::new);
+        progressTracker.fill(job);
+        return job;
     }
 
     public List<Job> getJobsByStatus(JobStatus status) {
-        return jobRepository.findByStatus(status);
+        List<Job> jobs = jobReadRouter.findJobs(() -> jobRepository.findByStatus(status));
+        progressTracker.fill(jobs);
+        return jobs;
     }
 
     public List<Job> getQueuedJobs() {
-        return jobRepository.findByStatusOrderByCreatedAtAsc(JobStatus.QUEUED);
+        List<Job> jobs = jobReadRouter.findJobs(() -> jobRepository.findByStatusOrderByCreatedAtAsc(JobStatus.QUEUED));
+        progressTracker.fill(jobs);
+        return jobs;
     }
 
+    @Transactional
     public void deleteJob(UUID jobId) {
-        jobRepository.deleteById(jobId);
+        Job job = getJob(jobId);
+        // Jobs reprocessed from the same original share it, and may share an identical output
+        Set<String> shared = new HashSet<>();
+        for (Job relative : jobRepository.findByOriginalFileKey(job.getOriginalFileKey())) {
+            if (!relative.getId().equals(jobId)) {
+                shared.add(relative.getOriginalFileKey());
+                shared.add(relative.getProcessedFileKey());
+            }
+        }
+        List<String> fileKeys = new ArrayList<>();
+        fileKeys.add(job.getOriginalFileKey());
+        // Passthrough jobs share one blob between original and output
+        if (job.getProcessedFileKey() != null && !fileKeys.contains(job.getProcessedFileKey())) {
+            fileKeys.add(job.getProcessedFileKey());
+        }
+        for (Rendition rendition : job.getRenditions()) {
+            if (rendition.getProcessedFileKey() != null && !fileKeys.contains(rendition.getProcessedFileKey())) {
+                fileKeys.add(rendition.getProcessedFileKey());
+            }
+        }
+        if (job.getSegmentCount() != null) {
+            fileKeys.addAll(segmentedTranscodeService.removeSegments(jobId));
+        }
+        fileKeys.addAll(imageRenderService.removeVariants(jobId));
+        fileKeys.removeAll(shared);
+        jobRepository.delete(job);
+        progressTracker.remove(jobId);
+        try {
+            fileStorageService.deleteFiles(fileKeys);
+        } catch (IOException e) {
+            // The row is the source of truth; a leftover blob only costs storage
+            log.warn("Deleted job {} but not all of its files: {}", jobId, fileKeys, e);
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/** Pins every job written through JPA to the primary for reads, wherever in the code the write happens. */
+@Component
+public class JobWriteListener {
+
+    // Looked up per write: Hibernate creates its listeners while the entity manager factory is still being built
+    private final ObjectProvider<JobReadRouter> jobReadRouter;
+
+    public JobWriteListener(ObjectProvider<JobReadRouter> jobReadRouter) {
+        this.jobReadRouter = jobReadRouter;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void written(Job job) {
+        jobReadRouter.getObject().recordWrite(job.getId());
+    }
+}
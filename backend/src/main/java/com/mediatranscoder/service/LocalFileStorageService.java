@@ -0,0 +1,212 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.PresignedUpload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filesystem-backed stand-in for the bucket, used for offline development and
+ * tests. Signed URLs point at {@code LocalStorageController} and are verified
+ * with an HMAC, mirroring the presigned-URL contract of the real bucket.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local")
+public class LocalFileStorageService implements FileStorageService {
+
+    public static final String ENDPOINT = "/api/v1/storage/local";
+
+    private final Path root;
+    private final String baseUrl;
+    private final long urlTtlMinutes;
+    private final byte[] signingKey = new byte[32];
+
+    public LocalFileStorageService(@Value("${app.storage.local.root:${java.io.tmpdir}/media-transcoder/storage}") String root,
+                                   @Value("${app.storage.local.base-url:http://localhost:8080}") String baseUrl,
+                                   @Value("${app.storage.upload-url-ttl-minutes:15}") long urlTtlMinutes) throws IOException {
+        this.root = Path.of(root).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl;
+        this.urlTtlMinutes = urlTtlMinutes;
+        new SecureRandom().nextBytes(signingKey);
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public String storeFile(MultipartFile file) throws IOException {
+        String fileKey = generateFileKey(file.getOriginalFilename());
+        try (InputStream in = file.getInputStream()) {
+            write(fileKey, in);
+        }
+        return fileKey;
+    }
+
+    @Override
+    public String storeFile(File file) throws IOException {
+        String fileKey = generateFileKey(file.getName());
+        Path target = resolve(fileKey);
+        Files.createDirectories(target.getParent());
+        Files.copy(file.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        return fileKey;
+    }
+
+    @Override
+    public File downloadFile(String fileKey) throws IOException {
+        Path source = resolve(fileKey);
+        if (!Files.exists(source)) {
+            throw new IOException("File not found: " + fileKey);
+        }
+        String suffix = fileKey.contains(".") ? fileKey.substring(fileKey.lastIndexOf(".")) : null;
+        File tempFile = File.createTempFile("download-", suffix);
+        Files.copy(source, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return tempFile;
+    }
+
+    @Override
+    public String uploadFile(File file, String format) throws IOException {
+        return storeFile(file);
+    }
+
+    @Override
+    public void deleteFile(String fileKey) throws IOException {
+        Files.deleteIfExists(resolve(fileKey));
+    }
+
+    @Override
+    public int deleteFiles(List<String> fileKeys) throws IOException {
+        int deleted = 0;
+        for (String fileKey : fileKeys) {
+            if (Files.deleteIfExists(resolve(fileKey))) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public String getFileUrl(String fileKey) {
+        return signedUrl("GET", fileKey, Instant.now().plusSeconds(TimeUnit.DAYS.toSeconds(7)));
+    }
+
+    @Override
+    public PresignedUpload createUploadTarget(String originalFilename, String contentType) {
+        String fileKey = generateFileKey(originalFilename);
+        Instant expiresAt = Instant.now().plusSeconds(TimeUnit.MINUTES.toSeconds(urlTtlMinutes));
+        return new PresignedUpload(null, fileKey, signedUrl("PUT", fileKey, expiresAt), "PUT",
+                Map.of("Content-Type", contentType), expiresAt);
+    }
+
+    @Override
+    public boolean exists(String fileKey) {
+        return Files.exists(resolve(fileKey));
+    }
+
+    @Override
+    public InputStream openStream(String fileKey) throws IOException {
+        return Files.newInputStream(resolve(fileKey));
+    }
+
+    @Override
+    public void storePart(String partKey, InputStream content, String contentType) throws IOException {
+        write(partKey, content);
+    }
+
+    @Override
+    public void move(String fromKey, String toKey) throws IOException {
+        Path target = resolve(toKey);
+        Files.createDirectories(target.getParent());
+        Files.move(resolve(fromKey), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public String compose(List<String> partKeys, String originalFilename, String contentType) throws IOException {
+        String fileKey = generateFileKey(originalFilename);
+        Path target = resolve(fileKey);
+        Files.createDirectories(target.getParent());
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            for (String partKey : partKeys) {
+                try (FileChannel in = FileChannel.open(resolve(partKey), StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = in.size();
+                    while (position < size) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                }
+            }
+        }
+        return fileKey;
+    }
+
+    public void write(String fileKey, InputStream content) throws IOException {
+        Path target = resolve(fileKey);
+        Files.createDirectories(target.getParent());
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        Files.copy(content, partial, StandardCopyOption.REPLACE_EXISTING);
+        // Readers never observe a half-written object
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Path resolve(String fileKey) {
+        Path path = root.resolve(fileKey).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid file key: " + fileKey);
+        }
+        return path;
+    }
+
+    public boolean verify(String method, String fileKey, long expires, String signature) {
+        if (Instant.now().getEpochSecond() > expires) {
+            return false;
+        }
+        byte[] expected = sign(method, fileKey, expires).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String signedUrl(String method, String fileKey, Instant expiresAt) {
+        long expires = expiresAt.getEpochSecond();
+        return UriComponentsBuilder.fromHttpUrl(baseUrl)
+                .path(ENDPOINT)
+                .queryParam("key", fileKey)
+                .queryParam("expires", expires)
+                .queryParam("signature", sign(method, fileKey, expires))
+                .encode()
+                .toUriString();
+    }
+
+    private String sign(String method, String fileKey, long expires) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(signingKey, "HmacSHA256"));
+            byte[] digest = mac.doFinal((method + "\n" + fileKey + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private String generateFileKey(String originalFilename) {
+        return UUID.randomUUID().toString() + "/" + originalFilename;
+    }
+}
@@ -0,0 +1,520 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.MediaInfo;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Reads just enough of an upload's container or image header to learn its
+ * format, codec, dimensions and duration, without decoding any pixels.
+ * Sections it does not need are skipped, so a stream whose {@code skip}
+ * seeks (a file, or a storage reader) costs a few kilobytes of I/O even when
+ * an MP4's index sits behind gigabytes of media data.
+ */
+@Component
+public class MediaProbe {
+
+    // Image headers sit right at the start; scanning further means the header is broken
+    private static final long MAX_IMAGE_HEADER_SCAN = 1 << 20;
+
+    // Boxes an ISO or QuickTime file may open with; older QuickTime files have no ftyp at all
+    private static final Set<String> ISO_LEADING_BOXES = Set.of("ftyp", "moov", "mdat", "wide", "free", "skip", "pnot");
+
+    // The brand a QuickTime movie implies when it carries no ftyp
+    private static final String QUICKTIME_BRAND = "qt  ";
+
+    public MediaInfo probe(InputStream stream) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(stream, 8192);
+        buffered.mark(16);
+        byte[] magic = buffered.readNBytes(16);
+        buffered.reset();
+        if (magic.length < 4) {
+            throw new UnsupportedMediaException("File is empty or too short to be media");
+        }
+        Header h = new Header(buffered);
+        try {
+            if (startsWith(magic, 0xFF, 0xD8, 0xFF)) {
+                return jpeg(h);
+            }
+            if (startsWith(magic, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+                return png(h);
+            }
+            if (startsWith(magic, 'G', 'I', 'F', '8')) {
+                return gif(h);
+            }
+            if (startsWith(magic, 'B', 'M')) {
+                return bmp(h);
+            }
+            if (startsWith(magic, 'R', 'I', 'F', 'F') && magic.length >= 12) {
+                String form = new String(magic, 8, 4, StandardCharsets.US_ASCII);
+                if (form.equals("WEBP")) {
+                    return webp(h);
+                }
+                if (form.equals("AVI ")) {
+                    return avi(h);
+                }
+            }
+            if (magic.length >= 8 && ISO_LEADING_BOXES.contains(new String(magic, 4, 4, StandardCharsets.US_ASCII))) {
+                return isoBmff(h);
+            }
+            if (startsWith(magic, 'I', 'I', 0x2A, 0x00) || startsWith(magic, 'M', 'M', 0x00, 0x2A)) {
+                return info(MediaInfo.Type.IMAGE, "tiff", "tiff", null, null, null);
+            }
+            if (startsWith(magic, 0x1A, 0x45, 0xDF, 0xA3)) {
+                return matroska(h);
+            }
+            // Recognised but not parsed; ffmpeg in the worker still validates their streams
+            if (startsWith(magic, 'F', 'L', 'V', 0x01)) {
+                return info(MediaInfo.Type.VIDEO, "flv", null, null, null, null);
+            }
+            if (startsWith(magic, 0x30, 0x26, 0xB2, 0x75, 0x8E, 0x66, 0xCF, 0x11)) {
+                return info(MediaInfo.Type.VIDEO, "asf", null, null, null, null);
+            }
+        } catch (EOFException e) {
+            throw new UnsupportedMediaException("Truncated media header");
+        }
+        throw new UnsupportedMediaException("Unrecognised media format");
+    }
+
+    private static MediaInfo jpeg(Header h) throws IOException {
+        h.skip(2);
+        while (h.position < MAX_IMAGE_HEADER_SCAN) {
+            if (h.u8() != 0xFF) {
+                throw new UnsupportedMediaException("Corrupt JPEG segment");
+            }
+            int marker;
+            do {
+                marker = h.u8();
+            } while (marker == 0xFF);
+            // Markers without a length field
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                throw new UnsupportedMediaException("JPEG has no frame header");
+            }
+            int length = h.u16();
+            if (length < 2) {
+                throw new UnsupportedMediaException("Corrupt JPEG segment length");
+            }
+            boolean startOfFrame = marker >= 0xC0 && marker <= 0xCF
+                    && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (startOfFrame) {
+                h.u8();
+                int height = h.u16();
+                int width = h.u16();
+                return image("jpeg", marker == 0xC2 ? "jpeg-progressive" : "jpeg", width, height);
+            }
+            h.skip(length - 2);
+        }
+        throw new UnsupportedMediaException("JPEG frame header not found");
+    }
+
+    private static MediaInfo png(Header h) throws IOException {
+        h.skip(8);
+        h.u32();
+        if (!h.fourcc().equals("IHDR")) {
+            throw new UnsupportedMediaException("PNG does not start with IHDR");
+        }
+        return image("png", "png", h.u32(), h.u32());
+    }
+
+    private static MediaInfo gif(Header h) throws IOException {
+        h.skip(6);
+        return image("gif", "gif", h.u16le(), h.u16le());
+    }
+
+    private static MediaInfo bmp(Header h) throws IOException {
+        h.skip(14);
+        long dibSize = h.u32le();
+        if (dibSize == 12) {
+            return image("bmp", "bmp", h.u16le(), h.u16le());
+        }
+        int width = (int) h.u32le();
+        // Negative height marks a top-down bitmap
+        int height = Math.abs((int) h.u32le());
+        return image("bmp", "bmp", width, height);
+    }
+
+    private static MediaInfo webp(Header h) throws IOException {
+        h.skip(12);
+        String chunk = h.fourcc();
+        h.u32le();
+        switch (chunk) {
+            case "VP8 " -> {
+                h.skip(3);
+                if (h.u8() != 0x9D || h.u8() != 0x01 || h.u8() != 0x2A) {
+                    throw new UnsupportedMediaException("Corrupt VP8 frame header");
+                }
+                return image("webp", "vp8", h.u16le() & 0x3FFF, h.u16le() & 0x3FFF);
+            }
+            case "VP8L" -> {
+                if (h.u8() != 0x2F) {
+                    throw new UnsupportedMediaException("Corrupt VP8L header");
+                }
+                long bits = h.u32le();
+                return image("webp", "vp8l", (int) (bits & 0x3FFF) + 1, (int) ((bits >> 14) & 0x3FFF) + 1);
+            }
+            case "VP8X" -> {
+                h.skip(4);
+                return image("webp", "vp8x", h.u24le() + 1, h.u24le() + 1);
+            }
+            default -> throw new UnsupportedMediaException("Unknown WebP chunk " + chunk);
+        }
+    }
+
+    private static MediaInfo avi(Header h) throws IOException {
+        h.skip(12);
+        if (!h.fourcc().equals("LIST")) {
+            throw new UnsupportedMediaException("AVI header list missing");
+        }
+        h.u32le();
+        if (!h.fourcc().equals("hdrl") || !h.fourcc().equals("avih")) {
+            throw new UnsupportedMediaException("AVI main header missing");
+        }
+        h.u32le();
+        long microsPerFrame = h.u32le();
+        h.skip(12);
+        long totalFrames = h.u32le();
+        h.skip(12);
+        int width = (int) h.u32le();
+        int height = (int) h.u32le();
+        MediaInfo info = info(MediaInfo.Type.VIDEO, "avi", null, width, height, totalFrames * microsPerFrame / 1000);
+        requireDimensions(info);
+        return info;
+    }
+
+    // Only the EBML header is read, for the DocType telling WebM from other Matroska files
+    private static MediaInfo matroska(Header h) throws IOException {
+        h.skip(4);
+        long size = h.vint(false);
+        if (size > MAX_IMAGE_HEADER_SCAN) {
+            throw new UnsupportedMediaException("Corrupt EBML header size");
+        }
+        long end = h.position + size;
+        while (h.position < end) {
+            long id = h.vint(true);
+            long elementSize = h.vint(false);
+            if (h.position + elementSize > end) {
+                throw new UnsupportedMediaException("Corrupt EBML header element");
+            }
+            if (id == 0x4282) {
+                // DocType strings may be padded with NULs
+                String docType = h.ascii((int) elementSize).replace("\0", "");
+                MediaInfo info = info(MediaInfo.Type.VIDEO, "matroska", null, null, null, null);
+                info.setBrand(docType);
+                return info;
+            }
+            h.skip(elementSize);
+        }
+        throw new UnsupportedMediaException("EBML header has no DocType");
+    }
+
+    private static MediaInfo isoBmff(Header h) throws IOException {
+        IsoState state = new IsoState();
+        boxes(h, -1, state);
+        if (state.brand == null) {
+            if (!state.sawMovie) {
+                throw new UnsupportedMediaException("ISO media file without ftyp or movie header");
+            }
+            state.brand = QUICKTIME_BRAND;
+        }
+        String brand = state.brand.trim();
+        if (brand.equals("avif") || brand.equals("avis")) {
+            return requireDimensions(info(MediaInfo.Type.IMAGE, "avif", "av01", state.imageWidth, state.imageHeight, null));
+        }
+        if (brand.equals("heic") || brand.equals("heix") || brand.equals("mif1") || brand.equals("msf1")) {
+            return requireDimensions(info(MediaInfo.Type.IMAGE, "heif", "hevc", state.imageWidth, state.imageHeight, null));
+        }
+        if (!state.sawMovie) {
+            throw new UnsupportedMediaException("MP4 has no movie header");
+        }
+        String container = brand.equals("qt") ? "mov" : "mp4";
+        MediaInfo info;
+        if (state.videoCodec != null) {
+            info = info(MediaInfo.Type.VIDEO, container, state.videoCodec.trim(), state.videoWidth, state.videoHeight,
+                    state.durationMs);
+        } else if (state.audioCodec != null) {
+            info = info(MediaInfo.Type.AUDIO, container, state.audioCodec.trim(), null, null, state.durationMs);
+        } else {
+            throw new UnsupportedMediaException("MP4 has no audio or video track");
+        }
+        // Kept untrimmed: "M4A " and "M4V " are brands in their own right
+        info.setBrand(state.brand);
+        return info;
+    }
+
+    // Walks sibling boxes up to end (-1 for end of stream), descending only into the ones holding headers
+    private static void boxes(Header h, long end, IsoState state) throws IOException {
+        while (!state.done && (end < 0 || h.position < end)) {
+            long start = h.position;
+            long size;
+            if (end < 0) {
+                size = h.u32OrEof();
+                if (size < 0) {
+                    return;
+                }
+            } else {
+                size = h.u32();
+            }
+            String type = h.fourcc();
+            long headerSize = 8;
+            if (size == 1) {
+                size = h.u64();
+                headerSize = 16;
+            } else if (size == 0) {
+                // Box runs to the end of its parent; only sensible for trailing media data
+                size = end < 0 ? Long.MAX_VALUE - start : end - start;
+            }
+            if (size < headerSize || (end >= 0 && start + size > end)) {
+                throw new UnsupportedMediaException("Corrupt '" + type + "' box");
+            }
+            long boxEnd = start + size;
+
+            switch (type) {
+                case "ftyp" -> state.brand = h.fourcc();
+                case "moov" -> {
+                    state.sawMovie = true;
+                    boxes(h, boxEnd, state);
+                    state.done = true;
+                }
+                case "trak" -> {
+                    state.track = new Track();
+                    boxes(h, boxEnd, state);
+                    state.finishTrack();
+                }
+                case "mdia", "minf", "stbl", "iprp", "ipco" -> boxes(h, boxEnd, state);
+                case "meta" -> {
+                    h.skip(4);
+                    boxes(h, boxEnd, state);
+                    if (state.imageWidth != null) {
+                        state.done = true;
+                    }
+                }
+                case "mvhd" -> {
+                    int version = h.u8();
+                    h.skip(3 + (version == 1 ? 16 : 8));
+                    long timescale = h.u32();
+                    long duration = version == 1 ? h.u64() : h.u32();
+                    if (timescale > 0) {
+                        state.durationMs = duration * 1000 / timescale;
+                    }
+                }
+                case "tkhd" -> {
+                    if (state.track != null) {
+                        int version = h.u8();
+                        h.skip(3 + (version == 1 ? 32 : 20) + 52);
+                        state.track.width = (int) (h.u32() >>> 16);
+                        state.track.height = (int) (h.u32() >>> 16);
+                    }
+                }
+                case "hdlr" -> {
+                    if (state.track != null) {
+                        h.skip(8);
+                        state.track.handler = h.fourcc();
+                    }
+                }
+                case "stsd" -> {
+                    if (state.track != null) {
+                        h.skip(4);
+                        if (h.u32() > 0) {
+                            h.u32();
+                            state.track.codec = h.fourcc();
+                        }
+                    }
+                }
+                case "ispe" -> {
+                    h.skip(4);
+                    int width = (int) h.u32();
+                    int height = (int) h.u32();
+                    // The primary image is the largest; the others are thumbnails
+                    if (state.imageWidth == null || (long) width * height > (long) state.imageWidth * state.imageHeight) {
+                        state.imageWidth = width;
+                        state.imageHeight = height;
+                    }
+                }
+                default -> {
+                }
+            }
+            if (state.done) {
+                return;
+            }
+            if (h.position > boxEnd) {
+                throw new UnsupportedMediaException("Box '" + type + "' overruns its size");
+            }
+            if (size >= Long.MAX_VALUE - start) {
+                return;
+            }
+            h.skip(boxEnd - h.position);
+        }
+    }
+
+    private static MediaInfo image(String container, String codec, long width, long height) {
+        return requireDimensions(info(MediaInfo.Type.IMAGE, container, codec, (int) width, (int) height, null));
+    }
+
+    private static MediaInfo requireDimensions(MediaInfo info) {
+        if (info.getWidth() == null || info.getHeight() == null || info.getWidth() <= 0 || info.getHeight() <= 0) {
+            throw new UnsupportedMediaException("Invalid " + info.getContainer() + " dimensions");
+        }
+        return info;
+    }
+
+    private static MediaInfo info(MediaInfo.Type type, String container, String codec,
+                                  Integer width, Integer height, Long durationMs) {
+        MediaInfo info = new MediaInfo();
+        info.setType(type);
+        info.setContainer(container);
+        info.setCodec(codec);
+        info.setWidth(width);
+        info.setHeight(height);
+        info.setDurationMs(durationMs);
+        if (width != null && height != null) {
+            info.setPixelCount((long) width * height);
+        }
+        return info;
+    }
+
+    private static boolean startsWith(byte[] data, int... prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((data[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class IsoState {
+        String brand;
+        boolean sawMovie;
+        boolean done;
+        Long durationMs;
+        Track track;
+        String videoCodec;
+        Integer videoWidth;
+        Integer videoHeight;
+        String audioCodec;
+        Integer imageWidth;
+        Integer imageHeight;
+
+        // The first video and first audio track describe the file
+        void finishTrack() {
+            if ("vide".equals(track.handler) && videoCodec == null && track.codec != null) {
+                videoCodec = track.codec;
+                videoWidth = track.width;
+                videoHeight = track.height;
+            } else if ("soun".equals(track.handler) && audioCodec == null && track.codec != null) {
+                audioCodec = track.codec;
+            }
+            track = null;
+        }
+    }
+
+    private static final class Track {
+        String handler;
+        String codec;
+        Integer width;
+        Integer height;
+    }
+
+    /** Big- and little-endian field reads that keep track of the absolute offset. */
+    private static final class Header {
+        private final InputStream in;
+        private long position;
+
+        Header(InputStream in) {
+            this.in = in;
+        }
+
+        int u8() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            position++;
+            return b;
+        }
+
+        int u16() throws IOException {
+            return (u8() << 8) | u8();
+        }
+
+        int u16le() throws IOException {
+            return u8() | (u8() << 8);
+        }
+
+        int u24le() throws IOException {
+            return u8() | (u8() << 8) | (u8() << 16);
+        }
+
+        long u32() throws IOException {
+            return ((long) u16() << 16) | u16();
+        }
+
+        long u32le() throws IOException {
+            return u16le() | ((long) u16le() << 16);
+        }
+
+        long u32OrEof() throws IOException {
+            int first = in.read();
+            if (first < 0) {
+                return -1;
+            }
+            position++;
+            return ((long) first << 24) | ((long) u8() << 16) | u16();
+        }
+
+        long u64() throws IOException {
+            return (u32() << 32) | u32();
+        }
+
+        String fourcc() throws IOException {
+            byte[] bytes = in.readNBytes(4);
+            if (bytes.length < 4) {
+                throw new EOFException();
+            }
+            position += 4;
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+
+        String ascii(int n) throws IOException {
+            byte[] bytes = in.readNBytes(n);
+            if (bytes.length < n) {
+                throw new EOFException();
+            }
+            position += n;
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+
+        // EBML variable-length integer; IDs keep their length marker, sizes drop it
+        long vint(boolean keepMarker) throws IOException {
+            int first = u8();
+            int length = Integer.numberOfLeadingZeros(first) - 23;
+            if (length > 8) {
+                throw new UnsupportedMediaException("Corrupt EBML integer");
+            }
+            long value = keepMarker ? first : first & (0xFF >> length);
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | u8();
+            }
+            return value;
+        }
+
+        void skip(long n) throws IOException {
+            if (n < 0) {
+                throw new UnsupportedMediaException("Corrupt header offsets");
+            }
+            in.skipNBytes(n);
+            position += n;
+        }
+    }
+}
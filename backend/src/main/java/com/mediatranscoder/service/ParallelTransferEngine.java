@@ -0,0 +1,220 @@
+package com.mediatranscoder.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves large objects as fixed-size parts over several connections at once.
+ * Downloads write each ranged read at its offset in a preallocated file with
+ * positional {@link FileChannel} writes; uploads read each part positionally
+ * from the source file. The storage-specific I/O is supplied by the caller.
+ */
+@Component
+public class ParallelTransferEngine {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    public interface RangeReader {
+        /** Opens a stream over bytes {@code [start, end)} of the remote object. */
+        InputStream open(long start, long end) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface PartUploader {
+        /** Stores one part; {@code content} yields exactly {@code length} bytes. */
+        void upload(int index, InputStream content, long length) throws IOException;
+    }
+
+    private final long partSize;
+    private final long threshold;
+    private final ExecutorService executor;
+
+    public ParallelTransferEngine(@Value("${app.storage.transfer.part-size:16777216}") long partSize,
+                                  @Value("${app.storage.transfer.parallelism:8}") int parallelism,
+                                  @Value("${app.storage.transfer.threshold:33554432}") long threshold) {
+        this.partSize = partSize;
+        this.threshold = threshold;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "storage-transfer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Objects below the threshold are cheaper to move over a single stream. */
+    public boolean shouldSplit(long size) {
+        return size >= threshold;
+    }
+
+    public int partCount(long size) {
+        return (int) ((size + partSize - 1) / partSize);
+    }
+
+    public void download(Path target, long size, RangeReader reader) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // Preallocate so parts can land at their offsets in any order
+            if (size > 0) {
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+            List<Future<?>> parts = new ArrayList<>();
+            for (long start = 0; start < size; start += partSize) {
+                long partStart = start;
+                long partEnd = Math.min(start + partSize, size);
+                parts.add(executor.submit(() -> {
+                    downloadPart(channel, partStart, partEnd, reader);
+                    return null;
+                }));
+            }
+            awaitAll(parts);
+        }
+    }
+
+    /**
+     * Uploads every part and returns the part count. If a part fails, parts
+     * not yet started are skipped and the ones in flight are waited for, so
+     * once this throws no part is still being written and the caller can
+     * clean up whatever the uploader stored.
+     */
+    public int upload(Path source, PartUploader uploader) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Future<?>> parts = new ArrayList<>();
+            AtomicBoolean failed = new AtomicBoolean();
+            int index = 0;
+            for (long start = 0; start < size; start += partSize, index++) {
+                int partIndex = index;
+                long partStart = start;
+                long length = Math.min(partSize, size - start);
+                parts.add(executor.submit(() -> {
+                    if (failed.get()) {
+                        return null;
+                    }
+                    try {
+                        uploader.upload(partIndex, new PositionalInputStream(channel, partStart, length), length);
+                    } catch (IOException | RuntimeException e) {
+                        failed.set(true);
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+            awaitEvery(parts);
+            return index;
+        }
+    }
+
+    private static void downloadPart(FileChannel channel, long start, long end, RangeReader reader) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long position = start;
+        try (InputStream in = reader.open(start, end)) {
+            int n;
+            while (position < end && (n = in.read(buffer, 0, (int) Math.min(buffer.length, end - position))) > 0) {
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+                while (chunk.hasRemaining()) {
+                    position += channel.write(chunk, position);
+                }
+            }
+        }
+        if (position != end) {
+            throw new IOException("Range " + start + "-" + end + " ended early at " + position);
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> parts) throws IOException {
+        try {
+            for (Future<?> part : parts) {
+                part.get();
+            }
+        } catch (InterruptedException e) {
+            parts.forEach(part -> part.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Transfer interrupted", e);
+        } catch (ExecutionException e) {
+            parts.forEach(part -> part.cancel(true));
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Transfer failed", e.getCause());
+        }
+    }
+
+    // Unlike awaitAll, lets every part finish before reporting the first failure
+    private static void awaitEvery(List<Future<?>> parts) throws IOException {
+        ExecutionException failure = null;
+        for (Future<?> part : parts) {
+            try {
+                part.get();
+            } catch (InterruptedException e) {
+                parts.forEach(remaining -> remaining.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IOException("Transfer interrupted", e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            if (failure.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Transfer failed", failure.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** Reads a slice of a shared channel without touching the channel's own position. */
+    private static final class PositionalInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        PositionalInputStream(FileChannel channel, long start, long length) {
+            this.channel = channel;
+            this.position = start;
+            this.end = start + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int toRead = (int) Math.min(length, end - position);
+            int n = channel.read(ByteBuffer.wrap(buffer, offset, toRead), position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+    }
+}
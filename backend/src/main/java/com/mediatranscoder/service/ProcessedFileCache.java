@@ -0,0 +1,183 @@
+package com.mediatranscoder.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Size-bounded local copy of processed outputs, keyed by processed file key.
+ * Processed files never change once written, so entries are only ever evicted
+ * (least recently used first), never invalidated. Concurrent misses for the
+ * same key wait on a single storage download.
+ */
+@Slf4j
+@Service
+public class ProcessedFileCache {
+
+    // Files live in a subdirectory of the configured one, marked as ours when created
+    static final String SUBDIRECTORY = "processed-file-cache";
+    static final String MARKER = ".processed-file-cache";
+    // What fetch names its files: the key's MD5 plus the key's extension
+    private static final Pattern CACHE_FILE = Pattern.compile("[0-9a-f]{32}(\\.[^./\\\\]+)?");
+
+    private final FileStorageService fileStorageService;
+    private final Path directory;
+    private final long maxBytes;
+
+    // Access-ordered, guarded by this
+    private final LinkedHashMap<String, CachedFile> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    public ProcessedFileCache(FileStorageService fileStorageService,
+                              @Value("${app.cache.processed.dir:${java.io.tmpdir}/media-transcoder/processed}") String directory,
+                              @Value("${app.cache.processed.max-bytes:1073741824}") long maxBytes) throws IOException {
+        this.fileStorageService = fileStorageService;
+        this.directory = Path.of(directory).resolve(SUBDIRECTORY);
+        this.maxBytes = maxBytes;
+        prepareDirectory();
+    }
+
+    // Entries are not indexed across restarts, so files left by an earlier run are dropped
+    private void prepareDirectory() throws IOException {
+        Path marker = directory.resolve(MARKER);
+        if (Files.isDirectory(directory) && !Files.exists(marker)) {
+            try (Stream<Path> files = Files.list(directory)) {
+                if (files.findAny().isPresent()) {
+                    throw new IllegalStateException(directory + " holds files but is not a processed file cache");
+                }
+            }
+        }
+        Files.createDirectories(directory);
+        if (!Files.exists(marker)) {
+            Files.createFile(marker);
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file) && CACHE_FILE.matcher(file.getFileName().toString()).matches()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a local path for the processed file, downloading it on a miss.
+     * Callers should open the file right away: it may be evicted afterwards.
+     */
+    public Path get(String fileKey) throws IOException {
+        Path cached = lookup(fileKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<Path> download = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(fileKey, download);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            // Another request may have completed the download between lookup and putIfAbsent
+            Path path = lookup(fileKey);
+            if (path == null) {
+                path = fetch(fileKey);
+            }
+            download.complete(path);
+            return path;
+        } catch (IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(fileKey, download);
+        }
+    }
+
+    public synchronized long size() {
+        return currentBytes;
+    }
+
+    private synchronized Path lookup(String fileKey) {
+        CachedFile entry = entries.get(fileKey);
+        if (entry == null) {
+            return null;
+        }
+        if (!Files.exists(entry.path())) {
+            entries.remove(fileKey);
+            currentBytes -= entry.size();
+            return null;
+        }
+        return entry.path();
+    }
+
+    private Path fetch(String fileKey) throws IOException {
+        File downloaded = fileStorageService.downloadFile(fileKey);
+        String extension = fileKey.contains(".") ? fileKey.substring(fileKey.lastIndexOf('.')) : "";
+        Path target = directory.resolve(DigestUtils.md5DigestAsHex(fileKey.getBytes(StandardCharsets.UTF_8)) + extension);
+        Files.move(downloaded.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        long size = Files.size(target);
+        log.debug("Cached processed file {} ({} bytes)", fileKey, size);
+
+        synchronized (this) {
+            CachedFile previous = entries.put(fileKey, new CachedFile(target, size));
+            if (previous != null) {
+                currentBytes -= previous.size();
+            }
+            currentBytes += size;
+            evict(fileKey);
+        }
+        return target;
+    }
+
+    // Caller holds the lock. The entry just added is kept even if it alone exceeds the budget.
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, CachedFile>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, CachedFile> eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            iterator.remove();
+            currentBytes -= eldest.getValue().size();
+            try {
+                Files.deleteIfExists(eldest.getValue().path());
+            } catch (IOException e) {
+                log.warn("Failed to delete evicted cache file {}", eldest.getValue().path(), e);
+            }
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> download) throws IOException {
+        try {
+            return download.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private record CachedFile(Path path, long size) {
+    }
+}
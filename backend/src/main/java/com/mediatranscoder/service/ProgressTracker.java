@@ -0,0 +1,194 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latest progress of running jobs, held in memory and never written to the
+ * jobs table. Each job has one slot packing its attempt and percentage into
+ * a long, so an update is a single compare-and-set that keeps the larger
+ * value: ticks arriving out of order or from an earlier attempt are
+ * absorbed, and however many arrive, only the latest survives. Only the
+ * first tick of an attempt is reported to the caller, which persists the
+ * QUEUED to PROCESSING transition once.
+ * <p>
+ * With {@code app.progress.mirror=redis} slots that moved are copied to
+ * Redis every flush interval, and replicas that have not seen a job's ticks
+ * read it from there.
+ */
+@Slf4j
+@Component
+public class ProgressTracker {
+
+    private final ConcurrentHashMap<UUID, Slot> slots = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final RedisProgressMirror mirror;
+
+    public ProgressTracker(@Value("${app.progress.ttl-ms:3600000}") long ttlMillis,
+                           ObjectProvider<RedisProgressMirror> mirror) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.mirror = mirror.getIfAvailable();
+    }
+
+    /** Returns true for the first tick of this attempt of the job. */
+    public boolean update(UUID jobId, int attempt, int percent) {
+        long value = pack(attempt, Math.max(0, Math.min(100, percent)));
+        Slot slot = slots.get(jobId);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(jobId, id -> new Slot());
+        }
+        long previous = slot.getAndAccumulate(value, Math::max);
+        slot.touchedAt = System.nanoTime();
+        if (mirror != null && value > previous) {
+            slot.dirty = true;
+        }
+        return attemptOf(previous) < attempt;
+    }
+
+    /** Drops a job once it stops running: finished, failed, queued for another attempt or deleted. */
+    public void remove(UUID jobId) {
+        if (slots.remove(jobId) != null && mirror != null) {
+            mirror.remove(jobId);
+        }
+    }
+
+    /**
+     * Sets {@link Job#getProgress()} for display: 100 for completed jobs, the
+     * latest tick of the current attempt for running ones, else the share of
+     * finished segments for segmented jobs.
+     */
+    public void fill(Job job) {
+        fill(List.of(job));
+    }
+
+    public void fill(List<Job> jobs) {
+        try {
+            fillFromSlots(jobs);
+        } catch (RuntimeException e) {
+            // Progress is cosmetic; a failed lookup must not fail the read it decorates
+            log.warn("Could not fill progress for {} jobs", jobs.size(), e);
+        }
+    }
+
+    private void fillFromSlots(List<Job> jobs) {
+        List<Job> missing = new ArrayList<>();
+        for (Job job : jobs) {
+            if (job.getStatus() == JobStatus.COMPLETED) {
+                job.setProgress(100);
+            } else if (isRunning(job)) {
+                Slot slot = slots.get(job.getId());
+                if (slot != null) {
+                    job.setProgress(percentOf(job, slot.get()));
+                } else {
+                    missing.add(job);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<UUID, Long> mirrored = mirror != null ? mirrored(missing.stream().map(Job::getId).toList()) : Map.of();
+        for (Job job : missing) {
+            Long value = mirrored.get(job.getId());
+            job.setProgress(value != null ? percentOf(job, value) : segmentProgress(job));
+        }
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    private Map<UUID, Long> mirrored(List<UUID> jobIds) {
+        try {
+            return mirror.getAll(jobIds);
+        } catch (RuntimeException e) {
+            // Jobs ticking on this replica still get theirs
+            log.warn("Could not read mirrored progress for {} jobs", jobIds.size(), e);
+            return Map.of();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.progress.mirror-interval-ms:500}")
+    public void flush() {
+        if (mirror == null) {
+            return;
+        }
+        Map<UUID, Long> moved = new HashMap<>();
+        slots.forEach((jobId, slot) -> {
+            if (slot.dirty) {
+                // Cleared before reading, so a tick landing in between marks it again
+                slot.dirty = false;
+                moved.put(jobId, slot.get());
+            }
+        });
+        if (moved.isEmpty()) {
+            return;
+        }
+        try {
+            mirror.putAll(moved);
+        } catch (RuntimeException e) {
+            log.warn("Could not mirror progress of {} jobs", moved.size(), e);
+            moved.keySet().forEach(jobId -> {
+                Slot slot = slots.get(jobId);
+                if (slot != null) {
+                    slot.dirty = true;
+                }
+            });
+        }
+    }
+
+    // Slots of jobs whose worker died without a callback; the job itself is recovered by the retry path
+    @Scheduled(fixedDelayString = "${app.progress.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.nanoTime();
+        slots.entrySet().removeIf(entry -> now - entry.getValue().touchedAt >= ttlNanos);
+    }
+
+    private static boolean isRunning(Job job) {
+        return job.getStatus() == JobStatus.QUEUED || job.getStatus() == JobStatus.PROCESSING;
+    }
+
+    private static Integer percentOf(Job job, long value) {
+        int attempt = job.getAttempts() != null ? job.getAttempts() : 1;
+        // A tick from an earlier attempt says nothing about this one
+        if (attemptOf(value) != attempt) {
+            return segmentProgress(job);
+        }
+        return (int) value;
+    }
+
+    private static Integer segmentProgress(Job job) {
+        if (job.getSegmentCount() == null || job.getSegmentCount() == 0 || job.getSegmentsCompleted() == null) {
+            return null;
+        }
+        return job.getSegmentsCompleted() * 100 / job.getSegmentCount();
+    }
+
+    // Attempt in the high half, so comparing packed values compares attempts first
+    static long pack(int attempt, int percent) {
+        return (long) attempt << 32 | percent;
+    }
+
+    static int attemptOf(long value) {
+        return (int) (value >>> 32);
+    }
+
+    private static final class Slot extends AtomicLong {
+        volatile long touchedAt = System.nanoTime();
+        volatile boolean dirty;
+    }
+}
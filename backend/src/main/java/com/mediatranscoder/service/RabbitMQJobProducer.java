@@ -1,37 +1,140 @@
 package com.mediatranscoder.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediatranscoder.config.RabbitConfig;
+import com.mediatranscoder.messaging.ConfirmedPublisher;
+import com.mediatranscoder.messaging.JobMessage;
+import com.mediatranscoder.messaging.JobMessageBatcher;
+import com.mediatranscoder.messaging.JobMessageCodec;
 import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobSegment;
+import com.mediatranscoder.model.MediaInfo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.core.Message;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 public class RabbitMQJobProducer {
-    private final RabbitTemplate rabbitTemplate;
-    private final ObjectMapper objectMapper;
+    public static final String ATTEMPT_HEADER = "x-attempt";
+    public static final String MAX_ATTEMPTS_HEADER = "x-max-attempts";
+    public static final String FAILURE_REASON_HEADER = "x-failure-reason";
+
+    private final ConfirmedPublisher confirmedPublisher;
+    private final JobMessageCodec jobMessageCodec;
 
     @Value("${app.rabbitmq.queue:media_jobs}")
     private String queueName;
 
-    public void sendJob(Job job, String inputUrl) {
+    @Value("${app.rabbitmq.encoding:json}")
+    private JobMessageCodec.Encoding encoding;
+
+    @Value("${app.worker.callback-url:http://backend:8080/api/v1/jobs/worker-callback}")
+    private String callbackUrl;
+
+    @Value("${app.rabbitmq.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${app.rabbitmq.batch.max-jobs:16}")
+    private int batchMaxJobs;
+
+    @Value("${app.rabbitmq.batch.max-bytes:16777216}")
+    private long batchMaxBytes;
+
+    @Value("${app.rabbitmq.batch.linger-ms:50}")
+    private long batchLingerMs;
+
+    // Larger images take long enough on their own that per-message overhead stops mattering
+    @Value("${app.rabbitmq.batch.max-job-bytes:2097152}")
+    private long batchMaxJobBytes;
+
+    // One entry per retry; a job runs at most once more than there are delays
+    @Value("${app.rabbitmq.retry.delays-ms:5000,30000,120000}")
+    private long[] retryDelaysMs;
+
+    private JobMessageBatcher batcher;
+
+    @PostConstruct
+    void init() {
+        if (batchEnabled) {
+            batcher = new JobMessageBatcher(batchMaxJobs, batchMaxBytes, batchLingerMs, callbackUrl, this::publish);
+        }
+    }
+
+    public CompletableFuture<Void> sendJob(Job job, String inputUrl) {
+        JobMessage message = JobMessage.of(job, inputUrl, callbackUrl);
+        if (batcher != null && isBatchable(job)) {
+            return batcher.add(message, job.getOriginalFileSize());
+        }
+        return publish(message);
+    }
+
+    public CompletableFuture<Void> sendSegment(Job job, JobSegment segment, String inputUrl) {
+        return publish(JobMessage.segment(job, inputUrl, callbackUrl, segment));
+    }
+
+    public CompletableFuture<Void> sendStitch(Job job, String inputUrl, List<String> segmentUrls) {
+        return publish(JobMessage.stitch(job, inputUrl, callbackUrl, segmentUrls));
+    }
+
+    public int maxAttempts() {
+        return retryDelaysMs.length + 1;
+    }
+
+    /**
+     * Publishes the {@code attempt}-th run of a job into its delay queue; the
+     * broker moves it onto the job queue when the delay's TTL expires.
+     */
+    public CompletableFuture<Void> sendRetry(Job job, String inputUrl, int attempt) {
+        JobMessage message = JobMessage.of(job, inputUrl, callbackUrl);
+        return publish(RabbitConfig.retryQueueName(queueName, attempt), message, attempt, null);
+    }
+
+    /** Parks a job that will not be retried on the dead-letter queue, where admins can inspect and replay it. */
+    public CompletableFuture<Void> sendDeadLetter(Job job, String inputUrl, int attempts, String reason) {
+        JobMessage message = JobMessage.of(job, inputUrl, callbackUrl);
+        return publish(RabbitConfig.deadLetterQueueName(queueName), message, attempts, reason);
+    }
+
+    private boolean isBatchable(Job job) {
+        MediaInfo media = job.getMediaInfo();
+        // Batch entries share the batch's encoder settings, so per-job searched quality cannot ride along
+        return job.getRenditions().isEmpty() && job.getQualityParam() == null
+                && media != null && media.getType() == MediaInfo.Type.IMAGE
+                && job.getOriginalFileSize() != null && job.getOriginalFileSize() <= batchMaxJobBytes;
+    }
+
+    private CompletableFuture<Void> publish(JobMessage message) {
         try {
-            Map<String, Object> message = new HashMap<>();
-            message.put("id", job.getId().toString());
-            message.put("input_url", inputUrl);
-            message.put("output_format", job.getOutputFormat());
-            message.put("output_quality", job.getOutputQuality());
-            message.put("settings", job.getSettings());
-            message.put("callback_url", "http://backend:8080/api/v1/jobs/worker-callback"); // adjust as needed
-            String json = objectMapper.writeValueAsString(message);
-            rabbitTemplate.convertAndSend(queueName, json);
+            return confirmedPublisher.publish(queueName, jobMessageCodec.toAmqpMessage(message, encoding));
         } catch (Exception e) {
             throw new RuntimeException("Failed to send job to RabbitMQ", e);
         }
     }
-} 
\ No newline at end of file
+
+    private CompletableFuture<Void> publish(String routingKey, JobMessage message, int attempt, String failureReason) {
+        try {
+            Message amqpMessage = jobMessageCodec.toAmqpMessage(message, encoding);
+            amqpMessage.getMessageProperties().setHeader(ATTEMPT_HEADER, attempt);
+            amqpMessage.getMessageProperties().setHeader(MAX_ATTEMPTS_HEADER, maxAttempts());
+            if (failureReason != null) {
+                amqpMessage.getMessageProperties().setHeader(FAILURE_REASON_HEADER, failureReason);
+            }
+            return confirmedPublisher.publish(routingKey, amqpMessage);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to send job to RabbitMQ", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+    }
+}
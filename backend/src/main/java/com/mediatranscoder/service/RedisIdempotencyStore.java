@@ -0,0 +1,52 @@
+package com.mediatranscoder.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/** Shared store for multiple replicas; expiry is left to Redis key TTLs. */
+@Service
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "redis")
+public class RedisIdempotencyStore implements IdempotencyStore {
+
+    private final StringRedisTemplate redisTemplate;
+    private final String prefix;
+
+    public RedisIdempotencyStore(StringRedisTemplate redisTemplate,
+                                 @Value("${app.idempotency.redis-prefix:idempotency:}") String prefix) {
+        this.redisTemplate = redisTemplate;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public String putIfAbsent(String key, String value, Duration ttl) {
+        while (true) {
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(prefix + key, value, ttl))) {
+                return null;
+            }
+            String current = redisTemplate.opsForValue().get(prefix + key);
+            if (current != null) {
+                return current;
+            }
+            // Expired between the two calls; claim it again
+        }
+    }
+
+    @Override
+    public void put(String key, String value, Duration ttl) {
+        redisTemplate.opsForValue().set(prefix + key, value, ttl);
+    }
+
+    @Override
+    public String get(String key) {
+        return redisTemplate.opsForValue().get(prefix + key);
+    }
+
+    @Override
+    public void remove(String key) {
+        redisTemplate.delete(prefix + key);
+    }
+}
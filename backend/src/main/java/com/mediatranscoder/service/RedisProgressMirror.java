@@ -0,0 +1,66 @@
+package com.mediatranscoder.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Copies {@link ProgressTracker}'s values to Redis so every replica can serve
+ * progress reported to any of them. Values are the tracker's packed longs;
+ * keys expire on their own if a job never reaches a terminal state.
+ */
+@Service
+@ConditionalOnProperty(name = "app.progress.mirror", havingValue = "redis")
+public class RedisProgressMirror {
+
+    private final StringRedisTemplate redisTemplate;
+    private final String prefix;
+    private final Duration ttl;
+
+    public RedisProgressMirror(StringRedisTemplate redisTemplate,
+                               @Value("${app.progress.redis-prefix:progress:}") String prefix,
+                               @Value("${app.progress.ttl-ms:3600000}") long ttlMillis) {
+        this.redisTemplate = redisTemplate;
+        this.prefix = prefix;
+        this.ttl = Duration.ofMillis(ttlMillis);
+    }
+
+    // One round trip per flush however many jobs moved
+    public void putAll(Map<UUID, Long> values) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            // StringRedisTemplate hands callbacks a string connection
+            StringRedisConnection strings = (StringRedisConnection) connection;
+            values.forEach((jobId, value) -> strings.pSetEx(prefix + jobId, ttl.toMillis(), value.toString()));
+            return null;
+        });
+    }
+
+    public Map<UUID, Long> getAll(List<UUID> jobIds) {
+        List<String> keys = new ArrayList<>(jobIds.size());
+        for (UUID jobId : jobIds) {
+            keys.add(prefix + jobId);
+        }
+        List<String> values = redisTemplate.opsForValue().multiGet(keys);
+        Map<UUID, Long> found = new HashMap<>();
+        for (int i = 0; values != null && i < values.size(); i++) {
+            if (values.get(i) != null) {
+                found.put(jobIds.get(i), Long.parseLong(values.get(i)));
+            }
+        }
+        return found;
+    }
+
+    public void remove(UUID jobId) {
+        redisTemplate.delete(prefix + jobId);
+    }
+}
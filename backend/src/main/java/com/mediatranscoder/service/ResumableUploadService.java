@@ -0,0 +1,278 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.UploadChunk;
+import com.mediatranscoder.model.UploadProgress;
+import com.mediatranscoder.model.UploadSession;
+import com.mediatranscoder.repository.UploadChunkRepository;
+import com.mediatranscoder.repository.UploadSessionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Resumable uploads: a session fixes the total size and chunk size, chunks are
+ * PUT by offset in any order (and in parallel) and each one is streamed
+ * straight to storage as its own part. Completing the session composes the
+ * parts server-side into the original and queues the job.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ResumableUploadService {
+
+    private final UploadSessionRepository sessionRepository;
+    private final UploadChunkRepository chunkRepository;
+    private final FileStorageService fileStorageService;
+    private final JobService jobService;
+
+    @Value("${app.upload.chunk-size:8388608}")
+    private long chunkSize;
+
+    @Value("${app.upload.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    public UploadSession createSession(String originalFilename, String contentType, long totalSize,
+                                       String outputFormat, String outputQuality, Map<String, String> settings) {
+        if (totalSize <= 0) {
+            throw new IllegalArgumentException("totalSize must be positive");
+        }
+        UploadSession session = new UploadSession();
+        session.setOriginalFilename(originalFilename);
+        session.setContentType(contentType);
+        session.setTotalSize(totalSize);
+        session.setChunkSize(chunkSize);
+        session.setOutputFormat(outputFormat);
+        session.setOutputQuality(outputQuality);
+        if (settings != null) {
+            session.setSettings(settings);
+        }
+        session.setLastActivityAt(LocalDateTime.now());
+        session = sessionRepository.save(session);
+        log.info("Created upload session {} for {} ({} bytes, {} chunks)",
+                session.getId(), originalFilename, totalSize, session.getChunkCount());
+        return session;
+    }
+
+    public UploadProgress writeChunk(UUID sessionId, long offset, long length, InputStream content) throws IOException {
+        UploadSession session = getSession(sessionId);
+        if (session.getStatus() != UploadSession.Status.ACTIVE) {
+            throw new IllegalStateException("Upload session " + sessionId + " is already complete");
+        }
+        if (offset < 0 || offset >= session.getTotalSize() || offset % session.getChunkSize() != 0) {
+            throw new IllegalArgumentException("Offset must be a chunk boundary within the upload");
+        }
+        int index = (int) (offset / session.getChunkSize());
+        long expected = Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+        if (length >= 0 && length != expected) {
+            throw new IllegalArgumentException("Chunk " + index + " must be " + expected + " bytes");
+        }
+        // Bumped before the transfer, so a slow chunk cannot leave the session looking idle to the purge
+        sessionRepository.touch(sessionId, LocalDateTime.now());
+
+        // Each attempt lands under its own key, so a failed or truncated re-send never touches a recorded part
+        String partKey = partKey(sessionId, index);
+        String attemptKey = partKey + ".attempt-" + UUID.randomUUID();
+        CountingInputStream counted = new CountingInputStream(content);
+        try {
+            fileStorageService.storePart(attemptKey, counted, session.getContentType());
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(attemptKey);
+            throw e;
+        }
+        if (counted.count != expected) {
+            // Connection dropped mid-chunk; the client simply re-sends this offset
+            deleteQuietly(attemptKey);
+            throw new IOException("Chunk " + index + " truncated: received " + counted.count + " of " + expected + " bytes");
+        }
+
+        if (chunkRepository.existsBySessionIdAndChunkIndex(sessionId, index)) {
+            // A re-send of a recorded chunk; the part it recorded stays
+            deleteQuietly(attemptKey);
+            return toProgress(session);
+        }
+        fileStorageService.move(attemptKey, partKey);
+        UploadChunk chunk = new UploadChunk();
+        chunk.setSessionId(sessionId);
+        chunk.setChunkIndex(index);
+        chunk.setSize(expected);
+        try {
+            chunkRepository.save(chunk);
+        } catch (DataIntegrityViolationException e) {
+            // The same chunk was retried in parallel; the part object is identical either way
+            log.debug("Chunk {} of session {} already recorded", index, sessionId);
+        }
+        return toProgress(session);
+    }
+
+    public UploadProgress getProgress(UUID sessionId) {
+        return toProgress(getSession(sessionId));
+    }
+
+    /**
+     * Composes the parts and queues the job. The session is claimed with a
+     * conditional update first, so concurrent calls cannot each compose an
+     * object and create a job; the losers get the winner's job once it is
+     * recorded, or a conflict while it is still in progress.
+     */
+    public Job complete(UUID sessionId) throws IOException {
+        UploadSession session = getSession(sessionId);
+        if (session.getStatus() == UploadSession.Status.COMPLETED) {
+            return jobService.getJob(session.getJobId());
+        }
+        List<Integer> received = chunkRepository.findChunkIndexes(sessionId);
+        if (received.size() != session.getChunkCount()) {
+            throw new IllegalStateException("Upload incomplete: " + (session.getChunkCount() - received.size())
+                    + " of " + session.getChunkCount() + " chunks missing");
+        }
+        sessionRepository.touch(sessionId, LocalDateTime.now());
+        if (sessionRepository.transition(sessionId, UploadSession.Status.ACTIVE, UploadSession.Status.COMPLETING) == 0) {
+            UploadSession current = getSession(sessionId);
+            if (current.getStatus() == UploadSession.Status.COMPLETED) {
+                return jobService.getJob(current.getJobId());
+            }
+            throw new IllegalStateException("Upload session " + sessionId + " is already being completed");
+        }
+        try {
+            return completeClaimed(session);
+        } catch (IOException | RuntimeException e) {
+            // Hands the session back so the client can retry
+            sessionRepository.transition(sessionId, UploadSession.Status.COMPLETING, UploadSession.Status.ACTIVE);
+            throw e;
+        }
+    }
+
+    private Job completeClaimed(UploadSession session) throws IOException {
+        UUID sessionId = session.getId();
+        List<String> partKeys = new ArrayList<>(session.getChunkCount());
+        for (int i = 0; i < session.getChunkCount(); i++) {
+            partKeys.add(partKey(sessionId, i));
+        }
+        String fileKey = fileStorageService.compose(partKeys, session.getOriginalFilename(), session.getContentType());
+        Job job;
+        try {
+            job = jobService.createJobForStoredFile(session.getOriginalFilename(), fileKey,
+                    session.getOutputFormat(), session.getOutputQuality(), session.getSettings());
+        } catch (UnsupportedMediaException e) {
+            // Nothing will ever reference the assembled object; the parts go with the session
+            fileStorageService.deleteFile(fileKey);
+            throw e;
+        }
+
+        session.setStatus(UploadSession.Status.COMPLETED);
+        session.setJobId(job.getId());
+        sessionRepository.save(session);
+        deleteParts(session);
+        log.info("Completed upload session {} as job {}", sessionId, job.getId());
+        return job;
+    }
+
+    /**
+     * Discards sessions that have seen no chunk or complete call for the TTL.
+     * Sessions still receiving chunks or being completed have recent activity
+     * and are left alone, however long ago they were created.
+     */
+    @Scheduled(fixedDelayString = "${app.upload.cleanup-interval-ms:3600000}")
+    public void purgeExpiredSessions() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(sessionTtlHours);
+        List<UploadSession> expired = sessionRepository.findIdleSince(cutoff);
+        for (UploadSession session : expired) {
+            // A session idle in COMPLETING this long belonged to an instance that died mid-way
+            if (session.getStatus() != UploadSession.Status.COMPLETED) {
+                log.info("Discarding abandoned upload session {}", session.getId());
+                deleteParts(session);
+            }
+            sessionRepository.delete(session);
+        }
+    }
+
+    private UploadProgress toProgress(UploadSession session) {
+        List<Integer> received = chunkRepository.findChunkIndexes(session.getId());
+        List<UploadProgress.ByteRange> ranges = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        long receivedBytes = 0;
+        int next = 0;
+        for (int index : received) {
+            for (; next < index; next++) {
+                missing.add(next);
+            }
+            long start = index * session.getChunkSize();
+            long end = Math.min(start + session.getChunkSize(), session.getTotalSize());
+            receivedBytes += end - start;
+            UploadProgress.ByteRange last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last.getEnd() == start) {
+                last.setEnd(end);
+            } else {
+                ranges.add(new UploadProgress.ByteRange(start, end));
+            }
+            next = index + 1;
+        }
+        for (; next < session.getChunkCount(); next++) {
+            missing.add(next);
+        }
+        return new UploadProgress(session.getId(), session.getTotalSize(), session.getChunkSize(), receivedBytes,
+                ranges, missing, session.getStatus(), session.getJobId());
+    }
+
+    private void deleteParts(UploadSession session) {
+        for (int index : chunkRepository.findChunkIndexes(session.getId())) {
+            deleteQuietly(partKey(session.getId(), index));
+        }
+        chunkRepository.deleteBySessionId(session.getId());
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            fileStorageService.deleteFile(key);
+        } catch (Exception e) {
+            log.warn("Failed to delete upload part {}", key, e);
+        }
+    }
+
+    private UploadSession getSession(UUID sessionId) {
+        return sessionRepository.findById(sessionId)
+                .orElseThrow(UploadSessionNotFoundException::new);
+    }
+
+    private static String partKey(UUID sessionId, int index) {
+        return "uploads/" + sessionId + "/part-" + String.format("%06d", index);
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.RetentionReport;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Enforces job retention a month at a time: expired partitions are detached
+ * (so they vanish from every query at once), then drained in small batches
+ * that delete the originals and outputs they reference before the rows, and
+ * finally dropped. Work left over from an interrupted run is picked up from
+ * the detached tables on the next one.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RetentionPurger {
+
+    private final JobPartitionManager partitionManager;
+    private final FileStorageService fileStorageService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.retention.days:90}")
+    private int retentionDays;
+
+    @Value("${app.retention.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.retention.blobs-per-second:200}")
+    private int blobsPerSecond;
+
+    private volatile RetentionReport lastReport;
+
+    @Scheduled(cron = "${app.retention.cron:0 30 3 * * *}")
+    public void scheduledPurge() {
+        if (enabled && partitionManager.isActive()) {
+            purge();
+        }
+    }
+
+    public synchronized RetentionReport purge() {
+        RetentionReport report = new RetentionReport();
+        report.setStartedAt(Instant.now());
+        // Whole partitions only, so a job lives between retention-days and one month longer
+        report.setCutoff(LocalDate.now().minusDays(retentionDays));
+
+        partitionManager.detachExpired(report.getCutoff());
+        for (String partition : partitionManager.detachedPartitions()) {
+            try {
+                drain(partition, report);
+            } catch (IOException | RuntimeException e) {
+                log.error("Retention stopped on {}; it stays detached and is retried next run", partition, e);
+            }
+        }
+
+        report.setFinishedAt(Instant.now());
+        lastReport = report;
+        log.info("Retention run reclaimed {} partitions, {} jobs, {} blobs ({} missing, {} failed), {} table bytes",
+                report.getPartitionsDropped().size(), report.getJobsPurged(), report.getBlobsDeleted(),
+                report.getBlobsMissing(), report.getBlobFailures(), report.getTableBytesReclaimed());
+        return report;
+    }
+
+    public RetentionReport getLastReport() {
+        return lastReport;
+    }
+
+    private void drain(String partition, RetentionReport report) throws IOException {
+        Long tableBytes = jdbcTemplate.queryForObject("SELECT pg_total_relation_size(?::regclass)", Long.class, partition);
+        while (true) {
+            List<UUID> ids = new ArrayList<>();
+            List<String> keys = new ArrayList<>();
+            List<String> originals = new ArrayList<>();
+            jdbcTemplate.query("SELECT id, original_file_key, processed_file_key FROM " + partition + " LIMIT ?", rs -> {
+                ids.add(rs.getObject(1, UUID.class));
+                keys.add(rs.getString(2));
+                originals.add(rs.getString(2));
+                if (rs.getString(3) != null) {
+                    keys.add(rs.getString(3));
+                }
+            }, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            keys.addAll(jdbcTemplate.queryForList(
+                    "SELECT DISTINCT processed_file_key FROM job_renditions WHERE job_id = ANY(?) AND processed_file_key IS NOT NULL",
+                    String.class, (Object) ids.toArray(new UUID[0])));
+            keys.addAll(jdbcTemplate.queryForList(
+                    "SELECT processed_file_key FROM job_segments WHERE job_id = ANY(?) AND processed_file_key IS NOT NULL",
+                    String.class, (Object) ids.toArray(new UUID[0])));
+            keys.addAll(jdbcTemplate.queryForList(
+                    "SELECT file_key FROM rendered_variants WHERE job_id = ANY(?)",
+                    String.class, (Object) ids.toArray(new UUID[0])));
+            // Jobs reprocessed from these originals may sit in newer partitions and still use them
+            Set<String> shared = new HashSet<>();
+            jdbcTemplate.query("SELECT original_file_key, processed_file_key FROM jobs WHERE original_file_key = ANY(?) AND id <> ALL(?)",
+                    rs -> {
+                        shared.add(rs.getString(1));
+                        shared.add(rs.getString(2));
+                    }, (Object) originals.toArray(new String[0]), (Object) ids.toArray(new UUID[0]));
+            List<String> distinctKeys = keys.stream().distinct().filter(key -> !shared.contains(key)).toList();
+
+            long started = System.nanoTime();
+            int deleted;
+            try {
+                deleted = fileStorageService.deleteFiles(distinctKeys);
+            } catch (IOException e) {
+                // Rows stay put so their blobs are not orphaned
+                report.setBlobFailures(report.getBlobFailures() + distinctKeys.size());
+                throw e;
+            }
+            report.setBlobsDeleted(report.getBlobsDeleted() + deleted);
+            report.setBlobsMissing(report.getBlobsMissing() + distinctKeys.size() - deleted);
+
+            transactionTemplate.executeWithoutResult(status -> {
+                UUID[] batch = ids.toArray(new UUID[0]);
+                jdbcTemplate.update("DELETE FROM job_settings WHERE job_id = ANY(?)", (Object) batch);
+                jdbcTemplate.update("DELETE FROM job_renditions WHERE job_id = ANY(?)", (Object) batch);
+                jdbcTemplate.update("DELETE FROM job_segments WHERE job_id = ANY(?)", (Object) batch);
+                jdbcTemplate.update("DELETE FROM rendered_variants WHERE job_id = ANY(?)", (Object) batch);
+                jdbcTemplate.update("DELETE FROM " + partition + " WHERE id = ANY(?)", (Object) batch);
+            });
+            report.setJobsPurged(report.getJobsPurged() + ids.size());
+            throttle(distinctKeys.size(), started);
+        }
+        jdbcTemplate.execute("DROP TABLE " + partition);
+        report.getPartitionsDropped().add(partition);
+        report.setTableBytesReclaimed(report.getTableBytesReclaimed() + (tableBytes != null ? tableBytes : 0));
+        log.info("Dropped job partition {}", partition);
+    }
+
+    // Spreads storage deletes out so a large backlog does not trip bucket rate limits
+    private void throttle(int blobs, long startedNanos) {
+        long minNanos = blobs * 1_000_000_000L / Math.max(1, blobsPerSecond);
+        long remaining = minNanos - (System.nanoTime() - startedNanos);
+        if (remaining > 0) {
+            try {
+                Thread.sleep(remaining / 1_000_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
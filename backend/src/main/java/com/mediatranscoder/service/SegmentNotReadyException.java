@@ -0,0 +1,9 @@
+package com.mediatranscoder.service;
+
+/** A segment result arrived before its segment row was visible; controllers answer 503 so the worker retries. */
+public class SegmentNotReadyException extends RuntimeException {
+
+    public SegmentNotReadyException() {
+        super("Segment not recorded yet");
+    }
+}
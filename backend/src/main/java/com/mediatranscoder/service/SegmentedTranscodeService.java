@@ -0,0 +1,257 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobSegment;
+import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.model.MediaInfo;
+import com.mediatranscoder.repository.JobRepository;
+import com.mediatranscoder.repository.JobSegmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Fans a long video job out into time-range segments that any idle worker can
+ * take, then fans back in with a single stitch step. Segments carry only the
+ * video track: each is re-encoded from an accurate seek, so it starts on its
+ * own keyframe and the stitch can concatenate them by stream copy, muxing the
+ * original's audio in one piece so no seams are audible.
+ * <p>
+ * Progress is an atomic counter on the job row; whichever segment callback
+ * brings it to {@code segmentCount} publishes the stitch. Failed segments are
+ * republished on their own up to {@code max-attempts} before the job fails.
+ */
+@Slf4j
+@Service
+public class SegmentedTranscodeService {
+
+    // Containers the worker can concatenate by stream copy
+    private static final Set<String> SEGMENTABLE_FORMATS = Set.of("mp4", "mov", "mkv", "webm");
+
+    private final JobRepository jobRepository;
+    private final JobSegmentRepository jobSegmentRepository;
+    private final FileStorageService fileStorageService;
+    private final RabbitMQJobProducer rabbitMQJobProducer;
+    private final boolean enabled;
+    private final long minDurationMs;
+    private final long segmentMs;
+    private final int maxSegments;
+    private final int maxAttempts;
+
+    public SegmentedTranscodeService(JobRepository jobRepository,
+                                     JobSegmentRepository jobSegmentRepository,
+                                     FileStorageService fileStorageService,
+                                     RabbitMQJobProducer rabbitMQJobProducer,
+                                     @Value("${app.segmenting.enabled:false}") boolean enabled,
+                                     @Value("${app.segmenting.min-duration-seconds:120}") long minDurationSeconds,
+                                     @Value("${app.segmenting.segment-seconds:60}") long segmentSeconds,
+                                     @Value("${app.segmenting.max-segments:64}") int maxSegments,
+                                     @Value("${app.segmenting.max-attempts:3}") int maxAttempts) {
+        this.jobRepository = jobRepository;
+        this.jobSegmentRepository = jobSegmentRepository;
+        this.fileStorageService = fileStorageService;
+        this.rabbitMQJobProducer = rabbitMQJobProducer;
+        this.enabled = enabled;
+        this.minDurationMs = minDurationSeconds * 1000;
+        this.segmentMs = segmentSeconds * 1000;
+        this.maxSegments = maxSegments;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public boolean shouldSegment(Job job) {
+        MediaInfo media = job.getMediaInfo();
+        return enabled
+                && job.getRenditions().isEmpty()
+                && media != null && media.getType() == MediaInfo.Type.VIDEO
+                && media.getDurationMs() != null && media.getDurationMs() >= minDurationMs
+                && SEGMENTABLE_FORMATS.contains(job.getOutputFormat().toLowerCase());
+    }
+
+    /**
+     * Splits a saved, managed job into segments and publishes them all. Runs
+     * inside the caller's transaction, which persists the segment count; the
+     * segments are published only once it commits, so no result can arrive
+     * for a segment row that is not there yet.
+     */
+    public void fanOut(Job job) {
+        List<JobSegment> segments = plan(job.getId(), job.getMediaInfo().getDurationMs());
+        job.setSegmentCount(segments.size());
+        job.setSegmentsCompleted(0);
+        jobRepository.save(job);
+        segments = jobSegmentRepository.saveAll(segments);
+        log.info("Split job {} into {} segments", job.getId(), segments.size());
+
+        String inputUrl = fileStorageService.getFileUrl(job.getOriginalFileKey());
+        for (JobSegment segment : segments) {
+            publish(job, segment, inputUrl);
+        }
+    }
+
+    /** Even ranges of roughly {@code segmentMs}, fewer and longer if that would exceed {@code maxSegments}. */
+    List<JobSegment> plan(UUID jobId, long durationMs) {
+        int count = (int) Math.min(maxSegments, Math.max(1, Math.round((double) durationMs / segmentMs)));
+        List<JobSegment> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            JobSegment segment = new JobSegment();
+            segment.setJobId(jobId);
+            segment.setSegmentIndex(i);
+            segment.setStartMs(durationMs * i / count);
+            segment.setEndMs(durationMs * (i + 1) / count);
+            segments.add(segment);
+        }
+        return segments;
+    }
+
+    @Transactional
+    public void applySegmentResult(UUID jobId, int segmentIndex, String status, String processedFileKey,
+                                   String errorMessage, Long processingMs) {
+        JobSegment segment = jobSegmentRepository.findByJobIdAndSegmentIndex(jobId, segmentIndex).orElse(null);
+        if (segment == null) {
+            Job job = jobRepository.findById(jobId).orElse(null);
+            if (job != null && (job.getStatus() == JobStatus.QUEUED || job.getStatus() == JobStatus.PROCESSING)) {
+                // The fan-out that wrote the row may not have committed yet; the worker retries on 503
+                throw new SegmentNotReadyException();
+            }
+            log.warn("Ignoring result for unknown segment {} of job {}", segmentIndex, jobId);
+            return;
+        }
+        if ("completed".equals(status)) {
+            completeSegment(segment, processedFileKey, processingMs);
+        } else {
+            failSegment(segment, errorMessage);
+        }
+    }
+
+    private void completeSegment(JobSegment segment, String processedFileKey, Long processingMs) {
+        UUID jobId = segment.getJobId();
+        if (jobSegmentRepository.markCompleted(segment.getId(), processedFileKey) == 0) {
+            return;
+        }
+        // The bulk update bypasses the loaded entity, which the segment listing below would return as is
+        segment.setStatus(JobStatus.COMPLETED);
+        segment.setProcessedFileKey(processedFileKey);
+        segment.setErrorMessage(null);
+        if (jobRepository.recordSegmentCompleted(jobId, processingMs != null ? processingMs : 0) == 0) {
+            // The job already failed on another segment or was deleted
+            return;
+        }
+        Job job = jobRepository.findById(jobId).orElse(null);
+        Integer completed = jobRepository.findSegmentsCompleted(jobId);
+        if (job == null || completed == null || completed < job.getSegmentCount()) {
+            return;
+        }
+
+        List<String> segmentUrls = jobSegmentRepository.findByJobIdOrderBySegmentIndex(jobId).stream()
+                .map(s -> fileStorageService.getFileUrl(s.getProcessedFileKey()))
+                .toList();
+        log.info("All {} segments of job {} done; stitching", segmentUrls.size(), jobId);
+        String inputUrl = fileStorageService.getFileUrl(job.getOriginalFileKey());
+        afterCommit(() -> rabbitMQJobProducer.sendStitch(job, inputUrl, segmentUrls)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        markFailed(jobId, "Failed to enqueue stitch: " + error.getMessage());
+                    }
+                }));
+    }
+
+    private void failSegment(JobSegment segment, String errorMessage) {
+        if (segment.getStatus() == JobStatus.COMPLETED || segment.getStatus() == JobStatus.FAILED) {
+            return;
+        }
+        Job job = jobRepository.findById(segment.getJobId()).orElse(null);
+        if (job == null || job.getStatus() == JobStatus.FAILED) {
+            return;
+        }
+        segment.setErrorMessage(errorMessage);
+        if (segment.getAttempts() < maxAttempts) {
+            log.warn("Segment {} of job {} failed (attempt {}/{}), retrying",
+                    segment.getSegmentIndex(), job.getId(), segment.getAttempts(), maxAttempts);
+            publish(job, segment, fileStorageService.getFileUrl(job.getOriginalFileKey()));
+            return;
+        }
+        segment.setStatus(JobStatus.FAILED);
+        jobSegmentRepository.save(segment);
+        job.setStatus(JobStatus.FAILED);
+        job.setErrorMessage("Segment " + segment.getSegmentIndex() + " failed: " + errorMessage);
+        jobRepository.save(job);
+    }
+
+    // The segment is managed, so the attempt count is written when the transaction commits, and sent only then
+    private void publish(Job job, JobSegment segment, String inputUrl) {
+        segment.setAttempts(segment.getAttempts() + 1);
+        segment.setStatus(JobStatus.QUEUED);
+        UUID jobId = job.getId();
+        afterCommit(() -> rabbitMQJobProducer.sendSegment(job, segment, inputUrl)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        markFailed(jobId, "Failed to enqueue segment " + segment.getSegmentIndex() + ": "
+                                + error.getMessage());
+                    }
+                }));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Segment outputs are intermediate; they go once the stitched output exists.
+     * The blobs are deleted only after the caller's transaction commits, so a
+     * rollback leaves rows and blobs in place together.
+     */
+    @Transactional
+    public void cleanUp(UUID jobId) {
+        List<String> keys = removeSegments(jobId);
+        afterCommit(() -> deleteOutputs(jobId, keys));
+    }
+
+    private void deleteOutputs(UUID jobId, List<String> keys) {
+        try {
+            fileStorageService.deleteFiles(keys);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not delete segment outputs of job {}: {}", jobId, keys, e);
+        }
+    }
+
+    /** Deletes a job's segment rows and returns the outputs they pointed at, for the caller to delete. */
+    @Transactional
+    public List<String> removeSegments(UUID jobId) {
+        List<String> keys = jobSegmentRepository.findByJobIdOrderBySegmentIndex(jobId).stream()
+                .map(JobSegment::getProcessedFileKey)
+                .filter(Objects::nonNull)
+                .toList();
+        jobSegmentRepository.deleteByJobId(jobId);
+        return keys;
+    }
+
+    private void markFailed(UUID jobId, String message) {
+        // Runs on the publisher's confirm thread once all publish attempts are exhausted
+        log.error("Job {}: {}", jobId, message);
+        jobRepository.findById(jobId).ifPresent(job -> {
+            if (job.getStatus() == JobStatus.QUEUED || job.getStatus() == JobStatus.PROCESSING) {
+                job.setStatus(JobStatus.FAILED);
+                job.setErrorMessage(message);
+                jobRepository.save(job);
+            }
+        });
+    }
+}
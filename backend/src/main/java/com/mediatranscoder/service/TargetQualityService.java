@@ -0,0 +1,266 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Turns an {@code ssim:<target>} quality request into a concrete encoder
+ * setting. The original is decoded once into a small proxy, and the worker's
+ * JPEG quantiser range is binary-searched on it: each candidate is encoded in
+ * process, decoded back and scored against the proxy with SSIM. The largest
+ * quantiser (smallest output) that still reaches the target wins.
+ * <p>
+ * ffmpeg's MJPEG encoder scales its base table by {@code qscale / 8}; libjpeg
+ * scales its table by a percentage derived from quality. Candidates are
+ * encoded with the equivalent libjpeg quality, which tracks the worker's
+ * output closely but not exactly, since the two encoders start from
+ * different base tables.
+ */
+@Slf4j
+@Service
+public class TargetQualityService {
+
+    public static final String PREFIX = "ssim:";
+
+    // ffmpeg -q:v range for MJPEG; lower is better
+    static final int MIN_QSCALE = 2;
+    static final int MAX_QSCALE = 31;
+    // What the worker uses for "high"; the fallback when no search is possible
+    private static final String FALLBACK_QUALITY = "high";
+    private static final Set<String> SEARCHABLE_FORMATS = Set.of("jpg", "jpeg");
+
+    // 8x8 windows every 4 pixels, as in x264's fast SSIM
+    private static final int WINDOW = 8;
+    private static final int STRIDE = 4;
+    private static final double C1 = (0.01 * 255) * (0.01 * 255);
+    private static final double C2 = (0.03 * 255) * (0.03 * 255);
+
+    record Result(int qscale, double score, int bytes, boolean met, int encodes) {
+    }
+
+    private final int proxySize;
+
+    public TargetQualityService(@Value("${app.target-quality.proxy-size:512}") int proxySize) {
+        this.proxySize = proxySize;
+    }
+
+    /** The SSIM target of a {@code ssim:<target>} quality, or null for the fixed levels. */
+    public static Double parseTarget(String quality) {
+        if (quality == null || !quality.startsWith(PREFIX)) {
+            return null;
+        }
+        double target;
+        try {
+            target = Double.parseDouble(quality.substring(PREFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid quality target " + quality);
+        }
+        if (!(target > 0 && target < 1)) {
+            throw new IllegalArgumentException("Quality target must be between 0 and 1, exclusive");
+        }
+        return target;
+    }
+
+    /**
+     * Records the target on the job and, where the search applies, the chosen
+     * quantiser and its score. Jobs the search cannot serve fall back to the
+     * "high" level, which errs towards meeting the target.
+     */
+    public void resolve(Job job, InputStreamSource original) {
+        Double target = parseTarget(job.getOutputQuality());
+        if (target == null) {
+            return;
+        }
+        job.setQualityTarget(target);
+        if (!SEARCHABLE_FORMATS.contains(job.getOutputFormat().toLowerCase()) || !job.getRenditions().isEmpty()) {
+            fallBack(job, "target quality is only searched for single JPEG outputs");
+            return;
+        }
+        BufferedImage proxy;
+        try (InputStream in = original.getInputStream()) {
+            proxy = decodeProxy(in);
+        } catch (IOException e) {
+            log.warn("Could not read original of {} for quality search", job.getOriginalFilename(), e);
+            proxy = null;
+        }
+        if (proxy == null) {
+            fallBack(job, "original cannot be decoded in process");
+            return;
+        }
+
+        long started = System.nanoTime();
+        Result result;
+        try {
+            result = search(proxy, target);
+        } catch (IOException e) {
+            log.warn("Quality search failed for {}", job.getOriginalFilename(), e);
+            fallBack(job, "search failed");
+            return;
+        }
+        job.setQualityParam(result.qscale());
+        job.setQualityScore(result.score());
+        log.info("Quality search for {}: target {} -> q:v {} (ssim {}, {} encodes, {} ms){}",
+                job.getOriginalFilename(), target, result.qscale(), String.format("%.4f", result.score()),
+                result.encodes(), (System.nanoTime() - started) / 1_000_000,
+                result.met() ? "" : "; target unreachable, using best quality");
+    }
+
+    private void fallBack(Job job, String reason) {
+        log.info("No quality search for {} ({}); using {}", job.getOriginalFilename(), reason, FALLBACK_QUALITY);
+        job.setOutputQuality(FALLBACK_QUALITY);
+    }
+
+    // Subsampled while decoding so large originals never materialise at full size
+    BufferedImage decodeProxy(InputStream in) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = stream != null ? ImageIO.getImageReaders(stream) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                // Keeps at least twice the proxy's resolution for the filtered downscale below
+                int step = Math.max(1, Math.max(width, height) / (2 * proxySize));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                int[] size = ImageRenderService.fit(decoded.getWidth(), decoded.getHeight(), proxySize, proxySize);
+                return ImageRenderService.scale(decoded, size[0], size[1], false);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    Result search(BufferedImage proxy, double target) throws IOException {
+        int width = proxy.getWidth();
+        int height = proxy.getHeight();
+        int[] row = new int[width];
+        int[] reference = luma(proxy, row, new int[width * height]);
+        int[] candidate = new int[width * height];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try {
+            Result best = null;
+            Result closest = null;
+            int encodes = 0;
+            int lo = MIN_QSCALE;
+            int hi = MAX_QSCALE;
+            while (lo <= hi) {
+                int qscale = (lo + hi) >>> 1;
+                out.reset();
+                encode(writer, proxy, qscale, out);
+                encodes++;
+                BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+                double score = ssim(reference, luma(decoded, row, candidate), width, height);
+                Result result = new Result(qscale, score, out.size(), score >= target, encodes);
+                if (result.met()) {
+                    if (best == null || result.bytes() < best.bytes()) {
+                        best = result;
+                    }
+                    lo = qscale + 1;
+                } else {
+                    if (closest == null || score > closest.score()) {
+                        closest = result;
+                    }
+                    hi = qscale - 1;
+                }
+            }
+            Result chosen = best != null ? best : closest;
+            return new Result(chosen.qscale(), chosen.score(), chosen.bytes(), chosen.met(), encodes);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static void encode(ImageWriter writer, BufferedImage image, int qscale, ByteArrayOutputStream out)
+            throws IOException {
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality(qscale));
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+    }
+
+    /** libjpeg quality (0-1) whose table scaling matches ffmpeg's {@code qscale / 8}. */
+    static float jpegQuality(int qscale) {
+        double percent = qscale * 12.5;
+        double quality = percent <= 100 ? (200 - percent) / 2 : 5000 / percent;
+        return (float) (quality / 100);
+    }
+
+    private static int[] luma(BufferedImage image, int[] row, int[] into) {
+        int width = image.getWidth();
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                into[offset + x] = (77 * ((rgb >> 16) & 0xff) + 150 * ((rgb >> 8) & 0xff) + 29 * (rgb & 0xff)) >> 8;
+            }
+        }
+        return into;
+    }
+
+    /** Mean SSIM of two luma planes over 8x8 windows; allocates nothing. */
+    static double ssim(int[] a, int[] b, int width, int height) {
+        int windowWidth = Math.min(WINDOW, width);
+        int windowHeight = Math.min(WINDOW, height);
+        double n = windowWidth * windowHeight;
+        double total = 0;
+        int windows = 0;
+        for (int top = 0; top + windowHeight <= height; top += STRIDE) {
+            for (int left = 0; left + windowWidth <= width; left += STRIDE) {
+                long sumA = 0;
+                long sumB = 0;
+                long sumSquares = 0;
+                long sumProducts = 0;
+                for (int y = top; y < top + windowHeight; y++) {
+                    int offset = y * width;
+                    for (int x = left; x < left + windowWidth; x++) {
+                        int pa = a[offset + x];
+                        int pb = b[offset + x];
+                        sumA += pa;
+                        sumB += pb;
+                        sumSquares += pa * pa + pb * pb;
+                        sumProducts += pa * pb;
+                    }
+                }
+                double meanA = sumA / n;
+                double meanB = sumB / n;
+                // Sum of both variances, and the covariance
+                double variances = sumSquares / n - meanA * meanA - meanB * meanB;
+                double covariance = sumProducts / n - meanA * meanB;
+                total += ((2 * meanA * meanB + C1) * (2 * covariance + C2))
+                        / ((meanA * meanA + meanB * meanB + C1) * (variances + C2));
+                windows++;
+            }
+        }
+        return windows == 0 ? 1 : total / windows;
+    }
+}
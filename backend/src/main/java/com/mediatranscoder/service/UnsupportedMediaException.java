@@ -0,0 +1,9 @@
+package com.mediatranscoder.service;
+
+/** The upload is not media the pipeline can decode, or its headers are corrupt. */
+public class UnsupportedMediaException extends IllegalArgumentException {
+
+    public UnsupportedMediaException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.mediatranscoder.service;
+
+/** No resumable upload session has the requested id, e.g. it expired; controllers answer it with 404. */
+public class UploadSessionNotFoundException extends RuntimeException {
+
+    public UploadSessionNotFoundException() {
+        super("Upload session not found");
+    }
+}
@@ -0,0 +1,130 @@
+package com.mediatranscoder;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts the packaged backend repeatedly in the default and the {@code fast}
+ * mode and records, from process launch, the time to the first HTTP response
+ * and the time until readiness reports UP. Readiness needs the database,
+ * broker and storage the environment points at; without them only the first
+ * response is meaningful. Build the jar first, then run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mediatranscoder.StartupBenchmark -Dexec.args="target/media-transcoder-0.0.1-SNAPSHOT.jar 5 prod"}.
+ * Extra JVM flags, e.g. a CDS archive, can be passed in {@code -Dbenchmark.jvmArgs}.
+ * <p>
+ * No before/after figures for the fast mode have been recorded yet. The
+ * default mode cannot start without a reachable database, so measure both
+ * modes against the same database, broker and storage, and keep the results
+ * alongside the change that moves them.
+ */
+public class StartupBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+    private static final long POLL_MS = 10;
+
+    private record Run(long firstResponseMs, long readyMs) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path jar = Path.of(args.length > 0 ? args[0] : "target/media-transcoder-0.0.1-SNAPSHOT.jar");
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String baseProfiles = args.length > 2 ? args[2] : "prod";
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalArgumentException("No jar at " + jar + "; run mvn package first");
+        }
+        report("default", jar, runs, baseProfiles);
+        report("fast", jar, runs, baseProfiles + ",fast");
+    }
+
+    private static void report(String mode, Path jar, int runs, String profiles) throws Exception {
+        long[] first = new long[runs];
+        long[] ready = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            Run run = start(jar, profiles);
+            first[i] = run.firstResponseMs();
+            ready[i] = run.readyMs();
+        }
+        System.out.printf("%-8s first response: median %5d ms, min %5d ms | ready: %s%n",
+                mode, median(first), Arrays.stream(first).min().orElse(0), readiness(ready));
+    }
+
+    private static Run start(Path jar, String profiles) throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>(List.of("java"));
+        String jvmArgs = System.getProperty("benchmark.jvmArgs", "");
+        if (!jvmArgs.isBlank()) {
+            command.addAll(Arrays.asList(jvmArgs.trim().split("\\s+")));
+        }
+        command.addAll(List.of("-jar", jar.toString(), "--server.port=" + port,
+                "--spring.profiles.active=" + profiles));
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        URI liveness = URI.create("http://localhost:" + port + "/actuator/health/liveness");
+        URI readiness = URI.create("http://localhost:" + port + "/actuator/health/readiness");
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            long firstResponse = awaitStatus(client, liveness, process, started, false);
+            long ready = firstResponse < 0 ? -1 : awaitStatus(client, readiness, process, started, true);
+            return new Run(firstResponse, ready);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /** Milliseconds from launch to the first response (any status, or 200 if {@code requireOk}), or -1. */
+    private static long awaitStatus(HttpClient client, URI uri, Process process, long started, boolean requireOk)
+            throws InterruptedException {
+        long deadline = started + TIMEOUT.toNanos();
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5)).build();
+        while (System.nanoTime() < deadline && process.isAlive()) {
+            try {
+                int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (!requireOk || status == 200) {
+                    return (System.nanoTime() - started) / 1_000_000;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(POLL_MS);
+        }
+        return -1;
+    }
+
+    private static String readiness(long[] ready) {
+        long[] reached = Arrays.stream(ready).filter(ms -> ms >= 0).toArray();
+        if (reached.length == 0) {
+            return "never UP (dependencies unreachable?)";
+        }
+        return String.format("median %5d ms (%d/%d runs)", median(reached), reached.length, ready.length);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
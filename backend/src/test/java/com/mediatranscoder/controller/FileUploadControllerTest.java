@@ -3,12 +3,17 @@ package com.mediatranscoder.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mediatranscoder.model.Job;
 import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.service.JobNotFoundException;
 import com.mediatranscoder.service.JobService;
+import com.mediatranscoder.service.ResumableUploadService;
+import com.mediatranscoder.service.UploadSessionNotFoundException;
+import jakarta.servlet.ServletException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
@@ -17,9 +22,15 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(FileUploadController.class)
@@ -31,6 +42,9 @@ class FileUploadControllerTest {
     @MockBean
     private JobService jobService;
 
+    @MockBean
+    private ResumableUploadService resumableUploadService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -150,6 +164,55 @@ class FileUploadControllerTest {
             .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    void testUploadFile_MalformedRenditions() throws Exception {
+        mockMvc.perform(multipart("/api/v1/upload")
+                .file(mockFile)
+                .param("renditions", "[{\"outputFormat\":"))
+            .andExpect(status().isBadRequest());
+
+        verify(jobService, never()).createJob(any(), anyList());
+    }
+
+    @Test
+    void testFinalizeUpload_UnknownJob() throws Exception {
+        when(jobService.finalizeUpload(mockJob.getId())).thenThrow(new JobNotFoundException());
+
+        mockMvc.perform(post("/api/v1/upload/{jobId}/finalize", mockJob.getId()))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testFinalizeUpload_FailureIsNotReportedAsNotFound() {
+        when(jobService.finalizeUpload(mockJob.getId())).thenThrow(new DataAccessResourceFailureException("database down"));
+
+        // Left to the container's error handling, which answers 500
+        ServletException e = assertThrows(ServletException.class,
+            () -> mockMvc.perform(post("/api/v1/upload/{jobId}/finalize", mockJob.getId())));
+        assertInstanceOf(DataAccessResourceFailureException.class, e.getCause());
+    }
+
+    @Test
+    void testUploadChunk_UnknownSession() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        when(resumableUploadService.writeChunk(eq(sessionId), eq(0L), anyLong(), any()))
+            .thenThrow(new UploadSessionNotFoundException());
+
+        mockMvc.perform(put("/api/v1/upload/sessions/{sessionId}/chunks", sessionId)
+                .param("offset", "0")
+                .content(new byte[10]))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testCompleteUploadSession_UnknownSession() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        when(resumableUploadService.complete(sessionId)).thenThrow(new UploadSessionNotFoundException());
+
+        mockMvc.perform(post("/api/v1/upload/sessions/{sessionId}/complete", sessionId))
+            .andExpect(status().isNotFound());
+    }
+
     @Test
     void testUploadFile_WithPartialResizeSettings() throws Exception {
         // Arrange
@@ -0,0 +1,101 @@
+package com.mediatranscoder.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.service.IdempotencyService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyFilterTest {
+
+    private final IdempotencyService idempotencyService = mock(IdempotencyService.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final IdempotencyFilter filter = new IdempotencyFilter(idempotencyService, objectMapper);
+    private final AtomicInteger chainCalls = new AtomicInteger();
+
+    private Job job;
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void setUp() {
+        job = new Job();
+        job.setId(UUID.randomUUID());
+        job.setOriginalFilename("photo.jpg");
+        request = new MockHttpServletRequest("POST", "/api/v1/upload");
+        request.addHeader(IdempotencyFilter.HEADER, "abc");
+    }
+
+    @Test
+    void testRepeatedKeyReplaysJobWithoutRunningRequest() throws Exception {
+        when(idempotencyService.begin("/api/v1/upload abc")).thenReturn(job.getId());
+        when(idempotencyService.recordedJob(job.getId())).thenReturn(job);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, creating(200));
+
+        assertEquals(0, chainCalls.get());
+        assertEquals(200, response.getStatus());
+        assertEquals("true", response.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertTrue(response.getContentAsString().contains(job.getId().toString()));
+    }
+
+    @Test
+    void testFirstRequestRecordsCreatedJob() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, creating(200));
+
+        assertEquals(1, chainCalls.get());
+        assertTrue(response.getContentAsString().contains(job.getId().toString()));
+        verify(idempotencyService).complete("/api/v1/upload abc", job.getId());
+    }
+
+    @Test
+    void testFailedRequestReleasesKey() throws Exception {
+        filter.doFilter(request, new MockHttpServletResponse(), creating(500));
+
+        verify(idempotencyService).release("/api/v1/upload abc");
+        verify(idempotencyService, never()).complete(any(), any());
+    }
+
+    @Test
+    void testRequestsWithoutKeyPassThrough() throws Exception {
+        MockHttpServletRequest plain = new MockHttpServletRequest("POST", "/api/v1/upload");
+
+        filter.doFilter(plain, new MockHttpServletResponse(), creating(200));
+
+        assertEquals(1, chainCalls.get());
+        verifyNoInteractions(idempotencyService);
+    }
+
+    @Test
+    void testStillRunningDuplicateGetsConflict() throws Exception {
+        when(idempotencyService.begin("/api/v1/upload abc")).thenThrow(new IllegalStateException("in progress"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, creating(200));
+
+        assertEquals(409, response.getStatus());
+        assertEquals(0, chainCalls.get());
+    }
+
+    private FilterChain creating(int status) {
+        return (req, res) -> {
+            chainCalls.incrementAndGet();
+            ((HttpServletResponse) res).setStatus(status);
+            res.setContentType("application/json");
+            res.getOutputStream().write(objectMapper.writeValueAsBytes(job));
+        };
+    }
+}
@@ -2,22 +2,44 @@ package com.mediatranscoder.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobEta;
 import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.service.ImageRenderService;
+import com.mediatranscoder.service.JobBundleService;
+import com.mediatranscoder.service.JobEtaService;
+import com.mediatranscoder.service.JobExportService;
+import com.mediatranscoder.service.JobNotFoundException;
 import com.mediatranscoder.service.JobService;
+import com.mediatranscoder.service.ProcessedFileCache;
+import com.mediatranscoder.service.SegmentNotReadyException;
+import com.mediatranscoder.service.SegmentedTranscodeService;
+import jakarta.servlet.ServletException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -31,6 +53,24 @@ class JobControllerTest {
     @MockBean
     private JobService jobService;
 
+    @MockBean
+    private ProcessedFileCache processedFileCache;
+
+    @MockBean
+    private JobExportService jobExportService;
+
+    @MockBean
+    private JobBundleService jobBundleService;
+
+    @MockBean
+    private JobEtaService jobEtaService;
+
+    @MockBean
+    private SegmentedTranscodeService segmentedTranscodeService;
+
+    @MockBean
+    private ImageRenderService imageRenderService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -210,14 +250,253 @@ class JobControllerTest {
             .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void testExportJobs_StreamsNdjson() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 2, 1, 0, 0);
+        when(jobExportService.export(eq(from), eq(to), eq(List.of(JobStatus.COMPLETED)),
+                eq(JobExportService.Format.NDJSON), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(4);
+            out.write("{\"id\":\"1\"}\n".getBytes());
+            return 1L;
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/v1/jobs/export")
+                .param("from", "2025-01-01T00:00:00")
+                .param("to", "2025-02-01T00:00:00")
+                .param("status", "COMPLETED"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        // Exports are exempt from the async timeout other requests get
+        assertEquals(-1, result.getRequest().getAsyncContext().getTimeout());
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Type", "application/x-ndjson"))
+            .andExpect(content().string("{\"id\":\"1\"}\n"));
+    }
+
+    @Test
+    void testExportJobs_EmptyRange() throws Exception {
+        mockMvc.perform(get("/api/v1/jobs/export")
+                .param("from", "2025-02-01T00:00:00")
+                .param("to", "2025-01-01T00:00:00"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testDownloadBundle_StreamsZip() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/v1/jobs/bundle")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(jobId))))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Type", "application/zip"));
+        verify(jobBundleService).writeBundle(eq(List.of(jobId)), any());
+    }
+
+    @Test
+    void testDownloadBundle_Empty() throws Exception {
+        mockMvc.perform(post("/api/v1/jobs/bundle")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testWorkerCallback_PassesTheAttemptOn() throws Exception {
+        mockMvc.perform(post("/api/v1/jobs/worker-callback")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"job_id\":\"" + jobId + "\",\"status\":\"failed\","
+                    + "\"error_message\":\"worker died\",\"attempt\":2}"))
+            .andExpect(status().isOk());
+
+        verify(jobService).applyWorkerResult(jobId, "failed", null, "worker died", null, null, 2);
+    }
+
+    @Test
+    void testWorkerCallback_EarlySegmentResultAsksForRetry() throws Exception {
+        doThrow(new SegmentNotReadyException()).when(segmentedTranscodeService)
+            .applySegmentResult(jobId, 4, "completed", "processed/s4.mp4", null, null);
+
+        mockMvc.perform(post("/api/v1/jobs/worker-callback")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"job_id\":\"" + jobId + "\",\"status\":\"completed\","
+                    + "\"processed_file_key\":\"processed/s4.mp4\",\"segment_index\":4}"))
+            .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void testReprocessJob_Success() throws Exception {
+        Job derived = new Job();
+        derived.setId(UUID.randomUUID());
+        derived.setParentJobId(jobId);
+        derived.setOutputFormat("webp");
+        when(jobService.reprocess(jobId, "webp", "medium", null)).thenReturn(derived);
+
+        mockMvc.perform(post("/api/v1/jobs/{jobId}/reprocess", jobId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"outputFormat\":\"webp\",\"outputQuality\":\"medium\"}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.parentJobId").value(jobId.toString()))
+            .andExpect(jsonPath("$.outputFormat").value("webp"));
+    }
+
+    @Test
+    void testReprocessJob_NotFound() throws Exception {
+        when(jobService.reprocess(eq(jobId), any(), any(), any())).thenThrow(new JobNotFoundException());
+
+        mockMvc.perform(post("/api/v1/jobs/{jobId}/reprocess", jobId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"outputFormat\":\"webp\"}"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testReprocessJob_FailureIsNotReportedAsNotFound() {
+        when(jobService.reprocess(eq(jobId), any(), any(), any()))
+            .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        ServletException e = assertThrows(ServletException.class,
+            () -> mockMvc.perform(post("/api/v1/jobs/{jobId}/reprocess", jobId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"outputFormat\":\"webp\"}")));
+        assertInstanceOf(DataAccessResourceFailureException.class, e.getCause());
+    }
+
+    @Test
+    void testReprocessJobs_SkipsJobsThatFail() throws Exception {
+        UUID missing = UUID.randomUUID();
+        Job derived = new Job();
+        derived.setId(UUID.randomUUID());
+        derived.setParentJobId(jobId);
+        when(jobService.reprocess(jobId, "png", null, null)).thenReturn(derived);
+        when(jobService.reprocess(missing, "png", null, null)).thenThrow(new JobNotFoundException());
+
+        mockMvc.perform(post("/api/v1/jobs/reprocess")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"jobIds\":[\"" + jobId + "\",\"" + missing + "\"],\"outputFormat\":\"png\"}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].parentJobId").value(jobId.toString()));
+    }
+
+    @Test
+    void testReprocessJobs_FailureFailsTheRequest() {
+        when(jobService.reprocess(jobId, "png", null, null))
+            .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        ServletException e = assertThrows(ServletException.class,
+            () -> mockMvc.perform(post("/api/v1/jobs/reprocess")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"jobIds\":[\"" + jobId + "\"],\"outputFormat\":\"png\"}")));
+        assertInstanceOf(DataAccessResourceFailureException.class, e.getCause());
+    }
+
     @Test
     void testDownloadJob_Success() throws Exception {
         mockJob.setStatus(JobStatus.COMPLETED);
         mockJob.setProcessedFileKey("processed/test/output.jpg");
         when(jobService.getJob(jobId)).thenReturn(mockJob);
+        Path cached = Files.createTempFile("processed-", ".jpg");
+        Files.write(cached, "processed".getBytes());
+        when(processedFileCache.get("processed/test/output.jpg")).thenReturn(cached);
 
         mockMvc.perform(get("/api/v1/jobs/{jobId}/download", jobId))
-            .andExpect(status().isOk());
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andExpect(header().string("Cache-Control", containsString("immutable")));
+    }
+
+    @Test
+    void testDownloadJob_NotModified() throws Exception {
+        mockJob.setStatus(JobStatus.COMPLETED);
+        mockJob.setProcessedFileKey("processed/test/output.jpg");
+        when(jobService.getJob(jobId)).thenReturn(mockJob);
+        Path cached = Files.createTempFile("processed-", ".jpg");
+        when(processedFileCache.get("processed/test/output.jpg")).thenReturn(cached);
+
+        String etag = mockMvc.perform(get("/api/v1/jobs/{jobId}/download", jobId))
+            .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/v1/jobs/{jobId}/download", jobId)
+                .header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+        verify(processedFileCache, times(1)).get("processed/test/output.jpg");
+    }
+
+    @Test
+    void testRender_SnapsRequestAndRevalidates() throws Exception {
+        ImageRenderService.Variant variant = new ImageRenderService.Variant(320, 0, "jpg", "medium");
+        when(imageRenderService.render(jobId, variant))
+            .thenReturn(new ImageRenderService.Rendered("jpeg".getBytes(), "image/jpeg"));
+
+        String etag = mockMvc.perform(get("/api/v1/jobs/{jobId}/render", jobId)
+                .param("w", "300")
+                .param("q", "80"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("image/jpeg"))
+            .andExpect(header().string("Cache-Control", containsString("immutable")))
+            .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/v1/jobs/{jobId}/render", jobId)
+                .param("w", "310")
+                .header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+        verify(imageRenderService, times(1)).render(eq(jobId), any());
+    }
+
+    @Test
+    void testRender_UnsupportedFormat() throws Exception {
+        mockMvc.perform(get("/api/v1/jobs/{jobId}/render", jobId)
+                .param("fmt", "webp"))
+            .andExpect(status().isUnsupportedMediaType());
+    }
+
+    @Test
+    void testRender_UnknownJob() throws Exception {
+        when(imageRenderService.render(eq(jobId), any())).thenThrow(new JobNotFoundException());
+
+        mockMvc.perform(get("/api/v1/jobs/{jobId}/render", jobId)
+                .param("w", "320"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testRender_FailureIsNotReportedAsNotFound() throws Exception {
+        when(imageRenderService.render(eq(jobId), any())).thenThrow(new IllegalStateException("storage down"));
+
+        ServletException e = assertThrows(ServletException.class,
+            () -> mockMvc.perform(get("/api/v1/jobs/{jobId}/render", jobId).param("w", "320")));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    void testDownloadRendition_UnknownJob() throws Exception {
+        when(jobService.getJob(jobId)).thenThrow(new JobNotFoundException());
+
+        mockMvc.perform(get("/api/v1/jobs/{jobId}/renditions/0/download", jobId))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGetRenditions_UnknownJob() throws Exception {
+        when(jobService.getJob(jobId)).thenThrow(new JobNotFoundException());
+
+        mockMvc.perform(get("/api/v1/jobs/{jobId}/renditions", jobId))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGetRenditions_FailureIsNotReportedAsNotFound() {
+        when(jobService.getJob(jobId)).thenThrow(new IllegalStateException("database down"));
+
+        ServletException e = assertThrows(ServletException.class,
+            () -> mockMvc.perform(get("/api/v1/jobs/{jobId}/renditions", jobId)));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
     }
 
     @Test
@@ -240,4 +519,69 @@ class JobControllerTest {
             .andExpect(status().isBadRequest())
             .andExpect(content().string("No processed file available"));
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testGetEta_Success() throws Exception {
+        JobEta eta = new JobEta();
+        eta.setJobId(jobId);
+        eta.setStatus(JobStatus.QUEUED);
+        eta.setJobsAhead(3);
+        eta.setSecondsAhead(12.5);
+        eta.setPredictedSeconds(4.0);
+        eta.setWorkerThroughput(2.0);
+        eta.setEstimatedCompletionAt(LocalDateTime.now().plusSeconds(10));
+        when(jobEtaService.estimate(jobId)).thenReturn(eta);
+
+        mockMvc.perform(get("/api/v1/jobs/{jobId}/eta", jobId))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.jobsAhead").value(3))
+            .andExpect(jsonPath("$.predictedSeconds").value(4.0))
+            .andExpect(jsonPath("$.estimatedCompletionAt").exists());
+    }
+
+    @Test
+    void testGetEta_NotFound() throws Exception {
+        when(jobEtaService.estimate(jobId)).thenThrow(new JobNotFoundException());
+
+        mockMvc.perform(get("/api/v1/jobs/{jobId}/eta", jobId))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGetEta_FailureIsNotReportedAsNotFound() {
+        when(jobEtaService.estimate(jobId)).thenThrow(new IllegalStateException("database down"));
+
+        // Left to the container's error handling, which answers 500
+        ServletException e = assertThrows(ServletException.class,
+            () -> mockMvc.perform(get("/api/v1/jobs/{jobId}/eta", jobId)));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    void testWorkerProgress() throws Exception {
+        String progress = """
+            {
+                "job_id": "%s",
+                "percent": 42,
+                "attempt": 2
+            }
+            """.formatted(jobId);
+
+        mockMvc.perform(post("/api/v1/jobs/worker-progress")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(progress))
+            .andExpect(status().isOk());
+
+        verify(jobService).recordProgress(jobId, 2, 42);
+    }
+
+    @Test
+    void testWorkerProgress_MissingPercent() throws Exception {
+        mockMvc.perform(post("/api/v1/jobs/worker-progress")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"job_id\": \"%s\"}".formatted(jobId)))
+            .andExpect(status().isBadRequest());
+
+        verify(jobService, times(0)).recordProgress(any(), anyInt(), anyInt());
+    }
+}
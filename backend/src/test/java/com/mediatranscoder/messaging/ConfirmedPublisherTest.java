@@ -0,0 +1,83 @@
+package com.mediatranscoder.messaging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ConfirmedPublisherTest {
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final List<CorrelationData> sent = new CopyOnWriteArrayList<>();
+    private ConfirmedPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        // Fails each message's first send, then records later sends awaiting their confirm
+        doAnswer(invocation -> {
+            Message message = invocation.getArgument(2);
+            if (message.getMessageProperties().getHeader("failed") == null) {
+                message.getMessageProperties().setHeader("failed", true);
+                throw new AmqpException("connection reset");
+            }
+            sent.add(invocation.getArgument(3));
+            return null;
+        }).when(rabbitTemplate).send(eq(""), eq("media_jobs"), any(Message.class), any(CorrelationData.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.shutdown();
+    }
+
+    @Test
+    void testRetryWaitsForRoomInTheWindow() throws Exception {
+        publisher = new ConfirmedPublisher(rabbitTemplate, 1, 3, 50, 1000, 5000);
+        CompletableFuture<Void> retried = publisher.publish("media_jobs", message());
+        CompletableFuture<Void> holder = publisher.publish("media_jobs", sentOnce());
+        assertEquals(1, sent.size());
+
+        // The retry finds the window taken by the unconfirmed message and is pushed back, not sent
+        Thread.sleep(200);
+        assertEquals(1, sent.size());
+        assertFalse(retried.isDone());
+
+        sent.get(0).getFuture().complete(new CorrelationData.Confirm(true, null));
+        holder.get(1, TimeUnit.SECONDS);
+        waitForSends(2);
+        sent.get(1).getFuture().complete(new CorrelationData.Confirm(true, null));
+        retried.get(1, TimeUnit.SECONDS);
+    }
+
+    private void waitForSends(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (sent.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, sent.size());
+    }
+
+    private static Message message() {
+        return new Message("{}".getBytes(), new MessageProperties());
+    }
+
+    // A message whose first send goes through
+    private static Message sentOnce() {
+        Message message = message();
+        message.getMessageProperties().setHeader("failed", true);
+        return message;
+    }
+}
@@ -0,0 +1,115 @@
+package com.mediatranscoder.messaging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobMessageBatcherTest {
+
+    private static final String CALLBACK_URL = "http://backend:8080/api/v1/jobs/worker-callback";
+
+    private final List<JobMessage> published = new CopyOnWriteArrayList<>();
+    private JobMessageBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+    }
+
+    @Test
+    void testFlushesWhenCountReached() {
+        batcher = new JobMessageBatcher(3, Long.MAX_VALUE, 60_000, CALLBACK_URL, this::record);
+
+        List<CompletableFuture<Void>> confirmations = List.of(
+                batcher.add(message("webp", "800"), 1000),
+                batcher.add(message("webp", "800"), 1000),
+                batcher.add(message("webp", "800"), 1000));
+
+        assertEquals(1, published.size());
+        JobMessage batch = published.get(0);
+        assertEquals(3, batch.getJobs().size());
+        assertEquals("webp", batch.getOutputFormat());
+        assertEquals(CALLBACK_URL, batch.getCallbackUrl());
+        assertTrue(confirmations.stream().allMatch(CompletableFuture::isDone));
+    }
+
+    @Test
+    void testFlushesWhenBytesReached() {
+        batcher = new JobMessageBatcher(100, 2500, 60_000, CALLBACK_URL, this::record);
+
+        batcher.add(message("webp", "800"), 1000);
+        batcher.add(message("webp", "800"), 1000);
+        assertTrue(published.isEmpty());
+        batcher.add(message("webp", "800"), 1000);
+
+        assertEquals(1, published.size());
+        assertEquals(3, published.get(0).getJobs().size());
+    }
+
+    @Test
+    void testLingerBoundsLatencyAndLoneJobIsUnwrapped() throws Exception {
+        batcher = new JobMessageBatcher(100, Long.MAX_VALUE, 20, CALLBACK_URL, this::record);
+        JobMessage lone = message("webp", "800");
+
+        batcher.add(lone, 1000).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(lone), published);
+        assertNull(lone.getJobs());
+    }
+
+    @Test
+    void testIncompatibleSettingsAreNotMixed() {
+        batcher = new JobMessageBatcher(2, Long.MAX_VALUE, 60_000, CALLBACK_URL, this::record);
+
+        batcher.add(message("webp", "800"), 1000);
+        batcher.add(message("webp", "400"), 1000);
+        batcher.add(message("png", "800"), 1000);
+        assertTrue(published.isEmpty());
+        batcher.add(message("webp", "400"), 1000);
+
+        assertEquals(1, published.size());
+        assertTrue(published.get(0).getJobs().stream().allMatch(job -> "400".equals(job.getSettings().get("width"))));
+        batcher.flushAll();
+        assertEquals(3, published.size());
+    }
+
+    @Test
+    void testPublishFailureFailsEveryJobInBatch() {
+        batcher = new JobMessageBatcher(2, Long.MAX_VALUE, 60_000, CALLBACK_URL,
+                message -> CompletableFuture.failedFuture(new IllegalStateException("nacked")));
+
+        CompletableFuture<Void> first = batcher.add(message("webp", "800"), 1000);
+        CompletableFuture<Void> second = batcher.add(message("webp", "800"), 1000);
+
+        for (CompletableFuture<Void> confirmation : List.of(first, second)) {
+            ExecutionException error = assertThrows(ExecutionException.class, confirmation::get);
+            assertEquals("nacked", error.getCause().getMessage());
+        }
+    }
+
+    private CompletableFuture<Void> record(JobMessage message) {
+        published.add(message);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static JobMessage message(String format, String width) {
+        JobMessage message = new JobMessage();
+        message.setSchemaVersion(JobMessage.CURRENT_VERSION);
+        message.setId(UUID.randomUUID().toString());
+        message.setInputUrl("https://storage.example.com/" + message.getId());
+        message.setOutputFormat(format);
+        message.setOutputQuality("medium");
+        message.setSettings(Map.of("resize", "true", "width", width, "height", "600"));
+        message.setCallbackUrl(CALLBACK_URL);
+        return message;
+    }
+}
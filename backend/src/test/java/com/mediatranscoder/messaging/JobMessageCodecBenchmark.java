@@ -0,0 +1,84 @@
+package com.mediatranscoder.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediatranscoder.model.Job;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compares the original HashMap -> String -> byte[] publishing path with the
+ * typed codec. Run from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mediatranscoder.messaging.JobMessageCodecBenchmark}.
+ */
+public class JobMessageCodecBenchmark {
+
+    private static final int WARMUP = 50_000;
+    private static final int ITERATIONS = 200_000;
+    private static final String CALLBACK_URL = "http://backend:8080/api/v1/jobs/worker-callback";
+
+    public static void main(String[] args) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        JobMessageCodec codec = new JobMessageCodec(objectMapper);
+        Job job = sampleJob();
+        String inputUrl = "https://storage.googleapis.com/bucket/" + UUID.randomUUID() + "/input.jpg?X-Goog-Signature=abc";
+
+        Encoder legacy = () -> {
+            Map<String, Object> message = new HashMap<>();
+            message.put("id", job.getId().toString());
+            message.put("input_url", inputUrl);
+            message.put("output_format", job.getOutputFormat());
+            message.put("output_quality", job.getOutputQuality());
+            message.put("settings", job.getSettings());
+            message.put("callback_url", CALLBACK_URL);
+            return objectMapper.writeValueAsString(message).getBytes(StandardCharsets.UTF_8);
+        };
+        Encoder json = () -> codec.encode(JobMessage.of(job, inputUrl, CALLBACK_URL), JobMessageCodec.Encoding.JSON);
+        Encoder cbor = () -> codec.encode(JobMessage.of(job, inputUrl, CALLBACK_URL), JobMessageCodec.Encoding.CBOR);
+
+        run("legacy map/string", legacy);
+        run("typed json", json);
+        run("typed cbor", cbor);
+    }
+
+    private static void run(String name, Encoder encoder) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += encoder.encode().length;
+        }
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int size = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            size = encoder.encode().length;
+            sink += size;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%-18s size=%4d B  alloc=%6d B/msg  time=%5d ns/msg  (sink %d)%n",
+                name, size, allocated / ITERATIONS, elapsed / ITERATIONS, sink);
+    }
+
+    private static Job sampleJob() {
+        Job job = new Job();
+        job.setId(UUID.randomUUID());
+        job.setOutputFormat("webp");
+        job.setOutputQuality("high");
+        Map<String, String> settings = new HashMap<>();
+        settings.put("resize", "true");
+        settings.put("width", "800");
+        settings.put("height", "600");
+        job.setSettings(settings);
+        return job;
+    }
+
+    @FunctionalInterface
+    private interface Encoder {
+        byte[] encode() throws Exception;
+    }
+}
@@ -0,0 +1,160 @@
+package com.mediatranscoder.messaging;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.Rendition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobMessageCodecTest {
+
+    private static final String CALLBACK_URL = "http://backend:8080/api/v1/jobs/worker-callback";
+
+    private ObjectMapper objectMapper;
+    private JobMessageCodec codec;
+    private JobMessage message;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+        codec = new JobMessageCodec(objectMapper);
+
+        Job job = new Job();
+        job.setId(UUID.randomUUID());
+        job.setOutputFormat("webp");
+        job.setOutputQuality("high");
+        Map<String, String> settings = new HashMap<>();
+        settings.put("resize", "true");
+        settings.put("width", "800");
+        settings.put("height", "600");
+        job.setSettings(settings);
+
+        message = JobMessage.of(job, "https://storage.example.com/input.jpg", CALLBACK_URL);
+    }
+
+    @Test
+    void testJsonRoundTrip() throws Exception {
+        byte[] body = codec.encode(message, JobMessageCodec.Encoding.JSON);
+
+        assertEquals(message, codec.decode(body, "application/json"));
+    }
+
+    @Test
+    void testCborRoundTrip() throws Exception {
+        byte[] body = codec.encode(message, JobMessageCodec.Encoding.CBOR);
+
+        assertEquals(message, codec.decode(body, "application/cbor"));
+    }
+
+    @Test
+    void testRenditionsRoundTrip() throws Exception {
+        Job job = new Job();
+        job.setId(UUID.randomUUID());
+        job.setOutputFormat("jpg");
+        job.setOutputQuality("high");
+        Rendition thumbnail = new Rendition();
+        thumbnail.setOutputFormat("webp");
+        thumbnail.setOutputQuality("medium");
+        thumbnail.setWidth(160);
+        thumbnail.setHeight(120);
+        job.getRenditions().add(thumbnail);
+        JobMessage withRenditions = JobMessage.of(job, "https://storage.example.com/input.jpg", CALLBACK_URL);
+
+        for (JobMessageCodec.Encoding encoding : JobMessageCodec.Encoding.values()) {
+            JobMessage decoded = codec.decode(codec.encode(withRenditions, encoding), encoding.getContentType());
+            assertEquals(withRenditions, decoded);
+            assertEquals(160, decoded.getRenditions().get(0).getWidth());
+        }
+    }
+
+    @Test
+    void testBatchRoundTrip() throws Exception {
+        JobMessage batch = JobMessage.batch("batch-1", List.of(message, message), CALLBACK_URL);
+
+        for (JobMessageCodec.Encoding encoding : JobMessageCodec.Encoding.values()) {
+            JobMessage decoded = codec.decode(codec.encode(batch, encoding), encoding.getContentType());
+            assertEquals(batch, decoded);
+            assertEquals(message.getInputUrl(), decoded.getJobs().get(1).getInputUrl());
+        }
+    }
+
+    @Test
+    void testSingleOutputJobOmitsRenditions() throws Exception {
+        Map<String, Object> json = objectMapper.readValue(
+                codec.encode(message, JobMessageCodec.Encoding.JSON), new TypeReference<>() {});
+
+        assertFalse(json.containsKey("renditions"));
+        assertFalse(json.containsKey("jobs"));
+    }
+
+    @Test
+    void testCborIsSmallerThanJson() throws Exception {
+        byte[] json = codec.encode(message, JobMessageCodec.Encoding.JSON);
+        byte[] cbor = codec.encode(message, JobMessageCodec.Encoding.CBOR);
+
+        assertTrue(cbor.length < json.length);
+    }
+
+    @Test
+    void testJsonKeepsLegacyFieldNames() throws Exception {
+        byte[] body = codec.encode(message, JobMessageCodec.Encoding.JSON);
+
+        Map<String, Object> legacyView = objectMapper.readValue(body, new TypeReference<>() {});
+        assertEquals(message.getId(), legacyView.get("id"));
+        assertEquals(message.getInputUrl(), legacyView.get("input_url"));
+        assertEquals("webp", legacyView.get("output_format"));
+        assertEquals("high", legacyView.get("output_quality"));
+        assertEquals(message.getSettings(), legacyView.get("settings"));
+        assertEquals(CALLBACK_URL, legacyView.get("callback_url"));
+        assertEquals(JobMessage.CURRENT_VERSION, legacyView.get("schema_version"));
+    }
+
+    @Test
+    void testDecodesUnversionedLegacyPayload() throws Exception {
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("id", message.getId());
+        legacy.put("input_url", message.getInputUrl());
+        legacy.put("output_format", "webp");
+        legacy.put("output_quality", "high");
+        legacy.put("settings", message.getSettings());
+        legacy.put("callback_url", CALLBACK_URL);
+        byte[] body = objectMapper.writeValueAsString(legacy).getBytes();
+
+        JobMessage decoded = codec.decode(body, "text/plain");
+
+        assertEquals(1, decoded.getSchemaVersion());
+        assertEquals(message.getId(), decoded.getId());
+        assertEquals(message.getSettings(), decoded.getSettings());
+    }
+
+    @Test
+    void testIgnoresUnknownFieldsFromNewerProducers() throws Exception {
+        Map<String, Object> newer = objectMapper.convertValue(message, new TypeReference<>() {});
+        newer.put("schema_version", JobMessage.CURRENT_VERSION + 1);
+        newer.put("future_field", "value");
+
+        JobMessage decoded = codec.decode(objectMapper.writeValueAsBytes(newer), "application/json");
+
+        assertEquals(message.getId(), decoded.getId());
+        assertEquals(JobMessage.CURRENT_VERSION + 1, decoded.getSchemaVersion());
+    }
+
+    @Test
+    void testAmqpMessageCarriesContentTypeAndVersion() throws Exception {
+        Message amqp = codec.toAmqpMessage(message, JobMessageCodec.Encoding.CBOR);
+
+        assertEquals("application/cbor", amqp.getMessageProperties().getContentType());
+        assertEquals(JobMessage.CURRENT_VERSION,
+                (Integer) amqp.getMessageProperties().getHeader(JobMessageCodec.SCHEMA_VERSION_HEADER));
+        assertEquals(message, codec.fromAmqpMessage(amqp));
+    }
+}
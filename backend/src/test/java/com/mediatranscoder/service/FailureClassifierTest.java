@@ -0,0 +1,30 @@
+package com.mediatranscoder.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FailureClassifierTest {
+
+    private final FailureClassifier classifier = new FailureClassifier();
+
+    @Test
+    void testNetworkAndStorageErrorsAreTransient() {
+        assertEquals(FailureClassifier.Kind.TRANSIENT,
+                classifier.classify("Worker error: HTTPSConnectionPool(host='storage'): Read timed out."));
+        assertEquals(FailureClassifier.Kind.TRANSIENT,
+                classifier.classify("503 Server Error: Service Unavailable for url: https://storage/original"));
+        assertEquals(FailureClassifier.Kind.TRANSIENT,
+                classifier.classify("Message redelivered after a worker interruption"));
+        assertEquals(FailureClassifier.Kind.TRANSIENT, classifier.classify(null));
+    }
+
+    @Test
+    void testFfmpegRejectionsArePermanent() {
+        assertEquals(FailureClassifier.Kind.PERMANENT,
+                classifier.classify("/tmp/input: Invalid data found when processing input"));
+        // Progress output is full of numbers that look like status codes
+        assertEquals(FailureClassifier.Kind.PERMANENT,
+                classifier.classify("frame=  502 fps=429 q=-1.0 size=503kB\nUnknown encoder 'libfoo'"));
+    }
+}
@@ -0,0 +1,118 @@
+package com.mediatranscoder.service;
+
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Bucket;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import com.google.firebase.cloud.StorageClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FirebaseStorageServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private ObjectProvider<StorageClient> storageClientProvider;
+
+    @Mock
+    private StorageClient storageClient;
+
+    @Mock
+    private Bucket bucket;
+
+    @Mock
+    private Storage storage;
+
+    private ParallelTransferEngine transferEngine;
+    private FirebaseStorageService service;
+
+    @BeforeEach
+    void setUp() {
+        // One thread, so parts are stored in order and the failing part stops the rest
+        transferEngine = new ParallelTransferEngine(1000, 1, 2000);
+        service = new FirebaseStorageService(storageClientProvider, transferEngine);
+        when(storageClientProvider.getObject()).thenReturn(storageClient);
+        when(storageClient.bucket()).thenReturn(bucket);
+        when(bucket.getName()).thenReturn("bucket");
+        when(bucket.getStorage()).thenReturn(storage);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferEngine.shutdown();
+    }
+
+    @Test
+    void testFailedPartUploadDeletesThePartsAlreadyStored() throws IOException {
+        Path source = tempDir.resolve("movie.mp4");
+        Files.write(source, new byte[3500]);
+        WriteChannel writer = mock(WriteChannel.class);
+        when(writer.write(any(ByteBuffer.class))).thenAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            int written = buffer.remaining();
+            buffer.position(buffer.limit());
+            return written;
+        });
+        when(storage.writer(any(BlobInfo.class))).thenAnswer(invocation -> {
+            if (((BlobInfo) invocation.getArgument(0)).getName().endsWith(".part-1")) {
+                throw new StorageException(503, "backend unavailable");
+            }
+            return writer;
+        });
+        when(storage.delete(anyList())).thenAnswer(invocation -> List.of(true));
+
+        assertThrows(IOException.class, () -> service.storeFile(source.toFile()));
+
+        ArgumentCaptor<List<BlobId>> deleted = ArgumentCaptor.captor();
+        verify(storage).delete(deleted.capture());
+        assertEquals(1, deleted.getValue().size());
+        assertTrue(deleted.getValue().get(0).getName().endsWith("/movie.mp4.part-0"));
+        verify(storage, never()).compose(any());
+    }
+
+    @Test
+    void testPartsAreDeletedInOneBatchAfterCompose() throws IOException {
+        Path source = tempDir.resolve("movie.mp4");
+        Files.write(source, new byte[2500]);
+        WriteChannel writer = mock(WriteChannel.class);
+        when(writer.write(any(ByteBuffer.class))).thenAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            int written = buffer.remaining();
+            buffer.position(buffer.limit());
+            return written;
+        });
+        when(storage.writer(any(BlobInfo.class))).thenReturn(writer);
+        when(storage.delete(anyList())).thenAnswer(invocation -> List.of(true, true, true));
+
+        String key = service.storeFile(source.toFile());
+
+        assertTrue(key.endsWith("/movie.mp4"));
+        verify(storage).compose(any());
+        ArgumentCaptor<List<BlobId>> deleted = ArgumentCaptor.captor();
+        verify(storage).delete(deleted.capture());
+        assertEquals(List.of(key + ".part-0", key + ".part-1", key + ".part-2"),
+                deleted.getValue().stream().map(BlobId::getName).sorted().toList());
+    }
+}
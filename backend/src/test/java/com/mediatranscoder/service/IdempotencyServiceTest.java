@@ -0,0 +1,83 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.repository.JobRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class IdempotencyServiceTest {
+
+    private final InMemoryIdempotencyStore store = new InMemoryIdempotencyStore();
+    private final IdempotencyService service = new IdempotencyService(store, mock(JobRepository.class), 24, 15, 2000, 10);
+
+    @Test
+    void testRepeatedKeyReturnsFirstJob() {
+        UUID jobId = UUID.randomUUID();
+
+        assertNull(service.begin("/api/v1/upload key-1"));
+        service.complete("/api/v1/upload key-1", jobId);
+
+        assertEquals(jobId, service.begin("/api/v1/upload key-1"));
+        // Keys are independent
+        assertNull(service.begin("/api/v1/upload key-2"));
+    }
+
+    @Test
+    void testReleasedKeyCanBeClaimedAgain() {
+        assertNull(service.begin("key"));
+        service.release("key");
+
+        assertNull(service.begin("key"));
+    }
+
+    @Test
+    void testConcurrentDuplicateWaitsForFirstRequest() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        assertNull(service.begin("key"));
+
+        CompletableFuture<UUID> duplicate = CompletableFuture.supplyAsync(() -> service.begin("key"));
+        Thread.sleep(50);
+        assertFalse(duplicate.isDone());
+        service.complete("key", jobId);
+
+        assertEquals(jobId, duplicate.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testDuplicateOfFailedRequestRunsItself() throws Exception {
+        assertNull(service.begin("key"));
+
+        CompletableFuture<UUID> duplicate = CompletableFuture.supplyAsync(() -> service.begin("key"));
+        Thread.sleep(50);
+        service.release("key");
+
+        assertNull(duplicate.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testRequestPendingElsewhereTimesOut() {
+        // Claimed by another replica sharing the store
+        store.putIfAbsent("key", "pending", Duration.ofMinutes(1));
+        IdempotencyService impatient = new IdempotencyService(store, mock(JobRepository.class), 24, 15, 50, 10);
+
+        assertThrows(IllegalStateException.class, () -> impatient.begin("key"));
+    }
+
+    @Test
+    void testStoreExpiresEntries() {
+        assertNull(store.putIfAbsent("stale", "value", Duration.ZERO));
+        assertNull(store.get("stale"));
+        assertNull(store.putIfAbsent("stale", "fresh", Duration.ofMinutes(1)));
+        assertEquals("fresh", store.putIfAbsent("stale", "other", Duration.ofMinutes(1)));
+
+        store.putIfAbsent("expired", "value", Duration.ZERO);
+        store.sweep();
+        assertEquals(1, store.size());
+    }
+}
@@ -0,0 +1,140 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.model.MediaInfo;
+import com.mediatranscoder.model.RenderedVariant;
+import com.mediatranscoder.repository.JobRepository;
+import com.mediatranscoder.repository.RenderedVariantRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageRenderServiceTest {
+
+    @Mock
+    private JobRepository jobRepository;
+
+    @Mock
+    private RenderedVariantRepository renderedVariantRepository;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    private ImageRenderService service;
+    private Job job;
+
+    @BeforeEach
+    void setUp() {
+        service = new ImageRenderService(jobRepository, renderedVariantRepository, fileStorageService,
+                64L * 1024 * 1024, 50_000_000L, 30, 2);
+        MediaInfo media = new MediaInfo();
+        media.setType(MediaInfo.Type.IMAGE);
+        media.setContainer("png");
+        media.setPixelCount(1200L * 800);
+        job = new Job();
+        job.setId(UUID.randomUUID());
+        job.setOriginalFileKey("uploads/photo.png");
+        job.setOutputFormat("webp");
+        job.setStatus(JobStatus.COMPLETED);
+        job.setMediaInfo(media);
+    }
+
+    @Test
+    void testNormalizeSnapsToBoundedVariants() {
+        assertEquals("w320-h0-medium.jpg", ImageRenderService.normalize(300, null, null, null).key());
+        assertEquals("w320-h0-medium.jpg", ImageRenderService.normalize(320, 0, "jpeg", "80").key());
+        assertEquals("w3840-h480-high.jpg", ImageRenderService.normalize(10_000, 479, "JPG", "95").key());
+        assertEquals("w0-h64-low.jpg", ImageRenderService.normalize(null, 1, "jpg", "low").key());
+        assertEquals("w640-h0-lossless.png", ImageRenderService.normalize(600, null, "png", "20").key());
+
+        assertThrows(UnsupportedMediaException.class, () -> ImageRenderService.normalize(100, 100, "webp", null));
+        assertThrows(IllegalArgumentException.class, () -> ImageRenderService.normalize(-5, 100, "jpg", null));
+        assertThrows(IllegalArgumentException.class, () -> ImageRenderService.normalize(100, 100, "jpg", "best"));
+    }
+
+    @Test
+    void testFitKeepsAspectRatioAndNeverUpscales() {
+        assertArrayEquals(new int[]{320, 213}, ImageRenderService.fit(1200, 800, 320, 0));
+        assertArrayEquals(new int[]{96, 64}, ImageRenderService.fit(1200, 800, 320, 64));
+        assertArrayEquals(new int[]{1200, 800}, ImageRenderService.fit(1200, 800, 3840, 0));
+        assertArrayEquals(new int[]{1200, 800}, ImageRenderService.fit(1200, 800, 0, 0));
+    }
+
+    @Test
+    void testRendersOnceThenServesFromMemory() throws IOException {
+        when(renderedVariantRepository.findByJobIdAndVariantKey(job.getId(), "w320-h0-medium.jpg"))
+                .thenReturn(Optional.empty());
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(fileStorageService.openStream("uploads/photo.png")).thenReturn(new ByteArrayInputStream(png(1200, 800)));
+        ImageRenderService.Variant variant = ImageRenderService.normalize(300, null, "jpg", null);
+
+        ImageRenderService.Rendered first = service.render(job.getId(), variant);
+        ImageRenderService.Rendered second = service.render(job.getId(), variant);
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(first.bytes()));
+        assertEquals(320, decoded.getWidth());
+        assertEquals(213, decoded.getHeight());
+        assertEquals("image/jpeg", first.contentType());
+        assertSame(first.bytes(), second.bytes());
+        verify(fileStorageService, times(1)).openStream(anyString());
+        verify(fileStorageService).storePart(eq("renders/" + job.getId() + "/w320-h0-medium.jpg"), any(), eq("image/jpeg"));
+        ArgumentCaptor<RenderedVariant> saved = ArgumentCaptor.forClass(RenderedVariant.class);
+        verify(renderedVariantRepository).save(saved.capture());
+        assertEquals(first.bytes().length, saved.getValue().getSize());
+    }
+
+    @Test
+    void testStoredVariantIsServedWithoutRendering() throws IOException {
+        RenderedVariant stored = new RenderedVariant();
+        stored.setId(UUID.randomUUID());
+        stored.setFileKey("renders/" + job.getId() + "/w640-h0-lossless.png");
+        when(renderedVariantRepository.findByJobIdAndVariantKey(job.getId(), "w640-h0-lossless.png"))
+                .thenReturn(Optional.of(stored));
+        when(fileStorageService.openStream(stored.getFileKey())).thenReturn(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        ImageRenderService.Rendered rendered = service.render(job.getId(), ImageRenderService.normalize(640, null, "png", null));
+
+        assertArrayEquals(new byte[]{1, 2, 3}, rendered.bytes());
+        verify(renderedVariantRepository).touch(eq(stored.getId()), any());
+        verify(jobRepository, never()).findById(any());
+    }
+
+    @Test
+    void testUndecodableSourceIsRejected() {
+        job.getMediaInfo().setContainer("webp");
+        when(renderedVariantRepository.findByJobIdAndVariantKey(eq(job.getId()), anyString())).thenReturn(Optional.empty());
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+
+        assertThrows(UnsupportedMediaException.class,
+                () -> service.render(job.getId(), ImageRenderService.normalize(300, null, "jpg", null)));
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
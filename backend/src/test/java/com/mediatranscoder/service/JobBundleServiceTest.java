@@ -0,0 +1,129 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.repository.JobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JobBundleServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JobRepository jobRepository;
+    private ProcessedFileCache processedFileCache;
+    private JobBundleService bundleService;
+
+    @BeforeEach
+    void setUp() {
+        jobRepository = mock(JobRepository.class);
+        processedFileCache = mock(ProcessedFileCache.class);
+        bundleService = new JobBundleService(jobRepository, processedFileCache, 2, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bundleService.shutdown();
+    }
+
+    @Test
+    void testBundleWritesEntriesInRequestOrder() throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            jobs.add(completedJob("photo.heic", i % 2 == 0 ? "png" : "svg", "out/" + i, "content-" + i));
+        }
+        Job pending = completedJob("pending.jpg", "png", null, null);
+        pending.setStatus(JobStatus.PROCESSING);
+        jobs.add(pending);
+        when(jobRepository.findAllById(anyList())).thenReturn(jobs);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bundleService.writeBundle(jobs.stream().map(Job::getId).toList(), out);
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            int index = 0;
+            while ((entry = zip.getNextEntry()) != null) {
+                names.add(entry.getName());
+                String body = new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+                if (entry.getName().equals("SKIPPED.txt")) {
+                    assertTrue(body.contains(pending.getId() + ": PROCESSING"));
+                    continue;
+                }
+                assertEquals("content-" + index, body);
+                assertEquals(index % 2 == 0 ? ZipEntry.STORED : ZipEntry.DEFLATED, entry.getMethod());
+                index++;
+            }
+        }
+        assertEquals(List.of("photo.png", "photo.svg", "photo-2.png", "photo-2.svg", "photo-3.png", "SKIPPED.txt"), names);
+    }
+
+    @Test
+    void testAbandonedBundleWaitsForFetchesInFlight() throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            jobs.add(completedJob("clip-" + i + ".mov", "mp4", "out/" + i, null));
+        }
+        when(jobRepository.findAllById(anyList())).thenReturn(jobs);
+        // Large enough to get past the writer's buffer on the first entry
+        Path file = Files.write(tempDir.resolve("large"), new byte[256 * 1024]);
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        when(processedFileCache.get(anyString())).thenAnswer(invocation -> {
+            started.incrementAndGet();
+            Thread.sleep(100);
+            finished.incrementAndGet();
+            return file;
+        });
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class,
+                () -> bundleService.writeBundle(jobs.stream().map(Job::getId).toList(), disconnected));
+
+        // The second entry was already fetching; the rest were never started
+        assertEquals(2, started.get());
+        assertEquals(started.get(), finished.get());
+    }
+
+    private Job completedJob(String filename, String format, String key, String content) throws IOException {
+        Job job = new Job();
+        job.setId(UUID.randomUUID());
+        job.setOriginalFilename(filename);
+        job.setOutputFormat(format);
+        job.setStatus(JobStatus.COMPLETED);
+        job.setProcessedFileKey(key);
+        if (key != null && content != null) {
+            Path file = Files.writeString(tempDir.resolve(UUID.randomUUID().toString()), content);
+            when(processedFileCache.get(key)).thenReturn(file);
+        }
+        return job;
+    }
+}
@@ -0,0 +1,66 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.MediaInfo;
+import com.mediatranscoder.repository.JobRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class JobCostModelTest {
+
+    private final JobCostModel model = new JobCostModel(mock(JobRepository.class), 5, 0, 600, 1);
+
+    @Test
+    void testFallsBackToMeanUntilFormatHasEnoughSamples() {
+        assertEquals(5.0, model.predictSeconds(job("webp", 4_000_000, 1000, 800)));
+
+        model.observe(job("webp", 4_000_000, 1000, 800), 2.0);
+        model.observe(job("webp", 4_000_000, 1000, 800), 4.0);
+
+        assertEquals(3.0, model.predictSeconds(job("webp", 4_000_000, 1000, 800)), 1e-9);
+    }
+
+    @Test
+    void testLearnsLinearCostPerFormat() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            long inputPixels = 500_000L + random.nextInt(20_000_000);
+            int width = 200 + random.nextInt(3000);
+            int height = 200 + random.nextInt(2000);
+            model.observe(job("jpg", inputPixels, width, height), jpgCost(inputPixels, width, height));
+            // A slower format must not bleed into the jpg model
+            model.observe(job("avif", inputPixels, width, height), 10 * jpgCost(inputPixels, width, height));
+        }
+
+        assertEquals(jpgCost(12_000_000, 1920, 1080),
+                model.predictSeconds(job("jpg", 12_000_000, 1920, 1080)), 0.05);
+        assertEquals(10 * jpgCost(12_000_000, 1920, 1080),
+                model.predictSeconds(job("avif", 12_000_000, 1920, 1080)), 0.5);
+    }
+
+    @Test
+    void testThroughputNeverDropsBelowFloor() {
+        assertEquals(1.0, model.throughput(), 1e-9);
+    }
+
+    private static double jpgCost(long inputPixels, int width, int height) {
+        return 0.2 + 0.15 * inputPixels / 1e6 + 0.05 * width * height / 1e6;
+    }
+
+    private static Job job(String format, long inputPixels, int width, int height) {
+        MediaInfo media = new MediaInfo();
+        media.setType(MediaInfo.Type.IMAGE);
+        media.setPixelCount(inputPixels);
+        Job job = new Job();
+        job.setOutputFormat(format);
+        job.setOutputQuality("medium");
+        job.setMediaInfo(media);
+        job.setSettings(Map.of("resize", "true", "width", String.valueOf(width), "height", String.valueOf(height)));
+        return job;
+    }
+}
@@ -0,0 +1,128 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobSegment;
+import com.mediatranscoder.model.RenderedVariant;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.mapping.ForeignKey;
+import org.hibernate.mapping.PersistentClass;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class JobPartitionManagerTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final JobPartitionManager manager = new JobPartitionManager(jdbcTemplate, mock(TransactionTemplate.class));
+
+    @Test
+    void testPartitionNameRoundTripsToUpperBound() {
+        String name = JobPartitionManager.partitionName(YearMonth.of(2025, 12));
+
+        assertEquals("jobs_p202512", name);
+        assertEquals(LocalDate.of(2026, 1, 1), JobPartitionManager.upperBound(name));
+    }
+
+    @Test
+    void testDetachesOnlyPartitionsEndingByCutoff() {
+        when(jdbcTemplate.queryForList(contains("FROM pg_inherits"), eq(String.class), eq("jobs")))
+                .thenReturn(List.of("jobs_p202401", "jobs_p202402", "jobs_p202403"));
+
+        List<String> detached = manager.detachExpired(LocalDate.of(2024, 3, 1));
+
+        // February's partition ends on the cutoff itself; March's runs past it
+        assertEquals(List.of("jobs_p202401", "jobs_p202402"), detached);
+        verify(jdbcTemplate).execute("ALTER TABLE jobs DETACH PARTITION jobs_p202401");
+        verify(jdbcTemplate).execute("ALTER TABLE jobs DETACH PARTITION jobs_p202402");
+        verify(jdbcTemplate, never()).execute("ALTER TABLE jobs DETACH PARTITION jobs_p202403");
+    }
+
+    @Test
+    void testStartupLeavesAnUnpartitionedTableAlone() {
+        ReflectionTestUtils.setField(manager, "enabled", true);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+        when(jdbcTemplate.queryForObject(contains("pg_partitioned_table"), eq(Integer.class), eq("jobs"))).thenReturn(0);
+
+        manager.initialize();
+
+        assertFalse(manager.isActive());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void testMigrateConvertsAnUnpartitionedTable() {
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        JobPartitionManager migrating = new JobPartitionManager(jdbcTemplate, transactionTemplate);
+        ReflectionTestUtils.setField(migrating, "enabled", true);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+        when(jdbcTemplate.queryForObject(contains("pg_partitioned_table"), eq(Integer.class), eq("jobs"))).thenReturn(0);
+
+        migrating.migrate();
+
+        verify(transactionTemplate).executeWithoutResult(any());
+        assertTrue(migrating.isActive());
+    }
+
+    @Test
+    void testSchemaUpdateAddsNoForeignKeyToJobs() {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DIALECT, PostgreSQLDialect.class.getName())
+                .applySetting("hibernate.temp.use_jdbc_metadata_defaults", false)
+                .build();
+        try {
+            Metadata metadata = new MetadataSources(registry)
+                    .addAnnotatedClasses(Job.class, JobSegment.class, RenderedVariant.class)
+                    .buildMetadata();
+            // Once jobs is partitioned its key is (id, created_at), which no job_id column can reference
+            List<String> foreignKeys = new ArrayList<>();
+            for (PersistentClass entity : metadata.getEntityBindings()) {
+                entity.getTable().getForeignKeys().values().stream()
+                        .filter(ForeignKey::isCreationEnabled)
+                        .forEach(fk -> foreignKeys.add(fk.getTable().getName()));
+            }
+            metadata.getCollectionBindings().forEach(collection ->
+                    collection.getCollectionTable().getForeignKeys().values().stream()
+                            .filter(ForeignKey::isCreationEnabled)
+                            .forEach(fk -> foreignKeys.add(fk.getTable().getName())));
+            assertEquals(List.of(), foreignKeys);
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+
+    @Test
+    void testPremakesPartitionsOnlyOnceActive() {
+        ReflectionTestUtils.setField(manager, "premakeMonths", 2);
+
+        manager.ensureFuturePartitions();
+        verifyNoInteractions(jdbcTemplate);
+
+        ReflectionTestUtils.setField(manager, "active", true);
+        manager.ensureFuturePartitions();
+
+        YearMonth now = YearMonth.now();
+        for (int i = 0; i <= 2; i++) {
+            YearMonth month = now.plusMonths(i);
+            verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS " + JobPartitionManager.partitionName(month)
+                    + " PARTITION OF jobs FOR VALUES FROM ('" + month.atDay(1) + "') TO ('"
+                    + month.plusMonths(1).atDay(1) + "')");
+        }
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,114 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JobReadRouterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Job job = job();
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void testReadsGoToReplicaOutsideTransactions() {
+        JobReadRouter router = router(5000);
+        AtomicBoolean routed = new AtomicBoolean();
+
+        Optional<Job> found = router.findJob(job.getId(), () -> {
+            routed.set(JobReadRouter.routeToReplica());
+            return Optional.of(job);
+        });
+
+        assertTrue(found.isPresent());
+        assertTrue(routed.get());
+        assertFalse(JobReadRouter.routeToReplica());
+        assertEquals(1, reads("replica", "replica"));
+    }
+
+    @Test
+    void testRecentlyWrittenJobIsReadFromPrimary() {
+        JobReadRouter router = router(5000);
+        router.recordWrite(job.getId());
+
+        assertFalse(router.findJob(job.getId(), this::routedJob).isPresent());
+        // Other jobs and lists are unaffected by the pin
+        assertTrue(router.findJob(UUID.randomUUID(), this::routedJob).isPresent());
+        assertEquals(1, reads("primary", "pinned"));
+    }
+
+    @Test
+    void testPinExpires() {
+        JobReadRouter router = router(0);
+        router.recordWrite(job.getId());
+
+        assertFalse(router.isPinned(job.getId()));
+        router.recordWrite(job.getId());
+        router.sweep();
+        assertTrue(router.findJob(job.getId(), this::routedJob).isPresent());
+    }
+
+    @Test
+    void testReadsInsideTransactionStayOnPrimary() {
+        JobReadRouter router = router(5000);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        List<Job> jobs = router.findJobs(() -> JobReadRouter.routeToReplica() ? List.of(job) : List.of());
+
+        assertTrue(jobs.isEmpty());
+        assertEquals(1, reads("primary", "transaction"));
+    }
+
+    @Test
+    void testWithoutReplicaEverythingStaysOnPrimary() {
+        JobReadRouter router = new JobReadRouter("", 5000, null, null, meterRegistry);
+        router.recordWrite(job.getId());
+
+        assertFalse(router.findJob(job.getId(), this::routedJob).isPresent());
+        assertFalse(router.isPinned(job.getId()));
+    }
+
+    // Present only when the query ran against the replica
+    private Optional<Job> routedJob() {
+        return JobReadRouter.routeToReplica() ? Optional.of(job) : Optional.empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private JobReadRouter router(long pinMillis) {
+        ObjectProvider<EntityManagerFactory> entityManagerFactory = mock(ObjectProvider.class);
+        when(entityManagerFactory.getObject()).thenReturn(mock(EntityManagerFactory.class));
+        ObjectProvider<PlatformTransactionManager> transactionManager = mock(ObjectProvider.class);
+        when(transactionManager.getObject()).thenReturn(mock(PlatformTransactionManager.class));
+        return new JobReadRouter("jdbc:postgresql://replica/test", pinMillis, entityManagerFactory,
+                transactionManager, meterRegistry);
+    }
+
+    private double reads(String pool, String reason) {
+        return meterRegistry.get("jobs.reads").tag("pool", pool).tag("reason", reason).counter().count();
+    }
+
+    private static Job job() {
+        Job job = new Job();
+        job.setId(UUID.randomUUID());
+        job.setOriginalFilename("photo.jpg");
+        return job;
+    }
+}
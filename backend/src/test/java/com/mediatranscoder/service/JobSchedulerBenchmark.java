@@ -0,0 +1,102 @@
+package com.mediatranscoder.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Simulates a pool of workers draining a mixed workload (mostly small images,
+ * some long videos) at high utilisation, dispatched in arrival order and by
+ * {@link JobScheduler#priorityKey} with and without aging. Predictions carry
+ * multiplicative noise to stand in for cost-model error. Prints mean and tail
+ * time-in-system overall and for the large jobs alone. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mediatranscoder.service.JobSchedulerBenchmark}.
+ */
+public class JobSchedulerBenchmark {
+
+    private static final int WORKERS = 4;
+    private static final int JOBS = 200_000;
+    private static final double UTILISATION = 0.9;
+    private static final double LARGE_FRACTION = 0.1;
+    private static final double SMALL_SECONDS = 1;
+    private static final double LARGE_SECONDS = 40;
+    // Standard deviation of the log prediction error
+    private static final double PREDICTION_NOISE = 0.3;
+
+    public static void main(String[] args) {
+        List<SimJob> workload = workload(new Random(11));
+        run("fifo", workload, Double.NaN);
+        for (double aging : new double[]{0, 0.05, 0.1, 0.2, 0.5}) {
+            run("sjf, aging " + aging, workload, aging);
+        }
+    }
+
+    private static List<SimJob> workload(Random random) {
+        double meanSeconds = LARGE_FRACTION * LARGE_SECONDS + (1 - LARGE_FRACTION) * SMALL_SECONDS;
+        double arrivalRate = UTILISATION * WORKERS / meanSeconds;
+        List<SimJob> jobs = new ArrayList<>(JOBS);
+        double clock = 0;
+        for (int i = 0; i < JOBS; i++) {
+            clock += -Math.log(1 - random.nextDouble()) / arrivalRate;
+            boolean large = random.nextDouble() < LARGE_FRACTION;
+            double base = large ? LARGE_SECONDS : SMALL_SECONDS;
+            // Actual cost varies +-50% around the class mean
+            double actual = base * (0.5 + random.nextDouble());
+            double predicted = actual * Math.exp(random.nextGaussian() * PREDICTION_NOISE);
+            jobs.add(new SimJob(i, clock, actual, predicted, large));
+        }
+        return jobs;
+    }
+
+    /** {@code aging} of NaN means arrival order. */
+    private static void run(String name, List<SimJob> workload, double aging) {
+        Comparator<SimJob> order = Double.isNaN(aging)
+                ? Comparator.comparingInt(SimJob::id)
+                : Comparator.comparingDouble(job -> JobScheduler.priorityKey(job.predicted(), job.arrival(), aging));
+        PriorityQueue<SimJob> waiting = new PriorityQueue<>(order);
+        PriorityQueue<Double> workerFreeAt = new PriorityQueue<>();
+        for (int i = 0; i < WORKERS; i++) {
+            workerFreeAt.add(0.0);
+        }
+
+        double[] all = new double[workload.size()];
+        List<Double> large = new ArrayList<>();
+        int next = 0;
+        int done = 0;
+        while (done < workload.size()) {
+            double free = workerFreeAt.poll();
+            // Everything that has arrived by the time a worker frees up competes for it
+            while (next < workload.size() && (workload.get(next).arrival() <= free || waiting.isEmpty())) {
+                waiting.add(workload.get(next++));
+            }
+            SimJob job = waiting.poll();
+            double finish = Math.max(free, job.arrival()) + job.actual();
+            workerFreeAt.add(finish);
+            double inSystem = finish - job.arrival();
+            all[done++] = inSystem;
+            if (job.large()) {
+                large.add(inSystem);
+            }
+        }
+        double[] largeTimes = large.stream().mapToDouble(Double::doubleValue).toArray();
+        System.out.printf("%-18s mean %7.2fs  p99 %8.2fs | large: mean %7.2fs  p99 %8.2fs  max %9.2fs%n",
+                name, mean(all), percentile(all, 0.99),
+                mean(largeTimes), percentile(largeTimes, 0.99), percentile(largeTimes, 1.0));
+    }
+
+    private static double mean(double[] values) {
+        return Arrays.stream(values).average().orElse(0);
+    }
+
+    private static double percentile(double[] values, double p) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private record SimJob(int id, double arrival, double actual, double predicted, boolean large) {
+    }
+}
@@ -0,0 +1,72 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.repository.JobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JobSchedulerTest {
+
+    private final JobService jobService = mock(JobService.class);
+    private final AmqpAdmin amqpAdmin = mock(AmqpAdmin.class);
+    private final Job small = job(5.0);
+    private final Job large = job(50.0);
+
+    @BeforeEach
+    void setUp() {
+        when(amqpAdmin.getQueueInfo("media_jobs")).thenReturn(new QueueInformation("media_jobs", 0, 1));
+    }
+
+    @Test
+    void testFailedReleaseKeepsItsPlaceInLine() {
+        JobScheduler scheduler = scheduler(0);
+        scheduler.hold(large);
+        scheduler.hold(small);
+        doThrow(new IllegalStateException("database down")).doNothing().when(jobService).dispatch(small.getId());
+
+        scheduler.dispatch();
+        assertEquals(2, scheduler.heldCount());
+        scheduler.dispatch();
+
+        verify(jobService, times(2)).dispatch(small.getId());
+        verify(jobService, never()).dispatch(large.getId());
+        assertEquals(1, scheduler.heldCount());
+    }
+
+    @Test
+    void testFailedReleaseBacksOff() {
+        JobScheduler scheduler = scheduler(60_000);
+        scheduler.hold(small);
+        doThrow(new IllegalStateException("database down")).when(jobService).dispatch(small.getId());
+
+        scheduler.dispatch();
+        scheduler.dispatch();
+
+        verify(jobService, times(1)).dispatch(small.getId());
+        assertEquals(1, scheduler.heldCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    private JobScheduler scheduler(long retryBackoffMs) {
+        ObjectProvider<JobService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(jobService);
+        return new JobScheduler(mock(JobRepository.class), amqpAdmin, provider, true, 0.2, 1, "media_jobs", retryBackoffMs);
+    }
+
+    private static Job job(double predictedSeconds) {
+        Job job = new Job();
+        job.setId(UUID.randomUUID());
+        job.setPredictedSeconds(predictedSeconds);
+        job.setCreatedAt(LocalDateTime.now());
+        return job;
+    }
+}
@@ -2,18 +2,28 @@ package com.mediatranscoder.service;
 
 import com.mediatranscoder.model.Job;
 import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.model.MediaInfo;
+import com.mediatranscoder.model.Rendition;
 import com.mediatranscoder.repository.JobRepository;
 import com.mediatranscoder.service.RabbitMQJobProducer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -31,6 +41,37 @@ class JobServiceTest {
     @Mock
     private RabbitMQJobProducer rabbitMQJobProducer;
 
+    @Spy
+    private ObservationRegistry observationRegistry = ObservationRegistry.create();
+
+    @Mock
+    private MediaProbe mediaProbe;
+
+    @Mock
+    private JobCostModel jobCostModel;
+
+    @Mock
+    private JobScheduler jobScheduler;
+
+    @Mock
+    private SegmentedTranscodeService segmentedTranscodeService;
+
+    @Mock
+    private ImageRenderService imageRenderService;
+
+    @Mock
+    private TargetQualityService targetQualityService;
+
+    @Mock
+    private FailureClassifier failureClassifier;
+
+    // No replica configured: reads go straight to the repository
+    @Spy
+    private JobReadRouter jobReadRouter = new JobReadRouter("", 5000, null, null, new SimpleMeterRegistry());
+
+    @Spy
+    private ProgressTracker progressTracker = ProgressTrackerTest.tracker(3600000, null);
+
     @InjectMocks
     private JobService jobService;
 
@@ -69,6 +110,7 @@ class JobServiceTest {
         when(fileStorageService.storeFile(any(MockMultipartFile.class))).thenReturn(fileKey);
         when(fileStorageService.getFileUrl(fileKey)).thenReturn(fileUrl);
         when(jobRepository.save(any(Job.class))).thenReturn(mockJob);
+        when(rabbitMQJobProducer.sendJob(any(Job.class), anyString())).thenReturn(CompletableFuture.completedFuture(null));
 
         Job result = jobService.createJob(mockFile, "jpg", "high", mockSettings);
 
@@ -95,6 +137,7 @@ class JobServiceTest {
         when(fileStorageService.storeFile(any(MockMultipartFile.class))).thenReturn(fileKey);
         when(fileStorageService.getFileUrl(fileKey)).thenReturn(fileUrl);
         when(jobRepository.save(any(Job.class))).thenReturn(mockJob);
+        when(rabbitMQJobProducer.sendJob(any(Job.class), anyString())).thenReturn(CompletableFuture.completedFuture(null));
 
         Job result = jobService.createJob(mockFile, "png", "medium", null);
 
@@ -119,6 +162,331 @@ class JobServiceTest {
         verify(rabbitMQJobProducer, never()).sendJob(any(Job.class), anyString());
     }
 
+    @Test
+    void testCreateJob_RejectsUndecodableUpload() throws IOException {
+        when(mediaProbe.probe(any())).thenThrow(new UnsupportedMediaException("Unrecognised media format"));
+
+        assertThrows(UnsupportedMediaException.class, () -> jobService.createJob(mockFile, "png", "high", mockSettings));
+
+        verify(fileStorageService, never()).storeFile(any(MockMultipartFile.class));
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void testCreateJob_PassthroughReusesOriginal() throws IOException {
+        ReflectionTestUtils.setField(jobService, "passthroughEnabled", true);
+        MediaInfo png = new MediaInfo();
+        png.setType(MediaInfo.Type.IMAGE);
+        png.setContainer("png");
+        png.setWidth(800);
+        png.setHeight(600);
+        when(mediaProbe.probe(any())).thenReturn(png);
+        when(fileStorageService.storeFile(any(MockMultipartFile.class))).thenReturn("test-key/test-image.png");
+        when(jobRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Job result = jobService.createJob(mockFile, "png", "medium", mockSettings);
+
+        assertEquals(JobStatus.COMPLETED, result.getStatus());
+        assertEquals("test-key/test-image.png", result.getProcessedFileKey());
+        assertEquals(png, result.getMediaInfo());
+        verify(rabbitMQJobProducer, never()).sendJob(any(), any());
+    }
+
+    @Test
+    void testCreateJob_NoPassthroughBetweenMatroskaDocTypes() throws IOException {
+        ReflectionTestUtils.setField(jobService, "passthroughEnabled", true);
+        MediaInfo mkv = new MediaInfo();
+        mkv.setType(MediaInfo.Type.VIDEO);
+        mkv.setContainer("matroska");
+        mkv.setBrand("matroska");
+        when(mediaProbe.probe(any())).thenReturn(mkv);
+        when(fileStorageService.storeFile(any(MockMultipartFile.class))).thenReturn("test-key/test-video.mkv");
+        when(jobRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(rabbitMQJobProducer.sendJob(any(Job.class), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        Job result = jobService.createJob(mockFile, "webm", "high", Map.of());
+
+        assertEquals(JobStatus.QUEUED, result.getStatus());
+        assertNull(result.getProcessedFileKey());
+        verify(rabbitMQJobProducer).sendJob(eq(result), any());
+    }
+
+    @Test
+    void testCreateJob_EnqueueFailureMarksJobFailed() throws IOException {
+        String fileKey = "test-key/test-image.jpg";
+        when(fileStorageService.storeFile(any(MockMultipartFile.class))).thenReturn(fileKey);
+        when(fileStorageService.getFileUrl(fileKey)).thenReturn("https://storage.googleapis.com/test-bucket/" + fileKey);
+        when(jobRepository.save(any(Job.class))).thenReturn(mockJob);
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(rabbitMQJobProducer.sendJob(any(Job.class), anyString()))
+            .thenReturn(CompletableFuture.failedFuture(new RuntimeException("nacked")));
+
+        jobService.createJob(mockFile, "jpg", "high", mockSettings);
+
+        assertEquals(JobStatus.FAILED, mockJob.getStatus());
+        assertTrue(mockJob.getErrorMessage().contains("nacked"));
+    }
+
+    @Test
+    void testCreateJob_PublishesOnlyAfterCommit() throws IOException {
+        String fileKey = "test-key/test-image.jpg";
+        when(fileStorageService.storeFile(any(MockMultipartFile.class))).thenReturn(fileKey);
+        when(fileStorageService.getFileUrl(fileKey)).thenReturn("https://storage.googleapis.com/test-bucket/" + fileKey);
+        when(jobRepository.save(any(Job.class))).thenReturn(mockJob);
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(rabbitMQJobProducer.sendJob(any(Job.class), anyString()))
+            .thenReturn(CompletableFuture.failedFuture(new RuntimeException("nacked")));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            jobService.createJob(mockFile, "jpg", "high", mockSettings);
+
+            // A failure reported before commit would not find the job's row
+            verify(rabbitMQJobProducer, never()).sendJob(any(), any());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(rabbitMQJobProducer).sendJob(eq(mockJob), anyString());
+        assertEquals(JobStatus.FAILED, mockJob.getStatus());
+    }
+
+    @Test
+    void testApplyWorkerResult_PartialRenditionFailure() {
+        Rendition jpg = new Rendition();
+        jpg.setOutputFormat("jpg");
+        jpg.setOutputQuality("high");
+        Rendition webp = new Rendition();
+        webp.setOutputFormat("webp");
+        webp.setOutputQuality("medium");
+        mockJob.setRenditions(new ArrayList<>(List.of(jpg, webp)));
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.save(mockJob)).thenReturn(mockJob);
+
+        List<Map<String, Object>> results = List.of(
+            Map.of("index", 0, "status", "completed", "processed_file_key", "processed/0.jpg"),
+            Map.of("index", 1, "status", "failed", "error_message", "encoder error"));
+        Job result = jobService.applyWorkerResult(mockJob.getId(), "completed", null, null, results);
+
+        assertEquals(JobStatus.COMPLETED, result.getStatus());
+        assertEquals("processed/0.jpg", result.getProcessedFileKey());
+        assertEquals(JobStatus.COMPLETED, jpg.getStatus());
+        assertEquals(JobStatus.FAILED, webp.getStatus());
+        assertEquals("encoder error", webp.getErrorMessage());
+        assertNotNull(result.getCompletedAt());
+    }
+
+    @Test
+    void testApplyWorkerResult_PrimaryRenditionFailurePromotesNext() {
+        Rendition jpg = new Rendition();
+        jpg.setOutputFormat("jpg");
+        jpg.setOutputQuality("high");
+        Rendition webp = new Rendition();
+        webp.setOutputFormat("webp");
+        webp.setOutputQuality("medium");
+        mockJob.setRenditions(new ArrayList<>(List.of(jpg, webp)));
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.save(mockJob)).thenReturn(mockJob);
+
+        List<Map<String, Object>> results = List.of(
+            Map.of("index", 0, "status", "failed", "error_message", "encoder error"),
+            Map.of("index", 1, "status", "completed", "processed_file_key", "processed/1.webp"));
+        Job result = jobService.applyWorkerResult(mockJob.getId(), "completed", null, null, results);
+
+        assertEquals(JobStatus.COMPLETED, result.getStatus());
+        assertEquals("processed/1.webp", result.getProcessedFileKey());
+        assertEquals("webp", result.getOutputFormat());
+        assertEquals("1 of 2 renditions failed", result.getErrorMessage());
+    }
+
+    @Test
+    void testApplyWorkerResult_NoRenditionCompleted() {
+        Rendition jpg = new Rendition();
+        jpg.setOutputFormat("jpg");
+        Rendition webp = new Rendition();
+        webp.setOutputFormat("webp");
+        mockJob.setRenditions(new ArrayList<>(List.of(jpg, webp)));
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.save(mockJob)).thenReturn(mockJob);
+
+        List<Map<String, Object>> results = List.of(
+            Map.of("index", 0, "status", "failed", "error_message", "encoder error"),
+            Map.of("index", 1, "status", "failed", "error_message", "out of memory"));
+        when(rabbitMQJobProducer.sendDeadLetter(eq(mockJob), any(), anyInt(), any()))
+            .thenReturn(CompletableFuture.completedFuture(null));
+        Job result = jobService.applyWorkerResult(mockJob.getId(), "completed", null, null, results);
+
+        assertEquals(JobStatus.FAILED, result.getStatus());
+        assertNull(result.getProcessedFileKey());
+        assertEquals("encoder error", result.getErrorMessage());
+    }
+
+    @Test
+    void testCreateJob_SchedulerHoldsJobInsteadOfEnqueueing() throws IOException {
+        when(fileStorageService.storeFile(any(MockMultipartFile.class))).thenReturn("test-key/test-image.jpg");
+        when(jobRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(jobCostModel.predictSeconds(any(Job.class))).thenReturn(7.5);
+        when(jobScheduler.isEnabled()).thenReturn(true);
+
+        Job result = jobService.createJob(mockFile, "jpg", "high", mockSettings);
+
+        assertEquals(7.5, result.getPredictedSeconds());
+        assertNull(result.getDispatchedAt());
+        verify(jobScheduler).hold(result);
+        verify(rabbitMQJobProducer, never()).sendJob(any(), any());
+    }
+
+    @Test
+    void testApplyWorkerResult_TeachesCostModelOnce() {
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.save(mockJob)).thenReturn(mockJob);
+
+        jobService.applyWorkerResult(mockJob.getId(), "completed", "processed/out.jpg", null, null, 2500L);
+        // A redelivered callback for an already completed job
+        jobService.applyWorkerResult(mockJob.getId(), "completed", "processed/out.jpg", null, null, 2500L);
+
+        assertEquals(2500L, mockJob.getProcessingMs());
+        verify(jobCostModel, times(1)).observe(mockJob, 2.5);
+    }
+
+    @Test
+    void testApplyWorkerResult_TransientFailureIsRetried() {
+        String error = "Worker error: Connection reset by peer";
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.save(mockJob)).thenReturn(mockJob);
+        when(failureClassifier.classify(error)).thenReturn(FailureClassifier.Kind.TRANSIENT);
+        when(fileStorageService.getFileUrl(mockJob.getOriginalFileKey())).thenReturn("https://storage/original");
+        when(rabbitMQJobProducer.maxAttempts()).thenReturn(4);
+        when(rabbitMQJobProducer.sendRetry(mockJob, "https://storage/original", 2))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        Job result = jobService.applyWorkerResult(mockJob.getId(), "failed", null, error, null);
+
+        assertEquals(JobStatus.QUEUED, result.getStatus());
+        assertEquals(2, result.getAttempts());
+        assertNull(result.getDeadLetteredAt());
+        verify(rabbitMQJobProducer, never()).sendDeadLetter(any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void testApplyWorkerResult_PermanentFailureIsDeadLettered() {
+        String error = "Invalid data found when processing input";
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.save(mockJob)).thenReturn(mockJob);
+        when(failureClassifier.classify(error)).thenReturn(FailureClassifier.Kind.PERMANENT);
+        when(fileStorageService.getFileUrl(mockJob.getOriginalFileKey())).thenReturn("https://storage/original");
+        when(rabbitMQJobProducer.sendDeadLetter(eq(mockJob), eq("https://storage/original"), eq(1), startsWith("PERMANENT")))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        Job result = jobService.applyWorkerResult(mockJob.getId(), "failed", null, error, null);
+
+        assertEquals(JobStatus.FAILED, result.getStatus());
+        assertNotNull(result.getDeadLetteredAt());
+        verify(rabbitMQJobProducer, never()).sendRetry(any(), any(), anyInt());
+    }
+
+    @Test
+    void testApplyWorkerResult_IgnoresResultsFromSupersededAttempts() {
+        mockJob.setStatus(JobStatus.QUEUED);
+        mockJob.setAttempts(2);
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.save(mockJob)).thenReturn(mockJob);
+
+        // The first run finishing late must not fail or complete the retry that replaced it
+        jobService.applyWorkerResult(mockJob.getId(), "failed", null, "worker died", null, 4000L, 1);
+
+        assertEquals(JobStatus.QUEUED, mockJob.getStatus());
+        assertNull(mockJob.getProcessingMs());
+        verify(jobRepository, never()).save(any());
+        verify(failureClassifier, never()).classify(any());
+
+        jobService.applyWorkerResult(mockJob.getId(), "completed", "processed/out.jpg", null, null, 2500L, 2);
+
+        assertEquals(JobStatus.COMPLETED, mockJob.getStatus());
+        assertEquals("processed/out.jpg", mockJob.getProcessedFileKey());
+    }
+
+    @Test
+    void testReplay_RequeuesDeadLetteredJobWithFreshAttempts() {
+        mockJob.setStatus(JobStatus.FAILED);
+        mockJob.setErrorMessage("Connection refused");
+        mockJob.setAttempts(4);
+        mockJob.setDeadLetteredAt(LocalDateTime.now());
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.save(mockJob)).thenReturn(mockJob);
+        when(fileStorageService.getFileUrl(mockJob.getOriginalFileKey())).thenReturn("https://storage/original");
+        when(rabbitMQJobProducer.sendJob(mockJob, "https://storage/original"))
+            .thenReturn(CompletableFuture.completedFuture(null));
+
+        assertTrue(jobService.replay(mockJob.getId()));
+        // Already back in the queue: a second replay of the same message is a no-op
+        assertFalse(jobService.replay(mockJob.getId()));
+
+        assertEquals(JobStatus.QUEUED, mockJob.getStatus());
+        assertEquals(1, mockJob.getAttempts());
+        assertNull(mockJob.getDeadLetteredAt());
+        assertNull(mockJob.getErrorMessage());
+        verify(rabbitMQJobProducer, times(1)).sendJob(mockJob, "https://storage/original");
+    }
+
+    @Test
+    void testApplyBatchResults_SkipsUnknownJobs() {
+        UUID deleted = UUID.randomUUID();
+        when(jobRepository.findAllById(List.of(mockJob.getId(), deleted))).thenReturn(List.of(mockJob));
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.save(mockJob)).thenReturn(mockJob);
+
+        int applied = jobService.applyBatchResults(List.of(
+            Map.of("job_id", mockJob.getId().toString(), "status", "completed",
+                "processed_file_key", "processed/out.jpg", "processing_ms", 120),
+            Map.of("job_id", deleted.toString(), "status", "completed", "processed_file_key", "processed/gone.jpg")));
+
+        assertEquals(1, applied);
+        assertEquals(JobStatus.COMPLETED, mockJob.getStatus());
+        assertEquals("processed/out.jpg", mockJob.getProcessedFileKey());
+        assertEquals(120L, mockJob.getProcessingMs());
+    }
+
+    @Test
+    void testFinalizeUpload_QueuesJobWhenObjectExists() {
+        mockJob.setStatus(JobStatus.PENDING_UPLOAD);
+        when(jobRepository.findByIdForUpdate(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.save(mockJob)).thenReturn(mockJob);
+        when(fileStorageService.exists(mockJob.getOriginalFileKey())).thenReturn(true);
+        when(fileStorageService.getFileUrl(mockJob.getOriginalFileKey())).thenReturn("https://storage/input");
+        when(rabbitMQJobProducer.sendJob(mockJob, "https://storage/input")).thenReturn(CompletableFuture.completedFuture(null));
+
+        Job result = jobService.finalizeUpload(mockJob.getId());
+
+        assertEquals(JobStatus.QUEUED, result.getStatus());
+        verify(rabbitMQJobProducer).sendJob(mockJob, "https://storage/input");
+    }
+
+    @Test
+    void testFinalizeUpload_AlreadyFinalizedJobIsNotSubmittedAgain() {
+        mockJob.setStatus(JobStatus.QUEUED);
+        when(jobRepository.findByIdForUpdate(mockJob.getId())).thenReturn(Optional.of(mockJob));
+
+        Job result = jobService.finalizeUpload(mockJob.getId());
+
+        assertEquals(JobStatus.QUEUED, result.getStatus());
+        verify(fileStorageService, never()).exists(any());
+        verify(jobRepository, never()).save(any());
+        verify(rabbitMQJobProducer, never()).sendJob(any(Job.class), anyString());
+    }
+
+    @Test
+    void testFinalizeUpload_MissingObject() {
+        mockJob.setStatus(JobStatus.PENDING_UPLOAD);
+        when(jobRepository.findByIdForUpdate(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(fileStorageService.exists(mockJob.getOriginalFileKey())).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> jobService.finalizeUpload(mockJob.getId()));
+
+        assertEquals(JobStatus.PENDING_UPLOAD, mockJob.getStatus());
+        verify(rabbitMQJobProducer, never()).sendJob(any(Job.class), anyString());
+    }
+
     @Test
     void testGetJob_Success() {
         UUID jobId = UUID.randomUUID();
@@ -143,6 +511,46 @@ class JobServiceTest {
         verify(jobRepository).findById(jobId);
     }
 
+    @Test
+    void testRecordProgress_PersistsOnlyTheTransition() {
+        when(jobRepository.markProcessing(eq(mockJob.getId()), eq(1), any())).thenReturn(1);
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+
+        jobService.recordProgress(mockJob.getId(), 1, 10);
+        jobService.recordProgress(mockJob.getId(), 1, 35);
+        jobService.recordProgress(mockJob.getId(), 1, 60);
+
+        verify(jobRepository, times(1)).markProcessing(eq(mockJob.getId()), eq(1), any());
+        verify(jobRepository, never()).save(any());
+        assertEquals(60, jobService.getJob(mockJob.getId()).getProgress());
+    }
+
+    @Test
+    void testGetJob_IgnoresProgressOfEarlierAttempt() {
+        mockJob.setAttempts(2);
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        jobService.recordProgress(mockJob.getId(), 1, 70);
+
+        Job result = jobService.getJob(mockJob.getId());
+
+        assertSame(mockJob, result);
+        assertNull(result.getProgress());
+    }
+
+    @Test
+    void testApplyWorkerResult_CompletionClearsProgress() {
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.save(mockJob)).thenReturn(mockJob);
+        jobService.recordProgress(mockJob.getId(), 1, 80);
+
+        Job result = jobService.applyWorkerResult(mockJob.getId(), "completed", "processed/out.jpg", null);
+
+        verify(progressTracker).remove(mockJob.getId());
+        assertEquals(0, progressTracker.size());
+        assertEquals(100, jobService.getJob(mockJob.getId()).getProgress());
+        assertEquals(JobStatus.COMPLETED, result.getStatus());
+    }
+
     @Test
     void testGetJobsByStatus() {
         List<Job> mockJobs = Arrays.asList(mockJob);
@@ -170,11 +578,92 @@ class JobServiceTest {
     }
 
     @Test
-    void testDeleteJob() {
-        UUID jobId = UUID.randomUUID();
+    void testDeleteJob() throws IOException {
+        mockJob.setProcessedFileKey("processed/test-image.png");
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+
+        jobService.deleteJob(mockJob.getId());
+
+        verify(jobRepository).delete(mockJob);
+        verify(fileStorageService).deleteFiles(List.of("test-key/test-image.jpg", "processed/test-image.png"));
+    }
+
+    @Test
+    void testDeleteJob_KeepsOriginalSharedWithReprocessedJob() throws IOException {
+        mockJob.setProcessedFileKey("processed/test-image.png");
+        Job derived = new Job();
+        derived.setId(UUID.randomUUID());
+        derived.setOriginalFileKey(mockJob.getOriginalFileKey());
+        derived.setProcessedFileKey("processed/derived.webp");
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.findByOriginalFileKey(mockJob.getOriginalFileKey())).thenReturn(List.of(mockJob, derived));
+
+        jobService.deleteJob(mockJob.getId());
+
+        verify(fileStorageService).deleteFiles(List.of("processed/test-image.png"));
+    }
+
+    @Test
+    void testReprocess_QueuesDerivedJobFromStoredOriginal() throws Exception {
+        mockJob.setStatus(JobStatus.COMPLETED);
+        mockJob.setProcessedFileKey("processed/test-image.jpg");
+        mockJob.setSettings(mockSettings);
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.findByOriginalFileKey(mockJob.getOriginalFileKey())).thenReturn(List.of(mockJob));
+        when(jobRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(fileStorageService.getFileUrl(mockJob.getOriginalFileKey())).thenReturn("https://storage/input");
+        when(rabbitMQJobProducer.sendJob(any(Job.class), eq("https://storage/input")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        Job derived = jobService.reprocess(mockJob.getId(), "webp", null, null);
+
+        assertEquals(mockJob.getId(), derived.getParentJobId());
+        assertEquals(mockJob.getOriginalFileKey(), derived.getOriginalFileKey());
+        assertEquals("webp", derived.getOutputFormat());
+        assertEquals("high", derived.getOutputQuality());
+        assertEquals(mockSettings, derived.getSettings());
+        assertEquals(JobStatus.QUEUED, derived.getStatus());
+        verify(rabbitMQJobProducer).sendJob(derived, "https://storage/input");
+        verify(fileStorageService, never()).storeFile(any(MockMultipartFile.class));
+    }
+
+    @Test
+    void testReprocess_ReusesIdenticalCompletedOutput() {
+        mockJob.setStatus(JobStatus.COMPLETED);
+        Job earlier = new Job();
+        earlier.setId(UUID.randomUUID());
+        earlier.setOriginalFileKey(mockJob.getOriginalFileKey());
+        earlier.setStatus(JobStatus.COMPLETED);
+        earlier.setProcessedFileKey("processed/earlier.png");
+        earlier.setOutputFormat("png");
+        earlier.setOutputQuality("medium");
+        earlier.setSettings(new HashMap<>(mockSettings));
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+        when(jobRepository.findByOriginalFileKey(mockJob.getOriginalFileKey())).thenReturn(List.of(mockJob, earlier));
+        when(jobRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Job derived = jobService.reprocess(mockJob.getId(), "png", "medium", mockSettings);
+
+        assertEquals(JobStatus.COMPLETED, derived.getStatus());
+        assertEquals("processed/earlier.png", derived.getProcessedFileKey());
+        verify(rabbitMQJobProducer, never()).sendJob(any(Job.class), anyString());
+    }
 
-        jobService.deleteJob(jobId);
+    @Test
+    void testReprocess_PendingUploadIsRejected() {
+        mockJob.setStatus(JobStatus.PENDING_UPLOAD);
+        when(jobRepository.findById(mockJob.getId())).thenReturn(Optional.of(mockJob));
+
+        assertThrows(IllegalStateException.class, () -> jobService.reprocess(mockJob.getId(), "png", null, null));
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void testDeleteJob_NotFound() {
+        UUID jobId = UUID.randomUUID();
+        when(jobRepository.findById(jobId)).thenReturn(Optional.empty());
 
-        verify(jobRepository).deleteById(jobId);
+        assertThrows(RuntimeException.class, () -> jobService.deleteJob(jobId));
+        verify(jobRepository, never()).delete(any());
     }
 } 
\ No newline at end of file
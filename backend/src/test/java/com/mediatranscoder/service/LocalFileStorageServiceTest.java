@@ -0,0 +1,61 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.PresignedUpload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalFileStorageServiceTest {
+
+    @TempDir
+    Path root;
+
+    private LocalFileStorageService storage;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storage = new LocalFileStorageService(root.toString(), "http://localhost:8080", 15);
+    }
+
+    @Test
+    void testUploadTargetRoundTrip() throws Exception {
+        PresignedUpload target = storage.createUploadTarget("clip.mp4", "video/mp4");
+        assertEquals("PUT", target.getMethod());
+        assertFalse(storage.exists(target.getFileKey()));
+
+        UriComponents url = UriComponentsBuilder.fromUriString(target.getUploadUrl()).build();
+        String key = URLDecoder.decode(url.getQueryParams().getFirst("key"), StandardCharsets.UTF_8);
+        long expires = Long.parseLong(url.getQueryParams().getFirst("expires"));
+        String signature = url.getQueryParams().getFirst("signature");
+        assertEquals(target.getFileKey(), key);
+        assertTrue(storage.verify("PUT", key, expires, signature));
+        assertFalse(storage.verify("GET", key, expires, signature));
+
+        storage.write(key, new ByteArrayInputStream("video bytes".getBytes()));
+
+        assertTrue(storage.exists(target.getFileKey()));
+        File downloaded = storage.downloadFile(target.getFileKey());
+        assertEquals("video bytes", Files.readString(downloaded.toPath()));
+    }
+
+    @Test
+    void testExpiredSignatureIsRejected() {
+        assertFalse(storage.verify("PUT", "key/file.jpg", 0, "00"));
+    }
+
+    @Test
+    void testRejectsKeysOutsideRoot() {
+        assertThrows(IllegalArgumentException.class, () -> storage.resolve("../outside.jpg"));
+    }
+}
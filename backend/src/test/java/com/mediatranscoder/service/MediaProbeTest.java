@@ -0,0 +1,190 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.MediaInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaProbeTest {
+
+    private final MediaProbe probe = new MediaProbe();
+
+    @Test
+    void testPng() throws IOException {
+        ByteBuffer png = ByteBuffer.allocate(33)
+                .put(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A})
+                .putInt(13).put(ascii("IHDR")).putInt(1920).putInt(1080);
+
+        MediaInfo info = probe.probe(new ByteArrayInputStream(png.array()));
+
+        assertEquals(MediaInfo.Type.IMAGE, info.getType());
+        assertEquals("png", info.getContainer());
+        assertEquals(1920, info.getWidth());
+        assertEquals(1080, info.getHeight());
+        assertEquals(1920L * 1080, info.getPixelCount());
+    }
+
+    @Test
+    void testJpegSkipsSegmentsBeforeFrameHeader() throws IOException {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        jpeg.write(new byte[]{(byte) 0xFF, (byte) 0xD8});
+        // APP0 with a 14-byte payload
+        jpeg.write(new byte[]{(byte) 0xFF, (byte) 0xE0, 0, 16});
+        jpeg.write(new byte[14]);
+        jpeg.write(new byte[]{(byte) 0xFF, (byte) 0xC2, 0, 11, 8, 0x02, 0x58, 0x03, 0x20, 3, 0, 0, 0});
+
+        MediaInfo info = probe.probe(new ByteArrayInputStream(jpeg.toByteArray()));
+
+        assertEquals("jpeg", info.getContainer());
+        assertEquals("jpeg-progressive", info.getCodec());
+        assertEquals(800, info.getWidth());
+        assertEquals(600, info.getHeight());
+    }
+
+    @Test
+    void testMp4WithMovieHeaderAfterMediaDataIsSkippedNotRead() throws IOException {
+        ByteArrayOutputStream mp4 = new ByteArrayOutputStream();
+        mp4.write(box("ftyp", ascii("isom"), new byte[4]));
+        int mdatSize = 50_000_000;
+        mp4.write(ByteBuffer.allocate(8).putInt(mdatSize).put(ascii("mdat")).array());
+        byte[] mvhd = fullBox("mvhd", ByteBuffer.allocate(16).putInt(0).putInt(0).putInt(1000).putInt(12_500).array());
+        ByteBuffer tkhdBody = ByteBuffer.allocate(80);
+        tkhdBody.position(72);
+        tkhdBody.putInt(1280 << 16).putInt(720 << 16);
+        byte[] tkhd = fullBox("tkhd", tkhdBody.array());
+        byte[] hdlr = fullBox("hdlr", ByteBuffer.allocate(8).putInt(0).put(ascii("vide")).array());
+        byte[] stsd = fullBox("stsd", ByteBuffer.allocate(12).putInt(1).putInt(86).put(ascii("avc1")).array());
+        byte[] trak = box("trak", tkhd, box("mdia", hdlr, box("minf", box("stbl", stsd))));
+        byte[] moov = box("moov", mvhd, trak);
+
+        byte[] head = mp4.toByteArray();
+        SkippingStream stream = new SkippingStream(head, mdatSize - 8, moov);
+
+        MediaInfo info = probe.probe(stream);
+
+        // Buffer read-ahead aside, the 50 MB of media data was skipped rather than read
+        assertTrue(stream.bytesRead < 64 * 1024, "read " + stream.bytesRead + " bytes");
+        assertEquals(MediaInfo.Type.VIDEO, info.getType());
+        assertEquals("mp4", info.getContainer());
+        assertEquals("isom", info.getBrand());
+        assertEquals("avc1", info.getCodec());
+        assertEquals(1280, info.getWidth());
+        assertEquals(720, info.getHeight());
+        assertEquals(12_500L, info.getDurationMs());
+    }
+
+    @Test
+    void testQuickTimeWithoutFtypIsReadAsMov() throws IOException {
+        ByteArrayOutputStream mov = new ByteArrayOutputStream();
+        // Classic QuickTime layout: a wide placeholder, the media data, then the movie header
+        mov.write(box("wide"));
+        mov.write(box("mdat", new byte[32]));
+        byte[] mvhd = fullBox("mvhd", ByteBuffer.allocate(16).putInt(0).putInt(0).putInt(600).putInt(3000).array());
+        byte[] hdlr = fullBox("hdlr", ByteBuffer.allocate(8).putInt(0).put(ascii("soun")).array());
+        byte[] stsd = fullBox("stsd", ByteBuffer.allocate(12).putInt(1).putInt(36).put(ascii("twos")).array());
+        mov.write(box("moov", mvhd, box("trak", box("mdia", hdlr, box("minf", box("stbl", stsd))))));
+
+        MediaInfo info = probe.probe(new ByteArrayInputStream(mov.toByteArray()));
+
+        assertEquals(MediaInfo.Type.AUDIO, info.getType());
+        assertEquals("mov", info.getContainer());
+        assertEquals("qt  ", info.getBrand());
+        assertEquals("twos", info.getCodec());
+        assertEquals(5000L, info.getDurationMs());
+    }
+
+    @Test
+    void testMatroskaDocTypeTellsWebmFromMkv() throws IOException {
+        MediaInfo webm = probe.probe(new ByteArrayInputStream(ebml("webm")));
+        MediaInfo mkv = probe.probe(new ByteArrayInputStream(ebml("matroska")));
+
+        assertEquals("matroska", webm.getContainer());
+        assertEquals("webm", webm.getBrand());
+        assertEquals("matroska", mkv.getContainer());
+        assertEquals("matroska", mkv.getBrand());
+    }
+
+    @Test
+    void testRejectsUnknownAndTruncatedInput() {
+        assertThrows(UnsupportedMediaException.class,
+                () -> probe.probe(new ByteArrayInputStream("hello, world".getBytes(StandardCharsets.US_ASCII))));
+        assertThrows(UnsupportedMediaException.class,
+                () -> probe.probe(new ByteArrayInputStream(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0})));
+        assertThrows(UnsupportedMediaException.class, () -> probe.probe(new ByteArrayInputStream(new byte[0])));
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // EBML header holding EBMLVersion and DocType, then the start of a Segment
+    private static byte[] ebml(String docType) {
+        byte[] name = ascii(docType);
+        ByteBuffer body = ByteBuffer.allocate(4 + 3 + name.length)
+                .put(new byte[]{0x42, (byte) 0x86, (byte) 0x81, 1})
+                .put(new byte[]{0x42, (byte) 0x82, (byte) (0x80 | name.length)}).put(name);
+        return ByteBuffer.allocate(5 + body.capacity() + 4)
+                .put(new byte[]{0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, (byte) (0x80 | body.capacity())})
+                .put(body.array())
+                .put(new byte[]{0x18, 0x53, (byte) 0x80, 0x67})
+                .array();
+    }
+
+    private static byte[] box(String type, byte[]... children) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] child : children) {
+            body.write(child);
+        }
+        return ByteBuffer.allocate(8 + body.size()).putInt(8 + body.size()).put(ascii(type)).put(body.toByteArray()).array();
+    }
+
+    private static byte[] fullBox(String type, byte[] body) throws IOException {
+        return box(type, new byte[4], body);
+    }
+
+    /** A head, a long run of zeros and a tail, counting every byte actually read. */
+    private static final class SkippingStream extends InputStream {
+        private final byte[] head;
+        private final long gap;
+        private final byte[] tail;
+        private long position;
+        long bytesRead;
+
+        SkippingStream(byte[] head, long gap, byte[] tail) {
+            this.head = head;
+            this.gap = gap;
+            this.tail = tail;
+        }
+
+        @Override
+        public int read() {
+            long tailStart = head.length + gap;
+            int b;
+            if (position < head.length) {
+                b = head[(int) position] & 0xFF;
+            } else if (position < tailStart) {
+                b = 0;
+            } else if (position - tailStart < tail.length) {
+                b = tail[(int) (position - tailStart)] & 0xFF;
+            } else {
+                return -1;
+            }
+            position++;
+            bytesRead++;
+            return b;
+        }
+
+        @Override
+        public long skip(long n) {
+            position += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.mediatranscoder.service;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+/**
+ * Downloads one object from a local HTTP stub that honours Range requests and
+ * caps each connection's bandwidth, first sequentially and then through
+ * {@link ParallelTransferEngine} at increasing parallelism. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mediatranscoder.service.ParallelTransferBenchmark}.
+ */
+public class ParallelTransferBenchmark {
+
+    private static final int OBJECT_SIZE = 128 * 1024 * 1024;
+    private static final long PER_CONNECTION_BYTES_PER_SECOND = 64L * 1024 * 1024;
+    private static final long PART_SIZE = 8 * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        byte[] object = new byte[OBJECT_SIZE];
+        new Random(7).nextBytes(object);
+        HttpServer server = startStub(object);
+        String url = "http://localhost:" + server.getAddress().getPort() + "/object";
+        Path target = Files.createTempFile("bench-", ".bin");
+        try {
+            long start = System.nanoTime();
+            try (InputStream in = openRange(url, 0, OBJECT_SIZE)) {
+                Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            report("single stream", System.nanoTime() - start);
+
+            for (int parallelism : new int[]{2, 4, 8, 16}) {
+                ParallelTransferEngine engine = new ParallelTransferEngine(PART_SIZE, parallelism, 0);
+                start = System.nanoTime();
+                engine.download(target, OBJECT_SIZE, (from, to) -> openRange(url, from, to));
+                report("parallel x" + parallelism, System.nanoTime() - start);
+                engine.shutdown();
+            }
+        } finally {
+            Files.deleteIfExists(target);
+            server.stop(0);
+        }
+    }
+
+    private static void report(String name, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-14s %6.2f s  %7.1f MiB/s%n", name, seconds, OBJECT_SIZE / seconds / (1024 * 1024));
+    }
+
+    private static InputStream openRange(String url, long start, long end) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestProperty("Range", "bytes=" + start + "-" + (end - 1));
+        return connection.getInputStream();
+    }
+
+    private static HttpServer startStub(byte[] object) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/object", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int start = 0;
+            int end = object.length;
+            if (range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring(6).split("-");
+                start = Integer.parseInt(bounds[0]);
+                end = Integer.parseInt(bounds[1]) + 1;
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + object.length);
+                exchange.sendResponseHeaders(206, end - start);
+            } else {
+                exchange.sendResponseHeaders(200, object.length);
+            }
+            try (OutputStream out = exchange.getResponseBody()) {
+                writeThrottled(out, object, start, end);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    // Simulates the per-connection throughput ceiling of a remote bucket
+    private static void writeThrottled(OutputStream out, byte[] object, int start, int end) throws IOException {
+        int slice = 256 * 1024;
+        long begin = System.nanoTime();
+        long sent = 0;
+        for (int position = start; position < end; position += slice) {
+            int length = Math.min(slice, end - position);
+            out.write(object, position, length);
+            sent += length;
+            long due = begin + sent * 1_000_000_000L / PER_CONNECTION_BYTES_PER_SECOND;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.mediatranscoder.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelTransferEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ParallelTransferEngine engine;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() {
+        engine = new ParallelTransferEngine(1000, 4, 2000);
+        content = new byte[10_500];
+        new Random(42).nextBytes(content);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void testDownloadReassemblesRangesAtOffsets() throws IOException {
+        Path target = tempDir.resolve("download.bin");
+
+        engine.download(target, content.length, (start, end) ->
+                new ByteArrayInputStream(content, (int) start, (int) (end - start)));
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    void testDownloadFailsOnShortRange() {
+        Path target = tempDir.resolve("short.bin");
+
+        assertThrows(IOException.class, () -> engine.download(target, content.length, (start, end) ->
+                new ByteArrayInputStream(content, (int) start, (int) Math.max(0, end - start - 1))));
+    }
+
+    @Test
+    void testUploadSplitsIntoOrderedParts() throws IOException {
+        Path source = tempDir.resolve("upload.bin");
+        Files.write(source, content);
+        ConcurrentHashMap<Integer, byte[]> parts = new ConcurrentHashMap<>();
+
+        int count = engine.upload(source, (index, in, length) -> {
+            byte[] part = in.readAllBytes();
+            assertEquals(length, part.length);
+            parts.put(index, part);
+        });
+
+        assertEquals(11, count);
+        assertEquals(engine.partCount(content.length), count);
+        byte[] joined = new byte[0];
+        for (int i = 0; i < count; i++) {
+            byte[] part = parts.get(i);
+            int offset = joined.length;
+            joined = Arrays.copyOf(joined, offset + part.length);
+            System.arraycopy(part, 0, joined, offset, part.length);
+        }
+        assertArrayEquals(content, joined);
+    }
+
+    @Test
+    void testFailedUploadSkipsQueuedPartsAndWaitsForRunningOnes() throws IOException {
+        Path source = tempDir.resolve("upload.bin");
+        Files.write(source, content);
+        Set<Integer> started = ConcurrentHashMap.newKeySet();
+        Set<Integer> finished = ConcurrentHashMap.newKeySet();
+        CountDownLatch othersRunning = new CountDownLatch(3);
+
+        assertThrows(IOException.class, () -> engine.upload(source, (index, in, length) -> {
+            started.add(index);
+            try {
+                if (index == 0) {
+                    // Fail only once every other thread is busy with a part
+                    othersRunning.await(5, TimeUnit.SECONDS);
+                    throw new IOException("part rejected");
+                }
+                othersRunning.countDown();
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.add(index);
+        }));
+
+        // Nothing is still writing once upload throws, so the caller's cleanup sees every stored part
+        assertEquals(Set.of(0, 1, 2, 3), started);
+        assertEquals(Set.of(1, 2, 3), finished);
+    }
+
+    @Test
+    void testThreshold() {
+        assertFalse(engine.shouldSplit(1999));
+        assertTrue(engine.shouldSplit(2000));
+    }
+}
@@ -0,0 +1,45 @@
+package com.mediatranscoder.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProcessedFileCacheTest {
+
+    @TempDir
+    Path root;
+
+    private final FileStorageService fileStorageService = mock(FileStorageService.class);
+
+    @Test
+    void testRestartDropsOnlyCacheFiles() throws Exception {
+        Files.writeString(root.resolve("operator-notes.txt"), "keep");
+        File downloaded = Files.writeString(root.resolve("download.tmp"), "processed").toFile();
+        when(fileStorageService.downloadFile("processed/1.jpg")).thenReturn(downloaded);
+
+        Path cached = new ProcessedFileCache(fileStorageService, root.toString(), 1024).get("processed/1.jpg");
+        Path foreign = Files.writeString(cached.resolveSibling("readme.txt"), "keep");
+        assertEquals(root.resolve(ProcessedFileCache.SUBDIRECTORY), cached.getParent());
+
+        new ProcessedFileCache(fileStorageService, root.toString(), 1024);
+
+        assertFalse(Files.exists(cached));
+        assertTrue(Files.exists(foreign));
+        assertTrue(Files.exists(root.resolve("operator-notes.txt")));
+    }
+
+    @Test
+    void testRefusesUnmarkedDirectoryWithFiles() throws Exception {
+        Path subdirectory = Files.createDirectories(root.resolve(ProcessedFileCache.SUBDIRECTORY));
+        Path other = Files.writeString(subdirectory.resolve("0123456789abcdef0123456789abcdef.jpg"), "not ours");
+
+        assertThrows(IllegalStateException.class, () -> new ProcessedFileCache(fileStorageService, root.toString(), 1024));
+        assertTrue(Files.exists(other));
+    }
+}
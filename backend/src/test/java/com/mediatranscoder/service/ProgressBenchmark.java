@@ -0,0 +1,137 @@
+package com.mediatranscoder.service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hammers {@link ProgressTracker} with ticks for a set of running jobs from
+ * several threads and reports updates per second and the table writes they
+ * caused (one per job). Given a JDBC URL, it then writes the same kind of
+ * ticks straight to a scratch table, one autocommitted UPDATE each, which is
+ * what storing progress on the jobs row would cost. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mediatranscoder.service.ProgressBenchmark -Dexec.args="jdbc:postgresql://localhost:5432/mediatranscoder postgres postgres"}.
+ */
+public class ProgressBenchmark {
+
+    private static final int THREADS = 8;
+    private static final int JOBS = 1_000;
+    private static final long DURATION_MS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        List<UUID> jobIds = new ArrayList<>(JOBS);
+        for (int i = 0; i < JOBS; i++) {
+            jobIds.add(UUID.randomUUID());
+        }
+
+        ProgressTracker tracker = ProgressTrackerTest.tracker(3_600_000, null);
+        LongAdder transitions = new LongAdder();
+        // Warm-up, then the measured run on a fresh attempt so every job transitions once more
+        run(jobIds, 1_000, (jobId, percent) -> tracker.update(jobId, 1, percent));
+        long updates = run(jobIds, DURATION_MS, (jobId, percent) -> {
+            if (tracker.update(jobId, 2, percent)) {
+                transitions.increment();
+            }
+        });
+        report("in memory", updates, transitions.sum());
+
+        if (args.length == 0) {
+            System.out.println("Pass a JDBC URL, user and password to measure direct table writes");
+            return;
+        }
+        try (Connection setup = DriverManager.getConnection(args[0], arg(args, 1), arg(args, 2))) {
+            try (Statement statement = setup.createStatement()) {
+                statement.execute("create table if not exists progress_benchmark (id uuid primary key, progress int)");
+                statement.execute("truncate progress_benchmark");
+            }
+            try (PreparedStatement insert = setup.prepareStatement("insert into progress_benchmark values (?, 0)")) {
+                for (UUID jobId : jobIds) {
+                    insert.setObject(1, jobId);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            try {
+                long writes = runOnDatabase(args, jobIds);
+                report("table writes", writes, writes);
+            } finally {
+                try (Statement statement = setup.createStatement()) {
+                    statement.execute("drop table progress_benchmark");
+                }
+            }
+        }
+    }
+
+    private interface Tick {
+        void apply(UUID jobId, int percent) throws SQLException;
+    }
+
+    private static long runOnDatabase(String[] args, List<UUID> jobIds) throws Exception {
+        // One connection per thread, as each request would hold one from the pool
+        List<Connection> connections = Collections.synchronizedList(new ArrayList<>());
+        ThreadLocal<PreparedStatement> update = new ThreadLocal<>();
+        try {
+            return run(jobIds, DURATION_MS, (jobId, percent) -> {
+                PreparedStatement statement = update.get();
+                if (statement == null) {
+                    Connection connection = DriverManager.getConnection(args[0], arg(args, 1), arg(args, 2));
+                    connections.add(connection);
+                    statement = connection.prepareStatement("update progress_benchmark set progress = ? where id = ?");
+                    update.set(statement);
+                }
+                statement.setInt(1, percent);
+                statement.setObject(2, jobId);
+                statement.executeUpdate();
+            });
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    private static long run(List<UUID> jobIds, long durationMs, Tick tick) throws InterruptedException {
+        LongAdder ticks = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (!stop.get()) {
+                        tick.apply(jobIds.get(random.nextInt(jobIds.size())), random.nextInt(101));
+                        ticks.increment();
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        Thread.sleep(durationMs);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return ticks.sum();
+    }
+
+    private static void report(String name, long updates, long writes) {
+        double seconds = DURATION_MS / 1000.0;
+        System.out.printf("%-13s %,14.0f updates/s  %,12.0f table writes/s%n", name, updates / seconds, writes / seconds);
+    }
+
+    private static String arg(String[] args, int index) {
+        return args.length > index ? args[index] : null;
+    }
+}
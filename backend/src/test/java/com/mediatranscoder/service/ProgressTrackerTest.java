@@ -0,0 +1,182 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ProgressTrackerTest {
+
+    private final Job job = job(JobStatus.PROCESSING, 1);
+
+    @Test
+    void testKeepsLatestTickOfEachAttempt() {
+        ProgressTracker tracker = tracker(3600000, null);
+
+        assertTrue(tracker.update(job.getId(), 1, 10));
+        assertFalse(tracker.update(job.getId(), 1, 40));
+        // Arrived late, behind the 40
+        assertFalse(tracker.update(job.getId(), 1, 30));
+        tracker.fill(job);
+        assertEquals(40, job.getProgress());
+
+        // A retry starts again from zero
+        job.setAttempts(2);
+        assertTrue(tracker.update(job.getId(), 2, 5));
+        assertFalse(tracker.update(job.getId(), 1, 90));
+        tracker.fill(job);
+        assertEquals(5, job.getProgress());
+        assertEquals(1, tracker.size());
+    }
+
+    @Test
+    void testFillWithoutTicks() {
+        ProgressTracker tracker = tracker(3600000, null);
+        Job completed = job(JobStatus.COMPLETED, 1);
+        Job queued = job(JobStatus.QUEUED, 1);
+        Job segmented = job(JobStatus.PROCESSING, 1);
+        segmented.setSegmentCount(8);
+        segmented.setSegmentsCompleted(2);
+        Job failed = job(JobStatus.FAILED, 1);
+
+        tracker.fill(List.of(completed, queued, segmented, failed));
+
+        assertEquals(100, completed.getProgress());
+        assertNull(queued.getProgress());
+        assertEquals(25, segmented.getProgress());
+        assertNull(failed.getProgress());
+    }
+
+    @Test
+    void testTickFromEarlierAttemptIsNotShown() {
+        ProgressTracker tracker = tracker(3600000, null);
+        tracker.update(job.getId(), 1, 60);
+        job.setAttempts(2);
+
+        RedisProgressMirror mirror = mock(RedisProgressMirror.class);
+        Job elsewhere = job(JobStatus.QUEUED, 2);
+        when(mirror.getAll(List.of(elsewhere.getId()))).thenReturn(Map.of(elsewhere.getId(), ProgressTracker.pack(1, 60)));
+
+        tracker.fill(job);
+        tracker(3600000, mirror).fill(elsewhere);
+
+        assertNull(job.getProgress());
+        assertNull(elsewhere.getProgress());
+    }
+
+    @Test
+    void testRemoveAndSweep() {
+        ProgressTracker tracker = tracker(3600000, null);
+        tracker.update(job.getId(), 1, 50);
+        tracker.remove(job.getId());
+        assertEquals(0, tracker.size());
+        // A late tick starts over; the row's conditional update keeps it from reopening a finished job
+        assertTrue(tracker.update(job.getId(), 1, 60));
+
+        ProgressTracker expiring = tracker(0, null);
+        expiring.update(job.getId(), 1, 50);
+        expiring.sweep();
+        assertEquals(0, expiring.size());
+    }
+
+    @Test
+    void testMirrorGetsOnlyMovedJobsAndServesOtherReplicas() {
+        RedisProgressMirror mirror = mock(RedisProgressMirror.class);
+        ProgressTracker tracker = tracker(3600000, mirror);
+        UUID other = UUID.randomUUID();
+        tracker.update(job.getId(), 1, 20);
+        tracker.update(job.getId(), 1, 35);
+        tracker.update(other, 1, 70);
+
+        tracker.flush();
+        tracker.update(other, 1, 70);
+        tracker.flush();
+
+        verify(mirror).putAll(Map.of(job.getId(), ProgressTracker.pack(1, 35), other, ProgressTracker.pack(1, 70)));
+        verifyNoMoreInteractions(mirror);
+
+        Job elsewhere = job(JobStatus.PROCESSING, 1);
+        when(mirror.getAll(List.of(elsewhere.getId()))).thenReturn(Map.of(elsewhere.getId(), ProgressTracker.pack(1, 80)));
+        tracker.fill(elsewhere);
+        assertEquals(80, elsewhere.getProgress());
+
+        tracker.remove(job.getId());
+        verify(mirror).remove(job.getId());
+    }
+
+    @Test
+    void testMirrorOutageDoesNotFailReadsOrLoseTicks() {
+        RedisProgressMirror mirror = mock(RedisProgressMirror.class);
+        ProgressTracker tracker = tracker(3600000, mirror);
+        doThrow(new IllegalStateException("redis down")).doNothing().when(mirror).putAll(any());
+        when(mirror.getAll(anyList())).thenThrow(new IllegalStateException("redis down"));
+        tracker.update(job.getId(), 1, 20);
+
+        tracker.flush();
+        tracker.flush();
+        Job elsewhere = job(JobStatus.PROCESSING, 1);
+        tracker.fill(elsewhere);
+
+        verify(mirror, times(2)).putAll(Map.of(job.getId(), ProgressTracker.pack(1, 20)));
+        assertNull(elsewhere.getProgress());
+    }
+
+    @Test
+    void testConcurrentTicksReportOneTransition() throws InterruptedException {
+        ProgressTracker tracker = tracker(3600000, null);
+        int threads = 8;
+        AtomicInteger transitions = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int percent = 0; percent <= 100; percent++) {
+                    if (tracker.update(job.getId(), 1, percent)) {
+                        transitions.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        tracker.fill(job);
+        assertEquals(1, transitions.get());
+        assertEquals(100, job.getProgress());
+    }
+
+    @SuppressWarnings("unchecked")
+    static ProgressTracker tracker(long ttlMillis, RedisProgressMirror mirror) {
+        ObjectProvider<RedisProgressMirror> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(mirror);
+        return new ProgressTracker(ttlMillis, provider);
+    }
+
+    private static Job job(JobStatus status, int attempts) {
+        Job job = new Job();
+        job.setId(UUID.randomUUID());
+        job.setStatus(status);
+        job.setAttempts(attempts);
+        return job;
+    }
+}
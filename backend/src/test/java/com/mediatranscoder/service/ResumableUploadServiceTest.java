@@ -0,0 +1,228 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.UploadProgress;
+import com.mediatranscoder.model.UploadSession;
+import com.mediatranscoder.repository.UploadChunkRepository;
+import com.mediatranscoder.repository.UploadSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ResumableUploadServiceTest {
+
+    @Mock
+    private UploadSessionRepository sessionRepository;
+
+    @Mock
+    private UploadChunkRepository chunkRepository;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @Mock
+    private JobService jobService;
+
+    @InjectMocks
+    private ResumableUploadService resumableUploadService;
+
+    private UploadSession session;
+
+    @BeforeEach
+    void setUp() {
+        session = new UploadSession();
+        session.setId(UUID.randomUUID());
+        session.setOriginalFilename("movie.mp4");
+        session.setContentType("video/mp4");
+        session.setTotalSize(25);
+        session.setChunkSize(10);
+        session.setOutputFormat("mp4");
+        session.setOutputQuality("high");
+        lenient().when(sessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+    }
+
+    @Test
+    void testProgressReportsRangesAndMissingChunks() {
+        when(chunkRepository.findChunkIndexes(session.getId())).thenReturn(List.of(0, 2));
+
+        UploadProgress progress = resumableUploadService.getProgress(session.getId());
+
+        assertEquals(15, progress.getReceivedBytes());
+        assertEquals(List.of(new UploadProgress.ByteRange(0, 10), new UploadProgress.ByteRange(20, 25)),
+                progress.getReceivedRanges());
+        assertEquals(List.of(1), progress.getMissingChunks());
+    }
+
+    @Test
+    void testWriteChunkRejectsUnalignedOffset() {
+        assertThrows(IllegalArgumentException.class, () ->
+                resumableUploadService.writeChunk(session.getId(), 5, 10, new ByteArrayInputStream(new byte[10])));
+    }
+
+    @Test
+    void testTruncatedChunkIsDiscarded() throws IOException {
+        doAnswer(invocation -> ((InputStream) invocation.getArgument(1)).readAllBytes())
+                .when(fileStorageService).storePart(anyString(), any(InputStream.class), anyString());
+
+        assertThrows(IOException.class, () ->
+                resumableUploadService.writeChunk(session.getId(), 10, -1, new ByteArrayInputStream(new byte[4])));
+
+        verify(fileStorageService).deleteFile(contains("part-000001.attempt-"));
+        verify(fileStorageService, never()).move(anyString(), anyString());
+        verify(chunkRepository, never()).save(any());
+    }
+
+    @Test
+    void testUnknownSessionIsReportedAsNotFound() {
+        UUID unknown = UUID.randomUUID();
+        when(sessionRepository.findById(unknown)).thenReturn(Optional.empty());
+
+        assertThrows(UploadSessionNotFoundException.class, () ->
+                resumableUploadService.writeChunk(unknown, 0, 10, new ByteArrayInputStream(new byte[10])));
+        assertThrows(UploadSessionNotFoundException.class, () -> resumableUploadService.complete(unknown));
+    }
+
+    @Test
+    void testChunkKeepsTheSessionAlive() throws IOException {
+        doAnswer(invocation -> ((InputStream) invocation.getArgument(1)).readAllBytes())
+                .when(fileStorageService).storePart(anyString(), any(InputStream.class), anyString());
+
+        resumableUploadService.writeChunk(session.getId(), 10, 10, new ByteArrayInputStream(new byte[10]));
+
+        var order = inOrder(sessionRepository, fileStorageService);
+        order.verify(sessionRepository).touch(eq(session.getId()), any(LocalDateTime.class));
+        order.verify(fileStorageService).storePart(anyString(), any(InputStream.class), anyString());
+    }
+
+    @Test
+    void testPurgeDiscardsOnlyIdleSessions() throws IOException {
+        ReflectionTestUtils.setField(resumableUploadService, "sessionTtlHours", 24L);
+        UploadSession completed = new UploadSession();
+        completed.setId(UUID.randomUUID());
+        completed.setStatus(UploadSession.Status.COMPLETED);
+        when(sessionRepository.findIdleSince(any(LocalDateTime.class))).thenReturn(List.of(session, completed));
+        when(chunkRepository.findChunkIndexes(session.getId())).thenReturn(List.of(0, 1));
+
+        resumableUploadService.purgeExpiredSessions();
+
+        verify(sessionRepository).findIdleSince(argThat(cutoff ->
+                cutoff.isBefore(LocalDateTime.now().minusHours(23)) && cutoff.isAfter(LocalDateTime.now().minusHours(25))));
+        verify(fileStorageService).deleteFile(endsWith(session.getId() + "/part-000000"));
+        verify(fileStorageService).deleteFile(endsWith(session.getId() + "/part-000001"));
+        verify(chunkRepository).deleteBySessionId(session.getId());
+        verify(chunkRepository, never()).deleteBySessionId(completed.getId());
+        verify(sessionRepository).delete(session);
+        verify(sessionRepository).delete(completed);
+    }
+
+    @Test
+    void testChunkIsRecordedOnlyAfterItsPartIsInPlace() throws IOException {
+        doAnswer(invocation -> ((InputStream) invocation.getArgument(1)).readAllBytes())
+                .when(fileStorageService).storePart(anyString(), any(InputStream.class), anyString());
+
+        resumableUploadService.writeChunk(session.getId(), 10, 10, new ByteArrayInputStream(new byte[10]));
+
+        var order = inOrder(fileStorageService, chunkRepository);
+        order.verify(fileStorageService).storePart(contains("part-000001.attempt-"), any(InputStream.class), eq("video/mp4"));
+        order.verify(fileStorageService).move(contains("part-000001.attempt-"), endsWith("part-000001"));
+        order.verify(chunkRepository).save(argThat(chunk -> chunk.getChunkIndex() == 1 && chunk.getSize() == 10));
+    }
+
+    @Test
+    void testFailedResendKeepsRecordedPart() throws IOException {
+        doAnswer(invocation -> {
+            ((InputStream) invocation.getArgument(1)).readNBytes(3);
+            throw new IOException("Connection reset");
+        }).when(fileStorageService).storePart(anyString(), any(InputStream.class), anyString());
+
+        assertThrows(IOException.class, () ->
+                resumableUploadService.writeChunk(session.getId(), 0, 10, new ByteArrayInputStream(new byte[10])));
+
+        verify(fileStorageService).deleteFile(contains("part-000000.attempt-"));
+        verify(fileStorageService, never()).deleteFile(endsWith("part-000000"));
+        verify(fileStorageService, never()).move(anyString(), anyString());
+    }
+
+    @Test
+    void testResendOfRecordedChunkLeavesPartAlone() throws IOException {
+        doAnswer(invocation -> ((InputStream) invocation.getArgument(1)).readAllBytes())
+                .when(fileStorageService).storePart(anyString(), any(InputStream.class), anyString());
+        when(chunkRepository.existsBySessionIdAndChunkIndex(session.getId(), 0)).thenReturn(true);
+
+        resumableUploadService.writeChunk(session.getId(), 0, 10, new ByteArrayInputStream(new byte[10]));
+
+        verify(fileStorageService).deleteFile(contains("part-000000.attempt-"));
+        verify(fileStorageService, never()).move(anyString(), anyString());
+        verify(chunkRepository, never()).save(any());
+    }
+
+    @Test
+    void testCompleteComposesPartsInOrder() throws IOException {
+        Job job = new Job();
+        job.setId(UUID.randomUUID());
+        when(chunkRepository.findChunkIndexes(session.getId())).thenReturn(List.of(0, 1, 2));
+        when(sessionRepository.transition(session.getId(), UploadSession.Status.ACTIVE, UploadSession.Status.COMPLETING))
+                .thenReturn(1);
+        when(fileStorageService.compose(anyList(), eq("movie.mp4"), eq("video/mp4"))).thenReturn("key/movie.mp4");
+        when(jobService.createJobForStoredFile(eq("movie.mp4"), eq("key/movie.mp4"), eq("mp4"), eq("high"), any()))
+                .thenReturn(job);
+
+        Job result = resumableUploadService.complete(session.getId());
+
+        assertEquals(job.getId(), result.getId());
+        assertEquals(UploadSession.Status.COMPLETED, session.getStatus());
+        verify(fileStorageService).compose(argThat(keys -> keys.size() == 3
+                && keys.get(0).endsWith("part-000000") && keys.get(2).endsWith("part-000002")),
+                eq("movie.mp4"), eq("video/mp4"));
+        verify(chunkRepository).deleteBySessionId(session.getId());
+    }
+
+    @Test
+    void testConcurrentCompleteDoesNotComposeAgain() throws IOException {
+        when(chunkRepository.findChunkIndexes(session.getId())).thenReturn(List.of(0, 1, 2));
+        // Another call claimed the session and is still composing
+        when(sessionRepository.transition(session.getId(), UploadSession.Status.ACTIVE, UploadSession.Status.COMPLETING))
+                .thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> resumableUploadService.complete(session.getId()));
+
+        verify(fileStorageService, never()).compose(anyList(), anyString(), anyString());
+        verify(jobService, never()).createJobForStoredFile(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testFailedCompleteReleasesTheClaim() throws IOException {
+        when(chunkRepository.findChunkIndexes(session.getId())).thenReturn(List.of(0, 1, 2));
+        when(sessionRepository.transition(session.getId(), UploadSession.Status.ACTIVE, UploadSession.Status.COMPLETING))
+                .thenReturn(1);
+        when(fileStorageService.compose(anyList(), anyString(), anyString())).thenThrow(new IOException("compose failed"));
+
+        assertThrows(IOException.class, () -> resumableUploadService.complete(session.getId()));
+
+        verify(sessionRepository).transition(session.getId(), UploadSession.Status.COMPLETING, UploadSession.Status.ACTIVE);
+    }
+
+    @Test
+    void testCompleteRejectsMissingChunks() {
+        when(chunkRepository.findChunkIndexes(session.getId())).thenReturn(List.of(0, 2));
+
+        assertThrows(IllegalStateException.class, () -> resumableUploadService.complete(session.getId()));
+    }
+}
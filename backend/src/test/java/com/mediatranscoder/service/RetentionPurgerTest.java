@@ -0,0 +1,139 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.RetentionReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionPurgerTest {
+
+    private static final String PARTITION = "jobs_p202401";
+
+    @Mock
+    private JobPartitionManager partitionManager;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private RetentionPurger purger;
+
+    private final UUID expired = UUID.randomUUID();
+    private final UUID expiredWithoutOutput = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        ReflectionTestUtils.setField(purger, "retentionDays", 90);
+        ReflectionTestUtils.setField(purger, "batchSize", 100);
+        ReflectionTestUtils.setField(purger, "blobsPerSecond", Integer.MAX_VALUE);
+        when(partitionManager.detachedPartitions()).thenReturn(List.of(PARTITION));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), eq(PARTITION))).thenReturn(8192L);
+
+        // One batch of two jobs, then an empty partition
+        ResultSet first = jobRow(expired, "uploads/a.jpg", "processed/a.png");
+        ResultSet second = jobRow(expiredWithoutOutput, "uploads/b.jpg", null);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(first);
+            handler.processRow(second);
+            return null;
+        }).doNothing().when(jdbcTemplate).query(startsWith("SELECT id, original_file_key"), any(RowCallbackHandler.class), eq(100));
+        when(jdbcTemplate.queryForList(contains("FROM job_renditions"), eq(String.class), any()))
+                .thenReturn(List.of("processed/b-1.webp"));
+        when(jdbcTemplate.queryForList(contains("FROM job_segments"), eq(String.class), any())).thenReturn(List.of());
+        when(jdbcTemplate.queryForList(contains("FROM rendered_variants"), eq(String.class), any()))
+                .thenReturn(List.of("variants/a-100.png"));
+        // A job reprocessed from a.jpg lives in a newer partition and still needs its original
+        ResultSet survivor = keyRow("uploads/a.jpg", "processed/c.png");
+        doAnswer(invocation -> {
+            ((RowCallbackHandler) invocation.getArgument(1)).processRow(survivor);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT original_file_key, processed_file_key FROM jobs"),
+                any(RowCallbackHandler.class), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPurgeDeletesBlobsThenRowsThenDropsPartition() throws IOException {
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        List<String> unshared = List.of("processed/a.png", "uploads/b.jpg", "processed/b-1.webp", "variants/a-100.png");
+        when(fileStorageService.deleteFiles(unshared)).thenReturn(3);
+
+        RetentionReport report = purger.purge();
+
+        assertEquals(LocalDate.now().minusDays(90), report.getCutoff());
+        verify(partitionManager).detachExpired(report.getCutoff());
+        // The original shared with the surviving job is kept
+        verify(fileStorageService).deleteFiles(unshared);
+        verify(jdbcTemplate).update(eq("DELETE FROM " + PARTITION + " WHERE id = ANY(?)"),
+                ArgumentMatchers.<Object>argThat(ids -> List.of((Object[]) ids).equals(List.of(expired, expiredWithoutOutput))));
+        verify(jdbcTemplate).execute("DROP TABLE " + PARTITION);
+        assertEquals(List.of(PARTITION), report.getPartitionsDropped());
+        assertEquals(2, report.getJobsPurged());
+        assertEquals(3, report.getBlobsDeleted());
+        assertEquals(1, report.getBlobsMissing());
+        assertEquals(8192, report.getTableBytesReclaimed());
+        assertSame(report, purger.getLastReport());
+    }
+
+    @Test
+    void testBlobFailureKeepsRowsAndPartition() throws IOException {
+        when(fileStorageService.deleteFiles(anyList())).thenThrow(new IOException("bucket unavailable"));
+
+        RetentionReport report = purger.purge();
+
+        verify(transactionTemplate, never()).executeWithoutResult(any());
+        verify(jdbcTemplate, never()).execute("DROP TABLE " + PARTITION);
+        assertTrue(report.getPartitionsDropped().isEmpty());
+        assertEquals(0, report.getJobsPurged());
+        assertEquals(4, report.getBlobFailures());
+    }
+
+    // id, original_file_key, processed_file_key
+    private static ResultSet jobRow(UUID id, String originalKey, String processedKey) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject(1, UUID.class)).thenReturn(id);
+        when(rs.getString(2)).thenReturn(originalKey);
+        when(rs.getString(3)).thenReturn(processedKey);
+        return rs;
+    }
+
+    // original_file_key, processed_file_key
+    private static ResultSet keyRow(String originalKey, String processedKey) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn(originalKey);
+        when(rs.getString(2)).thenReturn(processedKey);
+        return rs;
+    }
+}
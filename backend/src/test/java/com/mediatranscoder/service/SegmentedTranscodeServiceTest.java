@@ -0,0 +1,207 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobSegment;
+import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.model.MediaInfo;
+import com.mediatranscoder.repository.JobRepository;
+import com.mediatranscoder.repository.JobSegmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SegmentedTranscodeServiceTest {
+
+    @Mock
+    private JobRepository jobRepository;
+
+    @Mock
+    private JobSegmentRepository jobSegmentRepository;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @Mock
+    private RabbitMQJobProducer rabbitMQJobProducer;
+
+    private SegmentedTranscodeService service;
+    private Job job;
+
+    @BeforeEach
+    void setUp() {
+        service = new SegmentedTranscodeService(jobRepository, jobSegmentRepository, fileStorageService,
+                rabbitMQJobProducer, true, 120, 60, 8, 2);
+        MediaInfo media = new MediaInfo();
+        media.setType(MediaInfo.Type.VIDEO);
+        media.setDurationMs(30 * 60_000L);
+        job = new Job();
+        job.setId(UUID.randomUUID());
+        job.setOriginalFileKey("uploads/movie.mov");
+        job.setOutputFormat("mp4");
+        job.setOutputQuality("medium");
+        job.setMediaInfo(media);
+        job.setStatus(JobStatus.QUEUED);
+    }
+
+    @Test
+    void testPlanCoversDurationWithoutGapsAndRespectsCap() {
+        List<JobSegment> segments = service.plan(job.getId(), 30 * 60_000L + 7);
+
+        assertEquals(8, segments.size());
+        assertEquals(0, segments.get(0).getStartMs());
+        assertEquals(30 * 60_000L + 7, segments.get(7).getEndMs());
+        for (int i = 1; i < segments.size(); i++) {
+            assertEquals(segments.get(i - 1).getEndMs(), segments.get(i).getStartMs());
+        }
+    }
+
+    @Test
+    void testShortOrNonVideoJobsAreNotSegmented() {
+        assertTrue(service.shouldSegment(job));
+
+        job.getMediaInfo().setDurationMs(90_000L);
+        assertFalse(service.shouldSegment(job));
+
+        job.getMediaInfo().setDurationMs(30 * 60_000L);
+        job.setOutputFormat("gif");
+        assertFalse(service.shouldSegment(job));
+    }
+
+    @Test
+    void testFanOutPublishesEverySegment() {
+        when(jobSegmentRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(fileStorageService.getFileUrl("uploads/movie.mov")).thenReturn("https://storage/movie.mov");
+        when(rabbitMQJobProducer.sendSegment(eq(job), any(), eq("https://storage/movie.mov")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        service.fanOut(job);
+
+        assertEquals(8, job.getSegmentCount());
+        assertEquals(0, job.getSegmentsCompleted());
+        verify(rabbitMQJobProducer, times(8)).sendSegment(eq(job), any(), anyString());
+    }
+
+    @Test
+    void testFanOutPublishesOnlyAfterCommit() {
+        when(jobSegmentRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(fileStorageService.getFileUrl("uploads/movie.mov")).thenReturn("https://storage/movie.mov");
+        when(rabbitMQJobProducer.sendSegment(eq(job), any(), eq("https://storage/movie.mov")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.fanOut(job);
+
+            verify(rabbitMQJobProducer, never()).sendSegment(any(), any(), anyString());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(rabbitMQJobProducer, times(8)).sendSegment(eq(job), any(), anyString());
+    }
+
+    @Test
+    void testResultForUnrecordedSegmentOfActiveJobIsRetryable() {
+        when(jobSegmentRepository.findByJobIdAndSegmentIndex(job.getId(), 2)).thenReturn(Optional.empty());
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+
+        assertThrows(SegmentNotReadyException.class,
+                () -> service.applySegmentResult(job.getId(), 2, "completed", "processed/s2.mp4", null, 1500L));
+
+        // Once the job is over, a late result for a segment already cleaned up is simply dropped
+        job.setStatus(JobStatus.COMPLETED);
+        service.applySegmentResult(job.getId(), 2, "completed", "processed/s2.mp4", null, 1500L);
+        verify(jobSegmentRepository, never()).markCompleted(any(), anyString());
+    }
+
+    @Test
+    void testLastSegmentTriggersStitchOnce() {
+        job.setSegmentCount(2);
+        JobSegment first = segment(0, "processed/s0.mp4");
+        first.setStatus(JobStatus.COMPLETED);
+        JobSegment last = segment(1, null);
+        when(jobSegmentRepository.findByJobIdAndSegmentIndex(job.getId(), 1)).thenReturn(Optional.of(last));
+        when(jobSegmentRepository.markCompleted(last.getId(), "processed/s1.mp4")).thenReturn(1, 0);
+        when(jobRepository.recordSegmentCompleted(job.getId(), 1500L)).thenReturn(1);
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(jobRepository.findSegmentsCompleted(job.getId())).thenReturn(2);
+        when(jobSegmentRepository.findByJobIdOrderBySegmentIndex(job.getId())).thenReturn(List.of(first, last));
+        when(fileStorageService.getFileUrl(anyString())).thenAnswer(invocation -> "https://storage/" + invocation.getArgument(0));
+        when(rabbitMQJobProducer.sendStitch(any(), anyString(), anyList())).thenReturn(CompletableFuture.completedFuture(null));
+
+        service.applySegmentResult(job.getId(), 1, "completed", "processed/s1.mp4", null, 1500L);
+        // Redelivered callback
+        service.applySegmentResult(job.getId(), 1, "completed", "processed/s1.mp4", null, 1500L);
+
+        verify(rabbitMQJobProducer, times(1)).sendStitch(job, "https://storage/uploads/movie.mov",
+                List.of("https://storage/processed/s0.mp4", "https://storage/processed/s1.mp4"));
+        verify(jobRepository, times(1)).recordSegmentCompleted(job.getId(), 1500L);
+    }
+
+    @Test
+    void testFailedSegmentRetriesThenFailsJob() {
+        JobSegment segment = segment(3, null);
+        segment.setAttempts(1);
+        when(jobSegmentRepository.findByJobIdAndSegmentIndex(job.getId(), 3)).thenReturn(Optional.of(segment));
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(fileStorageService.getFileUrl("uploads/movie.mov")).thenReturn("https://storage/movie.mov");
+        when(rabbitMQJobProducer.sendSegment(job, segment, "https://storage/movie.mov"))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        service.applySegmentResult(job.getId(), 3, "failed", null, "worker died", null);
+
+        assertEquals(2, segment.getAttempts());
+        assertEquals(JobStatus.QUEUED, job.getStatus());
+        verify(rabbitMQJobProducer).sendSegment(job, segment, "https://storage/movie.mov");
+
+        service.applySegmentResult(job.getId(), 3, "failed", null, "worker died again", null);
+
+        assertEquals(JobStatus.FAILED, segment.getStatus());
+        assertEquals(JobStatus.FAILED, job.getStatus());
+        assertTrue(job.getErrorMessage().contains("Segment 3"));
+        verify(rabbitMQJobProducer, times(1)).sendSegment(any(), any(), anyString());
+    }
+
+    private JobSegment segment(int index, String processedFileKey) {
+        JobSegment segment = new JobSegment();
+        segment.setId(UUID.randomUUID());
+        segment.setJobId(job.getId());
+        segment.setSegmentIndex(index);
+        segment.setProcessedFileKey(processedFileKey);
+        segment.setAttempts(1);
+        return segment;
+    }
+
+    @Test
+    void testSegmentOutputsAreDeletedOnlyAfterCommit() throws Exception {
+        JobSegment segment = new JobSegment();
+        segment.setProcessedFileKey("segments/0.mp4");
+        when(jobSegmentRepository.findByJobIdOrderBySegmentIndex(job.getId())).thenReturn(List.of(segment));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.cleanUp(job.getId());
+
+            verify(jobSegmentRepository).deleteByJobId(job.getId());
+            verify(fileStorageService, never()).deleteFiles(any());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(fileStorageService).deleteFiles(List.of("segments/0.mp4"));
+    }
+}
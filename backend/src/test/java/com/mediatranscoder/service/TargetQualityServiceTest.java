@@ -0,0 +1,135 @@
+package com.mediatranscoder.service;
+
+import com.mediatranscoder.model.Job;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TargetQualityServiceTest {
+
+    private final TargetQualityService service = new TargetQualityService(256);
+
+    @Test
+    void testParseTarget() {
+        assertNull(TargetQualityService.parseTarget("medium"));
+        assertNull(TargetQualityService.parseTarget(null));
+        assertEquals(0.97, TargetQualityService.parseTarget("ssim:0.97"));
+
+        assertThrows(IllegalArgumentException.class, () -> TargetQualityService.parseTarget("ssim:high"));
+        assertThrows(IllegalArgumentException.class, () -> TargetQualityService.parseTarget("ssim:1.5"));
+        assertThrows(IllegalArgumentException.class, () -> TargetQualityService.parseTarget("ssim:0"));
+    }
+
+    @Test
+    void testSsimIsOneForIdenticalPlanesAndDropsWithNoise() {
+        int width = 64;
+        int height = 48;
+        int[] plane = new int[width * height];
+        int[] noisy = new int[width * height];
+        Random random = new Random(7);
+        for (int i = 0; i < plane.length; i++) {
+            plane[i] = (i % width) * 4;
+            noisy[i] = Math.max(0, Math.min(255, plane[i] + random.nextInt(41) - 20));
+        }
+
+        assertEquals(1.0, TargetQualityService.ssim(plane, plane, width, height), 1e-9);
+        assertTrue(TargetQualityService.ssim(plane, noisy, width, height) < 0.9);
+    }
+
+    @Test
+    void testSearchMeetsTargetWithSmallestOutput() throws IOException {
+        BufferedImage proxy = image(256, 192, false);
+
+        TargetQualityService.Result loose = service.search(proxy, 0.9);
+        TargetQualityService.Result strict = service.search(proxy, 0.98);
+
+        assertTrue(loose.met());
+        assertTrue(strict.met());
+        assertTrue(loose.score() >= 0.9);
+        assertTrue(strict.score() >= 0.98);
+        assertTrue(strict.qscale() <= loose.qscale());
+        assertTrue(strict.bytes() >= loose.bytes());
+        // Binary search over 30 quantisers
+        assertTrue(loose.encodes() <= 5);
+    }
+
+    @Test
+    void testDetailedImagesGetFinerQuantiser() throws IOException {
+        TargetQualityService.Result smooth = service.search(image(256, 192, false), 0.95);
+        TargetQualityService.Result detailed = service.search(image(256, 192, true), 0.95);
+
+        assertTrue(detailed.qscale() < smooth.qscale());
+    }
+
+    @Test
+    void testResolveRecordsSearchOnJob() throws IOException {
+        byte[] png = png(image(1024, 768, false));
+        Job job = job("jpg", "ssim:0.95");
+
+        service.resolve(job, () -> new ByteArrayInputStream(png));
+
+        assertEquals(0.95, job.getQualityTarget());
+        assertNotNull(job.getQualityParam());
+        assertTrue(job.getQualityScore() >= 0.95);
+        assertEquals("ssim:0.95", job.getOutputQuality());
+    }
+
+    @Test
+    void testResolveFallsBackWhenSearchDoesNotApply() throws IOException {
+        byte[] png = png(image(64, 64, false));
+        Job webp = job("webp", "ssim:0.95");
+        Job undecodable = job("jpg", "ssim:0.95");
+        Job fixed = job("jpg", "medium");
+
+        service.resolve(webp, () -> new ByteArrayInputStream(png));
+        service.resolve(undecodable, () -> new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        service.resolve(fixed, () -> new ByteArrayInputStream(png));
+
+        assertEquals("high", webp.getOutputQuality());
+        assertEquals(0.95, webp.getQualityTarget());
+        assertNull(webp.getQualityParam());
+        assertEquals("high", undecodable.getOutputQuality());
+        assertEquals("medium", fixed.getOutputQuality());
+        assertNull(fixed.getQualityTarget());
+    }
+
+    private static Job job(String format, String quality) {
+        Job job = new Job();
+        job.setId(UUID.randomUUID());
+        job.setOriginalFilename("photo.png");
+        job.setOutputFormat(format);
+        job.setOutputQuality(quality);
+        return job;
+    }
+
+    private static BufferedImage image(int width, int height, boolean detailed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int red = x * 255 / width;
+                int green = y * 255 / height;
+                if (detailed) {
+                    red = Math.max(0, Math.min(255, red + random.nextInt(81) - 40));
+                    green = Math.max(0, Math.min(255, green + random.nextInt(81) - 40));
+                }
+                image.setRGB(x, y, red << 16 | green << 8 | 128);
+            }
+        }
+        return image;
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
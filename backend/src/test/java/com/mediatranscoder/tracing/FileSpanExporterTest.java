@@ -0,0 +1,64 @@
+package com.mediatranscoder.tracing;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSpanExporterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testAppendsOneJsonLinePerSpan() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Path file = dir.resolve("traces/spans.jsonl");
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(new FileSpanExporter(file, objectMapper)))
+                .build();
+        Tracer tracer = tracerProvider.get("test");
+        Span parent = tracer.spanBuilder("job.enqueue").setAttribute("job.id", "42").startSpan();
+        try (Scope ignored = parent.makeCurrent()) {
+            tracer.spanBuilder("media_jobs send").startSpan().end();
+        }
+        parent.end();
+        tracerProvider.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        JsonNode child = objectMapper.readTree(lines.get(0));
+        JsonNode root = objectMapper.readTree(lines.get(1));
+        assertEquals("media_jobs send", child.get("name").asText());
+        assertEquals("job.enqueue", root.get("name").asText());
+        assertEquals(root.get("trace_id").asText(), child.get("trace_id").asText());
+        assertEquals(root.get("span_id").asText(), child.get("parent_span_id").asText());
+        assertEquals("42", root.get("attributes").get("job.id").asText());
+    }
+
+    @Test
+    void testAppendsToAnExistingFile() throws Exception {
+        Path file = dir.resolve("spans.jsonl");
+        Files.writeString(file, "{}\n");
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(new FileSpanExporter(file, new ObjectMapper())))
+                .build();
+        tracerProvider.get("test").spanBuilder("job.callback").startSpan().end();
+        tracerProvider.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertEquals("{}", lines.get(0));
+    }
+}
@@ -0,0 +1,32 @@
+package com.mediatranscoder.tracing;
+
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemorySpanExporterTest {
+
+    @Test
+    void testDropsOldestSpansOnceFull() {
+        InMemorySpanExporter exporter = new InMemorySpanExporter(2);
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+                .build();
+        for (String name : List.of("first", "second", "third")) {
+            tracerProvider.get("test").spanBuilder(name).startSpan().end();
+        }
+
+        List<String> names = exporter.getFinishedSpans().stream().map(SpanData::getName).toList();
+        assertEquals(List.of("second", "third"), names);
+
+        exporter.reset();
+        tracerProvider.get("test").spanBuilder("fourth").startSpan().end();
+        assertEquals(List.of("fourth"), exporter.getFinishedSpans().stream().map(SpanData::getName).toList());
+        tracerProvider.close();
+    }
+}
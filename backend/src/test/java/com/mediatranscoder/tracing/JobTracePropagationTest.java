@@ -0,0 +1,231 @@
+package com.mediatranscoder.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediatranscoder.config.TracingConfig;
+import com.mediatranscoder.controller.JobController;
+import com.mediatranscoder.messaging.ConfirmedPublisher;
+import com.mediatranscoder.messaging.JobMessageCodec;
+import com.mediatranscoder.model.Job;
+import com.mediatranscoder.model.JobStatus;
+import com.mediatranscoder.model.MediaInfo;
+import com.mediatranscoder.repository.JobRepository;
+import com.mediatranscoder.service.FailureClassifier;
+import com.mediatranscoder.service.FileStorageService;
+import com.mediatranscoder.service.ImageRenderService;
+import com.mediatranscoder.service.JobBundleService;
+import com.mediatranscoder.service.JobCostModel;
+import com.mediatranscoder.service.JobEtaService;
+import com.mediatranscoder.service.JobExportService;
+import com.mediatranscoder.service.JobReadRouter;
+import com.mediatranscoder.service.JobScheduler;
+import com.mediatranscoder.service.JobService;
+import com.mediatranscoder.service.MediaProbe;
+import com.mediatranscoder.service.ProcessedFileCache;
+import com.mediatranscoder.service.ProgressTracker;
+import com.mediatranscoder.service.RabbitMQJobProducer;
+import com.mediatranscoder.service.SegmentedTranscodeService;
+import com.mediatranscoder.service.TargetQualityService;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.handler.DefaultTracingObservationHandler;
+import io.micrometer.tracing.handler.PropagatingReceiverTracingObservationHandler;
+import io.micrometer.tracing.handler.PropagatingSenderTracingObservationHandler;
+import io.micrometer.tracing.otel.bridge.OtelCurrentTraceContext;
+import io.micrometer.tracing.otel.bridge.OtelPropagator;
+import io.micrometer.tracing.otel.bridge.OtelTracer;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.connection.Connection;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.filter.ServerHttpObservationFilter;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Follows one job from upload through the AMQP publish to the worker's
+ * callback and checks every span lands in a single trace. The worker is
+ * simulated by echoing the message's trace headers on the callback, as
+ * worker.py does.
+ */
+@ExtendWith(MockitoExtension.class)
+class JobTracePropagationTest {
+
+    @Mock
+    private JobRepository jobRepository;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @Mock
+    private MediaProbe mediaProbe;
+
+    @Mock
+    private JobCostModel jobCostModel;
+
+    @Mock
+    private JobScheduler jobScheduler;
+
+    @Mock
+    private SegmentedTranscodeService segmentedTranscodeService;
+
+    @Mock
+    private ImageRenderService imageRenderService;
+
+    @Mock
+    private TargetQualityService targetQualityService;
+
+    @Mock
+    private FailureClassifier failureClassifier;
+
+    @Mock
+    private ProgressTracker progressTracker;
+
+    @Mock
+    private ConnectionFactory connectionFactory;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Channel channel;
+
+    private final InMemorySpanExporter exporter = new InMemorySpanExporter(100);
+    private SdkTracerProvider tracerProvider;
+    private ConfirmedPublisher confirmedPublisher;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+                .build();
+        io.opentelemetry.api.trace.Tracer otelTracer = tracerProvider.get("test");
+        OtelTracer tracer = new OtelTracer(otelTracer, new OtelCurrentTraceContext(), event -> { });
+        OtelPropagator propagator = new OtelPropagator(
+                ContextPropagators.create(W3CTraceContextPropagator.getInstance()), otelTracer);
+        // The handlers Spring Boot registers when micrometer-tracing is on the classpath
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(
+                new ObservationHandler.FirstMatchingCompositeObservationHandler(
+                        new PropagatingSenderTracingObservationHandler<>(tracer, propagator),
+                        new PropagatingReceiverTracingObservationHandler<>(tracer, propagator),
+                        new DefaultTracingObservationHandler(tracer)));
+
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("observationRegistry", observationRegistry);
+        context.refresh();
+        RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
+        rabbitTemplate.setApplicationContext(context);
+        new TracingConfig().tracingRabbitTemplateCustomizer().customize(rabbitTemplate);
+
+        confirmedPublisher = new ConfirmedPublisher(rabbitTemplate, 16, 1, 200, 10000, 10000);
+        RabbitMQJobProducer producer = new RabbitMQJobProducer(confirmedPublisher, new JobMessageCodec(new ObjectMapper()));
+        ReflectionTestUtils.setField(producer, "queueName", "media_jobs");
+        ReflectionTestUtils.setField(producer, "encoding", JobMessageCodec.Encoding.JSON);
+        ReflectionTestUtils.setField(producer, "callbackUrl", "http://backend/api/v1/jobs/worker-callback");
+        ReflectionTestUtils.setField(producer, "retryDelaysMs", new long[]{5000});
+
+        JobReadRouter jobReadRouter = new JobReadRouter("", 5000, null, null, new SimpleMeterRegistry());
+        JobService jobService = new JobService(jobRepository, fileStorageService, producer, observationRegistry,
+                mediaProbe, jobCostModel, jobScheduler, segmentedTranscodeService, imageRenderService,
+                targetQualityService, failureClassifier, jobReadRouter, progressTracker);
+        JobController controller = new JobController(jobService, mock(ProcessedFileCache.class),
+                mock(JobExportService.class), mock(JobBundleService.class), mock(JobEtaService.class),
+                segmentedTranscodeService, imageRenderService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .addFilters(new ServerHttpObservationFilter(observationRegistry))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        confirmedPublisher.shutdown();
+        tracerProvider.close();
+    }
+
+    @Test
+    void testUploadPublishAndCallbackShareOneTrace() throws Exception {
+        MediaInfo media = new MediaInfo();
+        media.setType(MediaInfo.Type.IMAGE);
+        media.setContainer("png");
+        when(mediaProbe.probe(any())).thenReturn(media);
+        when(fileStorageService.storeFile(any(MultipartFile.class))).thenReturn("uploads/photo.png");
+        when(fileStorageService.getFileUrl("uploads/photo.png")).thenReturn("https://storage/uploads/photo.png");
+        AtomicReference<Job> saved = new AtomicReference<>();
+        when(jobRepository.save(any(Job.class))).thenAnswer(invocation -> {
+            Job job = invocation.getArgument(0);
+            if (job.getId() == null) {
+                job.setId(UUID.randomUUID());
+            }
+            saved.set(job);
+            return job;
+        });
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createChannel(false)).thenReturn(channel);
+
+        mockMvc.perform(multipart("/api/v1/jobs")
+                        .file(new MockMultipartFile("file", "photo.png", "image/png", new byte[]{1, 2, 3}))
+                        .param("outputFormat", "jpg")
+                        .param("outputQuality", "medium"))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<AMQP.BasicProperties> properties = ArgumentCaptor.forClass(AMQP.BasicProperties.class);
+        verify(channel).basicPublish(eq(""), eq("media_jobs"), anyBoolean(), properties.capture(), any(byte[].class));
+        Map<String, Object> messageHeaders = properties.getValue().getHeaders();
+        assertNotNull(messageHeaders.get("traceparent"), "job message carries no traceparent");
+
+        Job job = saved.get();
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        mockMvc.perform(post("/api/v1/jobs/worker-callback")
+                        .header("traceparent", messageHeaders.get("traceparent").toString())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"job_id\":\"" + job.getId() + "\",\"status\":\"completed\","
+                                + "\"processed_file_key\":\"processed/photo.jpg\"}"))
+                .andExpect(status().isOk());
+        assertEquals(JobStatus.COMPLETED, job.getStatus());
+
+        List<SpanData> spans = exporter.getFinishedSpans();
+        List<String> names = spans.stream().map(SpanData::getName).toList();
+        assertTrue(names.containsAll(List.of("job.store", "job.persist", "job.enqueue", "job.callback")), names.toString());
+        assertEquals(1, spans.stream().map(SpanData::getTraceId).distinct().count(), "spans span several traces: " + spans);
+
+        SpanData publish = spans.stream().filter(span -> span.getKind() == SpanKind.PRODUCER).findFirst().orElseThrow();
+        List<SpanData> requests = spans.stream().filter(span -> span.getKind() == SpanKind.SERVER).toList();
+        assertEquals(2, requests.size());
+        // The callback request continues from the publish, not from the upload request
+        assertEquals(publish.getSpanId(), requests.get(1).getParentSpanId());
+    }
+}
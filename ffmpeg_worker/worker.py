@@ -1,19 +1,33 @@
 import os
 import subprocess
+import tempfile
 import requests
 import pika
 import json
+import cbor2
 import firebase_admin
 from firebase_admin import credentials, storage
 import time
+import threading
+import functools
+from concurrent.futures import ThreadPoolExecutor
 
 RABBITMQ_HOST = os.environ.get("RABBITMQ_HOST", "rabbitmq")
 RABBITMQ_USER = os.environ.get("RABBITMQ_USER", "guest")
 RABBITMQ_PASS = os.environ.get("RABBITMQ_PASS", "guest")
 QUEUE_NAME = os.environ.get("QUEUE_NAME", "media_jobs")
+# Backend-declared lane for jobs that ran out of retries; undecodable messages are parked there too
+DEAD_LETTER_QUEUE = os.environ.get("DEAD_LETTER_QUEUE", f"{QUEUE_NAME}.dead")
 BACKEND_UPDATE_URL = os.environ.get("BACKEND_UPDATE_URL", "http://backend:8080/api/v1/jobs/worker-callback")
+BACKEND_PROGRESS_URL = os.environ.get("BACKEND_PROGRESS_URL", BACKEND_UPDATE_URL.rsplit("/", 1)[0] + "/worker-progress")
+# Ticks are throttled to one per interval; the backend only keeps the latest anyway
+PROGRESS_INTERVAL_SECONDS = float(os.environ.get("PROGRESS_INTERVAL_SECONDS", "1"))
 FIREBASE_CREDENTIALS = os.environ.get("FIREBASE_CREDENTIALS", "firebase-service-account.json")
 FIREBASE_BUCKET = os.environ.get("FIREBASE_BUCKET")  # Set this to your bucket name
+BATCH_IO_THREADS = int(os.environ.get("BATCH_IO_THREADS", "8"))
+# A 503 on a callback means the backend cannot take the result yet (e.g. a segment row not committed); try again
+CALLBACK_RETRIES = int(os.environ.get("CALLBACK_RETRIES", "5"))
+CALLBACK_RETRY_DELAY_SECONDS = float(os.environ.get("CALLBACK_RETRY_DELAY_SECONDS", "1"))
 
 # Initialize Firebase
 print(f"[WORKER] Initializing Firebase with bucket: {FIREBASE_BUCKET}")
@@ -39,8 +53,81 @@ def upload_to_firebase(local_path, dest_path):
     return blob.name
 
 
-def process_job(job):
+def quality_args(output_format, output_quality, quality_param=None):
+    args = []
+    print(f"[WORKER] Output quality requested: {output_quality}")
+    
+    if output_format.lower() in ['jpg', 'jpeg'] and quality_param:
+        # Chosen by the backend's target-quality search
+        args.extend(["-q:v", str(quality_param)])
+        print(f"[WORKER] JPEG quality set to searched value: {quality_param}")
+    elif output_format.lower() in ['jpg', 'jpeg']:
+        quality_map = {'low': '25', 'medium': '15', 'high': '3'}
+        quality = quality_map.get(output_quality, '15')
+        args.extend(["-q:v", quality])
+        print(f"[WORKER] JPEG quality set to: {quality} (scale: 1-31, lower=better quality)")
+    elif output_format.lower() == 'webp':
+        quality_map = {'low': '30', 'medium': '60', 'high': '95'}
+        quality = quality_map.get(output_quality, '60')
+        args.extend(["-quality", quality])
+        print(f"[WORKER] WebP quality set to: {quality} (scale: 0-100, higher=better quality)")
+    elif output_format.lower() == 'png':
+        # PNG is lossless, but we can control compression
+        compression_map = {'low': '0', 'medium': '6', 'high': '9'}
+        compression = compression_map.get(output_quality, '6')
+        args.extend(["-compression_level", compression])
+        print(f"[WORKER] PNG compression set to: {compression} (scale: 0-9, higher=more compression)")
+    elif output_format.lower() in ['gif', 'bmp', 'tiff']:
+        # For other formats, use general quality parameter
+        quality_map = {'low': '25', 'medium': '15', 'high': '5'}
+        quality = quality_map.get(output_quality, '15')
+        args.extend(["-q:v", quality])
+        print(f"[WORKER] {output_format.upper()} quality set to: {quality}")
+    else:
+        print(f"[WORKER] No specific quality settings for format: {output_format}")
+    return args
+
+
+def process_renditions(job, input_file, trace_headers=None, started=None, attempt=1):
+    # One ffmpeg invocation decodes the input once and encodes every rendition as a separate output
+    renditions = job['renditions']
+    ffmpeg_cmd = ["ffmpeg", "-y", "-i", input_file]
+    for rendition in renditions:
+        width = rendition.get('width')
+        height = rendition.get('height')
+        if width and height:
+            ffmpeg_cmd.extend(["-vf", f"scale={width}:{height}"])
+        ffmpeg_cmd.extend(quality_args(rendition['output_format'], rendition.get('output_quality', 'high')))
+        output_file = f"/tmp/output-{rendition['index']}.{rendition['output_format']}"
+        if os.path.exists(output_file):
+            os.remove(output_file)
+        ffmpeg_cmd.append(output_file)
+
+    print(f"[WORKER] Final FFmpeg command: {' '.join(ffmpeg_cmd)}")
+    result = run_ffmpeg(ffmpeg_cmd, job, attempt)
+
+    results = []
+    for rendition in renditions:
+        index = rendition['index']
+        output_file = f"/tmp/output-{index}.{rendition['output_format']}"
+        if result.returncode != 0 or not os.path.exists(output_file):
+            results.append({"index": index, "status": "failed", "error_message": result.stderr})
+            continue
+        try:
+            uploaded_key = upload_to_firebase(output_file, f"processed/{job['id']}/output-{index}.{rendition['output_format']}")
+            results.append({"index": index, "status": "completed", "processed_file_key": uploaded_key})
+        except Exception as e:
+            print(f"[WORKER] Failed to upload rendition {index}: {e}")
+            results.append({"index": index, "status": "failed", "error_message": str(e)})
+
+    status = "completed" if any(r["status"] == "completed" for r in results) else "failed"
+    notify_backend(job['id'], status, trace_headers=trace_headers, renditions=results, started=started, attempt=attempt)
+
+
+def process_job(job, trace_headers=None, attempt=1):
     print(f"[WORKER] Processing job: {job['id']}")
+    # Reported back so the backend's cost model learns from worker time, not queue wait
+    started = time.monotonic()
     print(f"[WORKER] Full job data: {json.dumps(job, indent=2)}")
     
     input_url = job['input_url']
@@ -58,10 +145,12 @@ def process_job(job):
 
     # Download input file
     print(f"[WORKER] Downloading from: {input_url}")
-    r = requests.get(input_url, stream=True)
-    with open(input_file, "wb") as f:
-        for chunk in r.iter_content(chunk_size=8192):
-            f.write(chunk)
+    # Raises on an error status so a storage outage is reported as such, not as ffmpeg failing on an error page
+    download(input_url, input_file)
+
+    if job.get('renditions'):
+        process_renditions(job, input_file, trace_headers, started, attempt)
+        return
 
     # Build FFmpeg command
     ffmpeg_cmd = ["ffmpeg", "-y", "-i", input_file]
@@ -79,41 +168,17 @@ def process_job(job):
         print(f"[WORKER] Resize not enabled or not 'true'")
     
     # Add quality settings based on format
-    print(f"[WORKER] Output quality requested: {output_quality}")
-    
-    if output_format.lower() in ['jpg', 'jpeg']:
-        quality_map = {'low': '25', 'medium': '15', 'high': '3'}
-        quality = quality_map.get(output_quality, '15')
-        ffmpeg_cmd.extend(["-q:v", quality])
-        print(f"[WORKER] JPEG quality set to: {quality} (scale: 1-31, lower=better quality)")
-    elif output_format.lower() == 'webp':
-        quality_map = {'low': '30', 'medium': '60', 'high': '95'}
-        quality = quality_map.get(output_quality, '60')
-        ffmpeg_cmd.extend(["-quality", quality])
-        print(f"[WORKER] WebP quality set to: {quality} (scale: 0-100, higher=better quality)")
-    elif output_format.lower() == 'png':
-        # PNG is lossless, but we can control compression
-        compression_map = {'low': '0', 'medium': '6', 'high': '9'}
-        compression = compression_map.get(output_quality, '6')
-        ffmpeg_cmd.extend(["-compression_level", compression])
-        print(f"[WORKER] PNG compression set to: {compression} (scale: 0-9, higher=more compression)")
-    elif output_format.lower() in ['gif', 'bmp', 'tiff']:
-        # For other formats, use general quality parameter
-        quality_map = {'low': '25', 'medium': '15', 'high': '5'}
-        quality = quality_map.get(output_quality, '15')
-        ffmpeg_cmd.extend(["-q:v", quality])
-        print(f"[WORKER] {output_format.upper()} quality set to: {quality}")
-    else:
-        print(f"[WORKER] No specific quality settings for format: {output_format}")
-    
+    ffmpeg_cmd.extend(quality_args(output_format, output_quality, job.get('quality_param')))
+
     ffmpeg_cmd.append(output_file)
     
     print(f"[WORKER] Final FFmpeg command: {' '.join(ffmpeg_cmd)}")
-    result = subprocess.run(ffmpeg_cmd, capture_output=True, text=True)
+    result = run_ffmpeg(ffmpeg_cmd, job, attempt)
     
     if result.returncode != 0:
         print(f"[WORKER] FFmpeg failed: {result.stderr}")
-        notify_backend(job['id'], "failed", error_message=result.stderr)
+        notify_backend(job['id'], "failed", error_message=result.stderr, trace_headers=trace_headers, started=started,
+                       attempt=attempt)
         return
 
     # Upload output file to Firebase
@@ -121,22 +186,271 @@ def process_job(job):
     try:
         uploaded_key = upload_to_firebase(output_file, processed_file_key)
         print(f"[WORKER] Uploaded to Firebase: {uploaded_key}")
-        notify_backend(job['id'], "completed", processed_file_key=uploaded_key)
+        notify_backend(job['id'], "completed", processed_file_key=uploaded_key, trace_headers=trace_headers, started=started,
+                       attempt=attempt)
     except Exception as e:
         print(f"[WORKER] Failed to upload to Firebase: {e}")
-        notify_backend(job['id'], "failed", error_message=str(e))
+        notify_backend(job['id'], "failed", error_message=str(e), trace_headers=trace_headers, started=started,
+                       attempt=attempt)
+
+
+def run_ffmpeg(ffmpeg_cmd, job, attempt=1):
+    # Reports percent done from ffmpeg's -progress output; needs the input's duration, which images do not have
+    duration_ms = job.get('duration_ms')
+    if not duration_ms:
+        return subprocess.run(ffmpeg_cmd, capture_output=True, text=True)
+    ffmpeg_cmd = [ffmpeg_cmd[0], "-progress", "pipe:1", "-nostats"] + ffmpeg_cmd[1:]
+    # stderr goes to a file so a full pipe cannot stall ffmpeg while stdout is being read
+    with tempfile.TemporaryFile(mode="w+") as stderr:
+        process = subprocess.Popen(ffmpeg_cmd, stdout=subprocess.PIPE, stderr=stderr, text=True)
+        last_sent = 0
+        last_percent = None
+        for line in process.stdout:
+            key, _, value = line.strip().partition("=")
+            # out_time_ms is in microseconds as well; "N/A" until the first frame is out
+            if key not in ("out_time_us", "out_time_ms") or not value.isdigit():
+                continue
+            # 100 is left to the completion callback
+            percent = min(99, int(value) // 10 // duration_ms)
+            now = time.monotonic()
+            if percent != last_percent and now - last_sent >= PROGRESS_INTERVAL_SECONDS:
+                notify_progress(job['id'], percent, attempt)
+                last_sent = now
+                last_percent = percent
+        returncode = process.wait()
+        stderr.seek(0)
+        return subprocess.CompletedProcess(ffmpeg_cmd, returncode, "", stderr.read())
+
+
+def notify_progress(job_id, percent, attempt):
+    try:
+        requests.post(BACKEND_PROGRESS_URL, json={"job_id": job_id, "percent": percent, "attempt": attempt}, timeout=2)
+    except Exception as e:
+        # Progress is best effort; the job carries on regardless
+        print(f"[WORKER] Failed to report progress for job {job_id}: {e}")
+
+
+def download(url, path):
+    r = requests.get(url, stream=True)
+    r.raise_for_status()
+    with open(path, "wb") as f:
+        for chunk in r.iter_content(chunk_size=8192):
+            f.write(chunk)
+
+
+def output_args(settings, output_format, output_quality):
+    args = []
+    if settings.get('resize') == 'true' and settings.get('width') and settings.get('height'):
+        args.extend(["-vf", f"scale={settings['width']}:{settings['height']}"])
+    args.extend(quality_args(output_format, output_quality))
+    return args
+
+
+def process_batch(batch, trace_headers=None):
+    # Small images that share output settings: downloads and uploads overlap,
+    # one ffmpeg process encodes every entry, and one callback reports them all
+    started = time.monotonic()
+    entries = batch['jobs']
+    output_format = batch['output_format']
+    args = output_args(batch.get('settings') or {}, output_format, batch.get('output_quality', 'high'))
+    print(f"[WORKER] Processing batch {batch['id']} of {len(entries)} jobs")
+
+    def fetch(entry):
+        path = f"/tmp/batch-input-{entry['id']}"
+        download(entry['input_url'], path)
+        return path
+
+    results = {}
+    inputs = {}
+    with ThreadPoolExecutor(max_workers=BATCH_IO_THREADS) as pool:
+        for entry, future in [(e, pool.submit(fetch, e)) for e in entries]:
+            try:
+                inputs[entry['id']] = future.result()
+            except Exception as e:
+                results[entry['id']] = {"status": "failed", "error_message": f"Download failed: {e}"}
+
+    def output_path(job_id):
+        return f"/tmp/batch-output-{job_id}.{output_format}"
+
+    def transcode(job_ids):
+        cmd = ["ffmpeg", "-y"]
+        for job_id in job_ids:
+            cmd.extend(["-i", inputs[job_id]])
+        for i, job_id in enumerate(job_ids):
+            cmd.extend(["-map", f"{i}:v:0"] + args + [output_path(job_id)])
+        return subprocess.run(cmd, capture_output=True, text=True)
+
+    pending = [e['id'] for e in entries if e['id'] in inputs]
+    if pending:
+        result = transcode(pending)
+        if result.returncode != 0:
+            # One bad input fails the whole invocation; retry individually to isolate it
+            print(f"[WORKER] Batch ffmpeg failed, retrying jobs one by one")
+            for job_id in pending:
+                single = transcode([job_id])
+                if single.returncode != 0:
+                    results[job_id] = {"status": "failed", "error_message": single.stderr}
+
+    def upload(job_id):
+        return upload_to_firebase(output_path(job_id), f"processed/{job_id}/output.{output_format}")
+
+    with ThreadPoolExecutor(max_workers=BATCH_IO_THREADS) as pool:
+        uploads = [(job_id, pool.submit(upload, job_id)) for job_id in pending if job_id not in results]
+        for job_id, future in uploads:
+            try:
+                results[job_id] = {"status": "completed", "processed_file_key": future.result()}
+            except Exception as e:
+                results[job_id] = {"status": "failed", "error_message": str(e)}
+
+    for path in list(inputs.values()) + [output_path(job_id) for job_id in pending]:
+        if os.path.exists(path):
+            os.remove(path)
+
+    # Worker time is shared evenly so the backend's cost model sees a per-job figure
+    per_job_ms = int((time.monotonic() - started) * 1000 / len(entries))
+    payload = [dict(job_id=e['id'], processing_ms=per_job_ms, **results[e['id']]) for e in entries]
+    notify_backend_batch(payload, trace_headers)
+
+
+def process_segment(job, trace_headers=None):
+    # Input seeking lands on the keyframe before start_ms and decodes forward, so the cut is frame-exact
+    # and the encoder opens the segment on a fresh keyframe; the stitch can then concatenate by stream copy.
+    # Audio is left to the stitch so segment boundaries cannot introduce gaps in it.
+    started = time.monotonic()
+    segment = job['segment']
+    index = segment['index']
+    output_format = job['output_format']
+    output_file = f"/tmp/segment-{job['id']}-{index}.{output_format}"
+    start = segment['start_ms'] / 1000
+    duration = (segment['end_ms'] - segment['start_ms']) / 1000
+    print(f"[WORKER] Segment {index + 1}/{segment['count']} of job {job['id']}: {start:.3f}s +{duration:.3f}s")
+
+    # ffmpeg reads the signed URL with range requests, so only this segment's bytes are fetched
+    ffmpeg_cmd = ["ffmpeg", "-y", "-ss", f"{start:.3f}", "-i", job['input_url'], "-t", f"{duration:.3f}",
+                  "-map", "0:v:0", "-an"]
+    ffmpeg_cmd.extend(output_args(job.get('settings') or {}, output_format, job.get('output_quality', 'high')))
+    ffmpeg_cmd.append(output_file)
+    result = subprocess.run(ffmpeg_cmd, capture_output=True, text=True)
+    if result.returncode != 0:
+        notify_backend(job['id'], "failed", error_message=result.stderr, trace_headers=trace_headers,
+                       started=started, segment_index=index)
+        return
+    try:
+        uploaded_key = upload_to_firebase(output_file, f"processed/{job['id']}/segments/{index}.{output_format}")
+        notify_backend(job['id'], "completed", processed_file_key=uploaded_key, trace_headers=trace_headers,
+                       started=started, segment_index=index)
+    except Exception as e:
+        notify_backend(job['id'], "failed", error_message=str(e), trace_headers=trace_headers,
+                       started=started, segment_index=index)
+    finally:
+        if os.path.exists(output_file):
+            os.remove(output_file)
+
+
+def process_stitch(job, trace_headers=None):
+    started = time.monotonic()
+    output_format = job['output_format']
+    urls = job['stitch']['segment_urls']
+    parts = [f"/tmp/stitch-{job['id']}-{i}.{output_format}" for i in range(len(urls))]
+    list_file = f"/tmp/stitch-{job['id']}.txt"
+    output_file = f"/tmp/stitch-{job['id']}-output.{output_format}"
+    print(f"[WORKER] Stitching {len(urls)} segments of job {job['id']}")
+    try:
+        with ThreadPoolExecutor(max_workers=BATCH_IO_THREADS) as pool:
+            list(pool.map(download, urls, parts))
+        with open(list_file, "w") as f:
+            f.writelines(f"file '{part}'\n" for part in parts)
+
+        audio_codec = "libopus" if output_format == "webm" else "aac"
+        ffmpeg_cmd = ["ffmpeg", "-y", "-f", "concat", "-safe", "0", "-i", list_file, "-i", job['input_url'],
+                      "-map", "0:v", "-map", "1:a?", "-c:v", "copy", "-c:a", audio_codec, output_file]
+        result = subprocess.run(ffmpeg_cmd, capture_output=True, text=True)
+        if result.returncode != 0:
+            notify_backend(job['id'], "failed", error_message=result.stderr, trace_headers=trace_headers, started=started)
+            return
+        uploaded_key = upload_to_firebase(output_file, f"processed/{job['id']}/output.{output_format}")
+        notify_backend(job['id'], "completed", processed_file_key=uploaded_key, trace_headers=trace_headers,
+                       started=started)
+    except Exception as e:
+        notify_backend(job['id'], "failed", error_message=str(e), trace_headers=trace_headers, started=started)
+    finally:
+        for path in parts + [list_file, output_file]:
+            if os.path.exists(path):
+                os.remove(path)
+
+
+def decode_job(body, properties):
+    # The backend advertises the encoding in the content type; anything else is the original JSON string
+    if properties and properties.content_type == "application/cbor":
+        return cbor2.loads(body)
+    return json.loads(body)
+
+
+def extract_trace_headers(properties):
+    # W3C trace context injected by the backend publisher; echoed back on the callback
+    headers = (properties.headers or {}) if properties else {}
+    return {name: str(headers[name]) for name in ("traceparent", "tracestate") if name in headers}
 
 
-def notify_backend(job_id, status, processed_file_key=None, error_message=None):
+def extract_attempt(properties):
+    # Set by the backend on retries; a job's first run carries no header
+    headers = (properties.headers or {}) if properties else {}
+    return int(headers.get("x-attempt", 1))
+
+
+def notify_backend(job_id, status, processed_file_key=None, error_message=None, trace_headers=None, renditions=None, started=None,
+                   segment_index=None, attempt=None):
     data = {
         "job_id": job_id,
         "status": status,
         "processed_file_key": processed_file_key,
         "error_message": error_message
     }
+    # Lets the backend drop a result from a run it has since superseded with a retry
+    if attempt is not None:
+        data["attempt"] = attempt
+    if segment_index is not None:
+        data["segment_index"] = segment_index
+    if started is not None:
+        data["processing_ms"] = int((time.monotonic() - started) * 1000)
+    if renditions is not None:
+        data["renditions"] = renditions
     try:
         print(f"[WORKER] Notifying backend: {data}")
-        response = requests.post(BACKEND_UPDATE_URL, json=data)
+        for retry in range(CALLBACK_RETRIES + 1):
+            response = requests.post(BACKEND_UPDATE_URL, json=data, headers=trace_headers or {})
+            print(f"[WORKER] Backend response: {response.status_code}")
+            if response.status_code != 503 or retry == CALLBACK_RETRIES:
+                break
+            time.sleep(CALLBACK_RETRY_DELAY_SECONDS * 2 ** retry)
+    except Exception as e:
+        print(f"[WORKER] Failed to notify backend: {e}")
+
+
+def report_failure(job, error_message, trace_headers=None, attempt=None):
+    # Mirrors the callback shape of each message kind so the backend can retry or dead-letter the right jobs
+    if job.get('jobs'):
+        notify_backend_batch([dict(job_id=e['id'], status="failed", error_message=error_message) for e in job['jobs']],
+                             trace_headers)
+    elif job.get('segment'):
+        notify_backend(job['id'], "failed", error_message=error_message, trace_headers=trace_headers,
+                       segment_index=job['segment']['index'])
+    else:
+        notify_backend(job['id'], "failed", error_message=error_message, trace_headers=trace_headers, attempt=attempt)
+
+
+def park(ch, body, properties, reason):
+    headers = dict((properties.headers or {}) if properties else {})
+    headers["x-failure-reason"] = reason
+    ch.basic_publish(exchange="", routing_key=DEAD_LETTER_QUEUE, body=body,
+                     properties=pika.BasicProperties(content_type=properties.content_type if properties else None,
+                                                     headers=headers, delivery_mode=2))
+
+
+def notify_backend_batch(results, trace_headers=None):
+    try:
+        print(f"[WORKER] Notifying backend of {len(results)} batched results")
+        response = requests.post(BACKEND_UPDATE_URL, json={"batch": results}, headers=trace_headers or {})
         print(f"[WORKER] Backend response: {response.status_code}")
     except Exception as e:
         print(f"[WORKER] Failed to notify backend: {e}")
@@ -159,16 +473,46 @@ def main():
         return
     channel = connection.channel()
     channel.queue_declare(queue=QUEUE_NAME)
+    channel.queue_declare(queue=DEAD_LETTER_QUEUE, durable=True)
 
-    def callback(ch, method, properties, body):
+    def handle(ch, method, properties, body):
+        # Runs on its own thread; channel calls are handed back to the connection's thread, pika not being thread-safe
+        job = None
+        trace_headers = extract_trace_headers(properties)
+        attempt = extract_attempt(properties)
         try:
-            job = json.loads(body)
+            try:
+                job = decode_job(body, properties)
+            except Exception as e:
+                # No job id to report against, so the payload itself is kept for inspection
+                print(f"[WORKER] Undecodable message, parking it: {e}")
+                connection.add_callback_threadsafe(
+                    functools.partial(park, ch, body, properties, f"PERMANENT: undecodable message: {e}"))
+                return
+            if method.redelivered:
+                # Heartbeats flow while jobs run, so this only follows a worker that actually died; run it again
+                print(f"[WORKER] Job {job.get('id')} redelivered after a worker interruption")
             print(f"[WORKER] Received job: {job}")
-            process_job(job)
+            if job.get('jobs'):
+                process_batch(job, trace_headers)
+            elif job.get('segment'):
+                process_segment(job, trace_headers)
+            elif job.get('stitch'):
+                process_stitch(job, trace_headers)
+            else:
+                process_job(job, trace_headers, attempt)
         except Exception as e:
             print(f"[WORKER] Error processing job: {e}")
+            if job is not None:
+                report_failure(job, f"Worker error: {e}", trace_headers, attempt)
         finally:
-            ch.basic_ack(delivery_tag=method.delivery_tag)
+            connection.add_callback_threadsafe(functools.partial(ch.basic_ack, delivery_tag=method.delivery_tag))
+
+    def callback(ch, method, properties, body):
+        # ffmpeg can run for longer than the heartbeat timeout; off the I/O thread, heartbeats keep the
+        # connection alive so the broker does not redeliver the message while it is still being worked on.
+        # Prefetch 1 still limits the worker to one job at a time.
+        threading.Thread(target=handle, args=(ch, method, properties, body), daemon=True).start()
 
     channel.basic_qos(prefetch_count=1)
     channel.basic_consume(queue=QUEUE_NAME, on_message_callback=callback)
@@ -121,6 +121,25 @@ class MediaAPI {
     return response.data
   }
 
+  // Uploads straight to storage through a presigned URL, so the bytes never pass through the backend
+  async uploadFileDirect(file: File, settings: ProcessingSettings): Promise<any> {
+    const params = new URLSearchParams({
+      filename: file.name,
+      contentType: file.type || 'application/octet-stream',
+      outputFormat: settings.format,
+      outputQuality: settings.quality,
+    })
+    if (settings.resize && settings.width && settings.height) {
+      params.append('settings[resize]', 'true')
+      params.append('settings[width]', settings.width)
+      params.append('settings[height]', settings.height)
+    }
+    const { data: target } = await api.post('/v1/upload/presign', params)
+    await axios.put(target.uploadUrl, file, { headers: target.headers })
+    const response = await api.post(`/v1/upload/${target.jobId}/finalize`)
+    return response.data
+  }
+
   async getJobs(status: string = 'all', page: number = 0, size: number = 10): Promise<JobResponse[]> {
     const response = await api.get('/v1/jobs', {
       params: { status, page, size },